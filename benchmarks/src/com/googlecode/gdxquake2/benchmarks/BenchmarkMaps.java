@@ -0,0 +1,65 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import com.googlecode.gdxquake2.game.common.CM;
+import com.googlecode.gdxquake2.game.common.ResourceLoader;
+import com.googlecode.gdxquake2.game.game.Model;
+
+/**
+ * Loads maps for the benchmarks through CM.CM_LoadMap(). The name
+ * "synthetic" selects a generated map (see SyntheticMap), anything else is
+ * taken as the path of a BSP file.
+ */
+public class BenchmarkMaps {
+
+	public static final String SYNTHETIC = "synthetic";
+
+	/** The generated map of the last load() call, or null for a real BSP. */
+	public static SyntheticMap synthetic;
+
+	public static Model load(String map) throws IOException {
+		final ByteBuffer data;
+		if (SYNTHETIC.equals(map)) {
+			synthetic = new SyntheticMap(32, 0.2f, 1234);
+			data = synthetic.build();
+		} else {
+			synthetic = null;
+			RandomAccessFile f = new RandomAccessFile(new File(map), "r");
+			try {
+				byte[] buf = new byte[(int) f.length()];
+				f.readFully(buf);
+				data = ByteBuffer.wrap(buf);
+			} finally {
+				f.close();
+			}
+		}
+
+		ResourceLoader.impl = new ResourceLoader.Impl() {
+			public void loadResourceAsync(String path, ResourceLoader.Callback callback) {
+				callback.onSuccess(data);
+			}
+
+			public boolean pump() {
+				return false;
+			}
+
+			public void reset() {
+			}
+		};
+
+		final Model[] result = new Model[1];
+		CM.CM_LoadMap(map, false, new int[1], new CM.ModelCallback() {
+			public void onSuccess(Model model) {
+				result[0] = model;
+			}
+		});
+		if (result[0] == null) {
+			throw new IOException("Failed to load " + map);
+		}
+		return result[0];
+	}
+}
@@ -0,0 +1,156 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.gdxquake2.game.common.CM;
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.TraceContext;
+import com.googlecode.gdxquake2.game.game.Model;
+import com.googlecode.gdxquake2.game.game.Trace;
+
+/**
+ * Measures the collision model queries used by the server frame and by
+ * client prediction. All inputs are precomputed from a fixed seed, so runs
+ * are comparable across changes to CM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+	static final int SAMPLES = 1024;
+
+	static final float[] ZERO = {0, 0, 0};
+	static final float[] PLAYER_MINS = {-16, -16, -24};
+	static final float[] PLAYER_MAXS = {16, 16, 32};
+	static final float[] ROTATION = {0, 45, 0};
+
+	/** "synthetic" or the path of a BSP file. */
+	@Param({BenchmarkMaps.SYNTHETIC})
+	public String map;
+
+	int headnode;
+	float[][] starts = new float[SAMPLES][];
+	float[][] shortEnds = new float[SAMPLES][];
+	float[][] longEnds = new float[SAMPLES][];
+	float[][] boxMins = new float[SAMPLES][];
+	float[][] boxMaxs = new float[SAMPLES][];
+	int[] leafList = new int[128];
+	int index;
+
+	/** Private to the benchmark thread, so the *Context benchmarks can run with -t. */
+	TraceContext context = new TraceContext();
+
+	@Setup
+	public void setup() throws IOException {
+		Model world = BenchmarkMaps.load(map);
+		headnode = world.headnode;
+
+		Random random = new Random(42);
+		for (int i = 0; i < SAMPLES; i++) {
+			starts[i] = randomPoint(random, world);
+			shortEnds[i] = new float[3];
+			for (int j = 0; j < 3; j++) {
+				shortEnds[i][j] = starts[i][j] + (random.nextFloat() - 0.5f) * 128;
+			}
+			longEnds[i] = randomPoint(random, world);
+			float size = 32 + random.nextFloat() * 480;
+			boxMins[i] = new float[3];
+			boxMaxs[i] = new float[3];
+			for (int j = 0; j < 3; j++) {
+				boxMins[i][j] = starts[i][j] - size / 2;
+				boxMaxs[i][j] = starts[i][j] + size / 2;
+			}
+		}
+	}
+
+	/** Picks a point inside the open space of the map if possible. */
+	static float[] randomPoint(Random random, Model world) {
+		float[] p = new float[3];
+		for (int attempt = 0; attempt < 100; attempt++) {
+			for (int j = 0; j < 3; j++) {
+				p[j] = world.mins[j] + random.nextFloat() * (world.maxs[j] - world.mins[j]);
+			}
+			if (CM.PointContents(p, 0) == 0) {
+				break;
+			}
+		}
+		return p;
+	}
+
+	int next() {
+		return index = (index + 1) & (SAMPLES - 1);
+	}
+
+	@Benchmark
+	public Trace pointTrace() {
+		int i = next();
+		return CM.BoxTrace(starts[i], shortEnds[i], ZERO, ZERO, headnode, Constants.MASK_SHOT);
+	}
+
+	@Benchmark
+	public Trace boxTrace() {
+		int i = next();
+		return CM.BoxTrace(starts[i], shortEnds[i], PLAYER_MINS, PLAYER_MAXS, headnode, Constants.MASK_PLAYERSOLID);
+	}
+
+	@Benchmark
+	public Trace longPointTrace() {
+		int i = next();
+		return CM.BoxTrace(starts[i], longEnds[i], ZERO, ZERO, headnode, Constants.MASK_SHOT);
+	}
+
+	@Benchmark
+	public Trace longBoxTrace() {
+		int i = next();
+		return CM.BoxTrace(starts[i], longEnds[i], PLAYER_MINS, PLAYER_MAXS, headnode, Constants.MASK_PLAYERSOLID);
+	}
+
+	@Benchmark
+	public Trace boxTraceContext() {
+		int i = next();
+		return CM.BoxTrace(context, starts[i], shortEnds[i], PLAYER_MINS, PLAYER_MAXS, headnode,
+				Constants.MASK_PLAYERSOLID);
+	}
+
+	@Benchmark
+	public Trace transformedBoxTrace() {
+		int i = next();
+		return CM.TransformedBoxTrace(starts[i], shortEnds[i], PLAYER_MINS, PLAYER_MAXS, headnode,
+				Constants.MASK_PLAYERSOLID, ZERO, ROTATION);
+	}
+
+	@Benchmark
+	public Trace positionTest() {
+		int i = next();
+		return CM.BoxTrace(starts[i], starts[i], PLAYER_MINS, PLAYER_MAXS, headnode, Constants.MASK_PLAYERSOLID);
+	}
+
+	@Benchmark
+	public int pointContents() {
+		return CM.PointContents(starts[next()], headnode);
+	}
+
+	@Benchmark
+	public int boxLeafnums() {
+		int i = next();
+		return CM.CM_BoxLeafnums(boxMins[i], boxMaxs[i], leafList, leafList.length, null);
+	}
+}
@@ -0,0 +1,124 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.googlecode.gdxquake2.GdxQuake2;
+import com.googlecode.gdxquake2.game.common.ResourceLoader;
+import com.googlecode.gdxquake2.game.server.BotMatch;
+import com.googlecode.gdxquake2.game.server.ClientData;
+import com.googlecode.gdxquake2.game.server.ClientFrameExecutor;
+import com.googlecode.gdxquake2.game.server.ClientFrameWorker;
+import com.googlecode.gdxquake2.game.server.DeltaCache;
+import com.googlecode.gdxquake2.game.server.QuakeServer;
+import com.googlecode.gdxquake2.game.server.ServerFixture;
+import com.googlecode.gdxquake2.game.server.ServerSend;
+import com.googlecode.gdxquake2.game.sys.NET;
+import com.googlecode.gdxquake2.server.FileResourceLoader;
+import com.googlecode.gdxquake2.server.ServerTools;
+import com.googlecode.gdxquake2.server.UdpSocketFactory;
+
+/**
+ * Reports the hit rate of the delta caches while scripted bots play on the
+ * synthetic map of FrameAllocationCheck and the client frames are built by
+ * a number of workers, first with the shared deltas of the server thread
+ * ignored, then with them. The clients are dealt to the workers in turn on
+ * the calling thread, as a ParallelFrameExecutor with that many threads
+ * would spread them, so that the counts do not depend on thread timing.
+ *
+ * usage: DeltaCacheCheck [bots [workers [frames]]]
+ *
+ * "encoded" counts the deltas encoded per server frame, by the workers on a
+ * miss and by the server thread for the shared cache.
+ */
+public class DeltaCacheCheck {
+
+	static final int WARMUP_FRAMES = 300;
+
+	static class Executor implements ClientFrameExecutor {
+		final ClientFrameWorker[] workers;
+		boolean shared;
+		long hits, sharedHits, misses, encoded;
+
+		Executor(int threads) {
+			workers = new ClientFrameWorker[threads];
+			for (int i = 0; i < threads; i++) {
+				workers[i] = new ClientFrameWorker();
+			}
+		}
+
+		public void execute(ClientData[] clients, int count) {
+			DeltaCache sharedDeltas = ServerFixture.sharedDeltas();
+			if (shared) {
+				encoded += sharedDeltas.entries();
+			} else {
+				ServerFixture.dropSharedDeltas();
+			}
+			int[] before = new int[3 * workers.length];
+			for (int i = 0; i < workers.length; i++) {
+				DeltaCache deltas = ServerFixture.deltas(workers[i]);
+				before[3 * i] = deltas.hits();
+				before[3 * i + 1] = deltas.sharedHits();
+				before[3 * i + 2] = deltas.misses();
+			}
+			for (int i = 0; i < count; i++) {
+				ServerSend.SV_SendClientDatagram(clients[i], workers[i % workers.length]);
+			}
+			for (int i = 0; i < workers.length; i++) {
+				DeltaCache deltas = ServerFixture.deltas(workers[i]);
+				hits += deltas.hits() - before[3 * i];
+				sharedHits += deltas.sharedHits() - before[3 * i + 1];
+				misses += deltas.misses() - before[3 * i + 2];
+				encoded += deltas.misses() - before[3 * i + 2];
+			}
+		}
+
+		void report(String name, int frames) {
+			long lookups = hits + misses;
+			System.out.println(name + ": hit rate " + (lookups == 0 ? 0 : 100 * hits / lookups) + "% of "
+					+ lookups / frames + " lookups per frame, " + (hits == 0 ? 0 : 100 * sharedHits / hits)
+					+ "% of the hits shared, " + encoded / frames + " deltas encoded per frame");
+		}
+
+		void reset() {
+			hits = sharedHits = misses = encoded = 0;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int bots = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int frames = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		File data = new File(System.getProperty("java.io.tmpdir"), "q2-allocation-check");
+		FrameAllocationCheck.writeMap(new File(data, "maps/synthetic.bsp"));
+
+		GdxQuake2.tools = new ServerTools(null);
+		ResourceLoader.impl = new FileResourceLoader(data);
+		NET.socketFactory = new UdpSocketFactory();
+		QuakeServer.init(new String[] { "+set", "maxclients", String.valueOf(bots), "+set", "port", "27999",
+				"+map", "synthetic" });
+		QuakeServer.frame(100);
+
+		BotMatch match = new BotMatch(bots);
+		Executor executor = new Executor(threads);
+		ServerSend.frame_executor = executor;
+		for (int i = 0; i < WARMUP_FRAMES; i++) {
+			match.think();
+			QuakeServer.frame(100);
+		}
+		System.out.println("bots: " + bots + ", workers: " + threads + ", entities: " + BotMatch.entities());
+
+		for (int pass = 0; pass < 2; pass++) {
+			executor.shared = pass == 1;
+			executor.reset();
+			for (int i = 0; i < frames; i++) {
+				match.think();
+				QuakeServer.frame(100);
+			}
+			executor.report(executor.shared ? "shared" : "per worker", frames);
+		}
+		ServerSend.frame_executor = null;
+		System.exit(0);
+	}
+}
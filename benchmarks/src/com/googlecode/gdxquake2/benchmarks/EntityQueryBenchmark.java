@@ -0,0 +1,101 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.game.Entity;
+import com.googlecode.gdxquake2.game.game.GameBase;
+import com.googlecode.gdxquake2.game.server.EntityGrid;
+import com.googlecode.gdxquake2.game.server.World;
+
+/**
+ * Compares GameBase.findradius() on the entity grid with the linear scan
+ * over g_edicts, for explosion sized radii on a large map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityQueryBenchmark {
+
+	static final int SAMPLES = 1024;
+	static final float WORLD = 4096;
+
+	@Param({"256", "1000"})
+	public int entities;
+
+	@Param({"256"})
+	public float radius;
+
+	EntityGrid grid;
+	float[][] origins = new float[SAMPLES][];
+	int index;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		grid = new EntityGrid(new float[] {-WORLD, -WORLD, -WORLD}, new float[] {WORLD, WORLD, WORLD});
+		World.sv_grid = grid;
+		for (int i = 1; i <= entities; i++) {
+			Entity e = GameBase.g_edicts[i] = new Entity(i);
+			e.inuse = true;
+			e.solid = random.nextInt(4) == 0 ? Constants.SOLID_TRIGGER : Constants.SOLID_BBOX;
+			for (int j = 0; j < 3; j++) {
+				e.s.origin[j] = (random.nextFloat() * 2 - 1) * WORLD;
+				e.mins[j] = -16;
+				e.maxs[j] = 16;
+				e.absmin[j] = e.s.origin[j] + e.mins[j] - 1;
+				e.absmax[j] = e.s.origin[j] + e.maxs[j] + 1;
+			}
+			grid.link(e);
+		}
+		GameBase.num_edicts = entities + 1;
+		for (int i = 0; i < SAMPLES; i++) {
+			origins[i] = new float[3];
+			for (int j = 0; j < 3; j++) {
+				origins[i][j] = (random.nextFloat() * 2 - 1) * WORLD;
+			}
+		}
+	}
+
+	float[] next() {
+		index = (index + 1) & (SAMPLES - 1);
+		return origins[index];
+	}
+
+	int count(float[] org) {
+		int count = 0;
+		int it = -1;
+		while ((it = GameBase.findradius(it, org, radius)) != -1) {
+			count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int findradiusGrid() {
+		World.sv_grid = grid;
+		return count(next());
+	}
+
+	@Benchmark
+	public int findradiusScan() {
+		World.sv_grid = null;
+		return count(next());
+	}
+}
@@ -0,0 +1,132 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import com.googlecode.gdxquake2.GdxQuake2;
+import com.googlecode.gdxquake2.game.common.ResourceLoader;
+import com.googlecode.gdxquake2.game.server.BotMatch;
+import com.googlecode.gdxquake2.game.server.QuakeServer;
+import com.googlecode.gdxquake2.game.sys.NET;
+import com.googlecode.gdxquake2.server.FileResourceLoader;
+import com.googlecode.gdxquake2.server.ServerTools;
+import com.googlecode.gdxquake2.server.UdpSocketFactory;
+
+/**
+ * Measures the memory allocated by the server frame, including the user
+ * commands of the clients, while scripted bots play a deathmatch on a
+ * synthetic map, using the allocation counter of the server thread. Exits
+ * with status 1 if the average allocation per frame after the warmup exceeds
+ * the threshold times the number of bots, so it can guard against garbage
+ * creeping back into the frame.
+ *
+ * usage: FrameAllocationCheck [bots [frames [bytes per bot and frame]]]
+ *
+ * An empty server does not allocate at all. With players, what remains is
+ * one Trace per SV_Trace call, which the game code holds on to like the C
+ * structs it returns by value, and the garbage of events: entities spawned
+ * and freed by shots, respawns and obituaries. The default threshold leaves
+ * room for that, but not for a vector allocated per player and trace.
+ *
+ * No ClientFrameExecutor is installed, so the client frames are built on the
+ * server thread as well and their allocations are counted.
+ */
+public class FrameAllocationCheck {
+
+	static final int MAP_SIZE = 16;
+	static final int WARMUP_FRAMES = 600;
+	static final int BYTES_PER_BOT = 4096;
+
+	static final String[] ITEMS = { "weapon_shotgun", "weapon_supershotgun", "weapon_machinegun",
+			"weapon_rocketlauncher", "weapon_railgun", "ammo_shells", "ammo_bullets", "ammo_rockets",
+			"ammo_slugs", "item_health", "item_armor_jacket" };
+
+	public static void main(String[] args) throws IOException {
+		int bots = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+		long threshold = (args.length > 2 ? Long.parseLong(args[2]) : BYTES_PER_BOT) * bots;
+
+		File data = new File(System.getProperty("java.io.tmpdir"), "q2-allocation-check");
+		writeMap(new File(data, "maps/synthetic.bsp"));
+
+		GdxQuake2.tools = new ServerTools(null);
+		ResourceLoader.impl = new FileResourceLoader(data);
+		NET.socketFactory = new UdpSocketFactory();
+		QuakeServer.init(new String[] { "+set", "maxclients", String.valueOf(bots), "+set", "port", "27999",
+				"+map", "synthetic" });
+		// the command line is executed in the first frame
+		QuakeServer.frame(100);
+
+		BotMatch match = new BotMatch(bots);
+		for (int i = 0; i < WARMUP_FRAMES; i++) {
+			match.think();
+			QuakeServer.frame(100);
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long overhead = threads.getThreadAllocatedBytes(thread);
+		overhead = threads.getThreadAllocatedBytes(thread) - overhead;
+
+		long total = 0;
+		long max = 0;
+		int allocating = 0;
+		for (int i = 0; i < frames; i++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			match.think();
+			QuakeServer.frame(100);
+			long bytes = threads.getThreadAllocatedBytes(thread) - before - overhead;
+			total += bytes;
+			max = Math.max(max, bytes);
+			if (bytes > 0) {
+				allocating++;
+			}
+		}
+
+		long perFrame = total / frames;
+		System.out.println("bots: " + bots + ", entities: " + BotMatch.entities() + ", frags: " + match.frags());
+		System.out.println("frames: " + frames + ", allocating: " + allocating + ", max: " + max
+				+ " bytes, average: " + perFrame + " bytes per frame");
+		if (perFrame > threshold) {
+			System.out.println("FAILED: more than " + threshold + " bytes per frame");
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Writes a synthetic map with deathmatch spawn points and items in the
+	 * open cells.
+	 */
+	static void writeMap(File file) throws IOException {
+		SyntheticMap map = new SyntheticMap(MAP_SIZE, 0.2f, 1234);
+		StringBuilder entities = new StringBuilder("{\n\"classname\" \"worldspawn\"\n}\n");
+		int n = 0;
+		for (int y = 0; y < MAP_SIZE; y++) {
+			for (int x = 0; x < MAP_SIZE; x++) {
+				float[] center = map.cellCenter(x, y);
+				if (center == null) {
+					continue;
+				}
+				String classname = (n & 1) == 0 ? "info_player_deathmatch" : ITEMS[(n >> 1) % ITEMS.length];
+				entities.append("{\n\"classname\" \"").append(classname).append("\"\n\"origin\" \"")
+						.append((int) center[0]).append(' ').append((int) center[1])
+						.append(" 32\"\n}\n");
+				n++;
+			}
+		}
+		ByteBuffer bsp = map.build(entities.toString());
+
+		file.getParentFile().mkdirs();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bsp.array(), bsp.arrayOffset(), bsp.limit());
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.game.Entity;
+import com.googlecode.gdxquake2.game.game.GameBase;
+import com.googlecode.gdxquake2.game.game.Model;
+import com.googlecode.gdxquake2.game.server.ClientData;
+import com.googlecode.gdxquake2.game.server.ServerFixture;
+import com.googlecode.gdxquake2.game.server.ServerSend;
+import com.googlecode.gdxquake2.game.server.World;
+import com.googlecode.gdxquake2.server.ParallelFrameExecutor;
+
+/**
+ * Cost of building, delta encoding and sending the client frames at the end
+ * of a server frame (SV_SendClientMessages). Clients move around their start
+ * positions and a quarter of the entities change their animation frame
+ * between server frames. Every client acknowledged the previous frame, so
+ * entities are delta encoded against it. With arena = true everything is
+ * placed close to the center of the map and every client sees all entities;
+ * otherwise the positions are spread over the whole map.
+ * threads = 1 builds the frames on the calling thread, larger values use a
+ * ParallelFrameExecutor with that many threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBuildBenchmark {
+
+	static final int FRAMES = 64;
+
+	/** Distance of the client positions from their start positions. */
+	static final float STEP = 32;
+
+	/** Distance from the map center of the positions in the arena. */
+	static final float ARENA_RADIUS = 512;
+
+	/** "synthetic" or the path of a BSP file. */
+	@Param({BenchmarkMaps.SYNTHETIC})
+	public String map;
+
+	@Param({"8", "32"})
+	public int clients;
+
+	@Param({"256"})
+	public int entities;
+
+	@Param({"1", "4"})
+	public int threads;
+
+	@Param({"false", "true"})
+	public boolean arena;
+
+	ClientData[] clientData;
+	float[][][] clientOrigins;
+	ParallelFrameExecutor executor;
+	int frame;
+
+	@Setup
+	public void setup() throws IOException {
+		Model world = BenchmarkMaps.load(map);
+		Random random = new Random(42);
+		clientData = ServerFixture.createFrameClients(clients, world);
+		for (int i = clients + 1; i <= clients + entities; i++) {
+			Entity e = GameBase.g_edicts[i] = new Entity(i);
+			e.inuse = true;
+			e.solid = Constants.SOLID_BBOX;
+			e.s.number = i;
+			e.s.modelindex = 1 + random.nextInt(64);
+			float[] origin = point(random, world);
+			for (int j = 0; j < 3; j++) {
+				e.s.origin[j] = origin[j];
+				e.mins[j] = -16;
+				e.maxs[j] = 16;
+			}
+			World.SV_LinkEdict(e);
+		}
+		GameBase.num_edicts = clients + entities + 1;
+
+		clientOrigins = new float[FRAMES][clients][];
+		for (int c = 0; c < clients; c++) {
+			float[] start = point(random, world);
+			for (int f = 0; f < FRAMES; f++) {
+				float[] origin = start.clone();
+				origin[0] += (random.nextFloat() * 2 - 1) * STEP;
+				origin[1] += (random.nextFloat() * 2 - 1) * STEP;
+				clientOrigins[f][c] = origin;
+			}
+		}
+
+		executor = threads > 1 ? new ParallelFrameExecutor(threads, "bench") : null;
+		ServerSend.frame_executor = executor;
+	}
+
+	float[] point(Random random, Model world) {
+		while (true) {
+			float[] p = CollisionBenchmark.randomPoint(random, world);
+			float dx = p[0] - (world.mins[0] + world.maxs[0]) / 2;
+			float dy = p[1] - (world.mins[1] + world.maxs[1]) / 2;
+			if (!arena || dx * dx + dy * dy < ARENA_RADIUS * ARENA_RADIUS) {
+				return p;
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		ServerSend.frame_executor = null;
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	@Benchmark
+	public int sendClientMessages() {
+		frame = (frame + 1) & (FRAMES - 1);
+		ServerFixture.nextFrame();
+		for (int c = 0; c < clients; c++) {
+			Entity edict = ServerFixture.getEdict(clientData[c]);
+			float[] origin = clientOrigins[frame][c];
+			for (int j = 0; j < 3; j++) {
+				edict.s.origin[j] = origin[j];
+				edict.client.ps.pmove.origin[j] = (short) (origin[j] * 8);
+			}
+		}
+		for (int i = clients + 1 + (frame & 3); i <= clients + entities; i += 4) {
+			GameBase.g_edicts[i].s.frame++;
+		}
+		ServerFixture.clearDatagrams();
+		ServerSend.SV_SendClientMessages();
+		return ServerFixture.frameEntities(clientData[0]);
+	}
+}
@@ -0,0 +1,334 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.googlecode.gdxquake2.GdxQuake2;
+import com.googlecode.gdxquake2.game.common.FrameCodec;
+import com.googlecode.gdxquake2.game.common.NetworkAddress;
+import com.googlecode.gdxquake2.game.common.ResourceLoader;
+import com.googlecode.gdxquake2.game.server.BotMatch;
+import com.googlecode.gdxquake2.game.server.QuakeServer;
+import com.googlecode.gdxquake2.game.sys.NET;
+import com.googlecode.gdxquake2.game.sys.QuakeSocket;
+import com.googlecode.gdxquake2.server.FileResourceLoader;
+import com.googlecode.gdxquake2.server.ServerTools;
+import com.googlecode.gdxquake2.server.UdpSocketFactory;
+
+/**
+ * Trains the preset dictionary and the code lengths of FrameCodec on the
+ * frames of a bot match on the synthetic map, and writes them as
+ * FrameDictionary.java.
+ *
+ * usage: FrameDictionaryTrainer [bots [frames [output file]]]
+ *
+ * The packets of the bots are taken from their channels, without the packet
+ * header. The first half is used for training: the dictionary is a sample
+ * of these packets, the most recent last so that the closest matches have
+ * the shortest distances, and the code lengths are Huffman codes of the
+ * symbols of their compression. The second half is compressed with the
+ * result for the report.
+ *
+ * FrameCodec has no version of its own; new tables need a new
+ * NetworkChannel feature bit, since client and server must use the same.
+ */
+public class FrameDictionaryTrainer {
+
+	static final int DICTIONARY_SIZE = 4096;
+	static final int WARMUP_FRAMES = 300;
+
+	public static void main(String[] args) throws IOException {
+		int bots = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+		String output = args.length > 2 ? args[2]
+				: "core/src/com/googlecode/gdxquake2/game/common/FrameDictionary.java";
+
+		List<byte[]> packets = capture(bots, frames);
+		List<byte[]> train = packets.subList(0, packets.size() / 2);
+		List<byte[]> test = packets.subList(packets.size() / 2, packets.size());
+
+		byte[] dictionary = dictionary(train);
+		long[] literals = new long[FrameCodec.SYMBOLS];
+		long[] distances = new long[FrameCodec.DISTANCE_CODES];
+		for (byte[] packet : train) {
+			parse(dictionary, packet, literals, distances);
+		}
+		byte[] literalLengths = lengths(literals, 0);
+		byte[] distanceLengths = lengths(distances, 1);
+
+		long[] testLiterals = new long[FrameCodec.SYMBOLS];
+		long[] testDistances = new long[FrameCodec.DISTANCE_CODES];
+		long extra = 0;
+		long size = 0;
+		for (byte[] packet : test) {
+			extra += parse(dictionary, packet, testLiterals, testDistances);
+			size += packet.length;
+		}
+		long bits = extra;
+		for (int i = 0; i < literals.length; i++) {
+			bits += testLiterals[i] * literalLengths[i];
+		}
+		for (int i = 0; i < distances.length; i++) {
+			bits += testDistances[i] * distanceLengths[i];
+		}
+		long compressed = bits / 8 + test.size() * (FrameCodec.HEADER + 1);
+		System.out.println(String.format("%d packets, %d bytes: %d bytes compressed (%.1f%%)", test.size(), size,
+				compressed, 100f * compressed / size));
+
+		write(new File(output), bots, frames, dictionary, literalLengths, distanceLengths);
+		System.exit(0);
+	}
+
+	/** Plays a bot match and returns the packets sent to the bots. */
+	static List<byte[]> capture(int bots, int frames) throws IOException {
+		File data = new File(System.getProperty("java.io.tmpdir"), "q2-allocation-check");
+		FrameAllocationCheck.writeMap(new File(data, "maps/synthetic.bsp"));
+
+		GdxQuake2.tools = new ServerTools(null);
+		ResourceLoader.impl = new FileResourceLoader(data);
+		NET.socketFactory = new UdpSocketFactory();
+		QuakeServer.init(new String[] { "+set", "maxclients", String.valueOf(bots), "+set", "port", "27999",
+				"+map", "synthetic" });
+		QuakeServer.frame(100);
+
+		BotMatch match = new BotMatch(bots);
+		for (int i = 0; i < WARMUP_FRAMES; i++) {
+			match.think();
+			QuakeServer.frame(100);
+		}
+
+		final List<byte[]> packets = new ArrayList<byte[]>();
+		QuakeSocket capture = new QuakeSocket() {
+			public void send(NetworkAddress to, byte[] data, int len) {
+				// without the sequence numbers
+				packets.add(Arrays.copyOfRange(data, 8, len));
+			}
+
+			public int receive(NetworkAddress from, byte[] buf) {
+				return -1;
+			}
+
+			public void close() {
+			}
+		};
+		match.capture(capture);
+		for (int i = 0; i < frames; i++) {
+			match.think();
+			QuakeServer.frame(100);
+		}
+		return packets;
+	}
+
+	/** Samples packets evenly, the last ones at the end of the dictionary. */
+	static byte[] dictionary(List<byte[]> packets) {
+		long total = 0;
+		for (byte[] packet : packets) {
+			total += packet.length;
+		}
+		int stride = (int) Math.max(1, total / DICTIONARY_SIZE);
+		List<byte[]> sample = new ArrayList<byte[]>();
+		int size = 0;
+		for (int i = packets.size() - 1; i >= 0 && size < DICTIONARY_SIZE; i -= stride) {
+			sample.add(0, packets.get(i));
+			size += packets.get(i).length;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] packet : sample) {
+			out.write(packet, 0, packet.length);
+		}
+		byte[] bytes = out.toByteArray();
+		return Arrays.copyOfRange(bytes, Math.max(0, bytes.length - DICTIONARY_SIZE), bytes.length);
+	}
+
+	/**
+	 * Counts the symbols of the compression of a packet, with the greedy
+	 * matches of FrameCodec.Compress().
+	 *
+	 * @return the number of extra bits of the distances
+	 */
+	static long parse(byte[] dictionary, byte[] packet, long[] literals, long[] distances) {
+		byte[] window = new byte[dictionary.length + packet.length];
+		System.arraycopy(dictionary, 0, window, 0, dictionary.length);
+		System.arraycopy(packet, 0, window, dictionary.length, packet.length);
+
+		Map<Integer, List<Integer>> chains = new HashMap<Integer, List<Integer>>();
+		for (int i = 0; i + FrameCodec.MIN_MATCH <= dictionary.length; i++) {
+			chain(chains, window, i).add(i);
+		}
+
+		long extra = 0;
+		int i = dictionary.length;
+		while (i < window.length) {
+			int best = 0;
+			int distance = 0;
+			if (i + FrameCodec.MIN_MATCH <= window.length) {
+				int limit = Math.min(FrameCodec.MAX_MATCH, window.length - i);
+				List<Integer> chain = chain(chains, window, i);
+				for (int k = chain.size() - 1; k >= Math.max(0, chain.size() - 32); k--) {
+					int c = chain.get(k);
+					int len = 0;
+					while (len < limit && window[c + len] == window[i + len]) {
+						len++;
+					}
+					if (len > best) {
+						best = len;
+						distance = i - c;
+						if (len == limit) {
+							break;
+						}
+					}
+				}
+			}
+			if (best >= FrameCodec.MIN_MATCH) {
+				int bits = 32 - Integer.numberOfLeadingZeros(distance);
+				literals[256 + best - FrameCodec.MIN_MATCH]++;
+				distances[bits]++;
+				extra += bits - 1;
+			} else {
+				best = 1;
+				literals[window[i] & 0xff]++;
+			}
+			for (int j = 0; j < best; j++, i++) {
+				if (i + FrameCodec.MIN_MATCH <= window.length) {
+					chain(chains, window, i).add(i);
+				}
+			}
+		}
+		return extra;
+	}
+
+	static List<Integer> chain(Map<Integer, List<Integer>> chains, byte[] window, int i) {
+		Integer key = (window[i] & 0xff) << 16 | (window[i + 1] & 0xff) << 8 | (window[i + 2] & 0xff);
+		List<Integer> chain = chains.get(key);
+		if (chain == null) {
+			chain = new ArrayList<Integer>();
+			chains.put(key, chain);
+		}
+		return chain;
+	}
+
+	/**
+	 * Huffman code lengths of at most FrameCodec.MAX_BITS for the counts of
+	 * the symbols from first on. Every symbol gets a code, since any byte
+	 * may turn up.
+	 */
+	static byte[] lengths(long[] counts, int first) {
+		long[] weights = new long[counts.length];
+		for (int i = first; i < counts.length; i++) {
+			weights[i] = counts[i] + 1;
+		}
+		while (true) {
+			byte[] lengths = huffman(weights, first);
+			int max = 0;
+			for (byte length : lengths) {
+				max = Math.max(max, length);
+			}
+			if (max <= FrameCodec.MAX_BITS) {
+				return lengths;
+			}
+			// flatten the distribution until the longest code fits
+			for (int i = first; i < weights.length; i++) {
+				weights[i] = (weights[i] + 1) / 2;
+			}
+		}
+	}
+
+	static byte[] huffman(long[] weights, int first) {
+		int n = weights.length - first;
+		// nodes: the symbols, then the inner nodes
+		long[] weight = new long[2 * n];
+		int[] parent = new int[2 * n];
+		boolean[] used = new boolean[2 * n];
+		for (int i = 0; i < n; i++) {
+			weight[i] = weights[first + i];
+		}
+		for (int next = n; next < 2 * n - 1; next++) {
+			int a = lightest(weight, used, next);
+			used[a] = true;
+			int b = lightest(weight, used, next);
+			used[b] = true;
+			weight[next] = weight[a] + weight[b];
+			parent[a] = parent[b] = next;
+		}
+		byte[] lengths = new byte[weights.length];
+		for (int i = 0; i < n; i++) {
+			int length = 0;
+			for (int node = i; node != 2 * n - 2; node = parent[node]) {
+				length++;
+			}
+			lengths[first + i] = (byte) length;
+		}
+		return lengths;
+	}
+
+	static int lightest(long[] weight, boolean[] used, int count) {
+		int best = -1;
+		for (int i = 0; i < count; i++) {
+			if (!used[i] && (best == -1 || weight[i] < weight[best])) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	static void write(File file, int bots, int frames, byte[] dictionary, byte[] literalLengths,
+			byte[] distanceLengths) throws IOException {
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			out.print("/*\n"
+					+ " * This program is free software; you can redistribute it and/or modify it under\n"
+					+ " * the terms of the GNU General Public License as published by the Free Software\n"
+					+ " * Foundation; either version 2 of the License, or (at your option) any later\n"
+					+ " * version.\n"
+					+ " *\n"
+					+ " * This program is distributed in the hope that it will be useful, but WITHOUT\n"
+					+ " * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS\n"
+					+ " * FOR A PARTICULAR PURPOSE.\n"
+					+ " *\n"
+					+ " * See the GNU General Public License for more details.\n"
+					+ " *\n"
+					+ " * You should have received a copy of the GNU General Public License along with\n"
+					+ " * this program; if not, write to the Free Software Foundation, Inc., 59 Temple\n"
+					+ " * Place - Suite 330, Boston, MA 02111-1307, USA.\n"
+					+ " *\n"
+					+ " */\n"
+					+ "package com.googlecode.gdxquake2.game.common;\n\n"
+					+ "/**\n"
+					+ " * Preset dictionary and code lengths of FrameCodec, written by\n"
+					+ " * benchmarks/.../FrameDictionaryTrainer from " + frames + " frames of a " + bots + " bot\n"
+					+ " * match on the synthetic map. Client and server must use the same tables,\n"
+					+ " * so new ones need a new NetworkChannel feature bit.\n"
+					+ " */\n"
+					+ "public class FrameDictionary {\n\n");
+			array(out, "DICTIONARY", dictionary);
+			out.print("\n");
+			array(out, "LITERAL_LENGTHS", literalLengths);
+			out.print("\n");
+			array(out, "DISTANCE_LENGTHS", distanceLengths);
+			out.print("}\n");
+		} finally {
+			out.close();
+		}
+	}
+
+	static void array(PrintWriter out, String name, byte[] values) {
+		out.print("    public static final byte " + name + "[] = {");
+		for (int i = 0; i < values.length; i++) {
+			out.print(i % 16 == 0 ? "\n            " : " ");
+			out.print(values[i]);
+			if (i < values.length - 1) {
+				out.print(",");
+			}
+		}
+		out.print(" };\n");
+	}
+}
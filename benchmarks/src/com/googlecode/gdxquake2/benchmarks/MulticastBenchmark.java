@@ -0,0 +1,118 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.Globals;
+import com.googlecode.gdxquake2.game.game.Model;
+import com.googlecode.gdxquake2.game.server.ClientData;
+import com.googlecode.gdxquake2.game.server.ServerFixture;
+import com.googlecode.gdxquake2.game.server.ServerGame;
+import com.googlecode.gdxquake2.game.server.ServerSend;
+import com.googlecode.gdxquake2.game.util.Math3D;
+
+/**
+ * Cost of the multicasts of one server frame with heavy weapon fire: every
+ * event is a gunshot temp entity sent to the PVS followed by its sound sent
+ * to the PHS. All clients move between frames. multicastUncached drops the
+ * per-client leaf cache before every multicast, as SV_Multicast did before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MulticastBenchmark {
+
+	static final int FRAMES = 64;
+
+	/** "synthetic" or the path of a BSP file. */
+	@Param({BenchmarkMaps.SYNTHETIC})
+	public String map;
+
+	@Param({"32"})
+	public int clients;
+
+	/** Weapon events per frame. */
+	@Param({"64"})
+	public int events;
+
+	ClientData[] clientData;
+	float[][][] clientOrigins;
+	float[][] eventOrigins;
+	int frame;
+
+	@Setup
+	public void setup() throws IOException {
+		Model world = BenchmarkMaps.load(map);
+		Random random = new Random(42);
+		clientData = ServerFixture.createClients(clients);
+		clientOrigins = new float[FRAMES][clients][];
+		for (int f = 0; f < FRAMES; f++) {
+			for (int c = 0; c < clients; c++) {
+				clientOrigins[f][c] = CollisionBenchmark.randomPoint(random, world);
+			}
+		}
+		eventOrigins = new float[FRAMES * events][];
+		for (int i = 0; i < eventOrigins.length; i++) {
+			eventOrigins[i] = CollisionBenchmark.randomPoint(random, world);
+		}
+	}
+
+	int nextFrame() {
+		frame = (frame + 1) & (FRAMES - 1);
+		for (int c = 0; c < clients; c++) {
+			Math3D.VectorCopy(clientOrigins[frame][c], ServerFixture.getEdict(clientData[c]).s.origin);
+		}
+		ServerFixture.clearDatagrams();
+		return frame * events;
+	}
+
+	void gunshot(float[] pos) {
+		ServerGame.PF_WriteByte(Constants.svc_temp_entity);
+		ServerGame.PF_WriteByte(Constants.TE_GUNSHOT);
+		ServerGame.PF_WritePos(pos);
+		ServerGame.PF_WriteDir(Globals.vec3_origin);
+		ServerSend.SV_Multicast(pos, Constants.MULTICAST_PVS);
+
+		ServerGame.PF_WriteByte(Constants.svc_sound);
+		ServerGame.PF_WriteByte(Constants.SND_POS);
+		ServerGame.PF_WriteByte(1);
+		ServerGame.PF_WritePos(pos);
+		ServerSend.SV_Multicast(pos, Constants.MULTICAST_PHS);
+	}
+
+	@Benchmark
+	public int multicast() {
+		int first = nextFrame();
+		for (int i = 0; i < events; i++) {
+			gunshot(eventOrigins[first + i]);
+		}
+		return ServerFixture.datagramSize(0);
+	}
+
+	@Benchmark
+	public int multicastUncached() {
+		int first = nextFrame();
+		for (int i = 0; i < events; i++) {
+			ServerFixture.invalidateLeafCache();
+			gunshot(eventOrigins[first + i]);
+		}
+		return ServerFixture.datagramSize(0);
+	}
+}
@@ -0,0 +1,152 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.NetworkAddress;
+import com.googlecode.gdxquake2.game.sys.QuakeSocket;
+import com.googlecode.gdxquake2.server.UdpSocketFactory;
+
+/**
+ * Sends a burst of packets over loopback UDP and receives them until the
+ * socket reports no more data, as SV_ReadPackets does. ring uses
+ * UdpSocketFactory; plain wraps the byte arrays and creates the addresses
+ * for every packet, as UdpSocketFactory did before the receive ring.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocketBenchmark {
+
+	/** Packets per burst. */
+	@Param({"32"})
+	public int packets;
+
+	/** Packet size in bytes. */
+	@Param({"200"})
+	public int size;
+
+	QuakeSocket ringSender, ringReceiver;
+	QuakeSocket plainSender, plainReceiver;
+	NetworkAddress ringTo, plainTo;
+	NetworkAddress from = new NetworkAddress();
+	byte[] data;
+	byte[] buf = new byte[Constants.MAX_MSGLEN];
+
+	@Setup
+	public void setup() throws IOException {
+		UdpSocketFactory factory = new UdpSocketFactory();
+		int ringPort = freePort();
+		ringSender = factory.bind("127.0.0.1", 0);
+		ringReceiver = factory.bind("127.0.0.1", ringPort);
+		plainSender = PlainSocket.bind();
+		plainReceiver = PlainSocket.bind();
+		ringTo = address(ringPort);
+		plainTo = address(((PlainSocket) plainReceiver).channel.socket().getLocalPort());
+		data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) i;
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		ringSender.close();
+		ringReceiver.close();
+		plainSender.close();
+		plainReceiver.close();
+	}
+
+	static NetworkAddress address(int port) {
+		NetworkAddress adr = new NetworkAddress();
+		adr.type = Constants.NA_IP;
+		adr.ip = new byte[] {127, 0, 0, 1};
+		adr.port = port;
+		return adr;
+	}
+
+	/** Returns a UDP port that was free a moment ago. */
+	static int freePort() throws IOException {
+		PlainSocket probe = PlainSocket.bind();
+		try {
+			return probe.channel.socket().getLocalPort();
+		} finally {
+			probe.close();
+		}
+	}
+
+	int burst(QuakeSocket sender, QuakeSocket receiver, NetworkAddress to) throws IOException {
+		for (int i = 0; i < packets; i++) {
+			sender.send(to, data, size);
+		}
+		int received = 0;
+		while (receiver.receive(from, buf) != -1) {
+			received++;
+		}
+		return received;
+	}
+
+	@Benchmark
+	public int ring() throws IOException {
+		return burst(ringSender, ringReceiver, ringTo);
+	}
+
+	@Benchmark
+	public int plain() throws IOException {
+		return burst(plainSender, plainReceiver, plainTo);
+	}
+
+	static class PlainSocket implements QuakeSocket {
+		final DatagramChannel channel;
+
+		PlainSocket(DatagramChannel channel) {
+			this.channel = channel;
+		}
+
+		static PlainSocket bind() throws IOException {
+			DatagramChannel channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+			return new PlainSocket(channel);
+		}
+
+		public int receive(NetworkAddress from, byte[] buf) throws IOException {
+			ByteBuffer bb = ByteBuffer.wrap(buf);
+			InetSocketAddress src = (InetSocketAddress) channel.receive(bb);
+			if (src == null) {
+				return -1;
+			}
+			from.ip = src.getAddress().getAddress();
+			from.port = src.getPort();
+			return bb.position();
+		}
+
+		public void send(NetworkAddress to, byte[] data, int len) throws IOException {
+			channel.send(ByteBuffer.wrap(data, 0, len), new InetSocketAddress(to.getInetAddress(), to.port));
+		}
+
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.QuakeFiles;
+
+/**
+ * Generates a valid BSP (version 38) in memory, so the collision code can be
+ * measured without the game data. The map is a square grid of cells between
+ * a floor and a ceiling slab; the border and a random subset of the inner
+ * cells are solid pillars. Every open cell is a cluster; the PVS of a cluster
+ * contains all clusters within PVS_RADIUS cells, the PHS those within
+ * twice that distance.
+ */
+public class SyntheticMap {
+
+	public static final int CELL = 256;
+	public static final int FLOOR = 0;
+	public static final int CEILING = 256;
+	public static final int SLAB = 64;
+	public static final int PVS_RADIUS = 4;
+
+	final int size;
+	final boolean[] pillar;
+	final int[] cluster;
+	int numClusters;
+
+	final ArrayList<float[]> planes = new ArrayList<float[]>();
+	final ArrayList<int[]> nodes = new ArrayList<int[]>();
+	final ArrayList<int[]> leafs = new ArrayList<int[]>();
+	final ArrayList<Integer> leafBrushes = new ArrayList<Integer>();
+	final ArrayList<float[]> brushes = new ArrayList<float[]>();
+
+	int floorBrush, ceilingBrush;
+
+	public SyntheticMap(int size, float pillarDensity, long seed) {
+		this.size = size;
+		pillar = new boolean[size * size];
+		cluster = new int[size * size];
+		Random random = new Random(seed);
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				boolean border = x == 0 || y == 0 || x == size - 1 || y == size - 1;
+				pillar[y * size + x] = border || random.nextFloat() < pillarDensity;
+				cluster[y * size + x] = pillar[y * size + x] ? -1 : numClusters++;
+			}
+		}
+	}
+
+	/** Returns the world coordinates of the center of an open cell, or null. */
+	public float[] cellCenter(int x, int y) {
+		if (pillar[y * size + x]) {
+			return null;
+		}
+		return new float[] {(x + 0.5f) * CELL, (y + 0.5f) * CELL, (FLOOR + CEILING) / 2};
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public boolean isOpen(int x, int y) {
+		return !pillar[y * size + x];
+	}
+
+	public int getNumClusters() {
+		return numClusters;
+	}
+
+	/** Serializes the map into the BSP file format. */
+	public ByteBuffer build() {
+		return build("{\n\"classname\" \"worldspawn\"\n}\n");
+	}
+
+	/**
+	 * Serializes the map with the given entity string, which must start with
+	 * the worldspawn entity.
+	 */
+	public ByteBuffer build(String entityString) {
+		// leaf 0 must be solid
+		leafs.add(new int[] {Constants.CONTENTS_SOLID, -1, 0, 0, 0});
+
+		floorBrush = addBrush(0, 0, FLOOR - SLAB, size * CELL, size * CELL, FLOOR);
+		ceilingBrush = addBrush(0, 0, CEILING, size * CELL, size * CELL, CEILING + SLAB);
+		buildNode(0, 0, size, size);
+
+		byte[] entities = (entityString + "\0").getBytes();
+
+		ByteBuffer[] lumps = new ByteBuffer[Constants.HEADER_LUMPS];
+		lumps[Constants.LUMP_ENTITIES] = ByteBuffer.wrap(entities);
+		lumps[Constants.LUMP_PLANES] = planesLump();
+		lumps[Constants.LUMP_VISIBILITY] = visibilityLump();
+		lumps[Constants.LUMP_NODES] = nodesLump();
+		lumps[Constants.LUMP_TEXINFO] = texinfoLump();
+		lumps[Constants.LUMP_LEAFS] = leafsLump();
+		lumps[Constants.LUMP_LEAFBRUSHES] = leafBrushesLump();
+		lumps[Constants.LUMP_MODELS] = modelsLump();
+		lumps[Constants.LUMP_BRUSHES] = brushesLump();
+		lumps[Constants.LUMP_BRUSHSIDES] = brushSidesLump();
+		lumps[Constants.LUMP_AREAS] = allocate(2 * 8);
+
+		int headerSize = 8 + Constants.HEADER_LUMPS * 8;
+		int total = headerSize;
+		for (int i = 0; i < lumps.length; i++) {
+			if (lumps[i] != null) {
+				total += (lumps[i].limit() + 3) & ~3;
+			}
+		}
+
+		ByteBuffer bsp = allocate(total);
+		bsp.putInt(QuakeFiles.IDBSPHEADER);
+		bsp.putInt(Constants.BSPVERSION);
+		int ofs = headerSize;
+		for (int i = 0; i < lumps.length; i++) {
+			int len = lumps[i] == null ? 0 : lumps[i].limit();
+			bsp.putInt(ofs);
+			bsp.putInt(len);
+			ofs += (len + 3) & ~3;
+		}
+		for (int i = 0; i < lumps.length; i++) {
+			if (lumps[i] != null) {
+				lumps[i].position(0);
+				bsp.put(lumps[i]);
+				bsp.position((bsp.position() + 3) & ~3);
+			}
+		}
+		bsp.position(0);
+		return bsp;
+	}
+
+	/** Returns the node number (or -1 - leaf number) for the given cell range. */
+	int buildNode(int x0, int y0, int x1, int y1) {
+		if (x1 - x0 == 1 && y1 - y0 == 1) {
+			return buildCell(x0, y0);
+		}
+		int num = nodes.size();
+		int[] node = new int[3];
+		nodes.add(node);
+		if (x1 - x0 >= y1 - y0) {
+			int mid = (x0 + x1) / 2;
+			node[0] = addPlane(0, mid * CELL);
+			node[1] = buildNode(mid, y0, x1, y1);
+			node[2] = buildNode(x0, y0, mid, y1);
+		} else {
+			int mid = (y0 + y1) / 2;
+			node[0] = addPlane(1, mid * CELL);
+			node[1] = buildNode(x0, mid, x1, y1);
+			node[2] = buildNode(x0, y0, x1, mid);
+		}
+		return num;
+	}
+
+	int buildCell(int x, int y) {
+		int index = y * size + x;
+		if (pillar[index]) {
+			int brush = addBrush(x * CELL, y * CELL, FLOOR, (x + 1) * CELL, (y + 1) * CELL, CEILING);
+			return addLeaf(Constants.CONTENTS_SOLID, -1, 0, brush);
+		}
+		int top = nodes.size();
+		int[] ceiling = new int[3];
+		nodes.add(ceiling);
+		ceiling[0] = addPlane(2, CEILING);
+		ceiling[1] = addLeaf(Constants.CONTENTS_SOLID, -1, 0, ceilingBrush);
+
+		int bottom = nodes.size();
+		int[] floor = new int[3];
+		nodes.add(floor);
+		floor[0] = addPlane(2, FLOOR);
+		floor[1] = addLeaf(0, cluster[index], 1, -1);
+		floor[2] = addLeaf(Constants.CONTENTS_SOLID, -1, 0, floorBrush);
+
+		ceiling[2] = bottom;
+		return top;
+	}
+
+	int addLeaf(int contents, int cluster, int area, int brush) {
+		int num = leafs.size();
+		int first = leafBrushes.size();
+		if (brush != -1) {
+			leafBrushes.add(brush);
+		}
+		leafs.add(new int[] {contents, cluster, area, first, brush == -1 ? 0 : 1});
+		return -1 - num;
+	}
+
+	int addBrush(float x0, float y0, float z0, float x1, float y1, float z1) {
+		brushes.add(new float[] {x0, y0, z0, x1, y1, z1});
+		return brushes.size() - 1;
+	}
+
+	int addPlane(int axis, float dist) {
+		planes.add(new float[] {axis, dist});
+		return planes.size() - 1;
+	}
+
+	ByteBuffer planesLump() {
+		// node planes first, followed by six planes per brush side
+		ByteBuffer bb = allocate((planes.size() + brushes.size() * 6) * QuakeFiles.dplane_t.SIZE);
+		for (int i = 0; i < planes.size(); i++) {
+			float[] p = planes.get(i);
+			putPlane(bb, (int) p[0], 1, p[1]);
+		}
+		for (int i = 0; i < brushes.size(); i++) {
+			float[] b = brushes.get(i);
+			for (int axis = 0; axis < 3; axis++) {
+				putPlane(bb, axis, 1, b[axis + 3]);
+				putPlane(bb, axis, -1, -b[axis]);
+			}
+		}
+		return bb;
+	}
+
+	void putPlane(ByteBuffer bb, int axis, int sign, float dist) {
+		for (int j = 0; j < 3; j++) {
+			bb.putFloat(j == axis ? sign : 0);
+		}
+		bb.putFloat(dist);
+		bb.putInt(sign > 0 ? axis : 3 + axis);
+	}
+
+	ByteBuffer nodesLump() {
+		ByteBuffer bb = allocate(nodes.size() * QuakeFiles.dnode_t.SIZE);
+		for (int i = 0; i < nodes.size(); i++) {
+			int[] node = nodes.get(i);
+			bb.putInt(node[0]);
+			bb.putInt(node[1]);
+			bb.putInt(node[2]);
+			bb.position(bb.position() + 16); // bounds and faces are not used by CM
+		}
+		return bb;
+	}
+
+	ByteBuffer leafsLump() {
+		ByteBuffer bb = allocate(leafs.size() * QuakeFiles.dleaf_t.SIZE);
+		for (int i = 0; i < leafs.size(); i++) {
+			int[] leaf = leafs.get(i);
+			bb.putInt(leaf[0]);
+			bb.putShort((short) leaf[1]);
+			bb.putShort((short) leaf[2]);
+			bb.position(bb.position() + 16); // bounds and faces are not used by CM
+			bb.putShort((short) leaf[3]);
+			bb.putShort((short) leaf[4]);
+		}
+		return bb;
+	}
+
+	ByteBuffer leafBrushesLump() {
+		ByteBuffer bb = allocate(leafBrushes.size() * 2);
+		for (int i = 0; i < leafBrushes.size(); i++) {
+			bb.putShort((short) leafBrushes.get(i).intValue());
+		}
+		return bb;
+	}
+
+	ByteBuffer brushesLump() {
+		ByteBuffer bb = allocate(brushes.size() * QuakeFiles.dbrush_t.SIZE);
+		for (int i = 0; i < brushes.size(); i++) {
+			bb.putInt(i * 6);
+			bb.putInt(6);
+			bb.putInt(Constants.CONTENTS_SOLID);
+		}
+		return bb;
+	}
+
+	ByteBuffer brushSidesLump() {
+		ByteBuffer bb = allocate(brushes.size() * 6 * QuakeFiles.dbrushside_t.SIZE);
+		for (int i = 0; i < brushes.size() * 6; i++) {
+			bb.putShort((short) (planes.size() + i));
+			bb.putShort((short) 0);
+		}
+		return bb;
+	}
+
+	ByteBuffer modelsLump() {
+		ByteBuffer bb = allocate(QuakeFiles.dmodel_t.SIZE);
+		bb.putFloat(0).putFloat(0).putFloat(FLOOR - SLAB);
+		bb.putFloat(size * CELL).putFloat(size * CELL).putFloat(CEILING + SLAB);
+		bb.putFloat(0).putFloat(0).putFloat(0);
+		bb.putInt(0); // headnode
+		bb.putInt(0).putInt(0);
+		return bb;
+	}
+
+	ByteBuffer texinfoLump() {
+		ByteBuffer bb = allocate(76);
+		bb.position(32 + 4 + 4);
+		bb.put("e1u1/floor1_3".getBytes());
+		bb.position(76 - 4);
+		bb.putInt(-1);
+		return bb;
+	}
+
+	ByteBuffer visibilityLump() {
+		int rowBytes = (numClusters + 7) >> 3;
+		ByteBuffer rows = allocate(numClusters * 2 * (rowBytes * 2 + 2));
+		int[][] ofs = new int[numClusters][2];
+		int headerSize = 4 + numClusters * 8;
+		int[] cellOf = new int[numClusters];
+		for (int i = 0; i < cluster.length; i++) {
+			if (cluster[i] != -1) {
+				cellOf[cluster[i]] = i;
+			}
+		}
+		byte[] row = new byte[rowBytes];
+		for (int c = 0; c < numClusters; c++) {
+			for (int kind = 0; kind < 2; kind++) {
+				int radius = kind == Constants.DVIS_PVS ? PVS_RADIUS : 2 * PVS_RADIUS;
+				int cx = cellOf[c] % size;
+				int cy = cellOf[c] / size;
+				java.util.Arrays.fill(row, (byte) 0);
+				for (int o = 0; o < numClusters; o++) {
+					int ox = cellOf[o] % size;
+					int oy = cellOf[o] / size;
+					if (Math.abs(ox - cx) <= radius && Math.abs(oy - cy) <= radius) {
+						row[o >> 3] |= 1 << (o & 7);
+					}
+				}
+				ofs[c][kind] = headerSize + rows.position();
+				compressRow(row, rows);
+			}
+		}
+		ByteBuffer bb = allocate(headerSize + rows.position());
+		bb.putInt(numClusters);
+		for (int c = 0; c < numClusters; c++) {
+			bb.putInt(ofs[c][0]);
+			bb.putInt(ofs[c][1]);
+		}
+		rows.flip();
+		bb.put(rows);
+		return bb;
+	}
+
+	/** Run length encodes zero bytes the same way qvis does. */
+	static void compressRow(byte[] row, ByteBuffer out) {
+		for (int i = 0; i < row.length; i++) {
+			out.put(row[i]);
+			if (row[i] != 0) {
+				continue;
+			}
+			int rep = 1;
+			for (i++; i < row.length && row[i] == 0 && rep < 255; i++) {
+				rep++;
+			}
+			out.put((byte) rep);
+			i--;
+		}
+	}
+
+	static ByteBuffer allocate(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
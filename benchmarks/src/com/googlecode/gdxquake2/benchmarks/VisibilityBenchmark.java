@@ -0,0 +1,80 @@
+package com.googlecode.gdxquake2.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.gdxquake2.game.common.CM;
+import com.googlecode.gdxquake2.game.game.Model;
+import com.googlecode.gdxquake2.game.server.ServerEntities;
+
+/**
+ * Measures the PVS/PHS lookups done per client and per multicast: a single
+ * cluster-to-cluster test, decompressing the RLE row versus the matrix built
+ * at map load, and SV_FatPVS.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisibilityBenchmark {
+
+	static final int SAMPLES = 1024;
+
+	/** "synthetic" or the path of a BSP file. */
+	@Param({BenchmarkMaps.SYNTHETIC})
+	public String map;
+
+	int[] from = new int[SAMPLES];
+	int[] to = new int[SAMPLES];
+	float[][] origins = new float[SAMPLES][];
+	int index;
+
+	@Setup
+	public void setup() throws IOException {
+		Model world = BenchmarkMaps.load(map);
+		Random random = new Random(42);
+		for (int i = 0; i < SAMPLES; i++) {
+			origins[i] = CollisionBenchmark.randomPoint(random, world);
+			from[i] = random.nextInt(CM.CM_NumClusters());
+			to[i] = random.nextInt(CM.CM_NumClusters());
+		}
+	}
+
+	int next() {
+		return index = (index + 1) & (SAMPLES - 1);
+	}
+
+	@Benchmark
+	public boolean decompressedPVS() {
+		int i = next();
+		int c = to[i];
+		return 0 != (CM.CM_ClusterPVS(from[i])[c >> 3] & (1 << (c & 7)));
+	}
+
+	@Benchmark
+	public boolean clusterVisible() {
+		int i = next();
+		return CM.CM_ClusterVisible(from[i], to[i]);
+	}
+
+	@Benchmark
+	public long[] fatPVS() {
+		ServerEntities.SV_FatPVS(origins[next()]);
+		return ServerEntities.fatpvs;
+	}
+}
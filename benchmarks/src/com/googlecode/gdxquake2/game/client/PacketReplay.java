@@ -0,0 +1,245 @@
+package com.googlecode.gdxquake2.game.client;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.googlecode.gdxquake2.GdxQuake2;
+import com.googlecode.gdxquake2.game.common.Buffers;
+import com.googlecode.gdxquake2.game.common.ConsoleVariables;
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.Globals;
+import com.googlecode.gdxquake2.game.common.LongJmpException;
+import com.googlecode.gdxquake2.game.common.NetworkAddress;
+import com.googlecode.gdxquake2.game.common.NetworkChannel;
+import com.googlecode.gdxquake2.game.game.Commands;
+import com.googlecode.gdxquake2.game.game.EntityState;
+import com.googlecode.gdxquake2.game.sound.DummyDriver;
+import com.googlecode.gdxquake2.game.sound.Sound;
+import com.googlecode.gdxquake2.game.sys.PacketCapture;
+import com.googlecode.gdxquake2.server.ServerTools;
+
+/**
+ * Replays the packets a server sent to one client, as captured by
+ * sv_capture (or LoadGenerator -Dq2.capture=file), through the client
+ * without renderer or sound: NetworkChannel.Process(), then
+ * ClientParser.ParseServerMessage() with ClientEntities.ParsePacketEntities()
+ * and the Delta decoding under it. Reports messages per second and the bytes
+ * allocated per message of the parse path, for comparing builds.
+ *
+ * usage: PacketReplay <capture file> [client [iterations [-frames]]]
+ *
+ * client is the index of the destination address in the list printed first,
+ * in the order of their first packet. The capture is replayed iterations
+ * times (5 by default), the first one as warmup. With -frames, the first
+ * iteration prints every frame the client accepted with a CRC of its player
+ * state and entities, which can be compared between builds, or with what
+ * the server meant to send, to track down a desync offline.
+ */
+public class PacketReplay {
+
+	static class Packet {
+		int time;
+		NetworkAddress to = new NetworkAddress();
+		byte[] data;
+	}
+
+	final List<Packet> packets;
+	final boolean printFrames;
+	final CRC32 crc = new CRC32();
+	int messages;
+	int errors;
+	int lastFrame;
+
+	PacketReplay(List<Packet> packets, boolean printFrames) {
+		this.packets = packets;
+		this.printFrames = printFrames;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("usage: PacketReplay <capture file> [client [iterations [-frames]]]");
+			return;
+		}
+		int client = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		boolean frames = args.length > 3 && args[3].equals("-frames");
+
+		Map<String, List<Packet>> clients = read(new File(args[0]));
+		int i = 0;
+		List<Packet> packets = null;
+		for (Map.Entry<String, List<Packet>> entry : clients.entrySet()) {
+			System.out.println((i == client ? "* " : "  ") + i + ": " + entry.getKey() + ", "
+					+ entry.getValue().size() + " packets");
+			if (i++ == client) {
+				packets = entry.getValue();
+			}
+		}
+		if (packets == null) {
+			System.out.println("no client " + client);
+			return;
+		}
+
+		init();
+		PacketReplay replay = new PacketReplay(packets, frames);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		for (int n = 0; n < iterations; n++) {
+			long bytes = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			replay.run(n == 0 && frames);
+			long nanos = System.nanoTime() - start;
+			bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+			System.out.println(String.format("%s: %d messages, %d errors, %.0f messages/s, %.2f us and %d bytes allocated per message",
+					n == 0 ? "warmup" : "iteration " + n, replay.messages, replay.errors,
+					replay.messages * 1e9 / nanos, nanos / 1000.0 / Math.max(1, replay.messages),
+					bytes / Math.max(1, replay.messages)));
+		}
+		System.exit(0);
+	}
+
+	/** Reads a capture and splits it by destination address. */
+	static Map<String, List<Packet>> read(File file) throws IOException {
+		Map<String, List<Packet>> clients = new LinkedHashMap<String, List<Packet>>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != PacketCapture.MAGIC || in.readInt() != PacketCapture.VERSION) {
+				throw new IOException(file + " is not a packet capture of this version");
+			}
+			while (true) {
+				Packet p = new Packet();
+				try {
+					p.time = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				p.to.type = in.readByte();
+				in.readFully(p.to.ip);
+				p.to.port = in.readUnsignedShort();
+				p.data = new byte[in.readUnsignedShort()];
+				in.readFully(p.data);
+
+				String key = p.to.toString();
+				List<Packet> list = clients.get(key);
+				if (list == null) {
+					list = new ArrayList<Packet>();
+					clients.put(key, list);
+				}
+				list.add(p);
+			}
+		} finally {
+			in.close();
+		}
+		return clients;
+	}
+
+	/** Sets up what the client parser needs, without renderer or sound. */
+	static void init() {
+		GdxQuake2.tools = new ServerTools(null);
+		Sound.impl = new DummyDriver();
+		Commands.Init();
+		NetworkChannel.Netchan_Init();
+		// the variables and commands of the client, no subsystems
+		Client.initLocal();
+		Screen.scr_debuggraph = ConsoleVariables.Get("debuggraph", "0", 0);
+		Screen.scr_timegraph = ConsoleVariables.Get("timegraph", "0", 0);
+		Globals.net_message.data = Globals.net_message_buffer;
+		Globals.net_message.maxsize = Globals.net_message_buffer.length;
+	}
+
+	/** Replays all packets once, from a disconnected client. */
+	void run(boolean print) {
+		NetworkChannel.Setup(Globals.cls.netchan, Constants.NS_CLIENT, new NetworkAddress(), 0);
+		Client.clearState();
+		Globals.cls.state = Constants.ca_disconnected;
+		messages = errors = 0;
+		lastFrame = -1;
+
+		for (int i = 0; i < packets.size(); i++) {
+			Packet p = packets.get(i);
+			Globals.curtime = p.time;
+			System.arraycopy(p.data, 0, Globals.net_message.data, 0, p.data.length);
+			Globals.net_message.cursize = p.data.length;
+			Globals.net_message.readcount = 0;
+
+			if (Globals.net_message.getInt() == -1) {
+				connectionless(p);
+				continue;
+			}
+			if (Globals.cls.state < Constants.ca_connected)
+				continue;
+
+			Globals.net_message.readcount = 0;
+			if (!NetworkChannel.Process(Globals.cls.netchan, Globals.net_message))
+				continue;
+			messages++;
+			try {
+				ClientParser.ParseServerMessage();
+			} catch (LongJmpException e) {
+				// Com.Error() of a broken message
+				errors++;
+				Globals.cls.state = Constants.ca_connected;
+			}
+			// the commands the server stuffs are not run
+			Globals.cmd_text.cursize = 0;
+
+			if (print && Globals.cl.frame.valid && Globals.cl.frame.serverframe != lastFrame) {
+				lastFrame = Globals.cl.frame.serverframe;
+				System.out.println("frame " + lastFrame + " delta " + Globals.cl.frame.deltaframe + " entities "
+						+ Globals.cl.frame.num_entities + " crc " + Long.toHexString(frameCrc()));
+			}
+		}
+	}
+
+	/** Sets up the channel on client_connect, as Client.connectionlessPacket() does. */
+	void connectionless(Packet p) {
+		String s = Buffers.getLine(Globals.net_message);
+		Commands.TokenizeString(s.toCharArray(), false);
+		if (Commands.Argv(0).equals("client_connect")) {
+			NetworkChannel.Setup(Globals.cls.netchan, Constants.NS_CLIENT, p.to, 0,
+					Integer.parseInt("0" + Commands.Argv(1).trim()) & NetworkChannel.FEATURES);
+			Globals.cls.state = Constants.ca_connected;
+		}
+	}
+
+	/** CRC of the player state and the entities of the current frame. */
+	long frameCrc() {
+		crc.reset();
+		for (int i = 0; i < 3; i++) {
+			update(Globals.cl.frame.playerstate.pmove.origin[i]);
+			update(Globals.cl.frame.playerstate.pmove.velocity[i]);
+			update(Float.floatToIntBits(Globals.cl.frame.playerstate.viewangles[i]));
+		}
+		for (int i = 0; i < Globals.cl.frame.num_entities; i++) {
+			EntityState s = Globals.cl_parse_entities[(Globals.cl.frame.parse_entities + i)
+					& (Constants.MAX_PARSE_ENTITIES - 1)];
+			update(s.number);
+			update(s.modelindex);
+			update(s.frame);
+			update(s.effects);
+			update(s.event);
+			for (int j = 0; j < 3; j++) {
+				update(Float.floatToIntBits(s.origin[j]));
+				update(Float.floatToIntBits(s.angles[j]));
+			}
+		}
+		return crc.getValue();
+	}
+
+	void update(int value) {
+		crc.update(value >> 24);
+		crc.update(value >> 16);
+		crc.update(value >> 8);
+		crc.update(value);
+	}
+}
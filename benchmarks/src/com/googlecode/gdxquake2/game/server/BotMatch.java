@@ -0,0 +1,175 @@
+package com.googlecode.gdxquake2.game.server;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.Globals;
+import com.googlecode.gdxquake2.game.common.NetworkAddress;
+import com.googlecode.gdxquake2.game.common.NetworkChannel;
+import com.googlecode.gdxquake2.game.game.Entity;
+import com.googlecode.gdxquake2.game.game.GameBase;
+import com.googlecode.gdxquake2.game.game.PlayerClient;
+import com.googlecode.gdxquake2.game.game.UserCommand;
+import com.googlecode.gdxquake2.game.sys.QuakeSocket;
+import com.googlecode.gdxquake2.game.util.Math3D;
+
+/**
+ * Scripted players for a running dedicated server. The bots are connected
+ * and spawned in process, without the connection handshake; their frames are
+ * sent to unused ports on the loopback interface. Every server frame, each
+ * bot turns towards the closest other player, runs forward while strafing
+ * and keeps the attack button pressed; dead bots press it repeatedly to
+ * respawn.
+ * The bots do not allocate while playing, so they can drive allocation
+ * measurements of the server frame.
+ */
+public class BotMatch {
+
+	/** First UDP port the bot frames are sent to. */
+	public static final int BASE_PORT = 40000;
+
+	final ClientData[] bots;
+	final UserCommand[] cmds;
+	final float[] dir = { 0, 0, 0 };
+	final float[] angles = { 0, 0, 0 };
+	int frame;
+
+	/**
+	 * Connects count bots to the server, which must be running a map with
+	 * at least count free client slots.
+	 */
+	public BotMatch(int count) {
+		bots = new ClientData[count];
+		cmds = new UserCommand[count];
+		// spawning draws random numbers, from the server's own generator in
+		// deterministic mode
+		DeterministicMode.Begin();
+		try {
+			connect(count);
+		} finally {
+			DeterministicMode.End();
+		}
+	}
+
+	void connect(int count) {
+		for (int i = 0; i < count; i++) {
+			NetworkAddress adr = new NetworkAddress();
+			adr.type = Constants.NA_IP;
+			adr.ip = new byte[] { 127, 0, 0, 1 };
+			adr.port = BASE_PORT + i;
+			ServerMain.gotnewcl(i, 0, "\\name\\bot" + i + "\\skin\\male/grunt\\hand\\2\\gender\\male\\rate\\25000\\spectator\\0", adr, i, 0);
+
+			ClientData cl = ServerInit.svs.clients[i];
+			cl.state = Constants.cs_spawned;
+			PlayerClient.ClientBegin(cl.edict);
+			bots[i] = cl;
+			cmds[i] = new UserCommand();
+
+			// the bots ignore reliable messages; without frames in between,
+			// the configstrings of each new player would overflow them
+			for (int j = 0; j <= i; j++) {
+				bots[j].netchan.message.clear();
+			}
+		}
+	}
+
+	public int size() {
+		return bots.length;
+	}
+
+	/** Sends the packets of all bots to the given socket instead. */
+	public void capture(QuakeSocket socket) {
+		for (int i = 0; i < bots.length; i++) {
+			bots[i].netchan.socket = socket;
+		}
+	}
+
+	/**
+	 * Runs one user command for every bot and acknowledges the frames sent so
+	 * far, as a client with a perfect connection would. Call before each
+	 * server frame.
+	 */
+	public void think() {
+		frame++;
+		for (int i = 0; i < bots.length; i++) {
+			ClientData cl = bots[i];
+			UserCommand cmd = cmds[i];
+			Entity ent = cl.edict;
+			Entity target = closestPlayer(ent);
+
+			cmd.clear();
+			cmd.msec = 100;
+			// respawning takes a new press of the button
+			if (ent.health > 0 || (frame & 1) == 0) {
+				cmd.buttons = Constants.BUTTON_ATTACK;
+			}
+			cmd.forwardmove = 200;
+			cmd.sidemove = (short) (((frame / 10 + i) & 1) == 0 ? 200 : -200);
+			if (target != null) {
+				Math3D.VectorSubtract(target.s.origin, ent.s.origin, dir);
+				Math3D.vectoangles(dir, angles);
+			} else {
+				angles[Constants.YAW] += 10;
+			}
+			for (int j = 0; j < 3; j++) {
+				cmd.angles[j] = (short) (Math3D.ANGLE2SHORT(angles[j]) - ent.client.ps.pmove.delta_angles[j]);
+			}
+
+			User.SV_ClientThink(cl, cmd);
+			acknowledge(cl);
+		}
+	}
+
+	/**
+	 * Does what NetworkChannel.Process() does for a packet acknowledging
+	 * everything sent to the client, including the reliable message.
+	 */
+	static void acknowledge(ClientData cl) {
+		NetworkChannel chan = cl.netchan;
+		chan.incoming_sequence++;
+		chan.incoming_acknowledged = chan.outgoing_sequence - 1;
+		chan.incoming_reliable_acknowledged = chan.reliable_sequence;
+		chan.reliable_length = 0;
+		chan.last_received = Globals.curtime;
+		cl.lastmessage = ServerInit.svs.realtime;
+		cl.lastframe = ServerInit.sv.framenum;
+	}
+
+	/** Returns the closest other living player, or null. */
+	Entity closestPlayer(Entity self) {
+		Entity best = null;
+		float bestDist = Float.MAX_VALUE;
+		for (int i = 0; i < bots.length; i++) {
+			Entity other = bots[i].edict;
+			if (other == self || other.health <= 0 || !other.inuse) {
+				continue;
+			}
+			float dx = other.s.origin[0] - self.s.origin[0];
+			float dy = other.s.origin[1] - self.s.origin[1];
+			float dist = dx * dx + dy * dy;
+			if (dist < bestDist) {
+				bestDist = dist;
+				best = other;
+			}
+		}
+		return best;
+	}
+
+	/** Sum of the frags of all bots. */
+	public int frags() {
+		int frags = 0;
+		for (int i = 0; i < bots.length; i++) {
+			frags += bots[i].edict.client.ps.stats[Constants.STAT_FRAGS];
+		}
+		return frags;
+	}
+
+	/** Number of entities in use, including the world and the bots. */
+	public static int entities() {
+		int count = 0;
+		for (int i = 0; i < GameBase.num_edicts; i++) {
+			if (GameBase.g_edicts[i].inuse) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
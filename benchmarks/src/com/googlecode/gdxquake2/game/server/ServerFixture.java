@@ -0,0 +1,122 @@
+package com.googlecode.gdxquake2.game.server;
+
+import java.nio.ByteOrder;
+
+import com.googlecode.gdxquake2.game.common.Buffer;
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.NetworkAddress;
+import com.googlecode.gdxquake2.game.common.NetworkChannel;
+import com.googlecode.gdxquake2.game.game.ConsoleVariable;
+import com.googlecode.gdxquake2.game.game.Entity;
+import com.googlecode.gdxquake2.game.game.GameBase;
+import com.googlecode.gdxquake2.game.game.GameClient;
+import com.googlecode.gdxquake2.game.game.Model;
+
+/**
+ * Sets up the package private server state needed to run server functions
+ * in benchmarks without a running game: spawned clients with edicts at given
+ * origins, but no network connection.
+ */
+public class ServerFixture {
+
+	public static ClientData[] createClients(int count) {
+		ServerInit.sv.multicast = Buffer.wrap(ServerInit.sv.multicast_buf).order(ByteOrder.LITTLE_ENDIAN);
+		ServerMain.maxclients = new ConsoleVariable();
+		ServerMain.maxclients.value = count;
+		ServerInit.svs.clients = new ClientData[count];
+		for (int i = 0; i < count; i++) {
+			ClientData client = new ClientData();
+			client.state = Constants.cs_spawned;
+			client.edict = new Entity(i + 1);
+			client.edict.inuse = true;
+			client.datagram.allowoverflow = true;
+			ServerInit.svs.clients[i] = client;
+		}
+		return ServerInit.svs.clients;
+	}
+
+	/**
+	 * Prepares the clients and the world for SV_SendClientMessages: the world
+	 * model is linked as sv.models[1], the client edicts become g_edicts 1 to
+	 * count and every client gets a network channel to an IP address without
+	 * socket, so the datagrams are encoded but not sent.
+	 */
+	public static ClientData[] createFrameClients(int count, Model world) {
+		ClientData[] clients = createClients(count);
+		ServerInit.sv.state = Constants.ss_game;
+		ServerInit.sv.models = new Model[Constants.MAX_MODELS];
+		ServerInit.sv.models[1] = world;
+		World.SV_ClearWorld();
+		NetworkChannel.Netchan_Init();
+
+		ServerInit.svs.snapshots = new EntitySnapshot[Constants.UPDATE_BACKUP];
+		for (int n = 0; n < ServerInit.svs.snapshots.length; n++) {
+			ServerInit.svs.snapshots[n] = new EntitySnapshot();
+		}
+
+		NetworkAddress adr = new NetworkAddress();
+		adr.type = Constants.NA_IP;
+		for (int i = 0; i < count; i++) {
+			ClientData client = clients[i];
+			client.serverindex = i;
+			client.rate = Integer.MAX_VALUE;
+			client.edict.client = new GameClient(i);
+			client.edict.s.modelindex = 255;
+			GameBase.g_edicts[i + 1] = client.edict;
+			NetworkChannel.Setup(client.netchan, Constants.NS_SERVER, adr, 0);
+		}
+		return clients;
+	}
+
+	/**
+	 * Starts the next server frame, with every client having acknowledged the
+	 * previous one.
+	 */
+	public static void nextFrame() {
+		ServerInit.sv.framenum++;
+		for (int i = 0; i < ServerInit.svs.clients.length; i++) {
+			ServerInit.svs.clients[i].lastframe = ServerInit.sv.framenum - 1;
+		}
+	}
+
+	/** Returns the number of entities in the current frame of the client. */
+	public static int frameEntities(ClientData client) {
+		return client.frames[ServerInit.sv.framenum & Constants.UPDATE_MASK].num_entities;
+	}
+
+	public static Entity getEdict(ClientData client) {
+		return client.edict;
+	}
+
+	/** Empties the client datagrams so they do not overflow. */
+	public static void clearDatagrams() {
+		for (int i = 0; i < ServerInit.svs.clients.length; i++) {
+			ServerInit.svs.clients[i].datagram.cursize = 0;
+		}
+	}
+
+	public static int datagramSize(int client) {
+		return ServerInit.svs.clients[client].datagram.cursize;
+	}
+
+	public static DeltaCache deltas(ClientFrameWorker worker) {
+		return worker.deltas;
+	}
+
+	/** The deltas encoded on the server thread, see ServerEntities.SV_EncodeSharedDeltas. */
+	public static DeltaCache sharedDeltas() {
+		return ServerEntities.shared_deltas;
+	}
+
+	/** Makes the workers ignore the shared deltas of the current frame. */
+	public static void dropSharedDeltas() {
+		ServerEntities.shared_deltas.sv = null;
+	}
+
+	/** Forces SV_ClientLeaf to recompute every client's leaf. */
+	public static void invalidateLeafCache() {
+		for (int i = 0; i < ServerInit.svs.clients.length; i++) {
+			ServerInit.svs.clients[i].leaf_sv = null;
+		}
+	}
+}
@@ -574,17 +574,21 @@ public final class Client {
   /**
    * WriteDemoMessage
    * 
-   * Dumps the current net message, prefixed by the length
+   * Dumps the current net message, prefixed by the length, in as many
+   * records as ParseServerMessage marked.
    */
   static void writeDemoMessage() {
-    int swlen;
-
-    // the first eight bytes are just packet sequencing stuff
-    swlen = Globals.net_message.cursize - 8;
+    int start, end;
 
+    // the packet sequencing stuff in front of the first record is left out
     try {
-      Globals.cls.demofile.writeInt(EndianHandler.swapInt(swlen));
-      Globals.cls.demofile.write(Globals.net_message.data, 8, swlen);
+      for (int i = 0; i < ClientParser.demo_record_count; i++) {
+        start = ClientParser.demo_records[i];
+        end = i + 1 < ClientParser.demo_record_count ? ClientParser.demo_records[i + 1]
+            : Globals.net_message.cursize;
+        Globals.cls.demofile.writeInt(EndianHandler.swapInt(end - start));
+        Globals.cls.demofile.write(Globals.net_message.data, start, end - start);
+      }
     } catch (IOException e) {
     }
 
@@ -613,7 +617,8 @@ public final class Client {
 
     NetworkChannel.OutOfBandPrint(Constants.NS_CLIENT, adr, "connect "
         + Constants.PROTOCOL_VERSION + " " + port + " "
-        + Globals.cls.challenge + " \"" + ConsoleVariables.Userinfo() + "\"\n");
+        + Globals.cls.challenge + " \"" + ConsoleVariables.Userinfo() + "\" "
+        + NetworkChannel.FEATURES + "\n");
   }
 
   /**
@@ -772,8 +777,10 @@ public final class Client {
         Com.Printf("Dup connect received.  Ignored.\n");
         return;
       }
+      // the features the server accepted
       NetworkChannel.Setup(Globals.cls.netchan, Constants.NS_CLIENT,
-          Globals.net_from, Globals.cls.quakePort);
+          Globals.net_from, (int) NetworkChannel.consoleQport.value,
+          Lib.atoi(Commands.Argv(1)) & NetworkChannel.FEATURES);
       Buffers.writeByte(Globals.cls.netchan.message, Constants.clc_stringcmd);
       Buffers.WriteString(Globals.cls.netchan.message, "new");
       Globals.cls.state = Constants.ca_connected;
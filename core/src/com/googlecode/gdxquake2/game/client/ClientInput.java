@@ -677,7 +677,7 @@ public class ClientInput {
 			return;
 
 		if (Globals.cls.state == Constants.ca_connected) {
-			if (Globals.cls.netchan.message.cursize != 0 || Globals.curtime - Globals.cls.netchan.last_sent > 1000)
+			if (Globals.cls.netchan.Netchan_Pending() || Globals.curtime - Globals.cls.netchan.last_sent > 1000)
 				NetworkChannel.Transmit(Globals.cls.netchan, 0, new byte[0]);
 			return;
 		}
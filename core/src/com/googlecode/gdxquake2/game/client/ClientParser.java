@@ -27,13 +27,16 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 
 import com.googlecode.gdxquake2.game.common.AsyncCallback;
+import com.googlecode.gdxquake2.game.common.Buffer;
 import com.googlecode.gdxquake2.game.common.Buffers;
 import com.googlecode.gdxquake2.game.common.CM;
 import com.googlecode.gdxquake2.game.common.Com;
 import com.googlecode.gdxquake2.game.common.CommandBuffer;
 import com.googlecode.gdxquake2.game.common.Constants;
 import com.googlecode.gdxquake2.game.common.ExecutableCommand;
+import com.googlecode.gdxquake2.game.common.FrameCodec;
 import com.googlecode.gdxquake2.game.common.Globals;
+import com.googlecode.gdxquake2.game.common.NetworkChannel;
 import com.googlecode.gdxquake2.game.common.QuakeFileSystem;
 import com.googlecode.gdxquake2.game.game.Commands;
 import com.googlecode.gdxquake2.game.game.EntityState;
@@ -56,7 +59,7 @@ public class ClientParser {
             "svc_sound", "svc_print", "svc_stufftext", "svc_serverdata",
             "svc_configstring", "svc_spawnbaseline", "svc_centerprint",
             "svc_download", "svc_playerinfo", "svc_packetentities",
-            "svc_deltapacketentities", "svc_frame" };
+            "svc_deltapacketentities", "svc_frame", "svc_compressed" };
 
     //	  =============================================================================
 
@@ -661,6 +664,68 @@ public class ClientParser {
             Com.Printf(Globals.net_message.readcount - 1 + ":" + s + "\n");
     }
 
+    static final FrameCodec codec = new FrameCodec();
+
+    static final byte uncompressed[] = new byte[Constants.MAX_MSGLEN];
+
+    static final Buffer frame_message = Buffer.wrap(uncompressed);
+
+    /**
+     * Parses the frame of an svc_compressed from a buffer of its own. The
+     * message itself is left as it arrived, so demos record the compressed
+     * frame and decode it again on playback.
+     */
+    static void ParseCompressed() {
+        Buffer msg = Globals.net_message;
+        int length = msg.getShort() & 0xffff;
+        int size = msg.getShort() & 0xffff;
+        int start = msg.readcount;
+        if (start + length > msg.cursize || size > uncompressed.length
+                || !codec.Decompress(msg.data, start, length, uncompressed, size)) {
+            Com.Error(Constants.ERR_DROP, "CL_ParseCompressed: bad frame\n");
+            return;
+        }
+        frame_message.cursize = size;
+        frame_message.readcount = 0;
+
+        Globals.net_message = frame_message;
+        try {
+            if (Buffers.readUnsignedByte(frame_message) != Constants.svc_frame)
+                Com.Error(Constants.ERR_DROP, "CL_ParseCompressed: not a frame\n");
+            ClientEntities.ParseFrame();
+        } finally {
+            Globals.net_message = msg;
+        }
+        msg.readcount = start + length;
+    }
+
+    /** Longest demo record, what fits in a packet next to its header. */
+    static final int MAX_DEMO_RECORD = Constants.MAX_MSGLEN - NetworkChannel.MAX_SERVER_HEADER;
+
+    /**
+     * Offsets in net_message of the demo records of the message. A message
+     * with more reliable data than fits a packet is split between commands,
+     * so that each record can be played back as a packet of its own.
+     */
+    static final int demo_records[] = new int[2 * NetworkChannel.MAX_DELIVERY / MAX_DEMO_RECORD + 2];
+
+    static int demo_record_count;
+
+    /** Start of the command parsed last. */
+    static int demo_command;
+
+    /**
+     * Called at the start of each command and at the end of the message;
+     * starts a new demo record with the last command if it does not fit in
+     * the current one.
+     */
+    static void MarkDemoRecord(int pos) {
+        int start = demo_records[demo_record_count - 1];
+        if (pos - start > MAX_DEMO_RECORD && demo_command > start)
+            demo_records[demo_record_count++] = demo_command;
+        demo_command = pos;
+    }
+
     /*
      * ===================== CL_ParseServerMessage =====================
      */
@@ -673,6 +738,9 @@ public class ClientParser {
         //else if (cl_shownet.value >= 2)
         //Com.Printf("------------------\n");
 
+        demo_records[0] = demo_command = Globals.net_message.readcount;
+        demo_record_count = 1;
+
         //
         //	   parse the message
         //
@@ -683,6 +751,9 @@ public class ClientParser {
                 break;
             }
 
+            if (Globals.cls.demorecording)
+                MarkDemoRecord(Globals.net_message.readcount);
+
             int cmd = Buffers.readUnsignedByte(Globals.net_message);
 
             if (cmd == -1) {
@@ -788,6 +859,10 @@ public class ClientParser {
                 ClientEntities.ParseFrame();
                 break;
 
+            case Constants.svc_compressed:
+                ParseCompressed();
+                break;
+
             case Constants.svc_inventory:
                 ClientInventory.ParseInventory();
                 break;
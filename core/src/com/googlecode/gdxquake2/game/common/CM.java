@@ -25,10 +25,9 @@ package com.googlecode.gdxquake2.game.common;
 
 
 
-import java.io.RandomAccessFile;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.IntBuffer;
 import java.util.Arrays;
 
 import com.googlecode.gdxquake2.game.game.ConsoleVariable;
@@ -38,8 +37,8 @@ import com.googlecode.gdxquake2.game.game.Plane;
 import com.googlecode.gdxquake2.game.game.Trace;
 import com.googlecode.gdxquake2.game.util.Lib;
 import com.googlecode.gdxquake2.game.util.Math3D;
+import com.googlecode.gdxquake2.game.util.QuakeFile;
 import com.googlecode.gdxquake2.game.util.Vargs;
-import com.googlecode.gdxquake2.game.util.Vec3Cache;
 
 public class CM {
     public static class cnode_t {
@@ -74,8 +73,6 @@ public class CM {
         int numsides;
 
         int firstbrushside;
-
-        int checkcount; // to avoid repeated testings
     }
 
     public static class carea_t {
@@ -88,8 +85,6 @@ public class CM {
         int floodvalid;
     }
 
-    static int checkcount;
-
     static String map_name = "";
 
     static int numbrushsides;
@@ -271,6 +266,7 @@ public class CM {
             numleafs = 1;
             numclusters = 1;
             numareas = 1;
+            CM_BuildVisMatrix();
             checksum[0] = 0;
             if (callback != null) {
             	callback.onSuccess( map_cmodels[0]);
@@ -315,6 +311,7 @@ public class CM {
         CMod_LoadAreaPortals(header.lumps[Constants.LUMP_AREAPORTALS]);       
         CMod_LoadVisibility(header.lumps[Constants.LUMP_VISIBILITY]);
         CMod_LoadEntityString(header.lumps[Constants.LUMP_ENTITIES]);
+        CM_BuildVisMatrix();
 
         CM_InitBoxHull();
 
@@ -917,6 +914,12 @@ public class CM {
 
     static cleaf_t box_leaf;
 
+    /** Incremented whenever the box hull moves, i.e. a new map was loaded. */
+    static int box_serial;
+
+    /** Context used by the methods without a context parameter. */
+    private static final TraceContext default_context = new TraceContext();
+
     /** Set up the planes and nodes so that the six floats of a bounding box can
      * just be stored out and get a proper clipping hull structure.
      */
@@ -986,11 +989,47 @@ public class CM {
             Math3D.VectorClear(p.normal);
             p.normal[i >> 1] = -1;
         }
+
+        box_serial++;
+    }
+
+    /** 
+     * Copies the box hull into the given context. The shared hull only serves
+     * as a template, so the planes moved by HeadnodeForBox() are private to
+     * each context.
+     */
+    static void CM_InitBoxHull(TraceContext ctx) {
+        for (int i = 0; i < 6; i++) {
+            int side = i & 1;
+
+            ctx.box_planes[i * 2].set(box_planes[i * 2]);
+            ctx.box_planes[i * 2 + 1].set(box_planes[i * 2 + 1]);
+
+            ctx.box_sides[i].plane = ctx.box_planes[i * 2 + side];
+            ctx.box_sides[i].surface = nullsurface;
+
+            ctx.box_nodes[i].plane = ctx.box_planes[i * 2];
+            ctx.box_nodes[i].children[0] = map_nodes[box_headnode + i].children[0];
+            ctx.box_nodes[i].children[1] = map_nodes[box_headnode + i].children[1];
+        }
+        ctx.box_serial = box_serial;
     }
 
     /** To keep everything totally uniform, bounding boxes are turned into small
      * BSP trees instead of being compared directly. */
     public static int HeadnodeForBox(float[] mins, float[] maxs) {
+        return HeadnodeForBox(default_context, mins, maxs);
+    }
+
+    /** 
+     * Sets up the box hull of the given context. The returned head node is
+     * only valid for queries using the same context.
+     */
+    public static int HeadnodeForBox(TraceContext ctx, float[] mins, float[] maxs) {
+        if (ctx.box_serial != box_serial)
+            CM_InitBoxHull(ctx);
+
+        Plane[] box_planes = ctx.box_planes;
         box_planes[0].dist = maxs[0];
         box_planes[1].dist = -maxs[0];
         box_planes[2].dist = mins[0];
@@ -1007,14 +1046,30 @@ public class CM {
         return box_headnode;
     }
 
+    /** Returns the node with the given number, using the box hull of the context. */
+    private static cnode_t CM_Node(TraceContext ctx, int num) {
+        if (num < box_headnode)
+            return map_nodes[num];
+        if (ctx.box_serial != box_serial)
+            CM_InitBoxHull(ctx);
+        return ctx.box_nodes[num - box_headnode];
+    }
+
+    /** Returns the brush side with the given number, using the box hull of the context. */
+    private static cbrushside_t CM_BrushSide(TraceContext ctx, int num) {
+        if (num < numbrushsides)
+            return map_brushsides[num];
+        return ctx.box_sides[num - numbrushsides];
+    }
+
     /** Recursively searches the leaf number that contains the 3d point. */
-    private static int CM_PointLeafnum_r(float[] p, int num) {
+    private static int CM_PointLeafnum_r(TraceContext ctx, float[] p, int num) {
         float d;
         cnode_t node;
         Plane plane;
 
         while (num >= 0) {
-            node = map_nodes[num];
+            node = CM_Node(ctx, num);
             plane = node.plane;
 
             if (plane.type < 3)
@@ -1037,39 +1092,37 @@ public class CM {
     	// sound may call this without map loaded
         if (numplanes == 0)
             return 0; 
-        return CM_PointLeafnum_r(p, 0);
+        return CM_PointLeafnum(default_context, p);
     }
 
-
-    private static int leaf_count, leaf_maxcount;
-
-    private static int leaf_list[];
-
-    private static float leaf_mins[], leaf_maxs[];
-
-    private static int leaf_topnode;
+    /** Searches the leaf number that contains the 3d point, using the given context. */
+    public static int CM_PointLeafnum(TraceContext ctx, float[] p) {
+        if (numplanes == 0)
+            return 0;
+        return CM_PointLeafnum_r(ctx, p, 0);
+    }
 
     /** Recursively fills in a list of all the leafs touched. */    
-    private static void CM_BoxLeafnums_r(int nodenum) {
+    private static void CM_BoxLeafnums_r(TraceContext ctx, int nodenum) {
         Plane plane;
         cnode_t node;
         int s;
 
         while (true) {
             if (nodenum < 0) {
-                if (leaf_count >= leaf_maxcount) {
+                if (ctx.leaf_count >= ctx.leaf_maxcount) {
 // TODO(jgw): Had to turn this off, because it gets called incessantly.
 //                  Com.DPrintf("CM_BoxLeafnums_r: overflow\n");
                   return;
                 }
-                leaf_list[leaf_count++] = -1 - nodenum;
+                ctx.leaf_list[ctx.leaf_count++] = -1 - nodenum;
                 return;
             }
 
-            node = map_nodes[nodenum];
+            node = CM_Node(ctx, nodenum);
             plane = node.plane;
 
-            s = Math3D.BoxOnPlaneSide(leaf_mins, leaf_maxs, plane);
+            s = Math3D.BoxOnPlaneSide(ctx.leaf_mins, ctx.leaf_maxs, plane);
 
             if (s == 1)
                 nodenum = node.children[0];
@@ -1077,48 +1130,63 @@ public class CM {
                 nodenum = node.children[1];
             else {
                 // go down both
-                if (leaf_topnode == -1)
-                    leaf_topnode = nodenum;
-                CM_BoxLeafnums_r(node.children[0]);
+                if (ctx.leaf_topnode == -1)
+                    ctx.leaf_topnode = nodenum;
+                CM_BoxLeafnums_r(ctx, node.children[0]);
                 nodenum = node.children[1];
             }
         }
     }
 
     /** Fills in a list of all the leafs touched and starts with the head node. */
-    private static int CM_BoxLeafnums_headnode(float[] mins, float[] maxs,
+    private static int CM_BoxLeafnums_headnode(TraceContext ctx, float[] mins, float[] maxs,
             int list[], int listsize, int headnode, int topnode[]) {
-        leaf_list = list;
-        leaf_count = 0;
-        leaf_maxcount = listsize;
-        leaf_mins = mins;
-        leaf_maxs = maxs;
+        ctx.leaf_list = list;
+        ctx.leaf_count = 0;
+        ctx.leaf_maxcount = listsize;
+        ctx.leaf_mins = mins;
+        ctx.leaf_maxs = maxs;
 
-        leaf_topnode = -1;
+        ctx.leaf_topnode = -1;
 
-        CM_BoxLeafnums_r(headnode);
+        CM_BoxLeafnums_r(ctx, headnode);
 
         if (topnode != null)
-            topnode[0] = leaf_topnode;
+            topnode[0] = ctx.leaf_topnode;
+
+        // don't keep the caller's arrays alive
+        ctx.leaf_list = null;
+        ctx.leaf_mins = ctx.leaf_maxs = null;
 
-        return leaf_count;
+        return ctx.leaf_count;
     }
 
     /** Fills in a list of all the leafs touched. */
     public static int CM_BoxLeafnums(float[] mins, float[] maxs, int list[],
             int listsize, int topnode[]) {
-        return CM_BoxLeafnums_headnode(mins, maxs, list, listsize,
+        return CM_BoxLeafnums(default_context, mins, maxs, list, listsize, topnode);
+    }
+
+    /** Fills in a list of all the leafs touched, using the given context. */
+    public static int CM_BoxLeafnums(TraceContext ctx, float[] mins, float[] maxs,
+            int list[], int listsize, int topnode[]) {
+        return CM_BoxLeafnums_headnode(ctx, mins, maxs, list, listsize,
                 map_cmodels[0].headnode, topnode);
     }
 
     /** Returns a tag that describes the content of the point. */
     public static int PointContents(float[] p, int headnode) {
+        return PointContents(default_context, p, headnode);
+    }
+
+    /** Returns a tag that describes the content of the point, using the given context. */
+    public static int PointContents(TraceContext ctx, float[] p, int headnode) {
         int l;
 
         if (numnodes == 0) // map not loaded
             return 0;
 
-        l = CM_PointLeafnum_r(p, headnode);
+        l = CM_PointLeafnum_r(ctx, p, headnode);
 
         return map_leafs[l].contents;
     }
@@ -1131,9 +1199,14 @@ public class CM {
      */
     public static int TransformedPointContents(float[] p, int headnode,
             float[] origin, float[] angles) {
-        float[] p_l = { 0, 0, 0 };
-        float[] temp = { 0, 0, 0 };
-        float[] forward = { 0, 0, 0 }, right = { 0, 0, 0 }, up = { 0, 0, 0 };
+        return TransformedPointContents(default_context, p, headnode, origin, angles);
+    }
+
+    public static int TransformedPointContents(TraceContext ctx, float[] p, int headnode,
+            float[] origin, float[] angles) {
+        float[] p_l = ctx.start_l;
+        float[] temp = ctx.temp;
+        float[] forward = ctx.forward, right = ctx.right, up = ctx.up;
         int l;
 
         // subtract origin offset
@@ -1150,7 +1223,7 @@ public class CM {
             p_l[2] = Math3D.DotProduct(temp, up);
         }
 
-        l = CM_PointLeafnum_r(p_l, headnode);
+        l = CM_PointLeafnum_r(ctx, p_l, headnode);
 
         return map_leafs[l].contents;
     }
@@ -1166,28 +1239,16 @@ public class CM {
     // 1/32 epsilon to keep floating point happy
     private static final float DIST_EPSILON = 0.03125f;
 
-    private static float[] trace_start = { 0, 0, 0 }, trace_end = { 0, 0, 0 };
-
-    private static float[] trace_mins = { 0, 0, 0 }, trace_maxs = { 0, 0, 0 };
-
-    private static float[] trace_extents = { 0, 0, 0 };
-
-    private static Trace trace_trace = new Trace();
-
-    private static int trace_contents;
-
-    private static boolean trace_ispoint; // optimized case
-
     /*
      * ================ CM_ClipBoxToBrush ================
      */
-    public static void CM_ClipBoxToBrush(float[] mins, float[] maxs,
+    public static void CM_ClipBoxToBrush(TraceContext ctx, float[] mins, float[] maxs,
             float[] p1, float[] p2, Trace trace, cbrush_t brush) {
         int i, j;
         Plane plane, clipplane;
         float dist;
         float enterfrac, leavefrac;
-        float[] ofs = { 0, 0, 0 };
+        float[] ofs = ctx.ofs;
         float d1, d2;
         boolean getout, startout;
         float f;
@@ -1207,12 +1268,12 @@ public class CM {
         leadside = null;
 
         for (i = 0; i < brush.numsides; i++) {
-            side = map_brushsides[brush.firstbrushside + i];
+            side = CM_BrushSide(ctx, brush.firstbrushside + i);
             plane = side.plane;
 
             // FIXME: special case for axial
 
-            if (!trace_ispoint) { // general box case
+            if (!ctx.ispoint) { // general box case
 
                 // push the plane out apropriately for mins/maxs
 
@@ -1281,12 +1342,12 @@ public class CM {
     /*
      * ================ CM_TestBoxInBrush ================
      */
-    public static void CM_TestBoxInBrush(float[] mins, float[] maxs,
+    public static void CM_TestBoxInBrush(TraceContext ctx, float[] mins, float[] maxs,
             float[] p1, Trace trace, cbrush_t brush) {
         int i, j;
         Plane plane;
         float dist;
-        float[] ofs = { 0, 0, 0 };
+        float[] ofs = ctx.ofs;
         float d1;
         cbrushside_t side;
 
@@ -1294,7 +1355,7 @@ public class CM {
             return;
 
         for (i = 0; i < brush.numsides; i++) {
-            side = map_brushsides[brush.firstbrushside + i];
+            side = CM_BrushSide(ctx, brush.firstbrushside + i);
             plane = side.plane;
 
             // FIXME: special case for axial
@@ -1328,14 +1389,14 @@ public class CM {
     /*
      * ================ CM_TraceToLeaf ================
      */
-    public static void CM_TraceToLeaf(int leafnum) {
+    public static void CM_TraceToLeaf(TraceContext ctx, int leafnum) {
         int k;
         int brushnum;
         cleaf_t leaf;
         cbrush_t b;
 
         leaf = map_leafs[leafnum];
-        if (0 == (leaf.contents & trace_contents))
+        if (0 == (leaf.contents & ctx.contents))
             return;
 
         // trace line against all brushes in the leaf
@@ -1343,15 +1404,15 @@ public class CM {
 
             brushnum = map_leafbrushes[leaf.firstleafbrush + k];
             b = map_brushes[brushnum];
-            if (b.checkcount == checkcount)
+            if (ctx.brushcheck[brushnum] == ctx.checkcount)
                 continue; // already checked this brush in another leaf
-            b.checkcount = checkcount;
+            ctx.brushcheck[brushnum] = ctx.checkcount;
 
-            if (0 == (b.contents & trace_contents))
+            if (0 == (b.contents & ctx.contents))
                 continue;
-            CM_ClipBoxToBrush(trace_mins, trace_maxs, trace_start, trace_end,
-                    trace_trace, b);
-            if (0 == trace_trace.fraction)
+            CM_ClipBoxToBrush(ctx, ctx.mins, ctx.maxs, ctx.start, ctx.end,
+                    ctx.trace, b);
+            if (0 == ctx.trace.fraction)
                 return;
         }
 
@@ -1360,28 +1421,28 @@ public class CM {
     /*
      * ================ CM_TestInLeaf ================
      */
-    public static void CM_TestInLeaf(int leafnum) {
+    public static void CM_TestInLeaf(TraceContext ctx, int leafnum) {
         int k;
         int brushnum;
         cleaf_t leaf;
         cbrush_t b;
 
         leaf = map_leafs[leafnum];
-        if (0 == (leaf.contents & trace_contents))
+        if (0 == (leaf.contents & ctx.contents))
             return;
         // trace line against all brushes in the leaf
         for (k = 0; k < leaf.numleafbrushes; k++) {
             brushnum = map_leafbrushes[leaf.firstleafbrush + k];
             b = map_brushes[brushnum];
-            if (b.checkcount == checkcount)
+            if (ctx.brushcheck[brushnum] == ctx.checkcount)
                 continue; // already checked this brush in another leaf
-            b.checkcount = checkcount;
+            ctx.brushcheck[brushnum] = ctx.checkcount;
 
-            if (0 == (b.contents & trace_contents))
+            if (0 == (b.contents & ctx.contents))
                 continue;
-            CM_TestBoxInBrush(trace_mins, trace_maxs, trace_start, trace_trace,
+            CM_TestBoxInBrush(ctx, ctx.mins, ctx.maxs, ctx.start, ctx.trace,
                     b);
-            if (0 == trace_trace.fraction)
+            if (0 == ctx.trace.fraction)
                 return;
         }
 
@@ -1390,7 +1451,7 @@ public class CM {
     /*
      * ================== CM_RecursiveHullCheck ==================
      */
-    public static void CM_RecursiveHullCheck(int num, float p1f, float p2f,
+    public static void CM_RecursiveHullCheck(TraceContext ctx, int num, float p1f, float p2f,
             float[] p1, float[] p2) {
         cnode_t node;
         Plane plane;
@@ -1401,12 +1462,12 @@ public class CM {
         int side;
         float midf;
 
-        if (trace_trace.fraction <= p1f)
+        if (ctx.trace.fraction <= p1f)
             return; // already hit something nearer
 
         // if < 0, we are in a leaf node
         if (num < 0) {
-            CM_TraceToLeaf(-1 - num);
+            CM_TraceToLeaf(ctx, -1 - num);
             return;
         }
 
@@ -1414,31 +1475,31 @@ public class CM {
         // find the point distances to the seperating plane
         // and the offset for the size of the box
         //
-        node = map_nodes[num];
+        node = CM_Node(ctx, num);
         plane = node.plane;
 
         if (plane.type < 3) {
             t1 = p1[plane.type] - plane.dist;
             t2 = p2[plane.type] - plane.dist;
-            offset = trace_extents[plane.type];
+            offset = ctx.extents[plane.type];
         } else {
             t1 = Math3D.DotProduct(plane.normal, p1) - plane.dist;
             t2 = Math3D.DotProduct(plane.normal, p2) - plane.dist;
-            if (trace_ispoint)
+            if (ctx.ispoint)
                 offset = 0;
             else
-                offset = Math.abs(trace_extents[0] * plane.normal[0])
-                        + Math.abs(trace_extents[1] * plane.normal[1])
-                        + Math.abs(trace_extents[2] * plane.normal[2]);
+                offset = Math.abs(ctx.extents[0] * plane.normal[0])
+                        + Math.abs(ctx.extents[1] * plane.normal[1])
+                        + Math.abs(ctx.extents[2] * plane.normal[2]);
         }
 
         // see which sides we need to consider
         if (t1 >= offset && t2 >= offset) {
-            CM_RecursiveHullCheck(node.children[0], p1f, p2f, p1, p2);
+            CM_RecursiveHullCheck(ctx, node.children[0], p1f, p2f, p1, p2);
             return;
         }
         if (t1 < -offset && t2 < -offset) {
-            CM_RecursiveHullCheck(node.children[1], p1f, p2f, p1, p2);
+            CM_RecursiveHullCheck(ctx, node.children[1], p1f, p2f, p1, p2);
             return;
         }
 
@@ -1466,12 +1527,12 @@ public class CM {
             frac = 1;
 
         midf = p1f + (p2f - p1f) * frac;
-        float[] mid = Vec3Cache.get();
+        float[] mid = ctx.pushVector();
 
         for (i = 0; i < 3; i++)
             mid[i] = p1[i] + frac * (p2[i] - p1[i]);
 
-        CM_RecursiveHullCheck(node.children[side], p1f, midf, p1, mid);
+        CM_RecursiveHullCheck(ctx, node.children[side], p1f, midf, p1, mid);
 
         // go past the node
         if (frac2 < 0)
@@ -1483,8 +1544,8 @@ public class CM {
         for (i = 0; i < 3; i++)
             mid[i] = p1[i] + frac2 * (p2[i] - p1[i]);
 
-        CM_RecursiveHullCheck(node.children[side ^ 1], midf, p2f, mid, p2);
-        Vec3Cache.release();
+        CM_RecursiveHullCheck(ctx, node.children[side ^ 1], midf, p2f, mid, p2);
+        ctx.popVector();
     }
 
     //======================================================================
@@ -1494,40 +1555,58 @@ public class CM {
      */
     public static Trace BoxTrace(float[] start, float[] end, float[] mins,
             float[] maxs, int headnode, int brushmask) {
+        return BoxTrace(default_context, start, end, mins, maxs, headnode, brushmask);
+    }
+
+    /**
+     * Sweeps a box through the world using the scratch state of the given
+     * context. Traces with different contexts may run concurrently.
+     */
+    public static Trace BoxTrace(TraceContext ctx, float[] start, float[] end, float[] mins,
+            float[] maxs, int headnode, int brushmask) {
+        return BoxTrace(ctx, new Trace(), start, end, mins, maxs, headnode, brushmask);
+    }
+
+    /**
+     * Sweeps a box through the world into the given trace, which is cleared
+     * first. Returns the trace.
+     */
+    public static Trace BoxTrace(TraceContext ctx, Trace trace, float[] start, float[] end,
+            float[] mins, float[] maxs, int headnode, int brushmask) {
 
         // for multi-check avoidance
-        checkcount++;
+        ctx.checkcount++;
 
         // for statistics, may be zeroed
         Globals.c_traces++;
 
         // fill in a default trace
         //was: memset(& trace_trace, 0, sizeof(trace_trace));
-        trace_trace = new Trace();
+        trace.clear();
+        ctx.trace = trace;
 
-        trace_trace.fraction = 1;
-        trace_trace.surface = nullsurface.c;
+        trace.fraction = 1;
+        trace.surface = nullsurface.c;
 
         if (numnodes == 0) {
             // map not loaded
-            return trace_trace;
+            return trace;
         }
 
-        trace_contents = brushmask;
-        Math3D.VectorCopy(start, trace_start);
-        Math3D.VectorCopy(end, trace_end);
-        Math3D.VectorCopy(mins, trace_mins);
-        Math3D.VectorCopy(maxs, trace_maxs);
+        ctx.contents = brushmask;
+        Math3D.VectorCopy(start, ctx.start);
+        Math3D.VectorCopy(end, ctx.end);
+        Math3D.VectorCopy(mins, ctx.mins);
+        Math3D.VectorCopy(maxs, ctx.maxs);
 
         //
         // check for position test special case
         //
         if (start[0] == end[0] && start[1] == end[1] && start[2] == end[2]) {
 
-            int leafs[] = new int[1024];
+            int leafs[] = ctx.leafs;
             int i, numleafs;
-            float[] c1 = { 0, 0, 0 }, c2 = { 0, 0, 0 };
-            int topnode = 0;
+            float[] c1 = ctx.c1, c2 = ctx.c2;
 
             Math3D.VectorAdd(start, mins, c1);
             Math3D.VectorAdd(start, maxs, c2);
@@ -1537,18 +1616,16 @@ public class CM {
                 c2[i] += 1;
             }
 
-            int tn[] = { topnode };
-
-            numleafs = CM_BoxLeafnums_headnode(c1, c2, leafs, 1024, headnode,
-                    tn);
-            topnode = tn[0];
+            numleafs = CM_BoxLeafnums_headnode(ctx, c1, c2, leafs, leafs.length, headnode,
+                    null);
             for (i = 0; i < numleafs; i++) {
-                CM_TestInLeaf(leafs[i]);
-                if (trace_trace.allsolid)
+                CM_TestInLeaf(ctx, leafs[i]);
+                if (trace.allsolid)
                     break;
             }
-            Math3D.VectorCopy(start, trace_trace.endpos);
-            return trace_trace;
+            Math3D.VectorCopy(start, trace.endpos);
+            ctx.trace = null;
+            return trace;
         }
 
         //
@@ -1556,28 +1633,29 @@ public class CM {
         //
         if (mins[0] == 0 && mins[1] == 0 && mins[2] == 0 && maxs[0] == 0
                 && maxs[1] == 0 && maxs[2] == 0) {
-            trace_ispoint = true;
-            Math3D.VectorClear(trace_extents);
+            ctx.ispoint = true;
+            Math3D.VectorClear(ctx.extents);
         } else {
-            trace_ispoint = false;
-            trace_extents[0] = -mins[0] > maxs[0] ? -mins[0] : maxs[0];
-            trace_extents[1] = -mins[1] > maxs[1] ? -mins[1] : maxs[1];
-            trace_extents[2] = -mins[2] > maxs[2] ? -mins[2] : maxs[2];
+            ctx.ispoint = false;
+            ctx.extents[0] = -mins[0] > maxs[0] ? -mins[0] : maxs[0];
+            ctx.extents[1] = -mins[1] > maxs[1] ? -mins[1] : maxs[1];
+            ctx.extents[2] = -mins[2] > maxs[2] ? -mins[2] : maxs[2];
         }
 
         //
         // general sweeping through world
         //
-        CM_RecursiveHullCheck(headnode, 0, 1, start, end);
+        CM_RecursiveHullCheck(ctx, headnode, 0, 1, start, end);
 
-        if (trace_trace.fraction == 1) {
-            Math3D.VectorCopy(end, trace_trace.endpos);
+        if (trace.fraction == 1) {
+            Math3D.VectorCopy(end, trace.endpos);
         } else {
             for (int i = 0; i < 3; i++)
-                trace_trace.endpos[i] = start[i] + trace_trace.fraction
+                trace.endpos[i] = start[i] + trace.fraction
                         * (end[i] - start[i]);
         }
-        return trace_trace;
+        ctx.trace = null;
+        return trace;
     }
 
     /*
@@ -1589,11 +1667,32 @@ public class CM {
     public static Trace TransformedBoxTrace(float[] start, float[] end,
             float[] mins, float[] maxs, int headnode, int brushmask,
             float[] origin, float[] angles) {
-        Trace trace;
-        float[] start_l = { 0, 0, 0 }, end_l = { 0, 0, 0 };
-        float[] a = { 0, 0, 0 };
-        float[] forward = { 0, 0, 0 }, right = { 0, 0, 0 }, up = { 0, 0, 0 };
-        float[] temp = { 0, 0, 0 };
+        return TransformedBoxTrace(default_context, start, end, mins, maxs, headnode,
+                brushmask, origin, angles);
+    }
+
+    public static Trace TransformedBoxTrace(Trace trace, float[] start, float[] end,
+            float[] mins, float[] maxs, int headnode, int brushmask,
+            float[] origin, float[] angles) {
+        return TransformedBoxTrace(default_context, trace, start, end, mins, maxs, headnode,
+                brushmask, origin, angles);
+    }
+
+    public static Trace TransformedBoxTrace(TraceContext ctx, float[] start, float[] end,
+            float[] mins, float[] maxs, int headnode, int brushmask,
+            float[] origin, float[] angles) {
+        return TransformedBoxTrace(ctx, new Trace(), start, end, mins, maxs, headnode,
+                brushmask, origin, angles);
+    }
+
+    /** Like BoxTrace(TraceContext, Trace, ...), for a moved and rotated model. */
+    public static Trace TransformedBoxTrace(TraceContext ctx, Trace trace, float[] start,
+            float[] end, float[] mins, float[] maxs, int headnode, int brushmask,
+            float[] origin, float[] angles) {
+        float[] start_l = ctx.start_l, end_l = ctx.end_l;
+        float[] a = ctx.angles;
+        float[] forward = ctx.forward, right = ctx.right, up = ctx.up;
+        float[] temp = ctx.temp;
         boolean rotated;
 
         // subtract origin offset
@@ -1622,7 +1721,7 @@ public class CM {
         }
 
         // sweep the box through the model
-        trace = BoxTrace(start_l, end_l, mins, maxs, headnode, brushmask);
+        BoxTrace(ctx, trace, start_l, end_l, mins, maxs, headnode, brushmask);
 
         if (rotated && trace.fraction != 1.0) {
             // FIXME: figure out how to do this with existing angles
@@ -1693,21 +1792,123 @@ public class CM {
     public static byte phsrow[] = new byte[Constants.MAX_MAP_LEAFS / 8];
 
     public static byte[] CM_ClusterPVS(int cluster) {
+        return CM_ClusterPVS(cluster, pvsrow);
+    }
+
+    /**
+     * Decompresses the PVS of the cluster into row, for callers that must
+     * not share pvsrow, such as the ClientFrameWorker threads.
+     */
+    public static byte[] CM_ClusterPVS(int cluster, byte row[]) {
         if (cluster == -1)
-            Arrays.fill(pvsrow, 0, (numclusters + 7) >> 3, (byte) 0);
+            Arrays.fill(row, 0, (numclusters + 7) >> 3, (byte) 0);
         else
             CM_DecompressVis(map_visibility,
-                    map_vis.bitofs[cluster][Constants.DVIS_PVS], pvsrow);
-        return pvsrow;
+                    map_vis.bitofs[cluster][Constants.DVIS_PVS], row);
+        return row;
     }
 
     public static byte[] CM_ClusterPHS(int cluster) {
+        return CM_ClusterPHS(cluster, phsrow);
+    }
+
+    /** CM_ClusterPVS(int, byte[]) for the PHS. */
+    public static byte[] CM_ClusterPHS(int cluster, byte row[]) {
         if (cluster == -1)
-            Arrays.fill(phsrow, 0, (numclusters + 7) >> 3, (byte) 0);
+            Arrays.fill(row, 0, (numclusters + 7) >> 3, (byte) 0);
         else
             CM_DecompressVis(map_visibility,
-                    map_vis.bitofs[cluster][Constants.DVIS_PHS], phsrow);
-        return phsrow;
+                    map_vis.bitofs[cluster][Constants.DVIS_PHS], row);
+        return row;
+    }
+
+    /**
+     * Maps with more clusters keep decompressing their rows on demand; the
+     * two matrices would take 2 * 8192^2 / 8 = 16 MB at this size.
+     */
+    public static final int MAX_VIS_MATRIX_CLUSTERS = 8192;
+
+    /** 
+     * All PVS and PHS rows, decompressed at load time. Row c starts at
+     * c * vis_words; bit n of a row is (row[n >> 6] >>> (n & 63)) & 1. 
+     */
+    static long map_pvs[], map_phs[];
+
+    static int vis_words;
+
+    /** Decompresses the PVS and PHS rows of all clusters. */
+    static void CM_BuildVisMatrix() {
+        vis_words = (numclusters + 63) >> 6;
+        if (numclusters > MAX_VIS_MATRIX_CLUSTERS) {
+            map_pvs = map_phs = null;
+            Com.DPrintf(" no vis matrix for " + numclusters + " clusters\n");
+            return;
+        }
+        map_pvs = new long[numclusters * vis_words];
+        map_phs = new long[numclusters * vis_words];
+        for (int c = 0; c < numclusters; c++) {
+            CM_PackRow(CM_ClusterPVS(c), map_pvs, c * vis_words);
+            CM_PackRow(CM_ClusterPHS(c), map_phs, c * vis_words);
+        }
+    }
+
+    /** Packs a decompressed byte row into vis_words longs at out[ofs]. */
+    static void CM_PackRow(byte row[], long out[], int ofs) {
+        int bytes = (numclusters + 7) >> 3;
+        for (int i = 0; i < bytes; i++)
+            out[ofs + (i >> 3)] |= (row[i] & 0xFFL) << ((i & 7) << 3);
+    }
+
+    /** Returns the number of longs in a cluster bit vector. */
+    public static int CM_VisWords() {
+        return vis_words;
+    }
+
+    /** Returns true if cluster to is in the PVS of cluster from. */
+    public static boolean CM_ClusterVisible(int from, int to) {
+        if (from == -1 || to == -1)
+            return false;
+        if (map_pvs == null)
+            return 0 != (CM_ClusterPVS(from)[to >> 3] & (1 << (to & 7)));
+        return 0 != (map_pvs[from * vis_words + (to >> 6)] & (1L << (to & 63)));
+    }
+
+    /** Returns true if cluster to is in the PHS of cluster from. */
+    public static boolean CM_ClusterAudible(int from, int to) {
+        return CM_ClusterAudible(from, to, phsrow);
+    }
+
+    /**
+     * CM_ClusterAudible that decompresses into row on maps without a vis
+     * matrix.
+     */
+    public static boolean CM_ClusterAudible(int from, int to, byte row[]) {
+        if (from == -1 || to == -1)
+            return false;
+        if (map_phs == null)
+            return 0 != (CM_ClusterPHS(from, row)[to >> 3] & (1 << (to & 7)));
+        return 0 != (map_phs[from * vis_words + (to >> 6)] & (1L << (to & 63)));
+    }
+
+    /**
+     * Ors the PVS of the cluster into a bit vector of CM_VisWords() longs.
+     * Maps without a vis matrix decompress the row into row first.
+     */
+    public static void CM_MergeClusterPVS(int cluster, long out[], byte row[]) {
+        if (cluster == -1)
+            return;
+        if (map_pvs == null) {
+            CM_PackRow(CM_ClusterPVS(cluster, row), out, 0);
+            return;
+        }
+        int ofs = cluster * vis_words;
+        for (int i = 0; i < vis_words; i++)
+            out[i] |= map_pvs[ofs + i];
+    }
+
+    /** Tests a cluster in a bit vector filled by CM_MergeClusterPVS. */
+    public static boolean CM_VisBit(long bits[], int cluster) {
+        return 0 != (bits[cluster >> 6] & (1L << (cluster & 63)));
     }
 
     /*
@@ -1826,7 +2027,7 @@ public class CM {
      * Writes the portal state to a savegame file ===================
      */
 
-    public static void CM_WritePortalState(RandomAccessFile os) {
+    public static void CM_WritePortalState(QuakeFile os) {
 
         //was: fwrite(portalopen, sizeof(portalopen), 1, f);
         try {
@@ -1848,19 +2049,11 @@ public class CM {
      * Reads the portal state from a savegame file and recalculates the area
      * connections ===================
      */
-    public static void CM_ReadPortalState(RandomAccessFile f) {
+    public static void CM_ReadPortalState(QuakeFile f) throws IOException {
 
         //was: FS_Read(portalopen, sizeof(portalopen), f);
-        int len = portalopen.length * 4;
-
-        ByteBuffer bb = ByteBuffer.allocate(len);
-
-        QuakeFileSystem.Read(bb, len, f);
-
-        IntBuffer ib = bb.asIntBuffer();
-
         for (int n = 0; n < portalopen.length; n++)
-            portalopen[n] = ib.get() != 0;
+            portalopen[n] = f.readInt() != 0;
 
         FloodAreaConnections();
     }
@@ -1891,4 +2084,17 @@ public class CM {
             return true;
         return CM_HeadnodeVisible(node.children[1], visbits);
     }
+
+    /** CM_HeadnodeVisible for a bit vector filled by CM_MergeClusterPVS. */
+    public static boolean CM_HeadnodeVisible(int nodenum, long visbits[]) {
+        if (nodenum < 0) {
+            int cluster = map_leafs[-1 - nodenum].cluster;
+            return cluster != -1 && CM_VisBit(visbits, cluster);
+        }
+
+        cnode_t node = map_nodes[nodenum];
+        if (CM_HeadnodeVisible(node.children[0], visbits))
+            return true;
+        return CM_HeadnodeVisible(node.children[1], visbits);
+    }
 }
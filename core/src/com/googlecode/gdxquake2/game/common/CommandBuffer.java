@@ -235,7 +235,9 @@ public final class CommandBuffer {
      * ============ Cbuf_InsertFromDefer ============
      */
     public static void InsertFromDefer() {
-        InsertText(Compatibility.newString(Globals.defer_text_buf).trim());
+        // only up to the terminator; the text after it is left over from
+        // earlier deferred commands
+        InsertText(Lib.CtoJava(Globals.defer_text_buf).trim());
         Globals.defer_text_buf[0] = 0;
     }
 }
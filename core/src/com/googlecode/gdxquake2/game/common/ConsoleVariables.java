@@ -71,23 +71,31 @@ public class ConsoleVariables {
         }
         var = new ConsoleVariable();
         var.name = new String(var_name);
-        var.string = new String(var_value);
+        SetString(var, new String(var_value));
         var.modified = true;
-        // handles atof(var.string)
-        try {
-            var.value = Float.parseFloat(var.string);
-        } catch (NumberFormatException e) {
-            var.value = 0.0f;
-        }
         // link the variable in
         var.next = Globals.cvar_vars;
         Globals.cvar_vars = var;
+        index.Put(var.name, var);
 
         var.flags = flags;
 
         return var;
     }
 
+    /** The variables by name, see NameIndex. */
+    static final NameIndex<ConsoleVariable> index = new NameIndex<ConsoleVariable>();
+
+    /** Sets the string of a variable and the value atof() parses from it. */
+    static void SetString(ConsoleVariable var, String string) {
+        var.string = string;
+        try {
+            var.value = Float.parseFloat(string);
+        } catch (NumberFormatException e) {
+            var.value = 0.0f;
+        }
+    }
+
     static void Init() {
         Commands.addCommand("set", Set_f);
         Commands.addCommand("cvarlist", List_f);
@@ -100,14 +108,7 @@ public class ConsoleVariables {
     }
 
     static ConsoleVariable FindVar(String var_name) {
-        ConsoleVariable var;
-
-        for (var = Globals.cvar_vars; var != null; var = var.next) {
-            if (var_name.equals(var.name))
-                return var;
-        }
-
-        return null;
+        return index.Get(var_name);
     }
 
     /**
@@ -126,12 +127,7 @@ public class ConsoleVariables {
         if ((var.flags & Constants.CVAR_USERINFO) != 0)
             Globals.userinfo_modified = true; // transmit at next oportunity
 
-        var.string = value;
-        try {
-            var.value = Float.parseFloat(var.string);
-        } catch (Exception e) {
-            var.value = 0.0f;
-        }
+        SetString(var, value);
 
         var.flags = flags;
 
@@ -191,12 +187,7 @@ public class ConsoleVariables {
                     Com.Printf(var_name + " will be changed for next game.\n");
                     var.latched_string = value;
                 } else {
-                    var.string = value;
-                    try {
-                        var.value = Float.parseFloat(var.string);
-                    } catch (Exception e) {
-                        var.value = 0.0f;
-                    }
+                    SetString(var, value);
                     if (var.name.equals("game")) {
                         QuakeFileSystem.SetGamedir(var.string);
                         QuakeFileSystem.ExecAutoexec();
@@ -218,12 +209,7 @@ public class ConsoleVariables {
         if ((var.flags & Constants.CVAR_USERINFO) != 0)
             Globals.userinfo_modified = true; // transmit at next oportunity
 
-        var.string = value;
-        try {
-            var.value = Float.parseFloat(var.string);
-        } catch (Exception e) {
-            var.value = 0.0f;
-        }
+        SetString(var, value);
 
         return var;
     }
@@ -321,12 +307,7 @@ public class ConsoleVariables {
         ConsoleVariable var = ConsoleVariables.FindVar(var_name);
         if (var == null)
             return 0;
-        float val = 0.0f;
-        try {
-            val = Float.parseFloat(var.string);
-        } catch (Exception e) {
-        }
-        return val;
+        return var.value;
     }
 
     /**
@@ -380,13 +361,8 @@ public class ConsoleVariables {
         for (var = Globals.cvar_vars; var != null; var = var.next) {
             if (var.latched_string == null || var.latched_string.length() == 0)
                 continue;
-            var.string = var.latched_string;
+            SetString(var, var.latched_string);
             var.latched_string = null;
-            try {
-                var.value = Float.parseFloat(var.string);
-            } catch (NumberFormatException e) {
-                var.value = 0.0f;
-            }
             if (var.name.equals("game")) {
                 QuakeFileSystem.SetGamedir(var.string);
                 QuakeFileSystem.ExecAutoexec();
@@ -1041,6 +1041,8 @@ public class Constants {
   public final static int svc_packetentities = 18; // [...] 
   public final static int svc_deltapacketentities = 19; // [...] 
   public final static int svc_frame = 20;
+  // only sent on channels with NetworkChannel.FEATURE_COMPRESSION, see FrameCodec
+  public final static int svc_compressed = 21; // [short] [short] [...]
 
   public static final int NUMVERTEXNORMALS = 162;
   public static final int PROTOCOL_VERSION = 34;
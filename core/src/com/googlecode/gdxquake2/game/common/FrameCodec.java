@@ -0,0 +1,313 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.common;
+
+/**
+ * Compression of frame messages for channels with
+ * NetworkChannel.FEATURE_COMPRESSION. Frames are short and their bytes are
+ * far from random: delta bits, entity numbers, model indices and coordinates
+ * of the same map repeat across frames and clients. A frame is therefore
+ * compressed on its own, without state kept between packets, with LZ77
+ * matches into the frame itself and into a preset dictionary of typical
+ * frames, followed by static Huffman codes. The dictionary and the code
+ * lengths are trained on the frames of a bot match, see FrameDictionary.
+ * <p>
+ * The compressed frame is sent as
+ *
+ * <pre>
+ * svc_compressed, short compressed length, short frame length, bits
+ * </pre>
+ *
+ * The bits are packed from the least significant bit up. Each symbol is a
+ * literal byte or the length of a match, MIN_MATCH to MAX_MATCH; a match is
+ * followed by the code of the bit length of its distance and the bits of the
+ * distance below its top bit.
+ * <p>
+ * Compression uses scratch arrays, so each ClientFrameWorker has its own
+ * codec.
+ */
+public class FrameCodec {
+
+    public static final int MIN_MATCH = 3;
+
+    public static final int MAX_MATCH = 34;
+
+    /** Literals, then the match lengths. */
+    public static final int SYMBOLS = 256 + MAX_MATCH - MIN_MATCH + 1;
+
+    /** Bit lengths of distances; 0 is not used. */
+    public static final int DISTANCE_CODES = 14;
+
+    /** Longest code. */
+    public static final int MAX_BITS = 15;
+
+    /** Bytes of svc_compressed and the two lengths. */
+    public static final int HEADER = 5;
+
+    static final int HASH_SIZE = 4096;
+
+    /** Positions of the chain a match is searched in. */
+    static final int MAX_CHAIN = 32;
+
+    static final int WINDOW = FrameDictionary.DICTIONARY.length + Constants.MAX_MSGLEN;
+
+    // canonical codes, bit reversed for writing
+    static final int literal_codes[] = new int[SYMBOLS];
+    static final int distance_codes[] = new int[DISTANCE_CODES];
+
+    // for decoding: the number of codes of each length and the symbols
+    // ordered by code
+    static final int literal_count[] = new int[MAX_BITS + 1];
+    static final int literal_symbol[] = new int[SYMBOLS];
+    static final int distance_count[] = new int[MAX_BITS + 1];
+    static final int distance_symbol[] = new int[DISTANCE_CODES];
+
+    // hash chains of the dictionary, copied for each frame
+    static final int dictionary_head[] = new int[HASH_SIZE];
+    static final int dictionary_prev[] = new int[FrameDictionary.DICTIONARY.length];
+
+    static {
+        BuildCodes(FrameDictionary.LITERAL_LENGTHS, literal_codes, literal_count, literal_symbol);
+        BuildCodes(FrameDictionary.DISTANCE_LENGTHS, distance_codes, distance_count, distance_symbol);
+
+        byte dictionary[] = FrameDictionary.DICTIONARY;
+        for (int i = 0; i < HASH_SIZE; i++)
+            dictionary_head[i] = -1;
+        for (int i = 0; i + MIN_MATCH <= dictionary.length; i++) {
+            int h = Hash(dictionary, i);
+            dictionary_prev[i] = dictionary_head[h];
+            dictionary_head[h] = i;
+        }
+    }
+
+    // the dictionary followed by the frame
+    final byte window[] = new byte[WINDOW];
+    final int head[] = new int[HASH_SIZE];
+    final int prev[] = new int[WINDOW];
+
+    final byte out[] = new byte[Constants.MAX_MSGLEN];
+
+    // bit buffer
+    byte data[];
+    int pos;
+    int end;
+    int bitbuf;
+    int bitcount;
+
+    public FrameCodec() {
+        System.arraycopy(FrameDictionary.DICTIONARY, 0, window, 0, FrameDictionary.DICTIONARY.length);
+    }
+
+    /**
+     * Assigns canonical codes to the symbols with the given code lengths, as
+     * deflate does.
+     */
+    static void BuildCodes(byte lengths[], int codes[], int count[], int symbol[]) {
+        int offs[] = new int[MAX_BITS + 2];
+
+        for (int i = 0; i < lengths.length; i++)
+            count[lengths[i]]++;
+        count[0] = 0;
+
+        int code = 0;
+        for (int len = 1; len <= MAX_BITS; len++) {
+            offs[len + 1] = offs[len] + count[len];
+            for (int i = 0; i < lengths.length; i++) {
+                if (lengths[i] != len)
+                    continue;
+                codes[i] = Reverse(code++, len);
+                symbol[offs[len]++] = i;
+            }
+            code <<= 1;
+        }
+    }
+
+    static int Reverse(int code, int len) {
+        int r = 0;
+        for (int i = 0; i < len; i++) {
+            r = (r << 1) | (code & 1);
+            code >>= 1;
+        }
+        return r;
+    }
+
+    static int Hash(byte b[], int i) {
+        return ((b[i] & 0xff) << 4 ^ (b[i + 1] & 0xff) << 2 ^ (b[i + 2] & 0xff)) & (HASH_SIZE - 1);
+    }
+
+    /**
+     * Replaces the frame in msg by svc_compressed and its compressed bytes,
+     * unless that would not be shorter.
+     */
+    public void CompressFrame(Buffer msg) {
+        int length = Compress(msg.data, msg.cursize);
+        if (length < 0 || HEADER + length >= msg.cursize)
+            return;
+
+        int size = msg.cursize;
+        msg.cursize = 0;
+        Buffers.writeByte(msg, Constants.svc_compressed);
+        msg.WriteShort(length);
+        msg.WriteShort(size);
+        Buffers.Write(msg, out, length);
+    }
+
+    /**
+     * Compresses size bytes of src into out.
+     *
+     * @return the number of bytes, or -1 if they do not fit
+     */
+    public int Compress(byte src[], int size) {
+        int base = FrameDictionary.DICTIONARY.length;
+        int total = base + size;
+
+        System.arraycopy(src, 0, window, base, size);
+        System.arraycopy(dictionary_head, 0, head, 0, HASH_SIZE);
+        System.arraycopy(dictionary_prev, 0, prev, 0, base);
+
+        data = out;
+        pos = 0;
+        end = out.length;
+        bitbuf = bitcount = 0;
+
+        int i = base;
+        while (i < total) {
+            // a match takes at most 42 bits
+            if (pos + 6 >= end)
+                return -1;
+
+            int best = 0;
+            int distance = 0;
+            if (i + MIN_MATCH <= total) {
+                int limit = Math.min(MAX_MATCH, total - i);
+                int chain = MAX_CHAIN;
+                for (int c = head[Hash(window, i)]; c >= 0 && chain-- > 0; c = prev[c]) {
+                    int len = 0;
+                    while (len < limit && window[c + len] == window[i + len])
+                        len++;
+                    if (len > best) {
+                        best = len;
+                        distance = i - c;
+                        if (len == limit)
+                            break;
+                    }
+                }
+            }
+
+            if (best >= MIN_MATCH) {
+                int bits = 32 - Integer.numberOfLeadingZeros(distance);
+                PutBits(literal_codes[256 + best - MIN_MATCH],
+                        FrameDictionary.LITERAL_LENGTHS[256 + best - MIN_MATCH]);
+                PutBits(distance_codes[bits], FrameDictionary.DISTANCE_LENGTHS[bits]);
+                PutBits(distance & ~(1 << (bits - 1)), bits - 1);
+            } else {
+                best = 1;
+                int b = window[i] & 0xff;
+                PutBits(literal_codes[b], FrameDictionary.LITERAL_LENGTHS[b]);
+            }
+
+            for (int j = 0; j < best; j++, i++) {
+                if (i + MIN_MATCH <= total) {
+                    int h = Hash(window, i);
+                    prev[i] = head[h];
+                    head[h] = i;
+                }
+            }
+        }
+        if (bitcount > 0)
+            out[pos++] = (byte) bitbuf;
+        return pos;
+    }
+
+    /**
+     * Decompresses length bytes of src at offset into size bytes of dest.
+     *
+     * @return false if the data is corrupt
+     */
+    public boolean Decompress(byte src[], int offset, int length, byte dest[], int size) {
+        data = src;
+        pos = offset;
+        end = offset + length;
+        bitbuf = bitcount = 0;
+
+        byte dictionary[] = FrameDictionary.DICTIONARY;
+        int n = 0;
+        while (n < size) {
+            int symbol = Decode(literal_count, literal_symbol);
+            if (symbol < 0)
+                return false;
+            if (symbol < 256) {
+                dest[n++] = (byte) symbol;
+                continue;
+            }
+            int len = symbol - 256 + MIN_MATCH;
+            int bits = Decode(distance_count, distance_symbol);
+            if (bits <= 0)
+                return false;
+            int distance = GetBits(bits - 1) | 1 << (bits - 1);
+            if (pos > end || n + len > size || distance > n + dictionary.length)
+                return false;
+            // the match may start in the dictionary and overlap the output
+            for (int i = 0; i < len; i++, n++) {
+                int from = n - distance;
+                dest[n] = from < 0 ? dictionary[dictionary.length + from] : dest[from];
+            }
+        }
+        return pos <= end;
+    }
+
+    void PutBits(int value, int count) {
+        bitbuf |= value << bitcount;
+        bitcount += count;
+        while (bitcount >= 8) {
+            data[pos++] = (byte) bitbuf;
+            bitbuf >>>= 8;
+            bitcount -= 8;
+        }
+    }
+
+    int GetBits(int count) {
+        while (bitcount < count) {
+            // past the end reads zeros, which the caller detects by pos
+            int b = pos < end ? data[pos] & 0xff : 0;
+            pos++;
+            bitbuf |= b << bitcount;
+            bitcount += 8;
+        }
+        int value = bitbuf & ((1 << count) - 1);
+        bitbuf >>>= count;
+        bitcount -= count;
+        return value;
+    }
+
+    /** Decodes a symbol of a canonical code, as puff.c does. */
+    int Decode(int count[], int symbol[]) {
+        int code = 0, first = 0, index = 0;
+        for (int len = 1; len <= MAX_BITS; len++) {
+            code |= GetBits(1);
+            int c = count[len];
+            if (code - c < first)
+                return symbol[index + (code - first)];
+            index += c;
+            first += c;
+            first <<= 1;
+            code <<= 1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.common;
+
+/**
+ * Preset dictionary and code lengths of FrameCodec, written by
+ * benchmarks/.../FrameDictionaryTrainer from 600 frames of a 16 bot
+ * match on the synthetic map. Client and server must use the same tables,
+ * so new ones need a new NetworkChannel feature bit.
+ */
+public class FrameDictionary {
+
+    public static final byte DICTIONARY[] = {
+            20, 47, 1, 0, 0, 46, 1, 0, 0, 0, 1, 2, 17, -122, 51, 77,
+            92, -127, 112, -63, 0, 36, 8, 10, 0, 0, 0, 0, 0, 89, 0, 0,
+            -40, -62, 0, 0, 0, 0, -5, 2, 10, 0, 0, 0, 1, 6, 3, 0,
+            0, 0, 0, 18, -111, -128, -128, 1, 2, 50, 106, 59, 106, 59, -127, 96,
+            -63, 0, -111, -128, -128, 1, 7, 47, -37, 59, -37, 59, -128, 95, -63, 0,
+            -97, -118, -112, 11, 13, -1, -1, 47, 12, 1, -29, 60, -70, 79, -63, 0,
+            64, 4, -29, 60, -70, 79, -63, 0, 98, 32, -105, -128, -128, 1, 14, 49,
+            13, 92, 126, 103, 69, 13, 92, 126, 103, -63, 0, -75, -128, -128, 1, 16,
+            50, 77, 92, -61, 77, 92, -127, 112, -63, 0, 2, 3, -74, -71, 61, -15,
+            101, -125, 2, -73, 12, 60, -14, 85, 81, 1, 0, 0, 20, 61, 1, 0,
+            0, 60, 1, 0, 0, 0, 1, 2, 17, -122, 51, -5, 33, -86, 15, -63,
+            0, 102, 3, 92, -7, 0, 0, 0, 0, 92, 0, 0, 39, -3, 0, 0,
+            2, 0, 2, 2, 10, 0, 0, 0, 4, -45, -22, 0, 0, 0, 0, 18,
+            -105, -124, -128, 1, 5, 46, -53, 36, 78, 15, 0, -110, -53, 36, 78, 15,
+            -63, 0, -105, -128, -128, 1, 6, 48, 6, 35, 57, 16, 98, 6, 35, 57,
+            16, -63, 0, -97, -128, -128, 1, 8, 50, -5, 33, -86, 15, -2, 5, -5,
+            33, -86, 15, -63, 0, -105, -128, -128, 1, 11, 48, -48, 61, 14, 41, 11,
+            -48, 61, 14, 41, -63, 0, 64, 75, 64, 77, 64, 78, 64, 79, 64, 80,
+            64, 81, 64, -77, -121, -54, -128, 5, -75, 38, 8, 64, 33, -70, 13, 49,
+            1, -111, 27, 36, -1, 14, 49, 1, 44, 3, -73, -123, 70, 20, 43, 64,
+            -70, 0, 0, 1, 5, 0, 0, 10, 1, 98, 111, 116, 49, 52, 32, 119,
+            97, 115, 32, 98, 108, 97, 115, 116, 101, 100, 32, 98, 121, 32, 98, 111,
+            116, 49, 49, 32, 10, 0, 20, 74, 1, 0, 0, 73, 1, 0, 0, 0,
+            1, 2, 17, -122, 51, -102, 94, -127, 112, -63, 0, 123, -8, 4, 0, 0,
+            0, 0, 0, 88, 0, 0, -120, -88, 0, 0, 1, 0, 4, 2, 7, 0,
+            0, 0, 0, -1, 0, 0, 0, 0, 0, 18, -98, -128, -128, 1, 2, 47,
+            110, 97, 14, 0, -64, 56, 110, 97, -63, 0, -98, -128, -128, 1, 13, 49,
+            92, 97, -112, -3, -63, 57, 92, 97, -63, 0, -97, -128, -128, 1, 14, 46,
+            109, 89, 127, 103, 37, 5, 109, 89, 127, 103, -63, 0, -97, -128, -128, 1,
+            16, 47, -102, 94, -127, 112, -87, 5, -102, 94, -127, 112, -63, 0, 0, 0,
+            3, 3, 126, 39, 67, 101, 49, 1, -1, 39, 34, 101, 49, 1, 3, 2,
+            -80, 89, -40, 103, 49, 1, 0, 1, 14, 0, 0, 20, 88, 1, 0, 0,
+            87, 1, 0, 0, 0, 1, 2, 17, 40, 49, 2, 32, 3, 0, 0, 73,
+            63, 0, 0, 2, 1, 0, 0, 0, 0, -36, -18, 0, 0, 0, 0, 18,
+            -108, -128, -128, 1, 1, 64, -27, 0, 68, 0, 52, 80, 1, -106, -128, -128,
+            1, 2, 46, 20, 93, 12, -68, 56, 20, 93, -63, 0, -108, -128, -128, 1,
+            8, 64, 63, 0, 92, 0, 84, 80, 1, -107, -128, -128, 1, 10, 49, -58,
+            107, -68, -58, 107, -127, 48, -63, 0, -97, -124, -128, 1, 11, 50, -41, 73,
+            25, 48, 0, 100, 5, -41, 73, 25, 48, -63, 0, -112, -128, -128, 1, 12,
+            -74, -42, 72, 41, 49, -63, 0, -106, -128, -128, 1, 13, 48, 111, 93, 108,
+            -67, 57, 111, 93, -63, 0, -107, -128, -128, 1, 14, 50, 98, 91, 64, 98,
+            91, 126, 103, -63, 0, -75, -128, -128, 1, 16, 46, -16, 92, -67, -16, 92,
+            -127, 112, -63, 0, 2, 0, 0, 3, 1, 38, 57, 54, 93, 49, 1, 0,
+            1, 2, 0, 0, 3, 2, -26, 92, 17, 112, 49, 1, 0, 1, 16, 0,
+            0, 20, 101, 1, 0, 0, 100, 1, 0, 0, 0, 1, 2, 17, -122, 51,
+            -98, 89, -126, 112, -63, 0, 80, -5, 19, 0, 0, 0, 0, 0, 90, 0,
+            0, -23, -45, 0, 0, 0, 0, 3, 2, 9, 0, 0, 0, 2, 0, 0,
+            0, 0, 0, 0, 18, -101, -124, -128, 1, 8, 49, 29, 93, 97, 91, 0,
+            5, 29, 93, 97, 91, 65, 1, -128, -128, -128, 1, 13, -67, 57, 49, 98,
+            -63, 0, -97, -128, -128, 1, 14, 48, -61, 94, 125, 103, 81, 4, -61, 94,
+            125, 103, -63, 0, -99, -128, -128, 1, 16, 49, -98, 89, -44, 3, -98, 89,
+            -126, 112, -63, 0, 3, -71, -97, 92, -18, 102, 0, 0, 20, 115, 1, 0,
+            0, 114, 1, 0, 0, 0, 1, 2, 17, -122, 55, 127, 93, -37, 86, -63,
+            0, 14, 0, -59, 6, 0, 0, 0, 0, 91, 0, 0, 113, 124, 0, 0,
+            1, 0, 8, 2, 8, 0, 0, 0, 3, 26, 13, -1, 0, 0, 5, 0,
+            0, 0, 0, 18, -97, -128, -128, 1, 1, 48, -100, 69, -77, 50, -6, -5,
+            -100, 69, -77, 50, -63, 0, -97, -128, -128, 1, 6, 49, 50, 113, -17, 51,
+            95, 5, 50, 113, -17, 51, -63, 0, -97, -128, -128, 1, 8, 48, 127, 93,
+            -37, 86, 124, 5, 127, 93, -37, 86, -63, 0, -97, -128, -128, 1, 10, 46,
+            48, 112, 94, 51, -4, 5, 48, 112, 94, 51, -63, 0, -98, -128, -128, 1,
+            11, 47, -94, 49, 99, -1, -98, 70, -94, 49, -63, 0, -98, -128, -128, 1,
+            13, 46, 32, 87, 21, -5, 126, 92, 32, 87, -63, 0, -65, -128, -128, 1,
+            14, 47, 48, 94, 41, 94, -76, 4, 48, 94, 41, 94, -63, 0, 2, -107,
+            -128, -128, 1, 16, 48, 23, 94, -65, 23, 94, -127, 112, -63, 0, 3, -78,
+            -46, 94, -100, 64, 3, -76, -26, 109, -102, 85, -121, -54, -128, 5, -75, 38,
+            8, 10, 116, -10, 50, 49, 1, -5, -18, 112, 73, 51, 49, 1, 44, 3,
+            -74, 114, 93, -37, 87, -121, -54, -128, 5, -73, 38, 8, -39, 95, 15, 89,
+            49, 1, 20, 36, 93, 127, 87, 49, 1, 44, 64, -71, 0, 0, 1, 10,
+            0, 0, 1, 13, 0, 0, 20, -128, 1, 0, 0, 127, 1, 0, 0, 0,
+            1, 2, 17, -122, 51, -39, 91, -127, 112, -63, 0, 71, 8, 9, 0, 0,
+            0, -1, 7, 93, 0, 0, -80, -59, 0, 0, -1, 0, -7, 2, 6, 0,
+            0, 0, 5, -8, -4, 0, 0, 0, 0, 18, -98, -128, -128, 1, 8, 46,
+            -38, 93, -117, 0, 126, 93, -38, 93, -63, 0, -106, -128, -128, 1, 13, 49,
+            -126, 93, -19, 125, 92, -126, 93, -63, 0, -99, -126, -128, 1, 14, 50, 126,
+            93, 65, 1, 83, 0, 126, 93, -39, 92, 65, 1, -107, -128, -128, 1, 16,
+            46, -39, 91, -58, -39, 91, -127, 112, -63, 0, 0, 0, 3, 1, 17, 93,
+            -67, 93, 49, 1, 0, 1, 8, 0, 0, 3, 2, -24, 91, 18, 112, 49,
+            1, 0, 1, 16, 0, 0, 9, 8, 20, 106, 0, 13, 38, 5, 98, 111,
+            116, 54, 92, 109, 97, 108, 101, 47, 103, 114, 117, 110, 116, 0, 20, -114,
+            1, 0, 0, -115, 1, 0, 0, 0, 1, 2, 17, -122, 51, -115, 87, 91,
+            90, -63, 0, 64, -9, 4, 0, 0, 0, 0, 0, 93, 0, 0, 22, -84,
+            0, 0, 3, 0, 2, 2, 10, 0, 0, 0, 5, -11, -5, 0, 0, 0,
+            0, 18, -105, -118, -112, 11, 2, -1, -1, 50, 1, 1, -127, 48, -127, 96,
+            -63, 0, -96, -127, 48, -127, 96, -63, 0, 98, 32, -105, -118, -112, 11, 4,
+            -1, -1, 49, 3, 1, 127, 47, 127, 95, -63, 0, 32, 127, 47, 127, 95,
+            -63, 0, 98, 32, -107, -128, -128, 1, 8, 50, -115, 87, -83, -115, 87, 91,
+            90, -63, 0, -107, -128, -128, 1, 13, 48, 4, 87, 76, 4, 87, 90, 89,
+            -63, 0, -128, -128, -128, 1, 14, 124, 93, -10, 87, -63, 0, -111, -128, -128,
+            1, 16, 50, 114, 88, 114, 88, -127, 112, -63, 0, 64, 17, -128, -128, -128,
+            1, 93, 0, 52, 0, 60, 0, 1, -128, -128, -128, 1, 101, 0, 52, 0,
+            68, 0, 1, -128, -128, -128, 1, 112, 0, 52, 0, 76, 120, 0, -128, -128,
+            -128, 1, 126, 0, 52, 0, 84, 120, 0, -128, -128, -128, 1, -109, 0, 52,
+            0, 100, 0, 1, -128, -128, -128, 1, -97, 0, 52, 0, 108, 0, 1, -128,
+            -128, -128, 1, -86, 0, 52, 0, 116, 120, 0, 3, -78, 23, 99, -23, 64,
+            64, -77, 3, -71, 28, 86, 33, 99, 0, 0, 3, 2, 34, 69, -1, 63,
+            49, 1, 104, 13, 32, 5, 98, 111, 116, 48, 92, 109, 97, 108, 101, 47,
+            103, 114, 117, 110, 116, 0, 13, 33, 5, 98, 111, 116, 49, 92, 109, 97,
+            108, 101, 47, 103, 114, 117, 110, 116, 0, 20, -101, 1, 0, 0, -102, 1,
+            0, 0, 0, 1, 2, 17, -122, 51, 3, 91, -127, 112, -63, 0, 68, -9,
+            3, 0, 0, 0, 0, 0, 91, 0, 0, -86, -86, 0, 0, 2, 0, 6,
+            2, 8, 0, 0, 0, 3, 3, 1, 0, 0, 0, 0, 18, -97, -128, -128,
+            1, 8, 41, -62, 83, 127, 98, 40, 4, -62, 83, 127, 98, -63, 0, -65,
+            -128, -128, 1, 14, 46, -17, 101, 10, 90, 108, 4, -17, 101, 10, 90, -63,
+            0, 2, -99, -128, -128, 1, 16, 48, 3, 91, -85, 5, 3, 91, -127, 112,
+            -63, 0, -125, 2, -71, 48, 86, 17, 94, 25, 1, -121, -54, -128, 5, -67,
+            38, 8, 123, 98, -52, 91, 49, 1, 108, 67, 101, 97, 90, 49, 1, 44,
+            0, 0, 1, 14, 0, 0, 9, 8, 18, 50, 0, 20, -87, 1, 0, 0,
+            -88, 1, 0, 0, 0, 1, 2, 17, -122, 55, -120, 85, 107, 105, -63, 0,
+            19, -4, 25, 8, 0, 0, 0, 0, 90, 0, 0, -86, 42, 0, 0, -1,
+            0, 0, 26, 18, 0, 0, 0, 2, 18, 9, -1, 0, 0, 35, 0, -128,
+            0, 0, 0, 0, 18, -105, -128, -128, 1, 8, 55, -120, 85, 107, 105, 42,
+            -120, 85, 107, 105, -63, 0, -73, -128, -128, 1, 14, 50, -125, 94, -25, 94,
+            94, -125, 94, -25, 94, -63, 0, 2, -98, -128, -128, 1, 16, 47, -124, 106,
+            -95, -5, 127, 87, -124, 106, -63, 0, 3, -78, 14, 76, 59, 94, 0, 0,
+            9, 8, 22, 98, 0, 20, -74, 1, 0, 0, -75, 1, 0, 0, 0, 1,
+            2, 17, -122, 51, -46, 86, -47, 105, -63, 0, -42, 6, 42, 3, 0, 0,
+            0, 0, 89, 0, 0, -69, 59, 0, 0, 1, 0, 4, 2, 10, 0, 0,
+            0, 1, -32, -16, 0, 0, 0, 0, 18, -105, -128, -128, 1, 8, 41, 69,
+            86, -35, 106, -92, 69, 86, -35, 106, -63, 0, -97, -128, -128, 1, 14, 48,
+            -14, 91, 127, 103, 109, 0, -14, 91, 127, 103, -63, 0, -97, -128, -128, 1,
+            16, 50, -46, 86, -47, 105, 59, 5, -46, 86, -47, 105, -63, 0, 3, -77,
+            62, 75, 91, 77, 64, -69, 0, 0, 20, -60, 1, 0, 0, -61, 1, 0,
+            0, 0, 1, 2, 17, -122, 55, -26, 84, 8, 108, -63, 0, -104, -5, 21,
+            0, 0, 0, 0, 0, 88, 0, 0, 5, -37, 0, 0, -1, 0, 5, 26,
+            9, 0, 0, 0, 0, -34, -17, -37, -91, 70, 67, -64, 17, 0, 0, 9,
+            0, 9, 0, 42, 4, 10, 0, 18, -97, -128, -128, 1, 8, 47, -26, 84,
+            8, 108, -36, 3, -26, 84, 8, 108, -63, 0, -77, -128, -128, 1, 14, -71,
+            -107, 84, -113, 105, -107, 84, -113, 105, -63, 0, 2, -97, -128, -128, 1, 16,
+            49, 39, 86, -26, 107, 99, 5, 39, 86, -26, 107, -63, 0, 64, -94, 1,
+            -73, 36, 62, 0, 0, 9, 8, 2, 67, 0, 9, 8, 22, 90, 0, 20,
+            -47, 1, 0, 0, -48, 1, 0, 0, 0, 1, 2, 17, -122, 20, 121, 86,
+            -71, 108, -63, 0, -67, 0, -86, 0, 0, 0, 0, 0, -7, 0, -1, 0,
+            0, 107, 0, 0, 0, 0, 18, -97, -128, -128, 1, 7, 41, -65, 106, -98,
+            74, -60, 5, -65, 106, -98, 74, 65, 1, -97, -128, -128, 1, 8, 48, 42,
+            86, -25, 108, 7, -5, 42, 86, -25, 108, -63, 0, -65, -128, -128, 1, 12,
+            49, 90, 111, -125, 112, -120, -5, 90, 111, -125, 112, -63, 0, 2, -101, -128,
+            -128, 1, 16, -64, 121, 86, -71, 108, 0, 121, 86, -71, 108, -63, 0, 64,
+            -78, 0, 0, 20, -33, 1, 0, 0, -34, 1, 0, 0, 0, 1, 2, 17,
+            -122, 51, 125, 87, 119, 105, -63, 0, -19, -1, 55, -5, 0, 0, 0, 0,
+            90, 0, 0, 125, 18, 0, 0, 0, 0, 1, 26, 61, 0, 0, 0, 2,
+            -8, -4, 0, 0, 0, 0, 18, -98, -128, -128, 1, 8, 62, 119, 105, 18,
+            3, 125, 87, 119, 105, -63, 0, -98, -128, -128, 1, 12, 48, -63, 114, -108,
+            3, -126, 104, -63, 114, -63, 0, -109, -126, -128, 1, 16, 67, -102, 62, 43,
+            91, 1, 1, -102, 62, 43, 91, 1, 1, 0, 0, 9, 8, 2, 51, 0,
+            20, -20, 1, 0, 0, -21, 1, 0, 0, 0, 1, 2, 17, -122, 51, 120,
+            67, -123, 99, 65, 1, -110, 1, 71, 8, 0, 0, 0, 0, 89, 0, 0,
+            62, 105, 0, 0, 1, 0, 5, 2, 8, 0, 0, 0, 1, -33, -16, 0,
+            0, 0, 0, 18, -113, -128, -128, 1, 8, -69, 89, -126, 112, -17, -1, -69,
+            89, -126, 112, -63, 0, -97, -124, -128, 1, 12, 46, -127, 102, 34, 105, 0,
+            -41, 5, -127, 102, 34, 105, -63, 0, -108, -128, -128, 1, 13, 64, -22, 0,
+            52, 0, 108, 80, 1, -97, -128, -128, 1, 16, 48, 120, 67, -123, 99, 105,
+            5, 120, 67, -123, 99, 65, 1, 3, -75, 49, 75, -41, 103, 3, -71, -5,
+            85, -10, 109, 0, 0, 3, 0, -60, 90, 0, 112, 56, 1, 32, 1, 8,
+            0, 1, 1, 12, 0, 0, 3, 2, 54, 103, 0, 104, 72, 1, 32, 9,
+            8, 23, 50, 0, 20, -6, 1, 0, 0, -7, 1, 0, 0, 0, 1, 2,
+            17, -122, 51, 125, 95, 54, 113, -63, 0, -22, -1, -120, 1, 0, 0, 0,
+            0, 87, 0, 0, 28, -25, 0, 0, 0, -1, 0, 28, 4, 0, 0, 0,
+            0, -2, -1, 8, 0, 0, 0, 28, 0, 18, -73, -128, -128, 1, 1, 48,
+            -39, 104, 75, 107, 106, -39, 104, 75, 107, -63, 0, 2, -114, -128, -128, 1,
+            8, 54, 113, -24, -1, 125, 95, 54, 113, -63, 0, -106, -128, -128, 1, 12,
+            50, -40, 107, 11, -40, 103, -40, 107, -63, 0, -65, -128, -128, 1, 13, 50,
+            123, 58, -82, 103, -29, 5, 123, 58, -82, 103, -63, 0, 2, -97, -128, -128,
+            1, 16, 47, -1, 59, 41, 102, 107, -5, -1, 59, 41, 102, -63, 0, 3,
+            -74, 38, 71, 88, 97, 0, 0, 3, 0, -1, 95, -39, 112, 56, 1, -113,
+            1, 8, 0, 1, 10, 1, 98, 111, 116, 49, 51, 32, 119, 97, 115, 32,
+            98, 108, 97, 115, 116, 101, 100, 32, 98, 121, 32, 98, 111, 116, 49, 48,
+            32, 10, 0, 20, 7, 2, 0, 0, 6, 2, 0, 0, 0, 1, 2, 17,
+            -122, 55, 127, 59, -62, 108, -63, 0, 4, 0, -73, 8, 0, 0, 0, 0,
+            89, 0, 0, 56, 110, 0, 0, -1, 0, 1, 2, 10, 0, 0, 0, 1,
+            -2, -1, -15, 65, 27, 32, 0, 0, 0, 0, 18, -112, -128, -128, 1, 8,
+            47, 127, 95, -127, 112, -63, 0, 64, 11, -78, -128, -128, 1, 13, 48, 90,
+            108, 126, 58, 90, 108, -63, 0, 2, 64, 14, -74, -128, -128, 1, 16, 50,
+            -62, 108, 110, 127, 59, -62, 108, -63, 0, 2, 3, -76, -128, 85, 21, 91,
+            64, -71, 0, 0, 3, 0, -1, 95, 1, 112, 39, 1, -113, 1, 8, 0,
+            1, 9, 8, 12, 114, 0, 3, 2, 76, 46, -1, 111, 49, 1, 104, 13,
+            41, 5, 98, 111, 116, 57, 92, 109, 97, 108, 101, 47, 103, 114, 117, 110,
+            116, 0, 20, 21, 2, 0, 0, 20, 2, 0, 0, 0, 1, 2, 17, -128,
+            51, 0, 0, 89, 0, 0, 22, -20, 0, 0, 0, 0, 0, 28, 5, 0,
+            0, 0, 0, 0, 0, 8, 0, 0, 0, 1, 0, 18, -75, -128, -128, 1,
+            1, 50, -122, 109, 76, -122, 109, -125, 103, -63, 0, 2, -124, -128, -128, 1,
+            8, -19, 127, 95, -127, 112, -63, 0, -107, -128, -128, 1, 12, 47, 47, 109,
+            -83, 47, 109, -124, 104, -63, 0, -74, -128, -128, 1, 13, 47, 39, 103, 12,
+            122, 58, 39, 103, -63, 0, 2, -101, -124, -128, 1, 14, 40, -84, 60, -78,
+            84, 0, 5, -84, 60, -78, 84, 65, 1, -106, -128, -128, 1, 16, 48, 125,
+            103, 107, 123, 59, 125, 103, -63, 0, 3, -74, -85, 106, 100, 98, 3, -68,
+            15, 90, -98, 87, 0, 0, 3, 0, -1, 95, 64, 112, 47, 1, -113, 1,
+            8, 0, 1, 10, 1, 98, 111, 116, 52, 32, 119, 97, 115, 32, 98, 108,
+            97, 115, 116, 101, 100, 32, 98, 121, 32, 98, 111, 116, 56, 32, 10, 0,
+            20, 34, 2, 0, 0, 33, 2, 0, 0, 0, 1, 2, 17, 0, 16, 0,
+            0, 0, 0, 0, 18, -73, -128, -128, 1, 3, 49, 78, 34, 119, 75, -27,
+            78, 34, 119, 75, -63, 0, 2, -98, -128, -128, 1, 8, 42, -15, 113, -17,
+            -3, 125, 95, -15, 113, -63, 0, -97, -128, -128, 1, 11, 48, 101, 35, 8,
+            76, 125, 5, 101, 35, 8, 76, -63, 0, -97, -124, -128, 1, 13, 64, 27,
+            57, -78, 100, 0, -56, 5, 27, 57, -78, 100, -63, 0, -101, -124, -128, 1,
+            14, 46, -128, 58, -118, 92, 0, -5, -128, 58, -118, 92, 65, 1, -128, -128,
+            -128, 1, 16, 123, 59, 96, 107, -63, 0, 3, -78, -106, 27, -50, 86, 3,
+            -76, 102, 85, 119, 95, 64, -74, 3, -71, 57, 92, -42, 83, 64, -70, 3,
+            -67, -80, 41, -39, 82, 3, -66, 41, 58, 53, 109, -121, -50, -128, 5, -64,
+            38, 8, -95, 57, 79, 96, 125, 1, 3, 72, 84, 58, 68, 93, -90, 1,
+            44, 0, 0, 1, 14, 0, 0, 3, 2, -90, 46, -1, 95, 49, 1, 104,
+            3, 2, 86, 58, -1, 119, -38, 0, 104, 20, 48, 2, 0, 0, 47, 2,
+            0, 0, 0, 1, 2, 17, -122, 51, 91, 95, -76, 112, -63, 0, -100, 8,
+            -4, 1, 0, 0, 0, 0, 93, 0, 0, 62, -23, 0, 0, 3, 0, -1,
+            2, 9, 0, 0, 0, 5, -3, -1, 0, 0, 0, 0, 18, -97, -128, -128,
+            1, 1, 47, -115, 96, 48, 111, 93, 5, -115, 96, 48, 111, -63, 0, -97,
+            -128, -128, 1, 8, 49, 91, 95, -76, 112, -22, -5, 91, 95, -76, 112, -63,
+            0, -101, -124, -128, 1, 13, 53, -4, 59, -6, 95, 0, 3, -4, 59, -6,
+            95, -63, 0, -128, -128, -128, 1, 14, -39, 59, -15, 94, -63, 0, 0, 0,
+            20, 61, 2, 0, 0, 60, 2, 0, 0, 0, 1, 2, 17, -106, 54, 110,
+            36, 42, 70, 65, 1, 23, 0, -82, 8, 0, 0, 0, 0, 0, 93, -2,
+            0, -2, 2, 10, 0, 0, 0, 5, -10, -5, -1, 0, 0, 51, 2, -128,
+            0, 0, 55, 0, 1, 0, 18, -98, -128, -128, 1, 3, 46, -83, 69, 17,
+            -5, 109, 35, -83, 69, 65, 1, -97, -128, -128, 1, 5, 46, 42, 57, -126,
+            97, -123, -5, 42, 57, -126, 97, -63, 0, -105, -126, -128, 1, 11, 50, -90,
+            33, -65, 68, 1, 1, 39, -90, 33, -65, 68, 1, 1, -97, -128, -128, 1,
+            13, 40, 39, 56, -94, 98, -20, -4, 39, 56, -94, 98, -63, 0, -110, -128,
+            -128, 1, 16, 50, 42, 70, 110, 36, 42, 70, 65, 1, 3, -76, -50, 31,
+            62, 34, 3, -75, -51, 45, 75, 37, -121, -54, -128, 5, -71, 38, 8, 81,
+            53, 9, 97, 49, 1, -124, 107, 56, 106, 97, 49, 1, 44, 0, 0, 3,
+            1, -46, 35, -36, 69, -79, 1, 0, 1, 3, 0, 0, 1, 5, 0, 0,
+            9, 8, 23, -126, 0, 20, 75, 2, 0, 0, 74, 2, 0, 0, 0, 1,
+            2, 17, -128, 50, -5, 5, 88, -4, 0, 0, 2, 6, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 18, -112, -128, -128, 1, 1, 49, -127, 96, 127,
+            111, -63, 0, -112, -128, -128, 1, 5, 50, 54, 57, -96, 97, -63, 0, -112,
+            -128, -128, 1, 8, 46, 127, 95, -126, 112, -63, 0, -112, -128, -128, 1, 13,
+            2, 55, 56, -95, 98, -63, 0, 3, -72, 69, 84, 40, 94, 0, 0, 3,
+            2, -50, 95, 50, 112, 49, 1, 0, 1, 8, 0, 0, 13, 36, 5, 98,
+            111, 116, 52, 92, 109, 97, 108, 101, 47, 103, 114, 117, 110, 116, 0, 20,
+            88, 2, 0, 0, 87, 2, 0, 0, 0, 1, 2, 17, 0, 16, 0, 0,
+            0, 0, 0, 18, -97, -124, -128, 1, 3, 48, 5, 34, 63, 68, 2, -91,
+            2, 5, 34, 63, 68, 65, 1, -97, -118, -112, 11, 4, -1, -1, 48, 3,
+            1, -21, 27, -50, 31, -63, 0, 58, -3, -21, 27, -50, 31, -63, 0, 98,
+            32, -73, -126, -112, 11, 5, -1, 63, 4, 1, 0, 36, 0, 60, 80, 1,
+            0, 0, 36, 0, 60, 80, 1, 6, 98, 32, -103, -128, -128, 1, 7, 47,
+            -29, 36, 0, -29, 36, 106, 107, 65, 1, -97, -124, -128, 1, 11, 47, 63,
+            33, 55, 66, -2, 39, 4, 63, 33, 55, 66, -63, 0, -98, -128, -128, 1,
+            13, 40, 98, 97, 98, 5, -127, 48, 98, 97, -63, 0, -97, -128, -128, 1,
+            14, 46, -44, 36, 104, 106, 79, -3, -44, 36, 104, 106, -63, 0, -112, -128,
+            -128, 1, 16, -60, 26, 36, 11, 72, -63, 0, -105, -128, 1, 21, -59, 4,
+            54, 57, -96, 97, 95, 3, -77, -87, 50, 59, 42, -125, 2, -75, -28, 40,
+            84, 62, -49, 3, 3, -74, -119, 29, 79, 40, 0, 0, 3, 1, -83, 36,
+            -58, 106, 94, 1, 0, 1, 14, 0, 0, 9, 8, 21, 58, 0 };
+
+    public static final byte LITERAL_LENGTHS[] = {
+            5, 6, 6, 6, 7, 7, 8, 8, 7, 7, 8, 8, 8, 8, 8, 7,
+            9, 9, 8, 9, 7, 9, 8, 9, 8, 9, 8, 8, 8, 8, 9, 9,
+            7, 9, 8, 8, 8, 8, 7, 7, 8, 8, 9, 8, 8, 8, 7, 6,
+            6, 6, 6, 8, 7, 8, 8, 8, 8, 8, 8, 8, 8, 9, 9, 8,
+            6, 8, 8, 9, 9, 9, 9, 9, 9, 9, 9, 9, 8, 9, 8, 8,
+            9, 9, 8, 8, 9, 9, 9, 9, 9, 9, 9, 8, 8, 9, 9, 8,
+            9, 9, 8, 9, 9, 9, 9, 9, 8, 8, 8, 8, 8, 8, 8, 8,
+            8, 8, 9, 9, 9, 9, 10, 9, 9, 10, 10, 10, 10, 9, 8, 8,
+            9, 8, 8, 9, 9, 10, 9, 9, 10, 10, 9, 10, 10, 10, 9, 9,
+            9, 9, 10, 9, 10, 10, 9, 9, 10, 10, 10, 10, 10, 10, 9, 9,
+            9, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10,
+            10, 9, 8, 8, 8, 8, 8, 8, 9, 9, 9, 9, 8, 9, 9, 9,
+            9, 7, 10, 10, 9, 9, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10,
+            10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 11, 10, 10, 10, 10, 10,
+            10, 10, 10, 9, 10, 10, 10, 10, 10, 10, 10, 10, 10, 9, 10, 10,
+            10, 10, 9, 10, 9, 10, 10, 8, 9, 9, 8, 7, 8, 8, 8, 7,
+            4, 4, 5, 5, 6, 8, 7, 10, 10, 11, 9, 10, 11, 12, 12, 12,
+            11, 11, 14, 14, 15, 14, 13, 14, 15, 15, 15, 14, 15, 13, 15, 10 };
+
+    public static final byte DISTANCE_LENGTHS[] = {
+            0, 6, 7, 4, 4, 5, 4, 4, 3, 4, 3, 3, 2, 7 };
+}
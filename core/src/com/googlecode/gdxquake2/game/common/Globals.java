@@ -27,12 +27,12 @@ package com.googlecode.gdxquake2.game.common;
 import java.io.FileWriter;
 import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
-import java.util.Random;
 
 import com.googlecode.gdxquake2.game.client.*;
 import com.googlecode.gdxquake2.game.game.*;
 import com.googlecode.gdxquake2.game.render.DummyRenderer;
 import com.googlecode.gdxquake2.game.render.Model;
+import com.googlecode.gdxquake2.game.util.QuakeRandom;
 
 /**
  * Globals ist the collection of global variables and constants.
@@ -112,7 +112,8 @@ public class Globals {
 
 	//=============================================================================
 
-	public static byte[] net_message_buffer = new byte[Constants.MAX_MSGLEN];
+	// room for the reliable messages NetworkChannel reassembles in place
+	public static byte[] net_message_buffer = new byte[NetworkChannel.MAX_DELIVERY];
 
 	public static int time_before_game;
 	public static int time_after_game;
@@ -376,5 +377,5 @@ public class Globals {
 	public static ConsoleVariable m_filter;
 	public static int vidref_val = Constants.VIDREF_GL;
 	
-	public static Random rnd = new Random();
+	public static QuakeRandom rnd = new QuakeRandom();
 }
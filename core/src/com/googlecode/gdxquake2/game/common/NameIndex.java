@@ -0,0 +1,120 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.common;
+
+/**
+ * Case insensitive index of console variables, commands and aliases by name,
+ * an open addressing hash table with linear probing. The linked lists of
+ * cvar_t, cmd_function_t and cmdalias_t are kept for listing and archiving;
+ * this only replaces the walks along them to find a name.
+ */
+public final class NameIndex<T> {
+
+    String keys[];
+    int hashes[];
+    Object values[];
+    int mask;
+    int size;
+
+    public NameIndex() {
+        Allocate(256);
+    }
+
+    void Allocate(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /** Folds the case as String.equalsIgnoreCase does. */
+    static int Hash(String name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++)
+            h = 31 * h + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T Get(String name) {
+        int h = Hash(name);
+        for (int i = h & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && keys[i].equalsIgnoreCase(name))
+                return (T) values[i];
+        }
+        return null;
+    }
+
+    /** Adds value under name, replacing a value of the same name. */
+    public void Put(String name, T value) {
+        if (2 * (size + 1) > keys.length) {
+            String oldkeys[] = keys;
+            Object oldvalues[] = values;
+            Allocate(2 * oldkeys.length);
+            for (int i = 0; i < oldkeys.length; i++) {
+                if (oldkeys[i] != null)
+                    Insert(oldkeys[i], oldvalues[i]);
+            }
+        }
+        Insert(name, value);
+    }
+
+    void Insert(String name, Object value) {
+        int h = Hash(name);
+        int i = h & mask;
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && keys[i].equalsIgnoreCase(name)) {
+                keys[i] = name;
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = name;
+        hashes[i] = h;
+        values[i] = value;
+        size++;
+    }
+
+    public void Remove(String name) {
+        int h = Hash(name);
+        int i = h & mask;
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && keys[i].equalsIgnoreCase(name))
+                break;
+        }
+        if (keys[i] == null)
+            return;
+
+        // move the following entries of the cluster back into the gap if
+        // their home slot is not between the gap and them
+        int gap = i;
+        for (i = (i + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+            int home = hashes[i] & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                hashes[gap] = hashes[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = null;
+        values[gap] = null;
+        size--;
+    }
+}
@@ -23,10 +23,12 @@
  */
 package com.googlecode.gdxquake2.game.common;
 
+import java.io.IOException;
 import java.nio.ByteOrder;
 
 import com.googlecode.gdxquake2.game.game.ConsoleVariable;
 import com.googlecode.gdxquake2.game.sys.NET;
+import com.googlecode.gdxquake2.game.sys.QuakeSocket;
 import com.googlecode.gdxquake2.game.sys.Timer;
 import com.googlecode.gdxquake2.game.util.Lib;
 
@@ -78,12 +80,31 @@ import com.googlecode.gdxquake2.game.util.Lib;
  * as during the connection stage while waiting for the client to load, then a
  * packet only needs to be delivered if there is something in the unacknowledged
  * reliable
+ * 
+ * 
+ * Channels set up with FEATURE_FRAGMENTS, which client and server agree on at
+ * connect, send reliable messages of up to MAX_RELIABLE bytes as numbered
+ * fragments instead. Up to WINDOW fragments are in flight at a time, so
+ * several reliable messages can be on their way without waiting for acks.
+ * The two header bits then mean: 1 the packet carries fragments, and 1 the
+ * packet carries an ack block. After the qport follow
+ * 
+ * 16 ack: all fragments before this one have been received
+ * 16 mask: bit i set if fragment ack + 1 + i has been received
+ * 8 count, then count times: 16 sequence, 16 length (bit 15 set for the last
+ * fragment of a message), length bytes of data
+ * 
+ * A fragment is resent once the remote side acknowledged a later packet
+ * without having it, or after a second. The receiver hands complete messages
+ * out in order, in front of the unreliable part of the packet that completed
+ * them.
  */
 
 public class NetworkChannel {
 
- // static final Buffer send = new Buffer();
   static final byte send_buf[] = new byte[Constants.MAX_MSGLEN];
+  // reused by Transmit, which the server only calls while holding a lock
+  static final Buffer send = Buffer.wrap(send_buf).order(ByteOrder.LITTLE_ENDIAN);
   public static byte net_message_buffer[] = new byte[Constants.MAX_MSGLEN];
 
   // public static netadr_t net_from = new netadr_t();
@@ -92,10 +113,51 @@ public class NetworkChannel {
   public static ConsoleVariable showdrop;
   public static ConsoleVariable showpackets;
 
+  /** Feature bit: reliable messages are sent as fragments, see above. */
+  public static final int FEATURE_FRAGMENTS = 1;
+
+  /** Feature bit: frames may be compressed, see FrameCodec. */
+  public static final int FEATURE_COMPRESSION = 2;
+
+  /** The features this build offers when connecting and accepts as server. */
+  public static final int FEATURES = FEATURE_FRAGMENTS | FEATURE_COMPRESSION;
+
+  /** Payload of a fragment. */
+  public static final int FRAGMENT_SIZE = 1024;
+
+  /** Fragments in flight; a power of two. */
+  public static final int WINDOW = 16;
+
+  /** Largest reliable message of a channel with fragments. */
+  public static final int MAX_RELIABLE = WINDOW * FRAGMENT_SIZE;
+
+  /**
+   * Size of the buffer Process() needs to hand out complete reliable
+   * messages together with the rest of the packet.
+   */
+  public static final int MAX_DELIVERY = Constants.MAX_MSGLEN + 2 * MAX_RELIABLE;
+
+  /**
+   * Longest header of a packet from the server: the sequences and the
+   * acknowledgement of the fragments.
+   */
+  public static final int MAX_SERVER_HEADER = 12;
+
+  /** Set in the fragment length for the last fragment of a message. */
+  static final int FRAGMENT_LAST = 0x8000;
+
+  /** Packets Transmit() adds for fragments that do not fit into the first one. */
+  static final int MAX_BURST = 3;
+
+  // reassembled reliable messages handed out by Process()
+  static final byte delivery_buf[] = new byte[2 * MAX_RELIABLE];
+
   public boolean fatal_error;
 
   // was enum {NS_CLIENT, NS_SERVER}
   public int sock;
+  // sends through this socket instead of the one NET opened for sock, if set
+  public QuakeSocket socket;
   public int dropped; // between last packet and previous
   public int last_received; // for timeouts
   public int last_sent; // for retransmits
@@ -118,9 +180,29 @@ public class NetworkChannel {
   // unpcked reliable message
   public byte reliable_buf[] = new byte[Constants.MAX_MSGLEN - 16];
 
+  public int features; // FEATURE_* agreed on at connect
+
+  // outgoing fragments, indexed by sequence & (WINDOW - 1)
+  int frag_base; // oldest fragment not acknowledged
+  int frag_next; // sequence of the next fragment
+  byte frag_data[][];
+  int frag_length[]; // or'ed with FRAGMENT_LAST
+  int frag_sent[]; // outgoing_sequence of the last packet with it, 0 if not sent
+  int frag_time[]; // curtime it was last sent
+  boolean frag_acked[];
+
+  // incoming fragments, indexed the same way
+  int recv_base; // next fragment to reassemble
+  byte recv_data[][];
+  int recv_length[];
+  boolean recv_present[];
+  Buffer assembly; // the message the fragments are reassembled into
+  boolean ack_pending; // fragments arrived since the last ack was sent
+
   // ok.
   public void clear() {
     sock = dropped = last_received = last_sent = 0;
+    socket = null;
     remote_address = new NetworkAddress();
     qport = incoming_sequence = incoming_acknowledged = incoming_reliable_acknowledged = incoming_reliable_sequence = outgoing_sequence = reliable_sequence = last_reliable_sequence = 0;
     message = new Buffer();
@@ -129,14 +211,67 @@ public class NetworkChannel {
 
     reliable_length = 0;
     reliable_buf = new byte[Constants.MAX_MSGLEN - 16];
+    features = frag_base = frag_next = recv_base = 0;
+    frag_data = recv_data = null;
+    frag_length = frag_sent = frag_time = recv_length = null;
+    frag_acked = recv_present = null;
+    assembly = null;
+    ack_pending = false;
   }
 
   public boolean Netchan_CanReliable() {
+    if ((features & FEATURE_FRAGMENTS) != 0)
+      return frag_next - frag_base < WINDOW;
     if (reliable_length != 0)
       return false; // waiting for ack
     return true;
   }
 
+  /**
+   * Returns true if the channel should send a packet now even if there is
+   * nothing else to send: for reliable data, and with fragments also to
+   * resend fragments or to acknowledge received ones.
+   */
+  public boolean Netchan_Pending() {
+    if ((features & FEATURE_FRAGMENTS) == 0)
+      return message.cursize != 0;
+    if (ack_pending || (message.cursize != 0 && Netchan_CanReliable()))
+      return true;
+    for (int seq = frag_base; seq < frag_next; seq++) {
+      if (Netchan_FragmentDue(seq))
+        return true;
+    }
+    return false;
+  }
+
+  /** Returns the size of the reliable messages the remote side accepts. */
+  public int Netchan_MaxReliable() {
+    return (features & FEATURE_FRAGMENTS) != 0 ? MAX_RELIABLE : Constants.MAX_MSGLEN;
+  }
+
+  /**
+   * Returns the number of bytes of the next packet that the reliable data
+   * may need, which the unreliable part should leave room for.
+   */
+  public int Netchan_ReliableSize() {
+    // fragments only take what the unreliable part leaves
+    if ((features & FEATURE_FRAGMENTS) != 0)
+      return 0;
+    return Math.max(reliable_length, message.cursize);
+  }
+
+  /** Returns true if the fragment needs to be sent or resent. */
+  boolean Netchan_FragmentDue(int seq) {
+    int i = seq & (WINDOW - 1);
+    if (frag_acked[i])
+      return false;
+    // sent, and the remote side has not seen the packet yet
+    if (frag_sent[i] != 0 && frag_sent[i] > incoming_acknowledged
+        && Globals.curtime - frag_time[i] < 1000)
+      return false;
+    return true;
+  }
+
   public boolean Netchan_NeedReliable() {
     boolean send_reliable;
 
@@ -164,6 +299,7 @@ public class NetworkChannel {
     int sequence, sequence_ack;
     int reliable_ack, reliable_message;
     int qport;
+    int start;
 
     // get sequence numbers
     msg.reset();
@@ -216,6 +352,35 @@ public class NetworkChannel {
             + chan.dropped + " packets at " + sequence + "\n");
     }
 
+    if ((chan.features & FEATURE_FRAGMENTS) != 0) {
+      chan.incoming_sequence = sequence;
+      chan.incoming_acknowledged = sequence_ack;
+      start = msg.readcount;
+      if (reliable_ack != 0)
+        chan.Netchan_ReadAck(msg);
+      int delivered = 0;
+      if (reliable_message != 0) {
+        delivered = chan.Netchan_ReadFragments(msg);
+        if (delivered == -1)
+          return false;
+      }
+      // put the messages in front of the rest of the packet, where the
+      // payload starts without fragments (client demos rely on that)
+      int rest = msg.cursize - msg.readcount;
+      if (start + delivered + rest > msg.data.length) {
+        Com.Printf(NET.AdrToString(chan.remote_address) + ":" + delivered
+            + " bytes of reliable messages do not fit\n");
+        chan.fatal_error = true;
+        return false;
+      }
+      System.arraycopy(msg.data, msg.readcount, msg.data, start + delivered, rest);
+      System.arraycopy(delivery_buf, 0, msg.data, start, delivered);
+      msg.cursize = start + delivered + rest;
+      msg.readcount = start;
+      chan.last_received = (int) Globals.curtime;
+      return true;
+    }
+
     //
     // if the current outgoing reliable message has been acknowledged
     // clear the buffer to make way for the next
@@ -263,6 +428,11 @@ public class NetworkChannel {
       return;
     }
 
+    if ((chan.features & FEATURE_FRAGMENTS) != 0) {
+      TransmitFragments(chan, length, data);
+      return;
+    }
+
     send_reliable = chan.Netchan_NeedReliable() ? 1 : 0;
 
     if (chan.reliable_length == 0 && chan.message.cursize != 0) {
@@ -274,7 +444,9 @@ public class NetworkChannel {
     }
 
     // write the packet header
-    Buffer send = Buffer.wrap(send_buf).order(ByteOrder.LITTLE_ENDIAN);
+    Buffer send = NetworkChannel.send;
+    send.cursize = 0;
+    send.overflowed = false;
 
     w1 = (chan.outgoing_sequence & ~(1 << 31)) | (send_reliable << 31);
     w2 = (chan.incoming_sequence & ~(1 << 31))
@@ -288,7 +460,7 @@ public class NetworkChannel {
 
     // send the qport if we are a client
     if (chan.sock == Constants.NS_CLIENT)
-      send.WriteShort((int) consoleQport.value);
+      send.WriteShort(chan.qport);
 
     // copy the reliable message to the packet first
     if (send_reliable != 0) {
@@ -303,7 +475,7 @@ public class NetworkChannel {
       Com.Printf("Netchan_Transmit: dumped unreliable\n");
 
     // send the datagram
-    NET.SendPacket(chan.sock, send.cursize, send.data, chan.remote_address);
+    SendPacket(chan, send);
 
     if (showpackets.value != 0) {
       if (send_reliable != 0)
@@ -322,11 +494,200 @@ public class NetworkChannel {
     }
   }
 
+  /** Sends the packet to the remote address of the channel. */
+  static void SendPacket(NetworkChannel chan, Buffer send) {
+    if (chan.socket != null) {
+      try {
+        chan.socket.send(chan.remote_address, send.data, send.cursize);
+      } catch (IOException e) {
+        Com.Println("Netchan_Transmit ERROR: " + e + " to " + NET.AdrToString(chan.remote_address));
+      }
+    } else
+      NET.SendPacket(chan.sock, send.cursize, send.data, chan.remote_address);
+  }
+
+  /**
+   * Transmit() for channels with fragments. The first packet carries the
+   * unreliable part and the fragments that fit next to it. The server adds
+   * up to MAX_BURST packets for the fragments that did not fit; the client
+   * does not, since it numbers its user commands by packet sequence.
+   */
+  static void TransmitFragments(NetworkChannel chan, int length, byte data[]) {
+    Buffer send = NetworkChannel.send;
+    int seq = chan.frag_base;
+
+    chan.Netchan_Seal();
+
+    for (int packet = 0; packet <= MAX_BURST; packet++) {
+      send.cursize = 0;
+      send.overflowed = false;
+      send.putInt(chan.outgoing_sequence & ~(1 << 31));
+      send.putInt((chan.incoming_sequence & ~(1 << 31)) | (1 << 31));
+      if (chan.sock == Constants.NS_CLIENT)
+        send.WriteShort(chan.qport);
+
+      // acknowledge the received fragments
+      int mask = 0;
+      for (int i = 0; i < WINDOW - 1; i++) {
+        if (chan.recv_present[(chan.recv_base + 1 + i) & (WINDOW - 1)])
+          mask |= 1 << i;
+      }
+      send.WriteShort(chan.recv_base);
+      send.WriteShort(mask);
+      chan.ack_pending = false;
+
+      // then as many due fragments as fit
+      int count_index = send.cursize;
+      int count = 0;
+      int room = send.maxsize - (packet == 0 ? length : 0);
+      Buffers.writeByte(send, 0);
+      for (; seq < chan.frag_next; seq++) {
+        if (!chan.Netchan_FragmentDue(seq))
+          continue;
+        int i = seq & (WINDOW - 1);
+        int len = chan.frag_length[i] & ~FRAGMENT_LAST;
+        if (send.cursize + 4 + len > room)
+          break;
+        send.WriteShort(seq);
+        send.WriteShort(chan.frag_length[i]);
+        Buffers.Write(send, chan.frag_data[i], len);
+        chan.frag_sent[i] = chan.outgoing_sequence;
+        chan.frag_time[i] = Globals.curtime;
+        count++;
+      }
+      if (count == 0)
+        send.cursize--;
+      else {
+        send.data[count_index] = (byte) count;
+        send.data[3] |= (byte) 0x80; // the reliable bit of the sequence
+      }
+
+      chan.outgoing_sequence++;
+      chan.last_sent = (int) Globals.curtime;
+
+      if (packet == 0) {
+        if (send.maxsize - send.cursize >= length)
+          Buffers.Write(send, data, length);
+        else
+          Com.Printf("Netchan_Transmit: dumped unreliable\n");
+      }
+
+      SendPacket(chan, send);
+
+      if (showpackets.value != 0)
+        Com.Printf("send " + send.cursize + " : s=" + (chan.outgoing_sequence - 1)
+            + " fragments=" + count + " ack=" + chan.incoming_sequence
+            + " fack=" + chan.recv_base + "\n");
+
+      if (chan.sock == Constants.NS_CLIENT)
+        break;
+      while (seq < chan.frag_next && !chan.Netchan_FragmentDue(seq))
+        seq++;
+      if (seq == chan.frag_next)
+        break;
+    }
+  }
+
+  /**
+   * Splits the reliable message into fragments once the window has room for
+   * all of them.
+   */
+  void Netchan_Seal() {
+    int len = message.cursize;
+    if (len == 0 || frag_next - frag_base + (len + FRAGMENT_SIZE - 1) / FRAGMENT_SIZE > WINDOW)
+      return;
+    for (int offset = 0; offset < len; offset += FRAGMENT_SIZE) {
+      int i = frag_next & (WINDOW - 1);
+      int n = Math.min(FRAGMENT_SIZE, len - offset);
+      System.arraycopy(message_buf, offset, frag_data[i], 0, n);
+      frag_length[i] = offset + n == len ? n | FRAGMENT_LAST : n;
+      frag_sent[i] = 0;
+      frag_acked[i] = false;
+      frag_next++;
+    }
+    message.cursize = 0;
+  }
+
+  /** Reads an ack block and releases the acknowledged fragments. */
+  void Netchan_ReadAck(Buffer msg) {
+    // 16 bit sequences, relative to the window
+    int ack = frag_base + (short) (msg.getShort() - frag_base);
+    int mask = msg.getShort() & 0xffff;
+    if (ack < frag_base || ack > frag_next)
+      return; // stale or bogus
+
+    for (int seq = frag_base; seq < frag_next; seq++) {
+      int d = seq - ack;
+      if (d < 0 || (d > 0 && d < WINDOW && (mask & (1 << (d - 1))) != 0))
+        frag_acked[seq & (WINDOW - 1)] = true;
+    }
+    while (frag_base < frag_next && frag_acked[frag_base & (WINDOW - 1)])
+      frag_base++;
+  }
+
+  /**
+   * Reads the fragments of a packet and reassembles what it can. The
+   * messages completed are copied to delivery_buf.
+   * 
+   * @return the number of bytes of complete messages, or -1 if the
+   *         fragments are malformed
+   */
+  int Netchan_ReadFragments(Buffer msg) {
+    int count = Buffers.readUnsignedByte(msg);
+    for (int k = 0; k < count; k++) {
+      int seq = recv_base + (short) (msg.getShort() - recv_base);
+      int length = msg.getShort() & 0xffff;
+      int len = length & ~FRAGMENT_LAST;
+      if (len > FRAGMENT_SIZE || msg.readcount + len > msg.cursize) {
+        Com.Printf(NET.AdrToString(remote_address) + ":Bad fragment " + seq + "\n");
+        return -1;
+      }
+      // anything outside of the window is a duplicate
+      if (seq >= recv_base && seq < recv_base + WINDOW) {
+        int i = seq & (WINDOW - 1);
+        if (!recv_present[i]) {
+          System.arraycopy(msg.data, msg.readcount, recv_data[i], 0, len);
+          recv_length[i] = length;
+          recv_present[i] = true;
+        }
+      }
+      msg.readcount += len;
+      ack_pending = true;
+    }
+
+    int delivered = 0;
+    while (recv_present[recv_base & (WINDOW - 1)]) {
+      int i = recv_base & (WINDOW - 1);
+      int len = recv_length[i] & ~FRAGMENT_LAST;
+      if (assembly.cursize + len > assembly.maxsize) {
+        Com.Printf(NET.AdrToString(remote_address) + ":Reliable message overflow\n");
+        return -1;
+      }
+      Buffers.Write(assembly, recv_data[i], len);
+      recv_present[i] = false;
+      recv_base++;
+      if ((recv_length[i] & FRAGMENT_LAST) != 0) {
+        System.arraycopy(assembly.data, 0, delivery_buf, delivered, assembly.cursize);
+        delivered += assembly.cursize;
+        assembly.cursize = 0;
+      }
+    }
+    return delivered;
+  }
+
   /**
    * called to open a channel to a remote system
    */
   public static void Setup(NetworkChannel chan, int sock, NetworkAddress adr,
       int qport) {
+    Setup(chan, sock, adr, qport, 0);
+  }
+
+  /**
+   * Opens a channel with the FEATURE_* bits client and server agreed on.
+   */
+  public static void Setup(NetworkChannel chan, int sock, NetworkAddress adr,
+      int qport, int features) {
     // memset (chan, 0, sizeof(*chan));
 
     chan.clear();
@@ -337,6 +698,20 @@ public class NetworkChannel {
     chan.incoming_sequence = 0;
     chan.outgoing_sequence = 1;
 
+    chan.features = features;
+    if ((features & FEATURE_FRAGMENTS) != 0) {
+      chan.message_buf = new byte[MAX_RELIABLE];
+      chan.frag_data = new byte[WINDOW][FRAGMENT_SIZE];
+      chan.frag_length = new int[WINDOW];
+      chan.frag_sent = new int[WINDOW];
+      chan.frag_time = new int[WINDOW];
+      chan.frag_acked = new boolean[WINDOW];
+      chan.recv_data = new byte[WINDOW][FRAGMENT_SIZE];
+      chan.recv_length = new int[WINDOW];
+      chan.recv_present = new boolean[WINDOW];
+      chan.assembly = Buffer.allocate(MAX_RELIABLE);
+    }
+
     chan.message = Buffer.wrap(chan.message_buf).order(ByteOrder.LITTLE_ENDIAN);
     chan.message.allowoverflow = true;
   }
@@ -101,18 +101,22 @@ public class PlayerMovements {
         }
     }
 
+    // Pmove is not reentrant, so the functions keep their vectors in fields
     static float[] planes[] = new float[SV.MAX_CLIP_PLANES][3];
+
+    static final float[] slide_dir = { 0, 0, 0 }, slide_primal_velocity = { 0, 0, 0 },
+            slide_end = { 0, 0, 0 };
     
     public static void PM_StepSlideMove_() {
         int bumpcount, numbumps;
-        float[] dir = { 0, 0, 0 };
+        float[] dir = slide_dir;
         float d;
         int numplanes;
         
-        float[] primal_velocity = { 0, 0, 0 };
+        float[] primal_velocity = slide_primal_velocity;
         int i, j;
         Trace trace;
-        float[] end = { 0, 0, 0 };
+        float[] end = slide_end;
         float time_left;
 
         numbumps = 4;
@@ -202,6 +206,10 @@ public class PlayerMovements {
         }
     }
 
+    static final float[] step_start_o = { 0, 0, 0 }, step_start_v = { 0, 0, 0 };
+    static final float[] step_down_o = { 0, 0, 0 }, step_down_v = { 0, 0, 0 };
+    static final float[] step_up = { 0, 0, 0 }, step_down = { 0, 0, 0 };
+
     /**
      * Each intersection will try to step over the obstruction instead of 
      * sliding along it.
@@ -210,12 +218,12 @@ public class PlayerMovements {
      * Does not modify any world state?
      */
     public static void PM_StepSlideMove() {
-        float[] start_o = { 0, 0, 0 }, start_v = { 0, 0, 0 };
-        float[] down_o = { 0, 0, 0 }, down_v = { 0, 0, 0 };
+        float[] start_o = step_start_o, start_v = step_start_v;
+        float[] down_o = step_down_o, down_v = step_down_v;
         Trace trace;
         float down_dist, up_dist;
         //	float [] delta;
-        float[] up = { 0, 0, 0 }, down = { 0, 0, 0 };
+        float[] up = step_up, down = step_down;
 
         Math3D.VectorCopy(pml.origin, start_o);
         Math3D.VectorCopy(pml.velocity, start_v);
@@ -354,11 +362,13 @@ public class PlayerMovements {
             pml.velocity[i] += accelspeed * wishdir[i];
     }
 
+    static final float[] currents_v = { 0, 0, 0 };
+
     /**
      * PM_AddCurrents.
      */
     public static void PM_AddCurrents(float[] wishvel) {
-        float[] v = { 0, 0, 0 };
+        float[] v = currents_v;
         float s;
 
         // account for ladders
@@ -433,14 +443,16 @@ public class PlayerMovements {
         }
     }
 
+    static final float[] water_wishvel = { 0, 0, 0 }, water_wishdir = { 0, 0, 0 };
+
     /**
      * PM_WaterMove.
      */
     public static void PM_WaterMove() {
         int i;
-        float[] wishvel = { 0, 0, 0 };
+        float[] wishvel = water_wishvel;
         float wishspeed;
-        float[] wishdir = { 0, 0, 0 };
+        float[] wishdir = water_wishdir;
 
       
         // user intentions
@@ -470,13 +482,15 @@ public class PlayerMovements {
         PM_StepSlideMove();
     }
 
+    static final float[] air_wishvel = { 0, 0, 0 }, air_wishdir = { 0, 0, 0 };
+
     /**
      * PM_AirMove.
      */
     public static void PM_AirMove() {
-        float[] wishvel = { 0, 0, 0 };
+        float[] wishvel = air_wishvel;
         float fmove, smove;
-        float[] wishdir = { 0, 0, 0 };
+        float[] wishdir = air_wishdir;
         float wishspeed;
         float maxspeed;
 
@@ -542,11 +556,13 @@ public class PlayerMovements {
         }
     }
 
+    static final float[] categorize_point = { 0, 0, 0 };
+
     /** 
      * PM_CatagorizePosition.
      */
     public static void PM_CatagorizePosition() {
-        float[] point = { 0, 0, 0 };
+        float[] point = categorize_point;
         int cont;
         Trace trace;
         int sample1;
@@ -680,13 +696,15 @@ public class PlayerMovements {
             pml.velocity[2] = 270;
     }
 
+    static final float[] special_spot = { 0, 0, 0 }, special_flatforward = { 0, 0, 0 };
+
     /**
      * PM_CheckSpecialMovement.
      */
     public static void PM_CheckSpecialMovement() {
-        float[] spot = { 0, 0, 0 };
+        float[] spot = special_spot;
         int cont;
-        float[] flatforward = { 0, 0, 0 };
+        float[] flatforward = special_flatforward;
         Trace trace;
 
         if (pm.s.pm_time != 0)
@@ -729,6 +747,8 @@ public class PlayerMovements {
         pm.s.pm_time = -1; // was 255
     }
 
+    static final float[] fly_wishvel = { 0, 0, 0 }, fly_wishdir = { 0, 0, 0 }, fly_end = { 0, 0, 0 };
+
     /**
      * PM_FlyMove.
      */
@@ -736,11 +756,11 @@ public class PlayerMovements {
         float speed, drop, friction, control, newspeed;
         float currentspeed, addspeed, accelspeed;
         int i;
-        float[] wishvel = { 0, 0, 0 };
+        float[] wishvel = fly_wishvel;
         float fmove, smove;
-        float[] wishdir = { 0, 0, 0 };
+        float[] wishdir = fly_wishdir;
         float wishspeed;
-        float[] end = { 0, 0, 0 };
+        float[] end = fly_end;
         Trace trace;
 
         pm.viewheight = 22;
@@ -875,9 +895,11 @@ public class PlayerMovements {
         }
     }
 
+    static final float[] good_origin = { 0, 0, 0 }, good_end = { 0, 0, 0 };
+
     public static boolean PM_GoodPosition() {
         Trace trace;
-        float[] origin = { 0, 0, 0 }, end = { 0, 0, 0 };
+        float[] origin = good_origin, end = good_end;
         int i;
 
         if (pm.s.pm_type == Constants.PM_SPECTATOR)
@@ -895,10 +917,13 @@ public class PlayerMovements {
      * precision of the network channel and in a valid position.
      */
 
+    static final int snap_sign[] = { 0, 0, 0 };
+    static final short snap_base[] = { 0, 0, 0 };
+
     public static void PM_SnapPosition() {
-        int sign[] = { 0, 0, 0 };
+        int sign[] = snap_sign;
         int i, j, bits;
-        short base[] = { 0, 0, 0 };
+        short base[] = snap_base;
 
         // snap velocity to eigths
         for (i = 0; i < 3; i++)
@@ -932,12 +957,14 @@ public class PlayerMovements {
         // Com.DPrintf("using previous_origin\n");
     }
 
+    static final short initial_base[] = { 0, 0, 0 };
+
     /** 
      * Snaps the origin of the player move to 0.125 grid.
      */
     public static void PM_InitialSnapPosition() {
         int x, y, z;
-        short base[] = { 0, 0, 0 };
+        short base[] = initial_base;
 
         Math3D.VectorCopy(pm.s.origin, base);
 
@@ -991,6 +1018,8 @@ public class PlayerMovements {
         Math3D.AngleVectors(pm.viewangles, pml.forward, pml.right, pml.up);
     }
 
+    static final float[] pmove_angles = { 0, 0, 0 };
+
     /**
      * Can be called by either the server or the client.
      */
@@ -1090,7 +1119,7 @@ public class PlayerMovements {
             if (pm.waterlevel >= 2)
                 PM_WaterMove();
             else {
-                float[] angles = { 0, 0, 0 };
+                float[] angles = pmove_angles;
 
                 Math3D.VectorCopy(pm.viewangles, angles);
                 
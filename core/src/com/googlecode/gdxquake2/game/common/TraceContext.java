@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 1997-2001 Id Software, Inc.
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ * 
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *  
+ */
+/* Modifications
+   Copyright 2003-2004 Bytonic Software
+   Copyright 2010 Google Inc.
+*/
+package com.googlecode.gdxquake2.game.common;
+
+import com.googlecode.gdxquake2.game.game.Plane;
+import com.googlecode.gdxquake2.game.game.Trace;
+
+/**
+ * Scratch state of the collision queries in CM. The map data is only read
+ * while tracing, so queries using different contexts can run at the same
+ * time, e.g. on different threads. A single context must not be used by
+ * more than one thread at a time.
+ */
+public final class TraceContext {
+
+    // box tracing
+    final float[] start = { 0, 0, 0 }, end = { 0, 0, 0 };
+
+    final float[] mins = { 0, 0, 0 }, maxs = { 0, 0, 0 };
+
+    final float[] extents = { 0, 0, 0 };
+
+    Trace trace;
+
+    int contents;
+
+    boolean ispoint; // optimized case
+
+    /** Brushes tested by the current trace have brushcheck == checkcount. */
+    int checkcount;
+
+    final int[] brushcheck = new int[Constants.MAX_MAP_BRUSHES];
+
+    // CM_BoxLeafnums_r
+    int leaf_count, leaf_maxcount;
+
+    int leaf_list[];
+
+    float leaf_mins[], leaf_maxs[];
+
+    int leaf_topnode;
+
+    // temporaries
+    final int[] leafs = new int[1024];
+
+    final float[] c1 = { 0, 0, 0 }, c2 = { 0, 0, 0 };
+
+    final float[] ofs = { 0, 0, 0 };
+
+    final float[] start_l = { 0, 0, 0 }, end_l = { 0, 0, 0 };
+
+    final float[] angles = { 0, 0, 0 }, temp = { 0, 0, 0 };
+
+    final float[] forward = { 0, 0, 0 }, right = { 0, 0, 0 }, up = { 0, 0, 0 };
+
+    /** Split points of CM_RecursiveHullCheck, one per recursion level. */
+    private float[][] vectors = new float[64][3];
+
+    private int depth;
+
+    // private copy of the box hull, see CM.HeadnodeForBox()
+    int box_serial = -1;
+
+    final Plane[] box_planes = new Plane[12];
+
+    final CM.cnode_t[] box_nodes = new CM.cnode_t[6];
+
+    final CM.cbrushside_t[] box_sides = new CM.cbrushside_t[6];
+
+    public TraceContext() {
+        for (int i = 0; i < box_planes.length; i++)
+            box_planes[i] = new Plane();
+        for (int i = 0; i < 6; i++) {
+            box_nodes[i] = new CM.cnode_t();
+            box_sides[i] = new CM.cbrushside_t();
+        }
+    }
+
+    float[] pushVector() {
+        if (depth == vectors.length) {
+            float[][] grown = new float[depth * 2][];
+            System.arraycopy(vectors, 0, grown, 0, depth);
+            for (int i = depth; i < grown.length; i++)
+                grown[i] = new float[3];
+            vectors = grown;
+        }
+        return vectors[depth++];
+    }
+
+    void popVector() {
+        depth--;
+    }
+}
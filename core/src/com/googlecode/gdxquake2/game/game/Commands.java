@@ -97,12 +97,9 @@ public final class Commands {
             }
 
             // if the alias already exists, reuse it
-            for (a = Globals.cmd_alias; a != null; a = a.next) {
-                if (s.equalsIgnoreCase(a.name)) {
-                    a.value = null;
-                    break;
-                }
-            }
+            a = alias_index.Get(s);
+            if (a != null)
+                a.value = null;
 
             if (a == null) {
                 a = new CommandAlias();
@@ -110,6 +107,7 @@ public final class Commands {
                 Globals.cmd_alias = a;
             }
             a.name = s;
+            alias_index.Put(s, a);
 
             // copy the rest of the command line
             String cmd = "";
@@ -133,6 +131,10 @@ public final class Commands {
 
     public static CommandFunction cmd_functions = null;
 
+    /** The commands and aliases by name, see NameIndex. */
+    static final NameIndex<CommandFunction> function_index = new NameIndex<CommandFunction>();
+    static final NameIndex<CommandAlias> alias_index = new NameIndex<CommandAlias>();
+
     public static int cmd_argc;
 
     public static String[] cmd_argv = new String[Constants.MAX_STRING_TOKENS];
@@ -312,13 +314,9 @@ public final class Commands {
         }
 
         // fail if the command already exists
-        for (cmd = cmd_functions; cmd != null; cmd = cmd.next) {
-            if (cmd_name.equals(cmd.name)) {
-                Com
-                        .Printf("Cmd_AddCommand: " + cmd_name
-                                + " already defined\n");
-                return;
-            }
+        if (function_index.Get(cmd_name) != null) {
+            Com.Printf("Cmd_AddCommand: " + cmd_name + " already defined\n");
+            return;
         }
 
         cmd = new CommandFunction();
@@ -327,6 +325,7 @@ public final class Commands {
         cmd.function = function;
         cmd.next = cmd_functions;
         cmd_functions = cmd;
+        function_index.Put(cmd_name, cmd);
     }
 
     /**
@@ -343,11 +342,12 @@ public final class Commands {
                 Com.Printf("Cmd_RemoveCommand: " + cmd_name + " not added\n");
                 return;
             }
-            if (0 == Lib.strcmp(cmd_name, cmd.name)) {
+            if (cmd_name.equalsIgnoreCase(cmd.name)) {
                 if (cmd == cmd_functions)
                     cmd_functions = cmd.next;
                 else
                     back.next = cmd.next;
+                function_index.Remove(cmd.name);
                 return;
             }
             back = cmd;
@@ -359,14 +359,7 @@ public final class Commands {
      * Cmd_Exists 
      */
     public static boolean Exists(String cmd_name) {
-        CommandFunction cmd;
-
-        for (cmd = cmd_functions; cmd != null; cmd = cmd.next) {
-            if (cmd.name.equals(cmd_name))
-                return true;
-        }
-
-        return false;
+        return function_index.Get(cmd_name) != null;
     }
 
     public static int Argc() {
@@ -386,8 +379,7 @@ public final class Commands {
     /**
      * Cmd_ExecuteString
      * 
-     * A complete command line has been parsed, so try to execute it 
-     * FIXME: lookupnoadd the token to speed search? 
+     * A complete command line has been parsed, so try to execute it. 
      */
     public static void ExecuteString(String text) {
 
@@ -401,29 +393,25 @@ public final class Commands {
             return; // no tokens
 
         // check functions
-        for (cmd = cmd_functions; cmd != null; cmd = cmd.next) {
-            if (cmd_argv[0].equalsIgnoreCase(cmd.name)) {
-                if (null == cmd.function) { // forward to server command
-                    Commands.ExecuteString("cmd " + text);
-                } else {
-                    cmd.function.execute();
-                }
-                return;
+        cmd = function_index.Get(cmd_argv[0]);
+        if (cmd != null) {
+            if (null == cmd.function) { // forward to server command
+                Commands.ExecuteString("cmd " + text);
+            } else {
+                cmd.function.execute();
             }
+            return;
         }
 
         // check alias
-        for (a = Globals.cmd_alias; a != null; a = a.next) {
-
-            if (cmd_argv[0].equalsIgnoreCase(a.name)) {
-
-                if (++Globals.alias_count == ALIAS_LOOP_COUNT) {
-                    Com.Printf("ALIAS_LOOP_COUNT\n");
-                    return;
-                }
-                CommandBuffer.InsertText(a.value);
+        a = alias_index.Get(cmd_argv[0]);
+        if (a != null) {
+            if (++Globals.alias_count == ALIAS_LOOP_COUNT) {
+                Com.Printf("ALIAS_LOOP_COUNT\n");
                 return;
             }
+            CommandBuffer.InsertText(a.value);
+            return;
         }
 
         // check cvars
@@ -24,7 +24,9 @@ Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
 package com.googlecode.gdxquake2.game.game;
 
 /**
- * cvar_t implements the struct cvar_t of the C version
+ * cvar_t implements the struct cvar_t of the C version. The object of a
+ * name never changes, so code keeps it and reads value or string without
+ * looking the variable up again.
  */
 public final class ConsoleVariable
 {
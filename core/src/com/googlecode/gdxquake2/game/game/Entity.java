@@ -47,6 +47,7 @@ public class Entity {
     /** Used during level loading. */
     public void cleararealinks() {
         area = new ListNode(this);
+        grid = new ListNode(this);
     }
 
     /** Integrated entity state. */
@@ -62,6 +63,15 @@ public class Entity {
      */
     public ListNode area = new ListNode(this);
 
+    /** linked to a cell of the server's entity grid. */
+    public ListNode grid = new ListNode(this);
+
+    /**
+     * Area node, list and link sequence of the area link, in the order the
+     * area node tree is walked; set by SV_LinkEdict for SV_AreaEdicts.
+     */
+    public long area_order;
+
     /** if -1, use headnode instead. */
     public int num_clusters;
 
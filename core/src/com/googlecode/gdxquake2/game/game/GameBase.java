@@ -123,6 +123,12 @@ public class GameBase {
 
     public static ConsoleVariable sv_maplist = new ConsoleVariable();
 
+    public static ConsoleVariable g_unlag = new ConsoleVariable();
+
+    public static ConsoleVariable g_maxunlag = new ConsoleVariable();
+
+    public static ConsoleVariable g_savedelta = new ConsoleVariable();
+
     public final static float STOP_EPSILON = 0.1f;
 
     /**
@@ -158,78 +164,133 @@ public class GameBase {
      * Searches all active entities for the next one that holds the matching
      * string at fieldofs (use the FOFS() macro) in the structure.
      * 
-     * Searches beginning at the edict after from, or the beginning if null null
-     * will be returned if the end of the list is reached.
-     * 
+     * Searches beginning at the edict after from, or the beginning if from is
+     * -1. Returns the index of the edict or -1 if the end of the list is
+     * reached.
      */
-
-    public static EntityIterator G_Find(EntityIterator from, EntityFilter eff,
-            String s) {
-
-        if (from == null)
-            from = new EntityIterator(0);
-        else
-            from.i++;
-
-        for (; from.i < num_edicts; from.i++) {
-            from.o = g_edicts[from.i];
-            if (from.o.classname == null) {
-                Com.Printf("edict with classname = null" + from.o.index);
+    public static int G_Find(int from, EntityFilter eff, String s) {
+        for (int i = from + 1; i < num_edicts; i++) {
+            Entity e = g_edicts[i];
+            if (e.classname == null) {
+                Com.Printf("edict with classname = null" + e.index);
             }
 
-            if (!from.o.inuse)
+            if (!e.inuse)
                 continue;
 
-            if (eff.matches(from.o, s))
-                return from;
+            if (eff.matches(e, s))
+                return i;
         }
 
-        return null;
+        return -1;
     }
 
     // comfort version (rst)
-    public static Entity G_FindEdict(EntityIterator from, EntityFilter eff,
-            String s) {
-        EntityIterator ei = G_Find(from, eff, s);
-        if (ei == null)
-            return null;
-        else
-            return ei.o;
+    public static Entity G_FindEdict(int from, EntityFilter eff, String s) {
+        int i = G_Find(from, eff, s);
+        return i == -1 ? null : g_edicts[i];
     }
 
     /**
-     * Returns entities that have origins within a spherical area.
+     * Returns the index of the next entity after from (-1 to start) that has
+     * its origin within a spherical area, or -1.
+     * <p>
+     * The candidates are taken from the server's entity grid and kept for the
+     * following calls with the same org and rad. A nested search replaces
+     * them, in which case the next call queries the grid again; either way
+     * each candidate is checked again when it is returned. A call that goes
+     * on from the entity the previous one returned resumes at radius_next,
+     * so iterating over k candidates takes O(k).
      */
-    public static EntityIterator findradius(EntityIterator from, float[] org,
-            float rad) {
-        float[] eorg = { 0, 0, 0 };
-        int j;
-
-        if (from == null)
-            from = new EntityIterator(0);
-        else
-            from.i++;
-
-        for (; from.i < num_edicts; from.i++) {
-            from.o = g_edicts[from.i];
-            if (!from.o.inuse)
+    public static int findradius(int from, float[] org, float rad) {
+        if (World.sv_grid == null)
+            return findradius_scan(from, org, rad);
+
+        if (from == -1 || radius_count == -1 || rad != radius_rad
+                || org[0] != radius_org[0] || org[1] != radius_org[1]
+                || org[2] != radius_org[2]) {
+            radius_count = World.SV_RadiusEdicts(org, rad, radius_list,
+                    Constants.MAX_EDICTS);
+            radius_rad = rad;
+            radius_next = 0;
+            Math3D.VectorCopy(org, radius_org);
+        }
+
+        int i = radius_next;
+        if (i == 0 ? from != -1 : radius_list[i - 1].index != from)
+            i = radius_first(from);
+
+        for (; i < radius_count; i++) {
+            Entity e = radius_list[i];
+            if (g_edicts[e.index] != e || !e.inuse)
+                continue; // freed while iterating
+
+            if (e.solid == Constants.SOLID_NOT)
                 continue;
 
-            if (from.o.solid == Constants.SOLID_NOT)
+            if (outside(e, org, rad))
                 continue;
+            radius_next = i + 1;
+            return e.index;
+        }
 
-            for (j = 0; j < 3; j++)
-                eorg[j] = org[j]
-                        - (from.o.s.origin[j] + (from.o.mins[j] + from.o.maxs[j]) * 0.5f);
+        radius_next = radius_count;
+        return -1;
+    }
 
-            if (Math3D.VectorLength(eorg) > rad)
+    /** The first position in radius_list, ordered by index, after from. */
+    static int radius_first(int from) {
+        int lo = 0, hi = radius_count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (radius_list[mid].index <= from)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /** The linear scan over g_edicts, used when no map is loaded. */
+    static int findradius_scan(int from, float[] org, float rad) {
+        for (int i = from + 1; i < num_edicts; i++) {
+            Entity e = g_edicts[i];
+            if (!e.inuse)
+                continue;
+
+            if (e.solid == Constants.SOLID_NOT)
+                continue;
+
+            if (outside(e, org, rad))
                 continue;
-            return from;
+            return i;
         }
 
-        return null;
+        return -1;
     }
 
+    static boolean outside(Entity e, float[] org, float rad) {
+        for (int j = 0; j < 3; j++)
+            radius_eorg[j] = org[j]
+                    - (e.s.origin[j] + (e.mins[j] + e.maxs[j]) * 0.5f);
+
+        return Math3D.VectorLength(radius_eorg) > rad;
+    }
+
+    /** Candidates of the last findradius() query. */
+    static Entity radius_list[] = new Entity[Constants.MAX_EDICTS];
+
+    static int radius_count = -1;
+
+    /** Position in radius_list after the entity findradius() returned last. */
+    static int radius_next;
+
+    static float radius_org[] = { 0, 0, 0 };
+
+    static float radius_rad;
+
+    static float radius_eorg[] = { 0, 0, 0 };
+
     /**
      * Searches all active entities for the next one that holds the matching
      * string at fieldofs (use the FOFS() macro) in the structure.
@@ -240,19 +301,21 @@ public class GameBase {
 
     public static int MAXCHOICES = 8;
 
+    static Entity pick_choice[] = new Entity[MAXCHOICES];
+
     public static Entity G_PickTarget(String targetname) {
         int num_choices = 0;
-        Entity choice[] = new Entity[MAXCHOICES];
+        Entity choice[] = pick_choice;
 
         if (targetname == null) {
             ServerGame.PF_dprintf("G_PickTarget called with null targetname\n");
             return null;
         }
 
-        EntityIterator es = null;
+        int es = -1;
 
-        while ((es = G_Find(es, findByTarget, targetname)) != null) {
-            choice[num_choices++] = es.o;
+        while ((es = G_Find(es, findByTarget, targetname)) != -1) {
+            choice[num_choices++] = g_edicts[es];
             if (num_choices == MAXCHOICES)
                 break;
         }
@@ -483,15 +546,13 @@ public class GameBase {
         if (level.nextmap.length() > 0) // go to a specific map
             PlayerHud.BeginIntermission(CreateTargetChangeLevel(level.nextmap));
         else { // search for a changelevel
-            EntityIterator edit = null;
-            edit = G_Find(edit, findByClass, "target_changelevel");
-            if (edit == null) { // the map designer didn't include a
+            ent = G_FindEdict(-1, findByClass, "target_changelevel");
+            if (ent == null) { // the map designer didn't include a
                                 // changelevel,
                 // so create a fake ent that goes back to the same level
                 PlayerHud.BeginIntermission(CreateTargetChangeLevel(level.mapname));
                 return;
             }
-            ent = edit.o;
             PlayerHud.BeginIntermission(ent);
         }
     }
@@ -626,12 +687,17 @@ public class GameBase {
                 }
             }
 
+            String classname = ent.classname;
+            long start = FrameProfiler.start();
+
             if (i > 0 && i <= maxclients.value) {
                 PlayerClient.ClientBeginServerFrame(ent);
+                FrameProfiler.entity(classname, start);
                 continue;
             }
 
             G_RunEntity(ent);
+            FrameProfiler.entity(classname, start);
         }
 
         // see if it is time to end a deathmatch
@@ -641,7 +707,12 @@ public class GameBase {
         CheckNeedPass();
 
         // build the playerstate_t structures for all players
+        long start = FrameProfiler.start();
         ClientEndServerFrames();
+        FrameProfiler.phase(FrameProfiler.CLIENT_END_FRAMES, start);
+
+        // where the clients will see the entities, for hitscan weapons
+        LagCompensation.Record();
     }
 
     public static PlayerMove.PointContentsAdapter pointcontents = new PlayerMove.PointContentsAdapter() {
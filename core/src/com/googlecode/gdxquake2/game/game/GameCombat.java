@@ -354,14 +354,14 @@ public class GameCombat {
     static void T_RadiusDamage(Entity inflictor, Entity attacker,
             float damage, Entity ignore, float radius, int mod) {
         float points;
-        EntityIterator edictit = null;
+        int edictit = -1;
     
         float[] v = { 0, 0, 0 };
         float[] dir = { 0, 0, 0 };
     
         while ((edictit = GameBase.findradius(edictit, inflictor.s.origin,
-                radius)) != null) {
-            Entity ent = edictit.o;
+                radius)) != -1) {
+            Entity ent = GameBase.g_edicts[edictit];
             if (ent == ignore)
                 continue;
             if (ent.takedamage == 0)
@@ -356,11 +356,11 @@ public class GameFunc {
         if (self.target == null)
             return;
 
-        EntityIterator edit = null;
+        int edit = -1;
 
         while ((edit = GameBase
-                .G_Find(edit, GameBase.findByTarget, self.target)) != null) {
-            t = edit.o;
+                .G_Find(edit, GameBase.findByTarget, self.target)) != -1) {
+            t = GameBase.g_edicts[edit];
             if (Lib.Q_stricmp(t.classname, "func_areaportal") == 0) {
                 CM.CM_SetAreaPortalState(t.style, open);
             }
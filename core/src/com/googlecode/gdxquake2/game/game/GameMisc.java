@@ -1621,11 +1621,10 @@ public class GameMisc {
             self.touch = misc_viper_bomb_touch;
             self.activator = activator;
 
-            EntityIterator es = null;
-
-            es = GameBase.G_Find(es, GameBase.findByClass, "misc_viper");
+            Entity es = GameBase.G_FindEdict(-1, GameBase.findByClass,
+                    "misc_viper");
             if (es != null)
-                viper = es.o;
+                viper = es;
 
             Math3D.VectorScale(viper.moveinfo.dir, viper.moveinfo.speed,
                     self.velocity);
@@ -1728,11 +1727,10 @@ public class GameMisc {
         public boolean think(Entity self) {
             if (null == self.enemy) {
 
-                EntityIterator es = null;
-
-                es = GameBase.G_Find(es, GameBase.findByTarget, self.target);
+                Entity es = GameBase.G_FindEdict(-1, GameBase.findByTarget,
+                        self.target);
                 if (es != null)
-                    self.enemy = es.o;
+                    self.enemy = es;
                 if (self.enemy == null)
                     return true;
             }
@@ -1816,8 +1814,7 @@ public class GameMisc {
             if (other.client == null)
                 return;
 
-            EntityIterator es = null;
-            dest = GameBase.G_Find(null, GameBase.findByTarget, self.target).o;
+            dest = GameBase.G_FindEdict(-1, GameBase.findByTarget, self.target);
 
             if (dest == null) {
                 ServerGame.PF_dprintf("Couldn't find destination\n");
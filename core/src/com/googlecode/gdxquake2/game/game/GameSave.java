@@ -124,6 +124,13 @@ public class GameSave {
         // dm map list
         GameBase.sv_maplist = ConsoleVariables.Get("sv_maplist", "", 0);
 
+        // level files as deltas, see LevelSnapshots
+        GameBase.g_savedelta = ConsoleVariables.Get("g_savedelta", "1", 0);
+
+        // lag compensation of hitscan weapons, see LagCompensation
+        GameBase.g_unlag = ConsoleVariables.Get("g_unlag", "1", 0);
+        GameBase.g_maxunlag = ConsoleVariables.Get("g_maxunlag", "500", 0);
+
         // items
         GameItems.InitItems();
 
@@ -173,7 +180,7 @@ public class GameSave {
             for (int i = 0; i < GameBase.game.maxclients; i++)
                 GameBase.game.clients[i].write(f);
 
-            Lib.fclose(f);
+            f.close();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -205,19 +212,23 @@ public class GameSave {
 
     /**
      * WriteLevel
+     * 
+     * Serialises the level into memory and lets LevelSnapshots write it,
+     * possibly as a delta to the last save of the level.
      */
     public static void WriteLevel(String filename) {
         try {
             int i;
             Entity ent;
             QuakeFile f;
+            LevelSnapshots.Image image = new LevelSnapshots.Image();
 
             f = new QuakeFile(filename, "rw");
-            if (f == null)
-              Com.Error(Constants.ERR_FATAL, "Couldn't open for writing: " + filename);
 
             // write out level_locals_t
+            image.levelStart = f.position();
             GameBase.level.write(f);
+            image.levelEnd = f.position();
 
             // write out all the entities
             for (i = 0; i < GameBase.num_edicts; i++) {
@@ -225,13 +236,17 @@ public class GameSave {
                 if (!ent.inuse)
                     continue;
                 f.writeInt(i);
+                image.start[i] = f.position();
                 ent.write(f);
+                image.end[i] = f.position();
             }
+            image.num_edicts = GameBase.num_edicts;
 
             i = -1;
             f.writeInt(-1);
 
-            f.close();
+            image.data = f.data();
+            LevelSnapshots.Write(filename, image);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -254,10 +269,7 @@ public class GameSave {
         try {
             Entity ent;
 
-            QuakeFile f = new QuakeFile(filename, "r");
-
-            if (f == null)
-              Com.Error(Constants.ERR_FATAL, "Couldn't read level file " + filename);
+            QuakeFile f = LevelSnapshots.Read(filename);
 
             // wipe all the entities
             CreateEdicts();
@@ -282,7 +294,7 @@ public class GameSave {
                 World.SV_LinkEdict(ent);
             }
 
-            Lib.fclose(f);
+            f.close();
 
             // mark all clients as unconnected
             for (int i = 0; i < GameBase.maxclients.value; i++) {
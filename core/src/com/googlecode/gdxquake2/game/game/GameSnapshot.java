@@ -0,0 +1,112 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.game;
+
+import java.io.IOException;
+
+import com.googlecode.gdxquake2.game.common.CM;
+import com.googlecode.gdxquake2.game.common.Com;
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.server.DeterministicMode;
+import com.googlecode.gdxquake2.game.server.World;
+import com.googlecode.gdxquake2.game.util.QuakeFile;
+
+/**
+ * A copy of the game state in memory, for rollback and replay tests: Save()
+ * forks the running game, Restore() puts it back as it was, as often as
+ * needed. It holds game, the clients, level, every edict below num_edicts,
+ * freed ones included since G_Spawn looks at them, the area portals, the
+ * area node and grid lists of the world in their order, the state of the
+ * random number generators and the lag compensation history, so that a
+ * restored game runs the same frames as the original did.
+ * <p>
+ * The edicts and clients are written with the write() and read() of the
+ * savegames into a buffer that is kept between saves, and read back into the
+ * existing objects; the world lists are rebuilt from the entity numbers
+ * without relinking. Neither touches the file system.
+ * <p>
+ * The server side (client_t, sv) is not part of it.
+ */
+public final class GameSnapshot {
+
+    final QuakeFile f = new QuakeFile("game snapshot", 512 * 1024);
+
+    boolean saved;
+
+    /** The number of bytes of the last Save(). */
+    public int size() {
+        return saved ? f.position() : 0;
+    }
+
+    /** Copies the game state into the snapshot, replacing the previous one. */
+    public void Save() {
+        f.seek(0);
+        try {
+            f.writeInt(GameBase.num_edicts);
+            GameBase.game.write(f);
+            for (int i = 0; i < GameBase.game.maxclients; i++)
+                GameBase.game.clients[i].write(f);
+            GameBase.level.write(f);
+            for (int i = 0; i < GameBase.num_edicts; i++)
+                GameBase.g_edicts[i].write(f);
+            CM.CM_WritePortalState(f);
+            World.SV_WriteLinks(f);
+            DeterministicMode.WriteState(f);
+            LagCompensation.Write(f);
+            saved = true;
+        } catch (IOException e) {
+            // only a full heap gets here
+            saved = false;
+            Com.Error(Constants.ERR_DROP, "GameSnapshot: " + e);
+        }
+    }
+
+    /**
+     * Puts the game back into the state of the last Save(). It must not be
+     * called during G_RunFrame.
+     */
+    public void Restore() {
+        if (!saved)
+            Com.Error(Constants.ERR_DROP, "GameSnapshot: nothing saved");
+        int end = f.position();
+        f.seek(0);
+        try {
+            int num_edicts = f.readInt();
+            // the edicts above were never used at the time of the save
+            for (int i = num_edicts; i < GameBase.num_edicts; i++)
+                GameUtil.G_ClearEdict(GameBase.g_edicts[i]);
+            GameBase.num_edicts = num_edicts;
+
+            GameBase.game.load(f);
+            for (int i = 0; i < GameBase.game.maxclients; i++)
+                GameBase.game.clients[i].read(f);
+            GameBase.level.read(f);
+            for (int i = 0; i < num_edicts; i++)
+                GameBase.g_edicts[i].read(f);
+            CM.CM_ReadPortalState(f);
+            World.SV_ReadLinks(f);
+            DeterministicMode.ReadState(f);
+            LagCompensation.Read(f);
+        } catch (IOException e) {
+            Com.Error(Constants.ERR_DROP, "GameSnapshot: " + e);
+        }
+        if (f.position() != end)
+            Com.Error(Constants.ERR_DROP, "GameSnapshot: read " + f.position()
+                    + " of " + end + " bytes");
+    }
+}
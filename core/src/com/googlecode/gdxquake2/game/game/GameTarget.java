@@ -695,13 +695,13 @@ public class GameTarget {
 
             if (null == self.enemy) {
                 if (self.target != null) {
-                    EntityIterator edit = GameBase.G_Find(null, GameBase.findByTarget,
+                    Entity edit = GameBase.G_FindEdict(-1, GameBase.findByTarget,
                             self.target);
                     if (edit == null)
                       ServerGame.PF_dprintf(self.classname + " at "
                       + Lib.vtos(self.s.origin) + ": " + self.target
                       + " is a bad target\n");
-                    self.enemy = edit.o;
+                    self.enemy = edit;
                 } else {
                     GameBase.G_SetMovedir(self.s.angles, self.movedir);
                 }
@@ -762,16 +762,16 @@ public class GameTarget {
 
                 // check all the targets
                 e = null;
-                EntityIterator es = null;
+                int es = -1;
 
                 while (true) {
                     es = GameBase
                             .G_Find(es, GameBase.findByTarget, self.target);
                     
-                    if (es == null)
+                    if (es == -1)
                         break;
                     
-                    e = es.o;
+                    e = GameBase.g_edicts[es];
 
                     if (Lib.strcmp(e.classname, "light") != 0) {
                         ServerGame.PF_dprintf(self.classname + " at "
@@ -96,12 +96,12 @@ public class GameUtil {
         }
 
         // kill killtargets
-        EntityIterator edit = null;
+        int edit = -1;
 
         if (ent.killtarget != null) {
             while ((edit = GameBase.G_Find(edit, GameBase.findByTarget,
-                    ent.killtarget)) != null) {
-                t = edit.o;
+                    ent.killtarget)) != -1) {
+                t = GameBase.g_edicts[edit];
                 G_FreeEdict(t);
                 if (!ent.inuse) {
                     ServerGame.PF_dprintf("entity was removed while using killtargets\n");
@@ -112,10 +112,10 @@ public class GameUtil {
 
         // fire targets
         if (ent.target != null) {
-            edit = null;
+            edit = -1;
             while ((edit = GameBase.G_Find(edit, GameBase.findByTarget,
-                    ent.target)) != null) {
-                t = edit.o;
+                    ent.target)) != -1) {
+                t = GameBase.g_edicts[edit];
                 // doors fire area portals in a specific way
                 if (Lib.Q_stricmp("func_areaportal", t.classname) == 0
                         && (Lib.Q_stricmp("func_door", ent.classname) == 0 || Lib
@@ -322,12 +322,16 @@ public class GameUtil {
         return false;
     }
 
+    private static final float[] visible_spot1 = { 0, 0, 0 };
+
+    private static final float[] visible_spot2 = { 0, 0, 0 };
+
     /**
      * Returns 1 if the entity is visible to self, even if not infront().
      */
     public static boolean visible(Entity self, Entity other) {
-        float[] spot1 = { 0, 0, 0 };
-        float[] spot2 = { 0, 0, 0 };
+        float[] spot1 = visible_spot1;
+        float[] spot2 = visible_spot2;
         Trace trace;
 
         Math3D.VectorCopy(self.s.origin, spot1);
@@ -252,14 +252,14 @@ public class GameWeapon {
             float[] v = { 0, 0, 0 };
             float dist;
     
-            EntityIterator edit = null;
+            int edit = -1;
     
             if (self.s.frame == 0) {
                 // the BFG effect
                 ent = null;
                 while ((edit = GameBase.findradius(edit, self.s.origin,
-                        self.dmg_radius)) != null) {
-                    ent = edit.o;
+                        self.dmg_radius)) != -1) {
+                    ent = GameBase.g_edicts[edit];
                     if (ent.takedamage == 0)
                         continue;
                     if (ent == self.owner)
@@ -360,9 +360,9 @@ public class GameWeapon {
             else
                 dmg = 10;
     
-            EntityIterator edit = null;
-            while ((edit = GameBase.findradius(edit, self.s.origin, 256)) != null) {
-                ent = edit.o;
+            int edit = -1;
+            while ((edit = GameBase.findradius(edit, self.s.origin, 256)) != -1) {
+                ent = GameBase.g_edicts[edit];
     
                 if (ent == self)
                     continue;
@@ -544,6 +544,23 @@ public class GameWeapon {
     public static void fire_lead(Entity self, float[] start, float[] aimdir,
             int damage, int kick, int te_impact, int hspread, int vspread,
             int mod) {
+        LagCompensation.Rewind(self);
+        try {
+            fire_lead_rewound(self, start, aimdir, damage, kick, te_impact,
+                    hspread, vspread, mod);
+        } finally {
+            LagCompensation.Restore();
+        }
+    }
+
+    /**
+     * fire_lead with the targets where the shooter saw them. The damage is
+     * dealt there too; LagCompensation.Restore leaves entities the game has
+     * moved since alone.
+     */
+    static void fire_lead_rewound(Entity self, float[] start, float[] aimdir,
+            int damage, int kick, int te_impact, int hspread, int vspread,
+            int mod) {
         Trace tr;
         float[] dir = { 0, 0, 0 };
         float[] forward = { 0, 0, 0 }, right = { 0, 0, 0 }, up = { 0, 0, 0 };
@@ -690,9 +707,15 @@ public class GameWeapon {
             int count, int mod) {
         int i;
     
-        for (i = 0; i < count; i++)
-            fire_lead(self, start, aimdir, damage, kick, Constants.TE_SHOTGUN,
-                    hspread, vspread, mod);
+        // one rewind for all pellets
+        LagCompensation.Rewind(self);
+        try {
+            for (i = 0; i < count; i++)
+                fire_lead(self, start, aimdir, damage, kick, Constants.TE_SHOTGUN,
+                        hspread, vspread, mod);
+        } finally {
+            LagCompensation.Restore();
+        }
     }
 
     /*
@@ -872,6 +895,16 @@ public class GameWeapon {
      */
     public static void fire_rail(Entity self, float[] start, float[] aimdir,
             int damage, int kick) {
+        LagCompensation.Rewind(self);
+        try {
+            fire_rail_rewound(self, start, aimdir, damage, kick);
+        } finally {
+            LagCompensation.Restore();
+        }
+    }
+
+    static void fire_rail_rewound(Entity self, float[] start, float[] aimdir,
+            int damage, int kick) {
         float[] from = { 0, 0, 0 };
         float[] end = { 0, 0, 0 };
         Trace tr = null;
@@ -0,0 +1,239 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.game;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.server.World;
+import com.googlecode.gdxquake2.game.util.QuakeFile;
+
+/**
+ * Lag compensation of hitscan weapons. The origin and bounds of every entity
+ * are recorded at the end of each G_RunFrame in a ring of HISTORY frames.
+ * When a client fires, the players and monsters it could hit are moved back
+ * by its ping, to where the client saw them when it pressed the trigger, for
+ * the traces of the shot, and moved back to the present afterwards.
+ * <p>
+ * A client receives a frame half a ping after it was built and its command
+ * arrives half a ping later, while it draws the entities up to one frame
+ * behind the latest frame it has; measured from the last recorded frame
+ * these roughly cancel, leaving the ping.
+ * <p>
+ * g_unlag 0 turns it off, g_maxunlag limits the rewind in milliseconds.
+ */
+public final class LagCompensation {
+
+    /** Frames recorded; a power of two. */
+    public static final int HISTORY = 16;
+
+    static final int MASK = HISTORY - 1;
+
+    /** Floats per entity and frame: origin, mins and maxs. */
+    static final int STRIDE = 9;
+
+    static final float history[] = new float[Constants.MAX_EDICTS * HISTORY * STRIDE];
+
+    /** The frame each entry was recorded in. */
+    static final int recorded[] = new int[Constants.MAX_EDICTS * HISTORY];
+
+    /** First frame of the unbroken history of each entity. */
+    static final int since[] = new int[Constants.MAX_EDICTS];
+
+    static int lastframe = -1;
+
+    // the entities moved back, their present state and their linkcount
+    // before and after the move
+    static final Entity rewound[] = new Entity[Constants.MAX_EDICTS];
+    static final float saved[] = new float[Constants.MAX_EDICTS * STRIDE];
+    static final int saved_linkcount[] = new int[Constants.MAX_EDICTS];
+    static final int rewound_linkcount[] = new int[Constants.MAX_EDICTS];
+    static int num_rewound;
+
+    /** Nesting of Rewind calls, the outermost one moves the entities. */
+    static int depth;
+
+    static final float pos[] = new float[STRIDE];
+
+    /**
+     * Records the entities at the end of a frame. A new level or a loaded
+     * game starts a new history.
+     */
+    public static void Record() {
+        int frame = GameBase.level.framenum;
+        if (frame != lastframe + 1) {
+            for (int i = 0; i < recorded.length; i++)
+                recorded[i] = -1;
+        }
+        lastframe = frame;
+
+        int slot = frame & MASK;
+        int prevslot = (frame - 1) & MASK;
+        for (int i = 1; i < GameBase.num_edicts; i++) {
+            Entity ent = GameBase.g_edicts[i];
+            if (!ent.inuse)
+                continue;
+
+            int e = i * HISTORY;
+            // teleports and respawns break the history as a free does
+            if (recorded[e + prevslot] != frame - 1
+                    || ent.s.event == Constants.EV_PLAYER_TELEPORT
+                    || ent.s.event == Constants.EV_OTHER_TELEPORT)
+                since[i] = frame;
+            recorded[e + slot] = frame;
+
+            int o = (e + slot) * STRIDE;
+            float h[] = history;
+            h[o] = ent.s.origin[0];
+            h[o + 1] = ent.s.origin[1];
+            h[o + 2] = ent.s.origin[2];
+            h[o + 3] = ent.mins[0];
+            h[o + 4] = ent.mins[1];
+            h[o + 5] = ent.mins[2];
+            h[o + 6] = ent.maxs[0];
+            h[o + 7] = ent.maxs[1];
+            h[o + 8] = ent.maxs[2];
+        }
+    }
+
+    /**
+     * Moves the players and monsters back to where the shooter saw them. Each
+     * call must be followed by a Restore; nested calls do nothing, so that
+     * the pellets of a shotgun share one rewind.
+     */
+    public static void Rewind(Entity shooter) {
+        if (depth++ > 0)
+            return;
+        if (GameBase.g_unlag.value == 0 || shooter.client == null || lastframe < 0)
+            return;
+        int msec = Math.min(shooter.client.ping, (int) GameBase.g_maxunlag.value);
+        if (msec <= 0)
+            return;
+
+        float target = lastframe - msec / (Constants.FRAMETIME * 1000);
+        int a = (int) Math.floor(target);
+        float frac = target - a;
+        if (lastframe - a >= HISTORY) {
+            a = lastframe - HISTORY + 1;
+            frac = 0;
+        }
+        int b = Math.min(a + 1, lastframe);
+
+        for (int i = 1; i < GameBase.num_edicts; i++) {
+            Entity ent = GameBase.g_edicts[i];
+            if (!ent.inuse || ent == shooter || ent.solid != Constants.SOLID_BBOX
+                    || ent.takedamage == 0
+                    || (ent.client == null && (ent.svflags & Constants.SVF_MONSTER) == 0)
+                    || since[i] > a)
+                continue;
+
+            int pa = (i * HISTORY + (a & MASK)) * STRIDE;
+            int pb = (i * HISTORY + (b & MASK)) * STRIDE;
+            for (int j = 0; j < 3; j++)
+                pos[j] = history[pa + j] + frac * (history[pb + j] - history[pa + j]);
+            // the bounds change with crouching, they are not interpolated
+            int bounds = frac < 0.5f ? pa : pb;
+            for (int j = 3; j < STRIDE; j++)
+                pos[j] = history[bounds + j];
+
+            if (Unchanged(ent))
+                continue;
+
+            int s = i * STRIDE;
+            for (int j = 0; j < 3; j++) {
+                saved[s + j] = ent.s.origin[j];
+                saved[s + 3 + j] = ent.mins[j];
+                saved[s + 6 + j] = ent.maxs[j];
+                ent.s.origin[j] = pos[j];
+                ent.mins[j] = pos[3 + j];
+                ent.maxs[j] = pos[6 + j];
+            }
+            saved_linkcount[i] = ent.linkcount;
+            World.SV_LinkEdict(ent);
+            rewound_linkcount[i] = ent.linkcount;
+            rewound[num_rewound++] = ent;
+        }
+    }
+
+    static boolean Unchanged(Entity ent) {
+        for (int j = 0; j < 3; j++) {
+            if (pos[j] != ent.s.origin[j] || pos[3 + j] != ent.mins[j] || pos[6 + j] != ent.maxs[j])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Moves the entities of the outermost Rewind back to the present. An
+     * entity the game has freed or linked again in the meantime, for instance
+     * when it was gibbed, is left where the game put it.
+     */
+    public static void Restore() {
+        if (--depth > 0)
+            return;
+        for (int n = 0; n < num_rewound; n++) {
+            Entity ent = rewound[n];
+            rewound[n] = null;
+            int i = ent.index;
+            if (!ent.inuse || ent.linkcount != rewound_linkcount[i])
+                continue;
+            int s = i * STRIDE;
+            for (int j = 0; j < 3; j++) {
+                ent.s.origin[j] = saved[s + j];
+                ent.mins[j] = saved[s + 3 + j];
+                ent.maxs[j] = saved[s + 6 + j];
+            }
+            World.SV_LinkEdict(ent);
+            // entities standing on it must not see it as moved
+            ent.linkcount = saved_linkcount[i];
+        }
+        num_rewound = 0;
+    }
+
+    /**
+     * Writes the history of the edicts below num_edicts, for GameSnapshot,
+     * so that Record carries on after a restore instead of starting anew.
+     */
+    static void Write(QuakeFile f) throws IOException {
+        f.writeInt(lastframe);
+        for (int i = 0; i < GameBase.num_edicts; i++) {
+            f.writeInt(since[i]);
+            for (int k = i * HISTORY; k < (i + 1) * HISTORY; k++)
+                f.writeInt(recorded[k]);
+            for (int k = i * HISTORY * STRIDE; k < (i + 1) * HISTORY * STRIDE; k++)
+                f.writeFloat(history[k]);
+        }
+    }
+
+    /**
+     * Reads what Write wrote with GameBase.num_edicts as it was then. The
+     * edicts above have no history, whatever they recorded after the save.
+     */
+    static void Read(QuakeFile f) throws IOException {
+        lastframe = f.readInt();
+        for (int i = 0; i < GameBase.num_edicts; i++) {
+            since[i] = f.readInt();
+            for (int k = i * HISTORY; k < (i + 1) * HISTORY; k++)
+                recorded[k] = f.readInt();
+            for (int k = i * HISTORY * STRIDE; k < (i + 1) * HISTORY * STRIDE; k++)
+                history[k] = f.readFloat();
+        }
+        Arrays.fill(recorded, GameBase.num_edicts * HISTORY, recorded.length, -1);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.game;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.util.QuakeFile;
+
+/**
+ * Level files (.sav) as a full snapshot followed by deltas. A level that was
+ * written or read before in this session is saved again by appending only
+ * the entities whose serialised state changed and the numbers of those freed
+ * since; after MAX_DELTAS deltas, or when they have grown as large as the
+ * full snapshot, the file is compacted into a new full snapshot. g_savedelta
+ * 0 always writes full snapshots.
+ * <p>
+ * After MAGIC and VERSION the file holds segments, each
+ *
+ * <pre>
+ * int FULL or DELTA, int length of the rest, int length of the level locals,
+ * level locals, { int entity number, int length or -1 if freed, entity }, -1
+ * </pre>
+ *
+ * Reading applies the segments in order and hands GameSave.ReadLevel the
+ * level in the plain layout WriteLevel produces.
+ */
+public final class LevelSnapshots {
+
+    static final int FULL = 1;
+
+    static final int DELTA = 2;
+
+    /** Deltas appended before the file is compacted. */
+    static final int MAX_DELTAS = 16;
+
+    /**
+     * A level in the plain layout: the level locals and the entity records
+     * as offsets into data.
+     */
+    static final class Image {
+        byte data[];
+        int levelStart;
+        int levelEnd;
+        final int start[] = new int[Constants.MAX_EDICTS];
+        final int end[] = new int[Constants.MAX_EDICTS];
+        int num_edicts;
+
+        // the file it was last written to or read from
+        int fileLength;
+        int fullLength;
+        int deltas;
+
+        Image() {
+            for (int i = 0; i < start.length; i++)
+                start[i] = -1;
+        }
+
+        int Length(int i) {
+            return end[i] - start[i];
+        }
+    }
+
+    /** The last image of each level file, by file name. */
+    static final HashMap<String, Image> images = new HashMap<String, Image>();
+
+    /**
+     * Forgets all images, for when save files are copied or deleted behind
+     * our back.
+     */
+    public static void Forget() {
+        images.clear();
+    }
+
+    /**
+     * Writes the level serialised by WriteLevel, as a delta if possible.
+     */
+    static void Write(String filename, Image image) throws IOException {
+        Image previous = images.remove(filename);
+        if (previous != null
+                && (GameBase.g_savedelta.value == 0 || previous.deltas >= MAX_DELTAS
+                        || previous.fileLength - previous.fullLength >= previous.fullLength
+                        || FileLength(filename) != previous.fileLength))
+            previous = null;
+
+        ByteBuffer out = Segment(image, previous);
+        RandomAccessFile f = new RandomAccessFile(filename, "rw");
+        try {
+            if (previous != null) {
+                f.seek(previous.fileLength);
+                f.write(out.array(), 0, out.position());
+            } else {
+                f.write(out.array(), 0, out.position());
+                f.setLength(out.position());
+            }
+        } finally {
+            f.close();
+        }
+
+        if (previous != null) {
+            image.fileLength = previous.fileLength + out.position();
+            image.fullLength = previous.fullLength;
+            image.deltas = previous.deltas + 1;
+        } else {
+            image.fileLength = image.fullLength = out.position();
+            image.deltas = 0;
+        }
+        images.put(filename, image);
+    }
+
+    static int FileLength(String filename) {
+        try {
+            RandomAccessFile f = new RandomAccessFile(filename, "r");
+            try {
+                return (int) f.length();
+            } finally {
+                f.close();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A full snapshot with MAGIC and VERSION, or the delta from previous.
+     */
+    static ByteBuffer Segment(Image image, Image previous) {
+        int n = image.num_edicts;
+        if (previous != null)
+            n = Math.max(n, previous.num_edicts);
+
+        ByteBuffer out = ByteBuffer.allocate(image.data.length + 8 * n + 32);
+        if (previous == null) {
+            out.putInt(QuakeFile.MAGIC);
+            out.putInt(QuakeFile.VERSION);
+        }
+        out.putInt(previous == null ? FULL : DELTA);
+        int length = out.position();
+        out.putInt(0);
+        out.putInt(image.levelEnd - image.levelStart);
+        out.put(image.data, image.levelStart, image.levelEnd - image.levelStart);
+
+        for (int i = 0; i < n; i++) {
+            if (image.start[i] >= 0) {
+                if (previous != null && Same(image, previous, i))
+                    continue;
+                out.putInt(i);
+                out.putInt(image.Length(i));
+                out.put(image.data, image.start[i], image.Length(i));
+            } else if (previous != null && previous.start[i] >= 0) {
+                out.putInt(i);
+                out.putInt(-1);
+            }
+        }
+        out.putInt(-1);
+        out.putInt(length, out.position() - length - 4);
+        return out;
+    }
+
+    static boolean Same(Image a, Image b, int i) {
+        int len = a.Length(i);
+        if (b.start[i] < 0 || b.Length(i) != len)
+            return false;
+        byte x[] = a.data;
+        byte y[] = b.data;
+        for (int p = a.start[i], q = b.start[i], end = p + len; p < end; p++, q++) {
+            if (x[p] != y[q])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads a level file and returns the level in the plain layout.
+     */
+    static QuakeFile Read(String filename) throws IOException {
+        byte data[] = QuakeFile.ReadFile(filename);
+        ByteBuffer in = ByteBuffer.wrap(data);
+        Image image = new Image();
+        image.data = data;
+        try {
+            if (in.getInt() != QuakeFile.MAGIC)
+                throw new IOException(filename + " is not a savegame");
+            int version = in.getInt();
+            if (version != QuakeFile.VERSION)
+                throw new IOException(filename + " has version " + version + ", not " + QuakeFile.VERSION);
+
+            int segments = 0;
+            while (in.hasRemaining()) {
+                int type = in.getInt();
+                int end = in.getInt();
+                end += in.position();
+                if (type == FULL) {
+                    for (int i = 0; i < image.num_edicts; i++)
+                        image.start[i] = -1;
+                    image.fullLength = end;
+                    segments = 0;
+                } else if (type != DELTA || segments == 0) {
+                    throw new IOException(filename + " is corrupt");
+                }
+
+                int len = in.getInt();
+                image.levelStart = in.position();
+                image.levelEnd = image.levelStart + len;
+                in.position(image.levelEnd);
+                while (true) {
+                    int i = in.getInt();
+                    if (i == -1)
+                        break;
+                    if (i < 0 || i >= Constants.MAX_EDICTS)
+                        throw new IOException(filename + " is corrupt");
+                    len = in.getInt();
+                    if (len < 0) {
+                        image.start[i] = -1;
+                        continue;
+                    }
+                    image.start[i] = in.position();
+                    image.end[i] = image.start[i] + len;
+                    in.position(image.end[i]);
+                    image.num_edicts = Math.max(image.num_edicts, i + 1);
+                }
+                if (in.position() != end)
+                    throw new IOException(filename + " is corrupt");
+                segments++;
+            }
+            if (segments == 0)
+                throw new IOException(filename + " is corrupt");
+            image.deltas = segments - 1;
+        } catch (BufferUnderflowException e) {
+            throw new IOException(filename + " is truncated");
+        } catch (IllegalArgumentException e) {
+            // a position past the end
+            throw new IOException(filename + " is truncated");
+        }
+        image.fileLength = data.length;
+        images.put(filename, image);
+
+        // no longer than the file, which has the numbers and lengths of
+        // all records
+        ByteBuffer out = ByteBuffer.allocate(data.length);
+        out.putInt(QuakeFile.MAGIC);
+        out.putInt(QuakeFile.VERSION);
+        out.put(data, image.levelStart, image.levelEnd - image.levelStart);
+        for (int i = 0; i < image.num_edicts; i++) {
+            if (image.start[i] < 0)
+                continue;
+            out.putInt(i);
+            out.put(data, image.start[i], image.Length(i));
+        }
+        out.putInt(-1);
+        return new QuakeFile(filename, out.array());
+    }
+}
@@ -226,11 +226,11 @@ public class Monster {
              * sleep(10); }
              */
 
-            EntityIterator edit = null;
+            int edit = -1;
 
             while ((edit = GameBase.G_Find(edit, GameBase.findByTarget,
-                    self.target)) != null) {
-                target = edit.o;
+                    self.target)) != -1) {
+                target = GameBase.g_edicts[edit];
                 if (Lib.strcmp(target.classname, "point_combat") == 0) {
                     self.combattarget = self.target;
                     fixup = true;
@@ -250,10 +250,10 @@ public class Monster {
         if (self.combattarget != null) {
             Entity target = null;
 
-            EntityIterator edit = null;
+            int edit = -1;
             while ((edit = GameBase.G_Find(edit, GameBase.findByTarget,
-                    self.combattarget)) != null) {
-                target = edit.o;
+                    self.combattarget)) != -1) {
+                target = GameBase.g_edicts[edit];
 
                 if (Lib.strcmp(target.classname, "point_combat") != 0) {
                     ServerGame.PF_dprintf(self.classname + " at "
@@ -150,16 +150,16 @@ public class PlayerClient {
             float[] d = { 0, 0, 0 };
     
             spot = null;
-            EntityIterator es = null;
+            int es = -1;
     
             while (true) {
                 es = GameBase.G_Find(es, GameBase.findByClass,
                         "info_player_start");
     
-                if (es == null)
+                if (es == -1)
                     return true;
                 
-                spot = es.o;
+                spot = GameBase.g_edicts[es];
                 
                 if (spot.targetname == null)
                     continue;
@@ -624,11 +624,11 @@ public class PlayerClient {
         range1 = range2 = 99999;
         spot1 = spot2 = null;
 
-        EntityIterator es = null;
+        int es = -1;
 
         while ((es = GameBase.G_Find(es, GameBase.findByClass,
-                "info_player_deathmatch")) != null) {
-            spot = es.o;
+                "info_player_deathmatch")) != -1) {
+            spot = GameBase.g_edicts[es];
             count++;
             range = PlayersRangeFromSpot(spot);
             if (range < range1) {
@@ -651,15 +651,15 @@ public class PlayerClient {
         selection = Lib.rand() % count;
 
         spot = null;
-        es = null;
+        es = -1;
         do {
             es = GameBase.G_Find(es, GameBase.findByClass,
                     "info_player_deathmatch");
             
-            if (es == null) 
+            if (es == -1) 
                 break;
             
-            spot = es.o;
+            spot = GameBase.g_edicts[es];
             if (spot == spot1 || spot == spot2)
                 selection++;
         } while (selection-- > 0);
@@ -679,10 +679,10 @@ public class PlayerClient {
         bestspot = null;
         bestdistance = 0;
 
-        EntityIterator es = null;
+        int es = -1;
         while ((es = GameBase.G_Find(es, GameBase.findByClass,
-                "info_player_deathmatch")) != null) {
-            spot = es.o;
+                "info_player_deathmatch")) != -1) {
+            spot = GameBase.g_edicts[es];
             bestplayerdistance = PlayersRangeFromSpot(spot);
 
             if (bestplayerdistance > bestdistance) {
@@ -697,12 +697,8 @@ public class PlayerClient {
 
         // if there is a player just spawned on each and every start spot
         // we have no choice to turn one into a telefrag meltdown
-        EntityIterator edit = GameBase.G_Find(null, GameBase.findByClass,
+        return GameBase.G_FindEdict(-1, GameBase.findByClass,
                 "info_player_deathmatch");
-        if (edit == null)
-            return null;
-        
-        return edit.o;
     }
 
     
@@ -726,7 +722,7 @@ public class PlayerClient {
             return null;
 
         spot = null;
-        EntityIterator es = null;
+        int es = -1;
 
         // assume there are four coop spots at each spawnpoint
         while (true) {
@@ -734,10 +730,10 @@ public class PlayerClient {
             es = GameBase.G_Find(es, GameBase.findByClass,
                     "info_player_coop");
                     
-            if (es == null)
+            if (es == -1)
                 return null;
             
-            spot = es.o;
+            spot = GameBase.g_edicts[es];
                 
             if (spot == null)
                 return null; // we didn't have enough...
@@ -767,12 +763,12 @@ public class PlayerClient {
         else if (GameBase.coop.value != 0)
             spot = SelectCoopSpawnPoint(ent);
 
-        EntityIterator es = null;
+        int es = -1;
         // find a single player start spot
         if (null == spot) {
             while ((es = GameBase.G_Find(es, GameBase.findByClass,
-                    "info_player_start")) != null) {
-                spot = es.o;
+                    "info_player_start")) != -1) {
+                spot = GameBase.g_edicts[es];
 
                 if (GameBase.game.spawnpoint.length() == 0
                         && spot.targetname == null)
@@ -793,8 +789,8 @@ public class PlayerClient {
                     es = GameBase.G_Find(es, GameBase.findByClass,
                             "info_player_start");
                     
-                    if (es != null)
-                        spot = es.o;
+                    if (es != -1)
+                        spot = GameBase.g_edicts[es];
                 }
                 if (null == spot)
                 {
@@ -1392,6 +1388,9 @@ public class PlayerClient {
      * }
      */
 
+    // ClientThink is not reentered from the touch functions it calls
+    private static final PlayerMove pmove = new PlayerMove();
+
     /**
      * This will be called once for each client frame, which will usually be a
      * couple times for each server frame.
@@ -1425,7 +1424,8 @@ public class PlayerClient {
         } else {
 
             // set up for pmove
-            pm = new PlayerMove();
+            pm = pmove;
+            pm.clear();
 
             if (ent.movetype == Constants.MOVETYPE_NOCLIP)
                 client.ps.pmove.pm_type = Constants.PM_SPECTATOR;
@@ -127,26 +127,26 @@ public class PlayerHud {
         GameBase.level.exitintermission = false;
 
         // find an intermission spot
-        ent = GameBase.G_FindEdict(null, GameBase.findByClass,
+        ent = GameBase.G_FindEdict(-1, GameBase.findByClass,
                 "info_player_intermission");
         if (ent == null) { // the map creator forgot to put in an intermission
                            // point...
-            ent = GameBase.G_FindEdict(null, GameBase.findByClass,
+            ent = GameBase.G_FindEdict(-1, GameBase.findByClass,
                     "info_player_start");
             if (ent == null)
-                ent = GameBase.G_FindEdict(null, GameBase.findByClass,
+                ent = GameBase.G_FindEdict(-1, GameBase.findByClass,
                         "info_player_deathmatch");
         } else { // chose one of four spots
             i = Lib.rand() & 3;
-            EntityIterator es = null;
+            int es = -1;
 
             while (i-- > 0) {
                 es = GameBase.G_Find(es, GameBase.findByClass,
                         "info_player_intermission");
 
-                if (es == null) // wrap around the list
+                if (es == -1) // wrap around the list
                     continue;
-                ent = es.o;
+                ent = GameBase.g_edicts[es];
             }
         }
 
@@ -25,10 +25,10 @@ package com.googlecode.gdxquake2.game.game;
 
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 import com.googlecode.gdxquake2.game.common.Com;
 import com.googlecode.gdxquake2.game.util.Math3D;
+import com.googlecode.gdxquake2.game.util.QuakeFile;
 
 public class PlayerMoveState {
 	//	this structure needs to be communicated bit-accurate
@@ -87,7 +87,7 @@ public class PlayerMoveState {
 	}
 
 	/** Reads the playermove from the file.*/
-	public void load(RandomAccessFile f) throws IOException {
+	public void load(QuakeFile f) throws IOException {
 
 		pm_type = f.readInt();
 
@@ -112,7 +112,7 @@ public class PlayerMoveState {
 	}
 	
 	/** Writes the playermove to the file. */
-	public void write (RandomAccessFile f) throws IOException {
+	public void write (QuakeFile f) throws IOException {
 
 		f.writeInt(pm_type);
 
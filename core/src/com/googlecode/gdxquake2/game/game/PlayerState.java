@@ -24,12 +24,12 @@ Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
 package com.googlecode.gdxquake2.game.game;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 import com.googlecode.gdxquake2.game.common.Com;
 import com.googlecode.gdxquake2.game.common.Constants;
 import com.googlecode.gdxquake2.game.util.Lib;
 import com.googlecode.gdxquake2.game.util.Math3D;
+import com.googlecode.gdxquake2.game.util.QuakeFile;
 
 
 /** 
@@ -102,7 +102,7 @@ public class PlayerState {
 	}
 
 	/** Reads a player_state from a file.*/
-	public void load(RandomAccessFile f) throws IOException {
+	public void load(QuakeFile f) throws IOException {
 		pmove.load(f);
 
 		viewangles[0]= f.readFloat();
@@ -142,7 +142,7 @@ public class PlayerState {
 	}
 
 	/** Writes a player_state to a file.*/
-	public void write(RandomAccessFile f) throws IOException {
+	public void write(QuakeFile f) throws IOException {
 		pmove.write(f);
 
 		f.writeFloat(viewangles[0]);
@@ -76,8 +76,10 @@ public class PlayerTrail {
         trail_active = true;
     }
 
+    private static final float[] add_temp = { 0, 0, 0 };
+
     static void Add(float[] spot) {
-        float[] temp = { 0, 0, 0 };
+        float[] temp = add_temp;
 
         if (!trail_active)
             return;
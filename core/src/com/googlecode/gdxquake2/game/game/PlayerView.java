@@ -66,6 +66,14 @@ public class PlayerView {
         return side * sign;
     }
 
+    private static final float[] power_color = { 0.0f, 1.0f, 0.0f };
+
+    private static final float[] acolor = { 1.0f, 1.0f, 1.0f };
+
+    private static final float[] bcolor = { 1.0f, 0.0f, 0.0f };
+
+    private static final float[] feedback_v = { 0, 0, 0 };
+
     /*
      * =============== 
      * P_DamageFeedback
@@ -78,11 +86,8 @@ public class PlayerView {
         GameClient client;
         float side;
         float realcount, count, kick;
-        float[] v = { 0, 0, 0 };
+        float[] v = feedback_v;
         int r, l;
-        float[] power_color = { 0.0f, 1.0f, 0.0f };
-        float[] acolor = { 1.0f, 1.0f, 1.0f };
-        float[] bcolor = { 1.0f, 0.0f, 0.0f };
 
         client = player.client;
 
@@ -212,6 +217,8 @@ public class PlayerView {
         client.damage_knockback = 0;
     }
 
+    private static final float[] offset_v = { 0, 0, 0 };
+
     /**
      * 
      * fall from 128: 400 = 160000 
@@ -222,11 +229,11 @@ public class PlayerView {
      * damage = deltavelocity*deltavelocity * 0.0001
      */
     public static void SV_CalcViewOffset(Entity ent) {
-        float angles[] = { 0, 0, 0 };
+        float angles[];
         float bob;
         float ratio;
         float delta;
-        float[] v = { 0, 0, 0 };
+        float[] v = offset_v;
 
         // base angles
         angles = ent.client.ps.kick_angles;
@@ -388,12 +395,14 @@ public class PlayerView {
         v_blend[3] = a2;
     }
 
+    private static final float[] blend_vieworg = { 0, 0, 0 };
+
     /**
      * Calculates the blending color according to the players environment.
      */
     public static void SV_CalcBlend(Entity ent) {
         int contents;
-        float[] vieworg = { 0, 0, 0 };
+        float[] vieworg = blend_vieworg;
         int remaining;
 
         ent.client.ps.blend[0] = ent.client.ps.blend[1] = ent.client.ps.blend[2] = ent.client.ps.blend[3] = 0;
@@ -467,13 +476,15 @@ public class PlayerView {
             ent.client.bonus_alpha = 0;
     }
 
+    private static final float[] falling_dir = { 0, 0, 0 };
+
     /**
      * Calculates damage and effect when a player falls down.
      */
     public static void P_FallingDamage(Entity ent) {
         float delta;
         int damage;
-        float[] dir = { 0, 0, 0 };
+        float[] dir = falling_dir;
 
         if (ent.s.modelindex != 255)
             return; // not in the player model
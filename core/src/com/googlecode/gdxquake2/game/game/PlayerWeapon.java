@@ -191,10 +191,10 @@ public class PlayerWeapon {
     public static EntityThinkAdapter Weapon_GrenadeLauncher = new EntityThinkAdapter() {
     	public String getID() { return "Weapon_GrenadeLauncher"; }
 
-        public boolean think(Entity ent) {
+        final int pause_frames[] = { 34, 51, 59, 0 };
+        final int fire_frames[] = { 6, 0 };
 
-            int pause_frames[] = { 34, 51, 59, 0 };
-            int fire_frames[] = { 6, 0 };
+        public boolean think(Entity ent) {
 
             Weapon_Generic(ent, 5, 16, 59, 64, pause_frames, fire_frames,
                     weapon_grenadelauncher_fire);
@@ -261,10 +261,10 @@ public class PlayerWeapon {
     public static EntityThinkAdapter Weapon_RocketLauncher = new EntityThinkAdapter() {
     	public String getID() { return "Weapon_RocketLauncher"; }
 
-        public boolean think(Entity ent) {
+        final int pause_frames[] = { 25, 33, 42, 50, 0 };
+        final int fire_frames[] = { 5, 0 };
 
-            int pause_frames[] = { 25, 33, 42, 50, 0 };
-            int fire_frames[] = { 5, 0 };
+        public boolean think(Entity ent) {
 
             Weapon_Generic(ent, 4, 12, 50, 54, pause_frames, fire_frames,
                     Weapon_RocketLauncher_Fire);
@@ -293,10 +293,10 @@ public class PlayerWeapon {
     public static EntityThinkAdapter Weapon_Blaster = new EntityThinkAdapter() {
     	public String getID() { return "Weapon_Blaster"; }
 
-        public boolean think(Entity ent) {
+        final int pause_frames[] = { 19, 32, 0 };
+        final int fire_frames[] = { 5, 0 };
 
-            int pause_frames[] = { 19, 32, 0 };
-            int fire_frames[] = { 5, 0 };
+        public boolean think(Entity ent) {
 
             Weapon_Generic(ent, 4, 8, 52, 55, pause_frames, fire_frames,
                     Weapon_Blaster_Fire);
@@ -374,10 +374,11 @@ public class PlayerWeapon {
 
     public static EntityThinkAdapter Weapon_HyperBlaster = new EntityThinkAdapter() {
     	public String getID() { return "Weapon_HyperBlaster"; }
-        public boolean think(Entity ent) {
 
-            int pause_frames[] = { 0 };
-            int fire_frames[] = { 6, 7, 8, 9, 10, 11, 0 };
+        final int pause_frames[] = { 0 };
+        final int fire_frames[] = { 6, 7, 8, 9, 10, 11, 0 };
+
+        public boolean think(Entity ent) {
 
             Weapon_Generic(ent, 5, 20, 49, 53, pause_frames, fire_frames,
                     Weapon_HyperBlaster_Fire);
@@ -387,10 +388,11 @@ public class PlayerWeapon {
 
     public static EntityThinkAdapter Weapon_Machinegun = new EntityThinkAdapter() {
     	public String getID() { return "Weapon_Machinegun"; }
-        public boolean think(Entity ent) {
 
-            int pause_frames[] = { 23, 45, 0 };
-            int fire_frames[] = { 4, 5, 0 };
+        final int pause_frames[] = { 23, 45, 0 };
+        final int fire_frames[] = { 4, 5, 0 };
+
+        public boolean think(Entity ent) {
 
             Weapon_Generic(ent, 3, 5, 45, 49, pause_frames, fire_frames,
                     Machinegun_Fire);
@@ -400,11 +402,12 @@ public class PlayerWeapon {
 
     public static EntityThinkAdapter Weapon_Chaingun = new EntityThinkAdapter() {
     	public String getID() { return "Weapon_Chaingun"; }
-        public boolean think(Entity ent) {
 
-            int pause_frames[] = { 38, 43, 51, 61, 0 };
-            int fire_frames[] = { 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
-                    17, 18, 19, 20, 21, 0 };
+        final int pause_frames[] = { 38, 43, 51, 61, 0 };
+        final int fire_frames[] = { 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                17, 18, 19, 20, 21, 0 };
+
+        public boolean think(Entity ent) {
 
             Weapon_Generic(ent, 4, 31, 61, 64, pause_frames, fire_frames,
                     Chaingun_Fire);
@@ -477,10 +480,11 @@ public class PlayerWeapon {
 
     public static EntityThinkAdapter Weapon_Shotgun = new EntityThinkAdapter() {
     	public String getID() { return "Weapon_Shotgun"; }
-        public boolean think(Entity ent) {
-            int pause_frames[] = { 22, 28, 34, 0 };
-            int fire_frames[] = { 8, 9, 0 };
 
+        final int pause_frames[] = { 22, 28, 34, 0 };
+        final int fire_frames[] = { 8, 9, 0 };
+
+        public boolean think(Entity ent) {
             Weapon_Generic(ent, 7, 18, 36, 39, pause_frames, fire_frames,
                     weapon_shotgun_fire);
             return true;
@@ -547,10 +551,11 @@ public class PlayerWeapon {
 
     public static EntityThinkAdapter Weapon_SuperShotgun = new EntityThinkAdapter() {
     	public String getID() { return "Weapon_SuperShotgun"; }
-        public boolean think(Entity ent) {
 
-            int pause_frames[] = { 29, 42, 57, 0 };
-            int fire_frames[] = { 7, 0 };
+        final int pause_frames[] = { 29, 42, 57, 0 };
+        final int fire_frames[] = { 7, 0 };
+
+        public boolean think(Entity ent) {
 
             Weapon_Generic(ent, 6, 17, 57, 61, pause_frames, fire_frames,
                     weapon_supershotgun_fire);
@@ -620,10 +625,11 @@ public class PlayerWeapon {
     public static EntityThinkAdapter Weapon_Railgun = new EntityThinkAdapter() {
     	public String getID() { return "Weapon_Railgun"; }
 
+        final int pause_frames[] = { 56, 0 };
+        final int fire_frames[] = { 4, 0 };
+
         public boolean think(Entity ent) {
 
-            int pause_frames[] = { 56, 0 };
-            int fire_frames[] = { 4, 0 };
             Weapon_Generic(ent, 3, 18, 56, 61, pause_frames, fire_frames,
                     weapon_railgun_fire);
             return true;
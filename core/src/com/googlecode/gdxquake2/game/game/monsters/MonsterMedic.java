@@ -540,10 +540,10 @@ public class MonsterMedic {
     static Entity medic_FindDeadMonster(Entity self) {
         Entity ent = null;
         Entity best = null;
-        EntityIterator edit = null;
+        int edit = -1;
 
-        while ((edit = GameBase.findradius(edit, self.s.origin, 1024)) != null) {
-            ent = edit.o;
+        while ((edit = GameBase.findradius(edit, self.s.origin, 1024)) != -1) {
+            ent = GameBase.g_edicts[edit];
             if (ent == self)
                 continue;
             if (0 == (ent.svflags & Constants.SVF_MONSTER))
@@ -51,13 +51,21 @@ public class ClientData {
 	int frame_latency[] = new int[LATENCY_COUNTS];
 	int ping;
 
-	int message_size[] = new int[RATE_MESSAGES]; // used to rate drop packets
+	int message_size[] = new int[RATE_MESSAGES]; // for the frame budget
 	int rate;
-	int surpressCount; // number of messages rate supressed
+
+	// sv.framenum when an update of each entity was last sent, to rank
+	// entity updates when a frame exceeds the budget
+	int entity_sent[] = new int[Constants.MAX_EDICTS];
 
 	// pointer
 	Entity edict; // EDICT_NUM(clientnum+1)
 
+	// leaf, cluster and area of edict.s.origin, see ServerSend.SV_ClientLeaf
+	ServerState leaf_sv;
+	float leaf_origin[] = { 0, 0, 0 };
+	int leafnum, cluster, areanum;
+
 	//char				name[32];			// extracted from userinfo, high bits masked
 	String name = ""; // extracted from userinfo, high bits masked
 
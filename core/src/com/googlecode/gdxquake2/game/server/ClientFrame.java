@@ -24,15 +24,66 @@ Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
 package com.googlecode.gdxquake2.game.server;
 
 import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.game.EntityState;
 import com.googlecode.gdxquake2.game.game.PlayerState;
 
 
 public class ClientFrame {
 
+	/** Set in entities[] for a missile of the player, which is sent with solid 0. */
+	static final int NOSOLID = 1 << 16;
+
+	static final int NUMBER_MASK = NOSOLID - 1;
+
+	/**
+	 * Set in entities[] for an entity whose update was deferred to a later
+	 * frame; the state the client has is in held[].
+	 */
+	static final int HELD = 1 << 17;
+
+	/** Marks entities[] entries left out of the frame, see removeDropped(). */
+	static final int DROPPED = -1;
+
 	int					areabytes;
 	byte				areabits[] = new byte[Constants.MAX_MAP_AREAS/8];		// portalarea visibility bits
 	PlayerState		ps = new PlayerState();
 	int					num_entities;
-	int					first_entity;		// into the circular sv_packet_entities[]
+	int					entities[] = new int[64];	// entity numbers, or'ed with NOSOLID or HELD
+	EntitySnapshot		snapshot;			// the entity states
+	EntityState			held[] = new EntityState[64];	// states of HELD entities, by index
 	int					senttime;			// for ping calculations
+
+	/** Keeps the given state for entity i of the frame instead of the snapshot state. */
+	void hold(int i, EntityState state) {
+		if (held.length < entities.length) {
+			EntityState grown[] = new EntityState[entities.length];
+			System.arraycopy(held, 0, grown, 0, held.length);
+			held = grown;
+		}
+		if (held[i] == null)
+			held[i] = new EntityState(null);
+		held[i].set(state);
+		// the client clears the event of an entity without an update
+		held[i].event = 0;
+		entities[i] |= HELD;
+	}
+
+	/** Removes the DROPPED entries, keeping the held states with their entities. */
+	void removeDropped() {
+		int n = 0;
+		for (int i = 0; i < num_entities; i++) {
+			if (entities[i] == DROPPED)
+				continue;
+			if (n != i) {
+				entities[n] = entities[i];
+				if (i < held.length) {
+					EntityState state = held[n];
+					held[n] = held[i];
+					held[i] = state;
+				}
+			}
+			n++;
+		}
+		num_entities = n;
+	}
 }
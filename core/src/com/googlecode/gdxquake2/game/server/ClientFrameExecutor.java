@@ -0,0 +1,36 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.server;
+
+/**
+ * Sends the frame datagrams of the spawned clients at the end of a server
+ * frame. The world does not change while the datagrams are built, so the
+ * clients are independent and an implementation may spread them over several
+ * threads. Set ServerSend.frame_executor to install one; without it the
+ * clients are handled one after another on the server thread.
+ */
+public interface ClientFrameExecutor {
+
+    /**
+     * Calls ServerSend.SV_SendClientDatagram(clients[i], worker) for each
+     * i < count and returns when all calls are done. Calls running at the same
+     * time must use different workers. Exceptions thrown by a call must be
+     * rethrown on the calling thread.
+     */
+    void execute(ClientData clients[], int count);
+}
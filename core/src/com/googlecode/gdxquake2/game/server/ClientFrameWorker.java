@@ -0,0 +1,87 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.server;
+
+import java.nio.ByteOrder;
+
+import com.googlecode.gdxquake2.game.common.Buffer;
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.FrameCodec;
+import com.googlecode.gdxquake2.game.common.TraceContext;
+import com.googlecode.gdxquake2.game.game.EntityState;
+
+/**
+ * Scratch state for building and encoding client frames: the message buffer,
+ * the fat PVS and a row to decompress vis into, a collision context, vectors,
+ * entity states, the cache of encoded deltas and the frame compressor. Frames
+ * built with different workers do not share any mutable state, so each
+ * thread of a ClientFrameExecutor uses its own worker.
+ */
+public class ClientFrameWorker {
+
+    final byte msgbuf[] = new byte[Constants.MAX_MSGLEN];
+
+    final Buffer msg = Buffer.wrap(msgbuf).order(ByteOrder.LITTLE_ENDIAN);
+
+    final long fatpvs[] = new long[65536 / 64]; // 32767 is MAX_MAP_LEAFS
+
+    // PVS and PHS rows of maps without a vis matrix, instead of CM.pvsrow
+    final byte visrow[] = new byte[Constants.MAX_MAP_LEAFS / 8];
+
+    final TraceContext trace = new TraceContext();
+
+    // SV_FatPVS
+    final int leafs[] = new int[64];
+
+    final float mins[] = { 0, 0, 0 }, maxs[] = { 0, 0, 0 };
+
+    // SV_BuildClientFrame
+    final float org[] = { 0, 0, 0 };
+
+    final float delta[] = { 0, 0, 0 };
+
+    // entity states sent with solid 0, see ServerEntities.SV_FrameEntity
+    final EntityState oldstate = new EntityState(null);
+
+    final EntityState newstate = new EntityState(null);
+
+    final DeltaCache deltas = new DeltaCache(ServerEntities.shared_deltas);
+
+    // SV_EmitPacketEntities: the entity deltas are encoded here first and
+    // copied to msg once it is known which of them fit
+    final Buffer entitymsg = Buffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+
+    final int item_start[] = new int[2 * Constants.MAX_EDICTS];
+
+    final int item_length[] = new int[2 * Constants.MAX_EDICTS];
+
+    final int item_new[] = new int[2 * Constants.MAX_EDICTS];
+
+    final int item_old[] = new int[2 * Constants.MAX_EDICTS];
+
+    final int item_number[] = new int[2 * Constants.MAX_EDICTS];
+
+    final long item_keys[] = new long[2 * Constants.MAX_EDICTS];
+
+    final FrameCodec codec = new FrameCodec();
+
+    public ClientFrameWorker() {
+        msg.allowoverflow = true;
+        entitymsg.allowoverflow = true;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.server;
+
+import com.googlecode.gdxquake2.game.common.Buffer;
+import com.googlecode.gdxquake2.game.common.Buffers;
+import com.googlecode.gdxquake2.game.common.Constants;
+
+/**
+ * Encoded entity deltas of the current server frame. All clients delta the
+ * same snapshots, so the update of an entity from a given older frame (or
+ * from its baseline) is the same bytes for every client that acknowledged
+ * that frame. Entries are keyed by entity number and the age of the frame
+ * delta'd from, 0 standing for the baseline, and are dropped when the next
+ * frame starts. Each ClientFrameWorker has its own cache, so it is shared by
+ * the clients handled by that worker without locking.
+ * <p>
+ * Before the frames are handed to the workers of a ClientFrameExecutor, the
+ * server thread encodes the deltas from the previous frame, the ones most
+ * clients need, into ServerEntities.shared_deltas. The worker caches look
+ * there first; it is not written while the workers run, so they need no
+ * locking either, and only deltas from older frames and from the baselines
+ * are encoded once per worker.
+ */
+public class DeltaCache {
+
+    /** Bytes of encoded deltas kept per frame; later deltas are not cached. */
+    public static final int ARENA_SIZE = 64 * 1024;
+
+    final byte arena[] = new byte[ARENA_SIZE];
+
+    int used;
+
+    /** Number of entries of the current frame. */
+    int entries;
+
+    // entries by key, valid if their generation is the current one
+    final int generations[] = new int[Constants.MAX_EDICTS * Constants.UPDATE_BACKUP];
+
+    final int offsets[] = new int[Constants.MAX_EDICTS * Constants.UPDATE_BACKUP];
+
+    final int lengths[] = new int[Constants.MAX_EDICTS * Constants.UPDATE_BACKUP];
+
+    int generation;
+
+    // frame the entries were encoded for
+    ServerState sv;
+
+    int framenum = -1;
+
+    int hits, misses;
+
+    /** Hits that were taken from the shared cache. */
+    int shared_hits;
+
+    /** Entries of the same frame to use before this cache's own, or null. */
+    final DeltaCache shared;
+
+    public DeltaCache() {
+        this(null);
+    }
+
+    public DeltaCache(DeltaCache shared) {
+        this.shared = shared;
+    }
+
+    /** Drops the entries unless they were encoded for the given snapshot. */
+    void begin(EntitySnapshot to) {
+        if (to.sv == sv && to.framenum == framenum)
+            return;
+        sv = to.sv;
+        framenum = to.framenum;
+        used = 0;
+        entries = 0;
+        generation++;
+    }
+
+    /**
+     * Returns the key for the delta of an entity from the given frame to the
+     * current one, or -1 if the frame is too old.
+     */
+    int key(int number, int fromframe) {
+        int age = framenum - fromframe;
+        if (age < 1 || age >= Constants.UPDATE_BACKUP)
+            return -1;
+        return number * Constants.UPDATE_BACKUP + age;
+    }
+
+    /** Returns the key for the delta of an entity from its baseline. */
+    int baselineKey(int number) {
+        return number * Constants.UPDATE_BACKUP;
+    }
+
+    /** Appends the cached delta to msg; returns false if there is none. */
+    boolean write(int key, Buffer msg) {
+        DeltaCache cache = this;
+        if (generations[key] != generation) {
+            cache = shared;
+            if (cache == null || cache.sv != sv || cache.framenum != framenum
+                    || cache.generations[key] != cache.generation) {
+                misses++;
+                return false;
+            }
+            shared_hits++;
+        }
+        hits++;
+        if (cache.lengths[key] != 0)
+            Buffers.Write(msg, cache.arena, cache.offsets[key], cache.lengths[key]);
+        return true;
+    }
+
+    /**
+     * Caches the bytes that were added to msg since it had the given size,
+     * unless the message overflowed in between.
+     */
+    void store(int key, Buffer msg, int start) {
+        int length = msg.cursize - start;
+        if (msg.overflowed || length < 0 || used + length > ARENA_SIZE)
+            return;
+        System.arraycopy(msg.data, start, arena, used, length);
+        generations[key] = generation;
+        offsets[key] = used;
+        lengths[key] = length;
+        used += length;
+        entries++;
+    }
+
+    /** Lookups that found an entry, here or in the shared cache. */
+    public int hits() {
+        return hits;
+    }
+
+    /** Hits that were taken from the shared cache. */
+    public int sharedHits() {
+        return shared_hits;
+    }
+
+    /** Lookups that had to encode the delta. */
+    public int misses() {
+        return misses;
+    }
+
+    /** Number of deltas encoded into the cache for the current frame. */
+    public int entries() {
+        return entries;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.server;
+
+import java.io.IOException;
+
+import com.badlogic.gdx.utils.NumberUtils;
+import com.googlecode.gdxquake2.game.common.Com;
+import com.googlecode.gdxquake2.game.common.Globals;
+import com.googlecode.gdxquake2.game.game.Entity;
+import com.googlecode.gdxquake2.game.game.GameBase;
+import com.googlecode.gdxquake2.game.game.PlayerMoveState;
+import com.googlecode.gdxquake2.game.sys.NET;
+import com.googlecode.gdxquake2.game.sys.Timer;
+import com.googlecode.gdxquake2.game.util.QuakeFile;
+import com.googlecode.gdxquake2.game.util.QuakeRandom;
+
+/**
+ * Deterministic simulation, so that the same client commands give the same
+ * frames bit for bit, for instance to check that a change to the physics
+ * does not change the game. sv_deterministic, a seed or 0 for off, is taken
+ * over when a map is spawned. In the mode
+ * <ul>
+ * <li>the game draws its random numbers (Lib.random and friends, which use
+ * Globals.rnd) from a generator of the server seeded at the spawn, while the
+ * client keeps the shared one;
+ * <li>every server frame runs on a clock that only the frames move: svs.realtime
+ * is sv.time and Timer.Milliseconds() returns it, so pings and the netchan do
+ * not depend on when the frames happen to run. The wall clock still paces
+ * the frames, unless timedemo is set;
+ * <li>each game frame ends with a checksum of the entity states, the
+ * velocities and the pmove states of the clients, which sv_checksum 1 prints
+ * as "checksum frame value".
+ * </ul>
+ */
+public final class DeterministicMode {
+
+    static final QuakeRandom random = new QuakeRandom();
+
+    /** Globals.rnd while the generator of the server replaces it. */
+    static QuakeRandom shared;
+
+    static boolean active;
+
+    /** Nesting of Begin calls. */
+    static int depth;
+
+    /** Wall clock milliseconds towards the next frame. */
+    static long lag;
+
+    /** The checksum of the last game frame. */
+    public static int checksum;
+
+    public static boolean IsActive() {
+        return active;
+    }
+
+    /** Turns the mode on or off for the map being spawned. */
+    static void Spawn() {
+        active = ServerMain.sv_deterministic.value != 0;
+        lag = 0;
+        checksum = 0;
+        if (!active)
+            return;
+        random.setSeed((long) ServerMain.sv_deterministic.value);
+        Com.Printf("deterministic mode, seed " + ServerMain.sv_deterministic.string + "\n");
+    }
+
+    /**
+     * Returns whether the server frame is due after msec more of the wall
+     * clock, sleeping otherwise.
+     */
+    static boolean Due(long msec) {
+        lag += msec;
+        if (ServerMain.sv_timedemo.value == 0 && lag < 100) {
+            NET.Sleep((int) (100 - lag));
+            return false;
+        }
+        // never get more than one frame behind
+        lag = Math.min(lag - 100, 100);
+        return true;
+    }
+
+    /**
+     * Makes the generator and clock of the server current until the matching
+     * End. Calls nest; only the outermost ones switch.
+     */
+    static void Begin() {
+        if (depth++ > 0 || !active)
+            return;
+        shared = Globals.rnd;
+        Globals.rnd = random;
+        Timer.Fix(ServerInit.svs.realtime);
+    }
+
+    static void End() {
+        if (--depth > 0 || shared == null)
+            return;
+        Globals.rnd = shared;
+        shared = null;
+        Timer.Release();
+    }
+
+    /**
+     * Writes the state of the generator of the server and of the shared one,
+     * for GameSnapshot.
+     */
+    public static void WriteState(QuakeFile f) throws IOException {
+        WriteState(f, random);
+        WriteState(f, shared != null ? shared : Globals.rnd);
+    }
+
+    /** Sets both generators back to what WriteState wrote. */
+    public static void ReadState(QuakeFile f) throws IOException {
+        ReadState(f, random);
+        ReadState(f, shared != null ? shared : Globals.rnd);
+    }
+
+    static void WriteState(QuakeFile f, QuakeRandom r) throws IOException {
+        long state = r.getState();
+        f.writeInt((int) (state >>> 32));
+        f.writeInt((int) state);
+    }
+
+    static void ReadState(QuakeFile f, QuakeRandom r) throws IOException {
+        long high = f.readInt();
+        r.setState(high << 32 | (f.readInt() & 0xffffffffL));
+    }
+
+    /** Called after each G_RunFrame. */
+    static void Checksum() {
+        int h = 0x811c9dc5;
+        h = Mix(h, GameBase.level.framenum);
+        for (int i = 0; i < GameBase.num_edicts; i++) {
+            Entity ent = GameBase.g_edicts[i];
+            if (!ent.inuse)
+                continue;
+            h = Mix(h, i);
+            for (int j = 0; j < 3; j++) {
+                h = Mix(h, NumberUtils.floatToIntBits(ent.s.origin[j]));
+                h = Mix(h, NumberUtils.floatToIntBits(ent.s.angles[j]));
+                h = Mix(h, NumberUtils.floatToIntBits(ent.s.old_origin[j]));
+                h = Mix(h, NumberUtils.floatToIntBits(ent.velocity[j]));
+            }
+            h = Mix(h, ent.s.modelindex);
+            h = Mix(h, ent.s.modelindex2);
+            h = Mix(h, ent.s.modelindex3);
+            h = Mix(h, ent.s.modelindex4);
+            h = Mix(h, ent.s.frame);
+            h = Mix(h, ent.s.skinnum);
+            h = Mix(h, ent.s.effects);
+            h = Mix(h, ent.s.renderfx);
+            h = Mix(h, ent.s.solid);
+            h = Mix(h, ent.s.sound);
+            h = Mix(h, ent.s.event);
+            if (ent.client != null) {
+                PlayerMoveState pm = ent.client.ps.pmove;
+                h = Mix(h, pm.pm_type);
+                for (int j = 0; j < 3; j++) {
+                    h = Mix(h, pm.origin[j]);
+                    h = Mix(h, pm.velocity[j]);
+                    h = Mix(h, pm.delta_angles[j]);
+                }
+                h = Mix(h, pm.pm_flags);
+                h = Mix(h, pm.pm_time);
+                h = Mix(h, pm.gravity);
+            }
+        }
+        checksum = h;
+        if (ServerMain.sv_checksum.value != 0)
+            Com.Printf("checksum " + GameBase.level.framenum + " "
+                    + Integer.toHexString(h) + "\n");
+    }
+
+    /** FNV-1a over the four bytes of v. */
+    static int Mix(int h, int v) {
+        for (int i = 0; i < 4; i++) {
+            h = (h ^ (v & 0xff)) * 0x01000193;
+            v >>>= 8;
+        }
+        return h;
+    }
+}
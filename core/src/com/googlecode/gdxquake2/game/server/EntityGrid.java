@@ -0,0 +1,190 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.server;
+
+import java.io.IOException;
+
+import com.googlecode.gdxquake2.game.common.Com;
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.game.Entity;
+import com.googlecode.gdxquake2.game.game.ListNode;
+import com.googlecode.gdxquake2.game.util.QuakeFile;
+
+/**
+ * Loose uniform grid over the x/y extent of the world, kept next to the
+ * area node tree. Each linked entity sits in the single cell containing the
+ * center of its absolute bounding box, so queries widen their cell range by
+ * the largest half size of the entities in the grid. Entities wider than a
+ * cell are kept in a separate list that every query checks, so they do not
+ * widen all queries.
+ */
+public class EntityGrid {
+
+    /** Preferred cell size in world units. */
+    public static final int CELL_SIZE = 128;
+
+    /** Maximum number of cells per axis; larger worlds get larger cells. */
+    public static final int MAX_CELLS = 64;
+
+    float origin_x, origin_y;
+
+    float cell_size;
+
+    int cols, rows;
+
+    ListNode cells[];
+
+    /** Entities too large for a single cell. */
+    ListNode large = new ListNode(this);
+
+    /** Largest half size of the entities linked into cells. */
+    float max_extent;
+
+    public EntityGrid(float[] mins, float[] maxs) {
+        float w = maxs[0] - mins[0];
+        float h = maxs[1] - mins[1];
+        cell_size = Math.max(CELL_SIZE, Math.max(w, h) / MAX_CELLS);
+        origin_x = mins[0];
+        origin_y = mins[1];
+        cols = Math.max(1, (int) Math.ceil(w / cell_size));
+        rows = Math.max(1, (int) Math.ceil(h / cell_size));
+        cells = new ListNode[cols * rows];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new ListNode(this);
+            World.ClearLink(cells[i]);
+        }
+        World.ClearLink(large);
+    }
+
+    int column(float x) {
+        int c = (int) Math.floor((x - origin_x) / cell_size);
+        return c < 0 ? 0 : c >= cols ? cols - 1 : c;
+    }
+
+    int row(float y) {
+        int r = (int) Math.floor((y - origin_y) / cell_size);
+        return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+    }
+
+    /**
+     * Links the entity by its current absmin/absmax. The entity must not be
+     * linked already.
+     */
+    public void link(Entity ent) {
+        float ex = 0.5f * (ent.absmax[0] - ent.absmin[0]);
+        float ey = 0.5f * (ent.absmax[1] - ent.absmin[1]);
+        float extent = ex > ey ? ex : ey;
+        if (extent > cell_size) {
+            World.InsertLinkBefore(ent.grid, large);
+            return;
+        }
+        if (extent > max_extent)
+            max_extent = extent;
+        int c = column(ent.absmin[0] + ex);
+        int r = row(ent.absmin[1] + ey);
+        World.InsertLinkBefore(ent.grid, cells[r * cols + c]);
+    }
+
+    public void unlink(Entity ent) {
+        if (ent.grid.prev == null)
+            return;
+        World.RemoveLink(ent.grid);
+        ent.grid.prev = ent.grid.next = null;
+    }
+
+    /**
+     * Writes max_extent and the entity numbers of the non-empty cells and of
+     * the large list, in list order.
+     */
+    void write(QuakeFile f) throws IOException {
+        f.writeFloat(max_extent);
+        World.WriteList(f, large);
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i].next == cells[i])
+                continue;
+            f.writeInt(i);
+            World.WriteList(f, cells[i]);
+        }
+        f.writeInt(-1);
+    }
+
+    /**
+     * Empties the grid and links the entities as write() found them. The
+     * grid links of the entities must have been cleared.
+     */
+    void read(QuakeFile f) throws IOException {
+        for (int i = 0; i < cells.length; i++)
+            World.ClearLink(cells[i]);
+        World.ClearLink(large);
+        max_extent = f.readFloat();
+        World.ReadList(f, large, false);
+        while (true) {
+            int i = f.readInt();
+            if (i == -1)
+                break;
+            World.ReadList(f, cells[i], false);
+        }
+    }
+
+    /**
+     * Collects the entities whose absolute bounding box touches mins/maxs.
+     *
+     * @param areatype AREA_SOLID, AREA_TRIGGERS or 0 for both
+     * @return the number of entities stored in list
+     */
+    public int boxEdicts(float[] mins, float[] maxs, Entity list[],
+            int maxcount, int areatype) {
+        int count = collect(large, mins, maxs, list, 0, maxcount, areatype);
+        int c0 = column(mins[0] - max_extent);
+        int c1 = column(maxs[0] + max_extent);
+        int r0 = row(mins[1] - max_extent);
+        int r1 = row(maxs[1] + max_extent);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                count = collect(cells[r * cols + c], mins, maxs, list, count,
+                        maxcount, areatype);
+            }
+        }
+        return count;
+    }
+
+    static int collect(ListNode start, float[] mins, float[] maxs,
+            Entity list[], int count, int maxcount, int areatype) {
+        for (ListNode l = start.next; l != start; l = l.next) {
+            Entity check = (Entity) l.o;
+            if (check.solid == Constants.SOLID_NOT)
+                continue; // deactivated
+            // the list of the area node it was linked into decides
+            boolean trigger = (check.area_order & World.AREA_TRIGGER) != 0;
+            if (areatype == Constants.AREA_SOLID && trigger)
+                continue;
+            if (areatype == Constants.AREA_TRIGGERS && !trigger)
+                continue;
+            if (check.absmin[0] > maxs[0] || check.absmin[1] > maxs[1]
+                    || check.absmin[2] > maxs[2] || check.absmax[0] < mins[0]
+                    || check.absmax[1] < mins[1] || check.absmax[2] < mins[2])
+                continue; // not touching
+            if (count == maxcount) {
+                Com.Printf("EntityGrid: MAXCOUNT\n");
+                return count;
+            }
+            list[count++] = check;
+        }
+        return count;
+    }
+}
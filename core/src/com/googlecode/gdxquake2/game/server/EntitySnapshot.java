@@ -0,0 +1,50 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.server;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.game.EntityState;
+
+/**
+ * The states of all entities that can be sent to clients, taken once per
+ * server frame by ServerEntities.SV_BuildSnapshot. Client frames only keep
+ * the numbers of the entities they contain, so an entity state is copied
+ * once per frame rather than once per client that sees it, and the memory
+ * does not grow with the number of clients. svs.snapshots keeps the last
+ * UPDATE_BACKUP frames for delta compression.
+ */
+public class EntitySnapshot {
+
+    /** Server and frame number the snapshot was taken for. */
+    ServerState sv;
+
+    int framenum = -1;
+
+    /** States by entity number; valid for the numbers in the list only. */
+    final EntityState states[] = new EntityState[Constants.MAX_EDICTS];
+
+    /** Numbers of the entities in the snapshot, in increasing order. */
+    final int numbers[] = new int[Constants.MAX_EDICTS];
+
+    int num_entities;
+
+    /** Returns true if the snapshot holds the given frame of the current server. */
+    boolean holds(int framenum) {
+        return sv == ServerInit.sv && this.framenum == framenum;
+    }
+}
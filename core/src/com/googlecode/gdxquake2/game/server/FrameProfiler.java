@@ -0,0 +1,403 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.server;
+
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+
+import com.badlogic.gdx.utils.TimeUtils;
+import com.googlecode.gdxquake2.game.common.Com;
+import com.googlecode.gdxquake2.game.common.QuakeFileSystem;
+import com.googlecode.gdxquake2.game.game.Commands;
+import com.googlecode.gdxquake2.game.util.Lib;
+import com.googlecode.gdxquake2.game.util.Vargs;
+
+/**
+ * Nanosecond timings of the phases of SV_Frame and of G_RunFrame per entity
+ * classname, so a server that drops below 10 Hz shows which subsystem or
+ * which kind of monster took the time. Profiling is off by default; the
+ * sv_profile command switches it on, prints the histograms and dumps them as
+ * JSON lines. With sv_profile_slow set, each frame longer than that many
+ * milliseconds is printed as a JSON line with its phases and the classnames
+ * that took the most time.
+ *
+ * The histograms are written by the server thread only, so recording takes
+ * no lock. Readers on other threads, such as a metrics endpoint, need none
+ * either: every field is updated by a single write, and classnames are
+ * published through num_classes after their histogram exists. A reader may
+ * see a sample in a bucket before it is in the totals, nothing worse.
+ */
+public class FrameProfiler {
+
+    public static final int CHECK_TIMEOUTS = 0;
+
+    public static final int READ_PACKETS = 1;
+
+    public static final int RUN_GAME_FRAME = 2;
+
+    public static final int CLIENT_END_FRAMES = 3;
+
+    public static final int SEND_CLIENT_MESSAGES = 4;
+
+    public static final int FRAME = 5;
+
+    static final String phase_names[] = { "SV_CheckTimeouts", "SV_ReadPackets",
+            "SV_RunGameFrame", "ClientEndServerFrames", "SV_SendClientMessages",
+            "SV_Frame" };
+
+    /** Number of classnames with their own histogram; the rest share one. */
+    public static final int MAX_CLASSES = 256;
+
+    /** Number of classnames listed for a slow frame. */
+    static final int SLOW_CLASSES = 5;
+
+    public static boolean enabled;
+
+    static final Histogram phases[] = new Histogram[phase_names.length];
+
+    static final Histogram classes[] = new Histogram[MAX_CLASSES];
+
+    static volatile int num_classes;
+
+    // server thread only
+    static final HashMap<String, Histogram> class_map = new HashMap<String, Histogram>();
+
+    static Histogram other_classes;
+
+    static {
+        for (int i = 0; i < phases.length; i++)
+            phases[i] = new Histogram("phase", phase_names[i]);
+    }
+
+    /**
+     * Returns the start time of a measurement, or 0 if profiling is off.
+     */
+    public static long start() {
+        return enabled ? TimeUtils.nanoTime() : 0;
+    }
+
+    /** Records the time since start for a phase of SV_Frame. */
+    public static void phase(int phase, long start) {
+        if (start != 0)
+            phases[phase].record(TimeUtils.nanoTime() - start);
+    }
+
+    /** Records the time since start for an entity with the given classname. */
+    public static void entity(String classname, long start) {
+        if (start == 0)
+            return;
+        long ns = TimeUtils.nanoTime() - start;
+        if (classname == null)
+            classname = "noclass";
+        Histogram h = class_map.get(classname);
+        if (h == null)
+            h = addClass(classname);
+        h.record(ns);
+    }
+
+    static Histogram addClass(String classname) {
+        Histogram h;
+        if (num_classes < MAX_CLASSES - 1) {
+            h = new Histogram("entity", classname);
+            classes[num_classes] = h;
+            num_classes++;
+        } else {
+            if (other_classes == null) {
+                other_classes = new Histogram("entity", "other");
+                classes[num_classes] = other_classes;
+                num_classes++;
+            }
+            h = other_classes;
+        }
+        class_map.put(classname, h);
+        return h;
+    }
+
+    /**
+     * Records the whole frame, reports it if it was slow and starts the next
+     * one.
+     */
+    public static void endFrame(long start) {
+        if (start == 0)
+            return;
+        long ns = TimeUtils.nanoTime() - start;
+        phases[FRAME].record(ns);
+
+        if (ServerMain.sv_profile_slow != null && ServerMain.sv_profile_slow.value > 0
+                && ns > ServerMain.sv_profile_slow.value * 1000000)
+            Com.Printf(slowFrame() + "\n");
+
+        for (int i = 0; i < phases.length; i++)
+            phases[i].frame = 0;
+        int n = num_classes;
+        for (int i = 0; i < n; i++)
+            classes[i].frame = 0;
+    }
+
+    /**
+     * Returns the times of the current frame as one JSON object.
+     */
+    static String slowFrame() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("{\"frame\":").append(ServerInit.sv.framenum);
+        sb.append(",\"time\":").append(ServerInit.svs.realtime);
+        for (int i = 0; i < phases.length; i++)
+            sb.append(",\"").append(phases[i].name).append("\":").append(phases[i].frame);
+
+        // the classnames that took the most time, slowest first
+        sb.append(",\"entities\":{");
+        int n = num_classes;
+        int listed[] = new int[SLOW_CLASSES];
+        int num_listed = 0;
+        while (num_listed < SLOW_CLASSES) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (classes[i].frame == 0 || contains(listed, num_listed, i))
+                    continue;
+                if (best == -1 || classes[i].frame > classes[best].frame)
+                    best = i;
+            }
+            if (best == -1)
+                break;
+            if (num_listed > 0)
+                sb.append(',');
+            sb.append('"').append(escape(classes[best].name)).append("\":")
+                    .append(classes[best].frame);
+            listed[num_listed++] = best;
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    static boolean contains(int values[], int count, int value) {
+        for (int i = 0; i < count; i++)
+            if (values[i] == value)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns all histograms with samples as JSON lines, one object per
+     * phase or classname. Can be called from any thread.
+     */
+    public static String json() {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < phases.length; i++)
+            phases[i].json(sb);
+        int n = num_classes;
+        for (int i = 0; i < n; i++)
+            classes[i].json(sb);
+        return sb.toString();
+    }
+
+    /** Clears all histograms. The classnames are kept. */
+    public static void reset() {
+        for (int i = 0; i < phases.length; i++)
+            phases[i].clear();
+        int n = num_classes;
+        for (int i = 0; i < n; i++)
+            classes[i].clear();
+    }
+
+    static String escape(String s) {
+        if (s.indexOf('"') == -1 && s.indexOf('\\') == -1)
+            return s;
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\');
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * sv_profile [on | off | reset | dump [file]]
+     */
+    public static void SV_Profile_f() {
+        String cmd = Commands.Argc() > 1 ? Commands.Argv(1) : "";
+
+        if (cmd.equals("on")) {
+            enabled = true;
+            Com.Printf("profiling on\n");
+        } else if (cmd.equals("off")) {
+            enabled = false;
+            Com.Printf("profiling off\n");
+        } else if (cmd.equals("reset")) {
+            reset();
+        } else if (cmd.equals("dump")) {
+            String name = QuakeFileSystem.Gamedir() + "/"
+                    + (Commands.Argc() > 2 ? Commands.Argv(2) : "profile.jsonl");
+            Dump(name);
+        } else if (cmd.length() == 0) {
+            Print();
+        } else {
+            Com.Printf("usage: sv_profile [on | off | reset | dump [file]]\n");
+        }
+    }
+
+    /** Prints the histograms in microseconds. */
+    static void Print() {
+        if (!enabled)
+            Com.Printf("profiling is off, use sv_profile on\n");
+        Com.Printf("name                       count    mean     p50     p90     p99     max\n");
+        Com.Printf("------------------------ ------- ------- ------- ------- ------- -------\n");
+        for (int i = 0; i < phases.length; i++)
+            phases[i].print();
+        int n = num_classes;
+        for (int i = 0; i < n; i++)
+            classes[i].print();
+    }
+
+    /** Appends the histograms to a file as JSON lines. */
+    static void Dump(String name) {
+        RandomAccessFile f = null;
+        try {
+            QuakeFileSystem.CreatePath(name);
+            f = new RandomAccessFile(name, "rw");
+            f.seek(f.length());
+            f.write(Lib.stringToBytes(json()));
+            Com.Printf("profile written to " + name + "\n");
+        } catch (Exception e) {
+            Com.Printf("couldn't write " + name + ": " + e + "\n");
+        } finally {
+            try {
+                if (f != null)
+                    f.close();
+            } catch (Exception e) {
+            }
+        }
+    }
+
+    /**
+     * Histogram of durations in nanoseconds. Buckets split every power of two
+     * into 8 steps, so percentiles are accurate to 12.5%.
+     */
+    public static class Histogram {
+
+        // 8 buckets below 8 ns, then 8 per power of two up to 2^41 ns
+        static final int BUCKETS = (41 - 2) * 8;
+
+        public final String kind;
+
+        public final String name;
+
+        final int buckets[] = new int[BUCKETS];
+
+        volatile long count;
+
+        volatile long total;
+
+        volatile long max;
+
+        // time of the current frame, server thread only
+        long frame;
+
+        Histogram(String kind, String name) {
+            this.kind = kind;
+            this.name = name;
+        }
+
+        static int bucket(long ns) {
+            if (ns < 8)
+                return ns < 0 ? 0 : (int) ns;
+            int exp = 63 - Long.numberOfLeadingZeros(ns);
+            int b = ((exp - 2) << 3) | (int) ((ns >>> (exp - 3)) & 7);
+            return b < BUCKETS ? b : BUCKETS - 1;
+        }
+
+        /** Returns the largest duration counted in a bucket. */
+        static long upperBound(int bucket) {
+            if (bucket < 8)
+                return bucket;
+            int exp = (bucket >> 3) + 2;
+            return ((long) (9 + (bucket & 7)) << (exp - 3)) - 1;
+        }
+
+        void record(long ns) {
+            buckets[bucket(ns)]++;
+            frame += ns;
+            total += ns;
+            if (ns > max)
+                max = ns;
+            count++;
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKETS; i++)
+                buckets[i] = 0;
+            count = total = max = frame = 0;
+        }
+
+        /**
+         * Returns the duration below which the given fraction of the samples
+         * lies, rounded up to the end of its bucket.
+         */
+        public long percentile(double fraction) {
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++)
+                n += buckets[i];
+            long rank = (long) Math.ceil(fraction * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0)
+                    return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long mean() {
+            long n = count;
+            return n == 0 ? 0 : total / n;
+        }
+
+        void json(StringBuffer sb) {
+            if (count == 0)
+                return;
+            sb.append("{\"time\":").append(ServerInit.svs.realtime);
+            sb.append(",\"frame\":").append(ServerInit.sv.framenum);
+            sb.append(",\"kind\":\"").append(kind);
+            sb.append("\",\"name\":\"").append(escape(name));
+            sb.append("\",\"count\":").append(count);
+            sb.append(",\"mean_ns\":").append(mean());
+            sb.append(",\"p50_ns\":").append(percentile(0.5));
+            sb.append(",\"p90_ns\":").append(percentile(0.9));
+            sb.append(",\"p99_ns\":").append(percentile(0.99));
+            sb.append(",\"max_ns\":").append(max);
+            sb.append("}\n");
+        }
+
+        void print() {
+            if (count == 0)
+                return;
+            Com.Printf(Com.sprintf("%-24s %7i %7i %7i %7i %7i %7i\n", new Vargs()
+                    .add(name.length() > 24 ? name.substring(0, 24) : name)
+                    .add((int) count).add((int) (mean() / 1000))
+                    .add((int) (percentile(0.5) / 1000))
+                    .add((int) (percentile(0.9) / 1000))
+                    .add((int) (percentile(0.99) / 1000))
+                    .add((int) (max / 1000))));
+        }
+    }
+}
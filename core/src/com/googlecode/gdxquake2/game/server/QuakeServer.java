@@ -41,7 +41,11 @@ public class QuakeServer {
 //      + System.getProperty("java.version");
 //  public static final String CPUSTRING = System.getProperty("os.arch");
 
-  public static void run(String[] args) {
+  /**
+   * Initializes a dedicated server without sound, renderer or client screen.
+   * The caller is responsible for pumping QuakeCommon.Frame() afterwards.
+   */
+  public static void init(String[] args) {
     Globals.dedicated = ConsoleVariables.Get("dedicated", "1", CVAR_NOSET);
 
     // in C the first arg is the filename
@@ -59,7 +63,23 @@ public class QuakeServer {
 
     Sound.impl = new DummyDriver();
     QuakeCommon.Init(c_args);
+  }
+
+  /**
+   * Runs a single server frame of the given length, swallowing errors so a
+   * broken frame does not take the whole server down.
+   */
+  public static void frame(int msec) {
+    ResourceLoader.Pump();
+    try {
+      QuakeCommon.Frame(msec);
+    } catch (Throwable e) {
+      Compatibility.printStackTrace(e);
+    }
+  }
 
+  public static void run(String[] args) {
+    init(args);
     
     // Start off on map demo1.
 //    Cbuf.AddText("begin\n");
@@ -73,13 +93,10 @@ public class QuakeServer {
       newtime = Timer.Milliseconds();
       time = newtime - oldtime;
 
-      ResourceLoader.Pump();
       if (time > 0) {
-        try {
-          QuakeCommon.Frame((int)time);
-        } catch (Throwable e) {
-          Compatibility.printStackTrace(e);
-        }
+        frame((int) time);
+      } else {
+        ResourceLoader.Pump();
       }
       oldtime = newtime;
     }
@@ -249,13 +249,17 @@ public final class SV {
                 * Constants.FRAMETIME;
     }
 
+    private static final float[] push_start = { 0, 0, 0 };
+
+    private static final float[] push_end = { 0, 0, 0 };
+
     /**
      * Does not change the entities velocity at all
      */
     public static Trace SV_PushEntity(Entity ent, float[] push) {
         Trace trace;
-        float[] start = { 0, 0, 0 };
-        float[] end = { 0, 0, 0 };
+        float[] start = push_start;
+        float[] end = push_end;
         int mask;
 
         Math3D.VectorCopy(ent.s.origin, start);
@@ -458,13 +462,17 @@ public final class SV {
         return true;
     }
 
+    private static final float[] pusher_move = { 0, 0, 0 };
+
+    private static final float[] pusher_amove = { 0, 0, 0 };
+
     /**
      * 
      * Bmodel objects don't interact with each other, but push all box objects.
      */
     public static void SV_Physics_Pusher(Entity ent) {
-        float[] move = { 0, 0, 0 };
-        float[] amove = { 0, 0, 0 };
+        float[] move = pusher_move;
+        float[] amove = pusher_amove;
         Entity part, mv;
 
         // if not a team captain, so movement will be handled elsewhere
@@ -536,18 +544,22 @@ public final class SV {
         World.SV_LinkEdict(ent);
     }
 
+    private static final float[] toss_move = { 0, 0, 0 };
+
+    private static final float[] toss_old_origin = { 0, 0, 0 };
+
     /**
      * Toss, bounce, and fly movement. When onground, do nothing.
      */
     public static void SV_Physics_Toss(Entity ent) {
 
         Trace trace;
-        float[] move = { 0, 0, 0 };
+        float[] move = toss_move;
         float backoff;
         Entity slave;
         boolean wasinwater;
         boolean isinwater;
-        float[] old_origin = { 0, 0, 0 };
+        float[] old_origin = toss_old_origin;
 
         //	   regular thinking
         SV_RunThink(ent);
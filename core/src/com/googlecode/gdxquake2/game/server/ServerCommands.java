@@ -50,7 +50,9 @@ import com.googlecode.gdxquake2.game.game.EndianHandler;
 import com.googlecode.gdxquake2.game.game.GameSVCmds;
 import com.googlecode.gdxquake2.game.game.GameSave;
 import com.googlecode.gdxquake2.game.game.Info;
+import com.googlecode.gdxquake2.game.game.LevelSnapshots;
 import com.googlecode.gdxquake2.game.sys.NET;
+import com.googlecode.gdxquake2.game.sys.PacketCapture;
 import com.googlecode.gdxquake2.game.sys.Sys;
 import com.googlecode.gdxquake2.game.util.Lib;
 import com.googlecode.gdxquake2.game.util.QuakeFile;
@@ -190,6 +192,9 @@ public class ServerCommands {
 
 		Com.DPrintf("SV_WipeSaveGame(" + savename + ")\n");
 
+		// the level files are about to change behind LevelSnapshots' back
+		LevelSnapshots.Forget();
+
 		name = QuakeFileSystem.Gamedir() + "/save/" + savename + "/server.ssv";
 		remove(name);
 
@@ -719,7 +724,7 @@ public class ServerCommands {
 			return;
 		}
 
-		if (ConsoleVariables.VariableValue("deathmatch") != 0) {
+		if (ServerMain.deathmatch.value != 0) {
 			Com.Printf("Can't savegame in a deathmatch\n");
 			return;
 		}
@@ -1144,5 +1149,17 @@ public class ServerCommands {
 				SV_ServerCommand_f();
 			}
 		});
+
+		Commands.addCommand("sv_profile", new ExecutableCommand() {
+			public void execute() {
+				FrameProfiler.SV_Profile_f();
+			}
+		});
+
+		Commands.addCommand("sv_capture", new ExecutableCommand() {
+			public void execute() {
+				PacketCapture.SV_Capture_f();
+			}
+		});
 	}
 }
@@ -26,6 +26,7 @@ package com.googlecode.gdxquake2.game.server;
 
 import java.io.IOException;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 
 import com.googlecode.gdxquake2.game.common.*;
 import com.googlecode.gdxquake2.game.game.*;
@@ -41,7 +42,113 @@ public class ServerEntities {
      * =============================================================================
      */
 
-    public static byte fatpvs[] = new byte[65536 / 8]; // 32767 is MAX_MAP_LEAFS
+    /** Deltas from the previous frame, see SV_EncodeSharedDeltas. */
+    static final DeltaCache shared_deltas = new DeltaCache();
+
+    /** Worker used when frames are built on the server thread. */
+    static final ClientFrameWorker worker = new ClientFrameWorker();
+
+    public static long fatpvs[] = worker.fatpvs;
+
+    // compared against when a client has no valid delta frame
+    private static final PlayerState nullstate = new PlayerState();
+
+    // demo messages are written on the server thread only
+    private static final Buffer demo_buf = Buffer.allocate(32768).order(ByteOrder.LITTLE_ENDIAN);
+
+    private static final EntityState demo_nostate = new EntityState(null);
+
+    /**
+     * Takes the snapshot of the entity states for the current server frame,
+     * unless it has been taken already. Must be called before the client
+     * frames are built.
+     */
+    public static EntitySnapshot SV_BuildSnapshot() {
+        EntitySnapshot snap = ServerInit.svs.snapshots[ServerInit.sv.framenum
+                & Constants.UPDATE_MASK];
+        if (snap.holds(ServerInit.sv.framenum))
+            return snap;
+
+        snap.sv = ServerInit.sv;
+        snap.framenum = ServerInit.sv.framenum;
+        snap.num_entities = 0;
+
+        for (int e = 1; e < GameBase.num_edicts; e++) {
+            Entity ent = GameBase.g_edicts[e];
+
+            // ignore ents without visible models
+            if ((ent.svflags & Constants.SVF_NOCLIENT) != 0)
+                continue;
+
+            // ignore ents without visible models unless they have an effect
+            if (0 == ent.s.modelindex && 0 == ent.s.effects && 0 == ent.s.sound
+                    && 0 == ent.s.event)
+                continue;
+
+            if (ent.s.number != e) {
+                Com.DPrintf("FIXING ENT.S.NUMBER!!!\n");
+                ent.s.number = e;
+            }
+
+            if (snap.states[e] == null)
+                snap.states[e] = new EntityState(null);
+            snap.states[e].set(ent.s);
+            snap.numbers[snap.num_entities++] = e;
+        }
+        return snap;
+    }
+
+    /**
+     * Encodes the deltas of the entities in the snapshot from their states in
+     * the previous frame into shared_deltas, for the workers of a
+     * ClientFrameExecutor, which would otherwise each encode them again.
+     * Deltas of states that are client specific, see SV_FrameEntity, are
+     * not cached anyway.
+     */
+    static void SV_EncodeSharedDeltas(EntitySnapshot to) {
+        DeltaCache cache = shared_deltas;
+        Buffer out = worker.entitymsg;
+        cache.begin(to);
+        EntitySnapshot from = ServerInit.svs.snapshots[(to.framenum - 1)
+                & Constants.UPDATE_MASK];
+        if (!from.holds(to.framenum - 1))
+            return;
+
+        // both lists are in increasing order
+        int oldindex = 0;
+        for (int i = 0; i < to.num_entities; i++) {
+            int number = to.numbers[i];
+            while (oldindex < from.num_entities
+                    && from.numbers[oldindex] < number)
+                oldindex++;
+            if (oldindex == from.num_entities)
+                break;
+            if (from.numbers[oldindex] != number)
+                continue;
+            out.cursize = 0;
+            out.overflowed = false;
+            Delta.WriteDeltaEntity(from.states[number], to.states[number], out,
+                    false, number <= ServerMain.maxclients.value);
+            cache.store(cache.key(number, from.framenum), out, 0);
+        }
+    }
+
+    /**
+     * Returns the state of entity i of the frame. States that are sent with
+     * solid 0 are copied to the given scratch state.
+     */
+    static EntityState SV_FrameEntity(ClientFrame frame, int i,
+            EntityState scratch) {
+        int n = frame.entities[i];
+        if ((n & ClientFrame.HELD) != 0)
+            return frame.held[i];
+        EntityState state = frame.snapshot.states[n & ClientFrame.NUMBER_MASK];
+        if ((n & ClientFrame.NOSOLID) == 0)
+            return state;
+        scratch.set(state);
+        scratch.solid = 0;
+        return scratch;
+    }
 
     /*
      * =============================================================================
@@ -52,17 +159,26 @@ public class ServerEntities {
      */
 
     /**
-     * Writes a delta update of an entity_state_t list to the message.
+     * Writes a delta update of an entity_state_t list to the message, using
+     * at most budget bytes for the entities if possible, see
+     * SV_ChooseEntities. Entity deltas that are the same for all clients are
+     * taken from the DeltaCache of the worker.
      */
-    static void SV_EmitPacketEntities(ClientFrame from, ClientFrame to,
-            Buffer msg) {
+    static void SV_EmitPacketEntities(ClientData client, ClientFrameWorker worker,
+            ClientFrame from, ClientFrame to, Buffer msg, int budget) {
         EntityState oldent = null, newent = null;
         int oldindex, newindex;
         int oldnum, newnum;
         int from_num_entities;
         int bits;
+        int key, start;
+        int count;
+        DeltaCache cache = worker.deltas;
+        Buffer out = worker.entitymsg;
 
-        Buffers.writeByte(msg, Constants.svc_packetentities);
+        out.cursize = 0;
+        out.overflowed = false;
+        cache.begin(to.snapshot);
 
         if (from == null)
             from_num_entities = 0;
@@ -71,23 +187,25 @@ public class ServerEntities {
 
         newindex = 0;
         oldindex = 0;
+        count = 0;
         while (newindex < to.num_entities || oldindex < from_num_entities) {
             if (newindex >= to.num_entities)
                 newnum = 9999;
             else {
-                newent = ServerInit.svs.client_entities[(to.first_entity + newindex)
-                        % ServerInit.svs.num_client_entities];
+                newent = SV_FrameEntity(to, newindex, worker.newstate);
                 newnum = newent.number;
             }
 
             if (oldindex >= from_num_entities)
                 oldnum = 9999;
             else {
-                oldent = ServerInit.svs.client_entities[(from.first_entity + oldindex)
-                        % ServerInit.svs.num_client_entities];
+                oldent = SV_FrameEntity(from, oldindex, worker.oldstate);
                 oldnum = oldent.number;
             }
 
+            start = out.cursize;
+            worker.item_start[count] = start;
+
             if (newnum == oldnum) { 
             	// delta update from old position
                 // because the force parm is false, this will not result
@@ -95,8 +213,21 @@ public class ServerEntities {
                 // all note that players are always 'newentities', this updates
                 // their oldorigin always
                 // and prevents warping
-                Delta.WriteDeltaEntity(oldent, newent, msg, false,
-                        newent.number <= ServerMain.maxclients.value);
+                // states sent with solid 0 or held back are client specific,
+                // see SV_FrameEntity
+                key = oldent == worker.oldstate || newent == worker.newstate
+                        || (from.entities[oldindex] & ClientFrame.HELD) != 0 ? -1
+                        : cache.key(newnum, from.snapshot.framenum);
+                if (key == -1 || !cache.write(key, out)) {
+                    Delta.WriteDeltaEntity(oldent, newent, out, false,
+                            newent.number <= ServerMain.maxclients.value);
+                    if (key != -1)
+                        cache.store(key, out, start);
+                }
+                worker.item_new[count] = newindex;
+                worker.item_old[count] = oldindex;
+                worker.item_number[count] = newnum;
+                worker.item_length[count++] = out.cursize - start;
                 oldindex++;
                 newindex++;
                 continue;
@@ -104,8 +235,17 @@ public class ServerEntities {
 
             if (newnum < oldnum) { 
             	// this is a new entity, send it from the baseline
-                Delta.WriteDeltaEntity(ServerInit.sv.baselines[newnum], newent, msg,
-                        true, true);
+                key = newent == worker.newstate ? -1 : cache.baselineKey(newnum);
+                if (key == -1 || !cache.write(key, out)) {
+                    Delta.WriteDeltaEntity(ServerInit.sv.baselines[newnum], newent, out,
+                            true, true);
+                    if (key != -1)
+                        cache.store(key, out, start);
+                }
+                worker.item_new[count] = newindex;
+                worker.item_old[count] = -1;
+                worker.item_number[count] = newnum;
+                worker.item_length[count++] = out.cursize - start;
                 newindex++;
                 continue;
             }
@@ -116,22 +256,125 @@ public class ServerEntities {
                 if (oldnum >= 256)
                     bits |= Constants.U_NUMBER16 | Constants.U_MOREBITS1;
 
-                Buffers.writeByte(msg, bits & 255);
+                Buffers.writeByte(out, bits & 255);
                 if ((bits & 0x0000ff00) != 0)
-                    Buffers.writeByte(msg, (bits >> 8) & 255);
+                    Buffers.writeByte(out, (bits >> 8) & 255);
 
                 if ((bits & Constants.U_NUMBER16) != 0)
-                    msg.WriteShort(oldnum);
+                    out.WriteShort(oldnum);
                 else
-                    Buffers.writeByte(msg, oldnum);
+                    Buffers.writeByte(out, oldnum);
 
+                worker.item_new[count] = -1;
+                worker.item_old[count] = oldindex;
+                worker.item_number[count] = oldnum;
+                worker.item_length[count++] = out.cursize - start;
                 oldindex++;
                 continue;
             }
         }
 
+        Buffers.writeByte(msg, Constants.svc_packetentities);
+        if (out.overflowed) {
+            // the items are incomplete, send none of them
+            msg.overflowed = true;
+            count = 0;
+        } else if (out.cursize > budget)
+            SV_ChooseEntities(client, worker, from, to, count, budget);
+
+        // by entity number, as SV_ChooseEntities may have compacted
+        // to.entities[] under item_new
+        for (int i = 0; i < count; i++) {
+            if (worker.item_start[i] == -1)
+                continue;
+            Buffers.Write(msg, out.data, worker.item_start[i], worker.item_length[i]);
+            if (msg.overflowed)
+                break;
+            if (worker.item_new[i] != -1)
+                client.entity_sent[worker.item_number[i]] = ServerInit.sv.framenum;
+        }
+
         msg.WriteShort(0); // end of packetentities
+    }
+
+    /**
+     * Picks the entity updates that go out when the deltas of a frame exceed
+     * the budget of the client, and marks the others with an item_start of
+     * -1. Removals, events, unchanged entities and the player's own entity
+     * are always sent. The other updates are ranked by SV_EntityPriority and
+     * sent while they fit. A deferred update leaves the entity at the state
+     * the client has, so the next frame deltas from there; a deferred new
+     * entity is left out of the frame and comes as new again later.
+     */
+    static void SV_ChooseEntities(ClientData client, ClientFrameWorker worker,
+            ClientFrame from, ClientFrame to, int count, int budget) {
+        int i, n, keys = 0;
+        boolean dropped = false;
+        EntityState state;
 
+        for (i = 0; i < count; i++) {
+            n = worker.item_new[i];
+            if (n != -1 && worker.item_length[i] != 0) {
+                state = SV_FrameEntity(to, n, worker.newstate);
+                if (state.number != client.edict.s.number && state.event == 0) {
+                    worker.item_keys[keys++] = (long) SV_EntityPriority(client,
+                            worker, state, to.entities[n]) << 32 | i;
+                    continue;
+                }
+            }
+            budget -= worker.item_length[i];
+        }
+
+        Arrays.sort(worker.item_keys, 0, keys);
+        for (int k = keys - 1; k >= 0; k--) {
+            i = (int) worker.item_keys[k];
+            if (worker.item_length[i] <= budget) {
+                budget -= worker.item_length[i];
+                continue;
+            }
+            worker.item_start[i] = -1;
+            n = worker.item_new[i];
+            if (worker.item_old[i] != -1)
+                to.hold(n, SV_FrameEntity(from, worker.item_old[i], worker.oldstate));
+            else {
+                to.entities[n] = ClientFrame.DROPPED;
+                dropped = true;
+            }
+        }
+
+        // keep the frame in sync with what the client gets
+        if (dropped)
+            to.removeDropped();
+    }
+
+    /**
+     * Ranks an entity update for SV_ChooseEntities: players first, then the
+     * player's own missiles, then everything else; closer to the view and
+     * longer since the last update ranks higher, so entities that lose out
+     * are updated at a lower rate rather than never.
+     */
+    static int SV_EntityPriority(ClientData client, ClientFrameWorker worker,
+            EntityState state, int flags) {
+        float dx = state.origin[0] - worker.org[0];
+        float dy = state.origin[1] - worker.org[1];
+        float dz = state.origin[2] - worker.org[2];
+        float dist = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+        int age = ServerInit.sv.framenum - client.entity_sent[state.number];
+        if (age < 1)
+            age = 1;
+        else if (age > 64)
+            age = 64;
+
+        int weight;
+        if (state.number <= ServerMain.maxclients.value)
+            weight = 4;
+        else if ((flags & ClientFrame.NOSOLID) != 0)
+            weight = 2;
+        else
+            weight = 1;
+
+        return (int) (weight * age * 65536f / (dist + 256));
     }
 
     /** 
@@ -143,15 +386,12 @@ public class ServerEntities {
         int pflags;
         // ptr
         PlayerState ps, ops;
-        // mem
-        PlayerState dummy;
         int statbits;
 
         ps = to.ps;
         if (from == null) {
             //memset (dummy, 0, sizeof(dummy));
-            dummy = new PlayerState();
-            ops = dummy;
+            ops = nullstate;
         } else
             ops = from.ps;
 
@@ -309,6 +549,16 @@ public class ServerEntities {
      * Writes a frame to a client system.
      */
     public static void SV_WriteFrameToClient(ClientData client, Buffer msg) {
+        SV_WriteFrameToClient(client, worker, msg, Constants.MAX_MSGLEN);
+    }
+
+    /**
+     * Writes a frame to a client system using the given worker. The frame
+     * and the datagram of the client that follows it should take at most
+     * budget bytes, see ServerSend.SV_FrameBudget.
+     */
+    static void SV_WriteFrameToClient(ClientData client,
+            ClientFrameWorker worker, Buffer msg, int budget) {
         //ptr
         ClientFrame frame, oldframe;
         int lastframe;
@@ -326,6 +576,11 @@ public class ServerEntities {
             // client.name);
             oldframe = null;
             lastframe = -1;
+        } else if (!ServerInit.svs.snapshots[client.lastframe
+                & Constants.UPDATE_MASK].holds(client.lastframe)) {
+            // the entity states of that frame are gone
+            oldframe = null;
+            lastframe = -1;
         } else { // we have a valid message to delta from
             oldframe = client.frames[client.lastframe & Constants.UPDATE_MASK];
             lastframe = client.lastframe;
@@ -334,8 +589,9 @@ public class ServerEntities {
         Buffers.writeByte(msg, Constants.svc_frame);
         msg.putInt(ServerInit.sv.framenum);
         msg.putInt(lastframe); // what we are delta'ing from
-        Buffers.writeByte(msg, client.surpressCount); // rate dropped packets
-        client.surpressCount = 0;
+        // rate dropped packets; frames are no longer dropped, entity
+        // updates are deferred instead, see SV_ChooseEntities
+        Buffers.writeByte(msg, 0);
 
         // send over the areabits
         Buffers.writeByte(msg, frame.areabytes);
@@ -344,8 +600,12 @@ public class ServerEntities {
         // delta encode the playerstate
         SV_WritePlayerstateToClient(oldframe, frame, msg);
 
-        // delta encode the entities
-        SV_EmitPacketEntities(oldframe, frame, msg);
+        // delta encode the entities, leaving room for the datagram
+        // and the packetentities command
+        budget -= msg.cursize + 3;
+        if (!client.datagram.overflowed)
+            budget -= client.datagram.cursize;
+        SV_EmitPacketEntities(client, worker, oldframe, frame, msg, budget);
     }
 
     /** 
@@ -353,30 +613,34 @@ public class ServerEntities {
      * PVS point. 
      */
     public static void SV_FatPVS(float[] org) {
-        int leafs[] = new int[64];
+        SV_FatPVS(worker, org);
+    }
+
+    /** Builds the fat PVS in the fatpvs array of the worker. */
+    static void SV_FatPVS(ClientFrameWorker worker, float[] org) {
+        int leafs[] = worker.leafs;
         int i, j, count;
         int longs;
-        byte src[];
-        float[] mins = { 0, 0, 0 }, maxs = { 0, 0, 0 };
+        float[] mins = worker.mins, maxs = worker.maxs;
 
         for (i = 0; i < 3; i++) {
             mins[i] = org[i] - 8;
             maxs[i] = org[i] + 8;
         }
 
-        count = CM.CM_BoxLeafnums(mins, maxs, leafs, 64, null);
+        count = CM.CM_BoxLeafnums(worker.trace, mins, maxs, leafs, leafs.length, null);
 
         if (count < 1)
             Com.Error(Constants.ERR_FATAL, "SV_FatPVS: count < 1");
 
-        longs = (CM.CM_NumClusters() + 31) >> 5;
+        longs = CM.CM_VisWords();
 
         // convert leafs to clusters
         for (i = 0; i < count; i++)
             leafs[i] = CM.CM_LeafCluster(leafs[i]);
 
-        System.arraycopy(CM.CM_ClusterPVS(leafs[0]), 0, ServerEntities.fatpvs, 0,
-                longs << 2);
+        Arrays.fill(worker.fatpvs, 0, longs, 0);
+        CM.CM_MergeClusterPVS(leafs[0], worker.fatpvs, worker.visrow);
         // or in all the other leaf bits
         for (i = 1; i < count; i++) {
             for (j = 0; j < i; j++)
@@ -385,17 +649,7 @@ public class ServerEntities {
             if (j != i)
                 continue; // already have the cluster we want
 
-            src = CM.CM_ClusterPVS(leafs[i]);
-
-            //for (j=0 ; j<longs ; j++)
-            //	((long *)fatpvs)[j] |= ((long *)src)[j];
-            int k = 0;
-            for (j = 0; j < longs; j++) {
-                ServerEntities.fatpvs[k] |= src[k++];
-                ServerEntities.fatpvs[k] |= src[k++];
-                ServerEntities.fatpvs[k] |= src[k++];
-                ServerEntities.fatpvs[k] |= src[k++];
-            }
+            CM.CM_MergeClusterPVS(leafs[i], worker.fatpvs, worker.visrow);
         }
     }
 
@@ -404,25 +658,39 @@ public class ServerEntities {
      * off the playerstat and areabits.
      */
     public static void SV_BuildClientFrame(ClientData client) {
+        SV_BuildSnapshot();
+        SV_BuildClientFrame(client, worker);
+    }
+
+    /**
+     * Builds the client frame using the scratch state of the given worker.
+     * The frame refers to the entity states of the current snapshot, see
+     * SV_BuildSnapshot. Only touches the client, so frames of different
+     * clients can be built at the same time.
+     */
+    static void SV_BuildClientFrame(ClientData client, ClientFrameWorker worker) {
         int e, i;
-        float[] org = { 0, 0, 0 };
+        float[] org = worker.org;
         Entity ent;
         Entity clent;
         ClientFrame frame;
-        EntityState state;
+        EntitySnapshot snap;
         int l;
         int clientarea, clientcluster;
         int leafnum;
         int c_fullsend;
-        byte clientphs[];
-        byte bitvector[];
-
-        clent = client.edict;
-        if (clent.client == null)
-            return; // not in game yet
+        long bitvector[];
 
         // this is the frame we are creating
         frame = client.frames[ServerInit.sv.framenum & Constants.UPDATE_MASK];
+        snap = ServerInit.svs.snapshots[ServerInit.sv.framenum & Constants.UPDATE_MASK];
+        frame.snapshot = snap;
+
+        clent = client.edict;
+        if (clent.client == null) {
+            frame.num_entities = 0;
+            return; // not in game yet
+        }
 
         frame.senttime = ServerInit.svs.realtime; // save it for ping calc later
 
@@ -431,7 +699,7 @@ public class ServerEntities {
             org[i] = clent.client.ps.pmove.origin[i] * 0.125f
                     + clent.client.ps.viewoffset[i];
 
-        leafnum = CM.CM_PointLeafnum(org);
+        leafnum = CM.CM_PointLeafnum(worker.trace, org);
         clientarea = CM.CM_LeafArea(leafnum);
         clientcluster = CM.CM_LeafCluster(leafnum);
 
@@ -441,27 +709,18 @@ public class ServerEntities {
         // grab the current player_state_t
         frame.ps.set(clent.client.ps);
 
-        SV_FatPVS(org);
-        clientphs = CM.CM_ClusterPHS(clientcluster);
+        SV_FatPVS(worker, org);
 
         // build up the list of visible entities
         frame.num_entities = 0;
-        frame.first_entity = ServerInit.svs.next_client_entities;
 
         c_fullsend = 0;
 
-        for (e = 1; e < GameBase.num_edicts; e++) {
+        // the snapshot only contains ents with visible models or effects
+        for (int k = 0; k < snap.num_entities; k++) {
+            e = snap.numbers[k];
             ent = GameBase.g_edicts[e];
 
-            // ignore ents without visible models
-            if ((ent.svflags & Constants.SVF_NOCLIENT) != 0)
-                continue;
-
-            // ignore ents without visible models unless they have an effect
-            if (0 == ent.s.modelindex && 0 == ent.s.effects && 0 == ent.s.sound
-                    && 0 == ent.s.event)
-                continue;
-
             // ignore if not touching a PV leaf
             // check area
             if (ent != clent) {
@@ -474,15 +733,15 @@ public class ServerEntities {
                 // beams just check one point for PHS
                 if ((ent.s.renderfx & Constants.RF_BEAM) != 0) {
                     l = ent.clusternums[0];
-                    if (0 == (clientphs[l >> 3] & (1 << (l & 7))))
+                    if (!CM.CM_ClusterAudible(clientcluster, l, worker.visrow))
                         continue;
                 } else {
                     // FIXME: if an ent has a model and a sound, but isn't
                     // in the PVS, only the PHS, clear the model
                     if (ent.s.sound == 0) {
-                        bitvector = ServerEntities.fatpvs; //clientphs;
+                        bitvector = worker.fatpvs; //clientphs;
                     } else
-                        bitvector = ServerEntities.fatpvs;
+                        bitvector = worker.fatpvs;
 
                     if (ent.num_clusters == -1) { // too many leafs for
                                                   // individual check, go by
@@ -493,7 +752,7 @@ public class ServerEntities {
                     } else { // check individual leafs
                         for (i = 0; i < ent.num_clusters; i++) {
                             l = ent.clusternums[i];
-                            if ((bitvector[l >> 3] & (1 << (l & 7))) != 0)
+                            if (CM.CM_VisBit(bitvector, l))
                                 break;
                         }
                         if (i == ent.num_clusters)
@@ -502,7 +761,7 @@ public class ServerEntities {
 
                     if (ent.s.modelindex == 0) { // don't send sounds if they
                                                  // will be attenuated away
-                        float[] delta = { 0, 0, 0 };
+                        float[] delta = worker.delta;
                         float len;
 
                         Math3D.VectorSubtract(org, ent.s.origin, delta);
@@ -513,24 +772,18 @@ public class ServerEntities {
                 }
             }
 
-            // add it to the circular client_entities array
-            int ix = ServerInit.svs.next_client_entities
-                    % ServerInit.svs.num_client_entities;
-            state = ServerInit.svs.client_entities[ix];
-            if (ent.s.number != e) {
-                Com.DPrintf("FIXING ENT.S.NUMBER!!!\n");
-                ent.s.number = e;
+            // add it to the frame, the state is in the snapshot
+            if (frame.num_entities == frame.entities.length) {
+                int grown[] = new int[frame.num_entities * 2];
+                System.arraycopy(frame.entities, 0, grown, 0, frame.num_entities);
+                frame.entities = grown;
             }
 
-            //*state = ent.s;
-            ServerInit.svs.client_entities[ix].set(ent.s);
-
             // don't mark players missiles as solid
-            if (ent.owner == client.edict)
-                state.solid = 0;
-
-            ServerInit.svs.next_client_entities++;
-            frame.num_entities++;
+            if (ent.owner == client.edict && snap.states[e].solid != 0)
+                frame.entities[frame.num_entities++] = e | ClientFrame.NOSOLID;
+            else
+                frame.entities[frame.num_entities++] = e;
         }
     }
 
@@ -541,14 +794,15 @@ public class ServerEntities {
     public static void SV_RecordDemoMessage() {
         int e;
         Entity ent;
-        EntityState nostate = new EntityState(null);
+        EntityState nostate = demo_nostate;
         int len;
 
         if (ServerInit.svs.demofile == null)
             return;
 
         //memset (nostate, 0, sizeof(nostate));
-        Buffer buf = Buffer.allocate(32768).order(ByteOrder.LITTLE_ENDIAN);
+        Buffer buf = demo_buf;
+        buf.cursize = 0;
 
         // write a frame message that doesn't contain a player_state_t
         Buffers.writeByte(buf, Constants.svc_frame);
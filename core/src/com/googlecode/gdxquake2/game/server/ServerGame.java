@@ -219,23 +219,19 @@ public class ServerGame {
      */
     public static boolean PF_inPVS(float[] p1, float[] p2) {
         int leafnum;
-        int cluster;
+        int cluster1, cluster2;
         int area1, area2;
-        byte mask[];
 
         leafnum = CM.CM_PointLeafnum(p1);
-        cluster = CM.CM_LeafCluster(leafnum);
+        cluster1 = CM.CM_LeafCluster(leafnum);
         area1 = CM.CM_LeafArea(leafnum);
-        mask = CM.CM_ClusterPVS(cluster);
 
         leafnum = CM.CM_PointLeafnum(p2);
-        cluster = CM.CM_LeafCluster(leafnum);
+        cluster2 = CM.CM_LeafCluster(leafnum);
         area2 = CM.CM_LeafArea(leafnum);
 
-        // quake2 bugfix
-        if (cluster == -1)
-            return false;
-        if (mask != null && (0 == (mask[cluster >>> 3] & (1 << (cluster & 7)))))
+        // quake2 bugfix: no cluster (-1) is never visible
+        if (!CM.CM_ClusterVisible(cluster1, cluster2))
             return false;
 
         if (!CM.CM_AreasConnected(area1, area2))
@@ -251,23 +247,19 @@ public class ServerGame {
      */
     public static boolean PF_inPHS(float[] p1, float[] p2) {
         int leafnum;
-        int cluster;
+        int cluster1, cluster2;
         int area1, area2;
-        byte mask[];
 
         leafnum = CM.CM_PointLeafnum(p1);
-        cluster = CM.CM_LeafCluster(leafnum);
+        cluster1 = CM.CM_LeafCluster(leafnum);
         area1 = CM.CM_LeafArea(leafnum);
-        mask = CM.CM_ClusterPHS(cluster);
 
         leafnum = CM.CM_PointLeafnum(p2);
-        cluster = CM.CM_LeafCluster(leafnum);
+        cluster2 = CM.CM_LeafCluster(leafnum);
         area2 = CM.CM_LeafArea(leafnum);
 
-        // quake2 bugfix
-        if (cluster == -1)
-            return false;
-        if (mask != null && (0 == (mask[cluster >> 3] & (1 << (cluster & 7)))))
+        // quake2 bugfix: no cluster (-1) is never audible
+        if (!CM.CM_ClusterAudible(cluster1, cluster2))
             return false; // more than one bounce away
         if (!CM.CM_AreasConnected(area1, area2))
             return false; // a door blocks hearing
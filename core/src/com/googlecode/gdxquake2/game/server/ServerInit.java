@@ -125,7 +125,7 @@ public class ServerInit {
         if (ServerMain.sv_noreload.value != 0)
             return;
 
-        if (ConsoleVariables.VariableValue("deathmatch") != 0)
+        if (ServerMain.deathmatch.value != 0)
             return;
 
         name = QuakeFileSystem.Gamedir() + "/save/current/" + sv.name + ".sav";
@@ -197,13 +197,14 @@ public class ServerInit {
         sv = new ServerState();
 
         svs.realtime = 0;
+        DeterministicMode.Spawn();
         sv.loadgame = loadgame;
         sv.attractloop = attractloop;
 
         // save name for levels that don't set message
         sv.configstrings[Constants.CS_NAME] = server;
 
-        if (ConsoleVariables.VariableValue("deathmatch") != 0) {
+        if (ServerMain.deathmatch.value != 0) {
             sv.configstrings[Constants.CS_AIRACCEL] = ""
                     + ServerMain.sv_airaccelerate.value;
             PlayerMovements.pm_airaccelerate = ServerMain.sv_airaccelerate.value;
@@ -258,11 +259,16 @@ public class ServerInit {
 				Globals.server_state = sv.state;
 
 				// load and spawn all other entities
-				GameSpawn.SpawnEntities(sv.name, CM.CM_EntityString(), spawnpoint);
-
-				// run two frames to allow everything to settle
-				GameBase.G_RunFrame();
-				GameBase.G_RunFrame();
+				DeterministicMode.Begin();
+				try {
+					GameSpawn.SpawnEntities(sv.name, CM.CM_EntityString(), spawnpoint);
+
+					// run two frames to allow everything to settle
+					GameBase.G_RunFrame();
+					GameBase.G_RunFrame();
+				} finally {
+					DeterministicMode.End();
+				}
 
 				// all precaches are complete
 				sv.state = serverstate;
@@ -321,8 +327,8 @@ public class ServerInit {
 
         svs.initialized = true;
 
-        if (ConsoleVariables.VariableValue("coop") != 0
-                && ConsoleVariables.VariableValue("deathmatch") != 0) {
+        if (ServerMain.coop.value != 0
+                && ServerMain.deathmatch.value != 0) {
             Com.Printf("Deathmatch and Coop both set, disabling Coop\n");
             ConsoleVariables.FullSet("coop", "0", Constants.CVAR_SERVERINFO
                     | Constants.CVAR_LATCH);
@@ -331,20 +337,20 @@ public class ServerInit {
         // dedicated servers are can't be single player and are usually DM
         // so unless they explicity set coop, force it to deathmatch
         if (Globals.dedicated.value != 0) {
-            if (0 == ConsoleVariables.VariableValue("coop"))
+            if (0 == ServerMain.coop.value)
                 ConsoleVariables.FullSet("deathmatch", "1", Constants.CVAR_SERVERINFO
                         | Constants.CVAR_LATCH);
         }
 
         // init clients
-        if (ConsoleVariables.VariableValue("deathmatch") != 0) {
+        if (ServerMain.deathmatch.value != 0) {
             if (ServerMain.maxclients.value <= 1)
                 ConsoleVariables.FullSet("maxclients", "8", Constants.CVAR_SERVERINFO
                         | Constants.CVAR_LATCH);
             else if (ServerMain.maxclients.value > Constants.MAX_CLIENTS)
                 ConsoleVariables.FullSet("maxclients", "" + Constants.MAX_CLIENTS,
                         Constants.CVAR_SERVERINFO | Constants.CVAR_LATCH);
-        } else if (ConsoleVariables.VariableValue("coop") != 0) {
+        } else if (ServerMain.coop.value != 0) {
             if (ServerMain.maxclients.value <= 1 || ServerMain.maxclients.value > 4)
                 ConsoleVariables.FullSet("maxclients", "4", Constants.CVAR_SERVERINFO
                         | Constants.CVAR_LATCH);
@@ -361,12 +367,9 @@ public class ServerInit {
             svs.clients[n] = new ClientData();
             svs.clients[n].serverindex = n;
         }
-        svs.num_client_entities = ((int) ServerMain.maxclients.value)
-                * Constants.UPDATE_BACKUP * 64; //ok.
-
-        svs.client_entities = new EntityState[svs.num_client_entities];
-        for (int n = 0; n < svs.client_entities.length; n++)
-            svs.client_entities[n] = new EntityState(null);
+        svs.snapshots = new EntitySnapshot[Constants.UPDATE_BACKUP];
+        for (int n = 0; n < svs.snapshots.length; n++)
+            svs.snapshots[n] = new EntitySnapshot();
 
         // init network stuff
         NET.Config((ServerMain.maxclients.value > 1));
@@ -436,7 +439,7 @@ public class ServerInit {
         }
 
         // ZOID: special hack for end game screen in coop mode
-        if (ConsoleVariables.VariableValue("coop") != 0 && level.equals("victory.pcx"))
+        if (ServerMain.coop.value != 0 && level.equals("victory.pcx"))
             ConsoleVariables.Set("nextserver", "gamemap \"*" + firstmap + "\"");
 
         // if there is a $, use the remainder as a spawnpoint
@@ -78,8 +78,18 @@ public class ServerMain {
 
     public static ConsoleVariable maxclients; // FIXME: rename sv_maxclients
 
+    public static ConsoleVariable deathmatch;
+
+    public static ConsoleVariable coop;
+
     public static ConsoleVariable sv_showclamp;
 
+    public static ConsoleVariable sv_profile_slow; // ms, print longer frames
+
+    public static ConsoleVariable sv_deterministic; // seed, see DeterministicMode
+
+    public static ConsoleVariable sv_checksum; // print the frame checksums
+
     public static ConsoleVariable hostname;
 
     public static ConsoleVariable public_server; // should heartbeats be sent
@@ -275,6 +285,10 @@ public class ServerMain {
         qport = Lib.atoi(Commands.Argv(2));
         int challenge = Lib.atoi(Commands.Argv(3));
         userinfo = Commands.Argv(4);
+        // the loopback queue is too short for bursts of fragments and has
+        // no latency to hide anyway
+        int features = NET.IsLocalAddress(adr) ? 0
+                : Lib.atoi(Commands.Argv(5)) & NetworkChannel.FEATURES;
 
         // force the IP key/value pair so the game can filter based on ip
         userinfo = Info.Info_SetValueForKey(userinfo, "ip", NET.AdrToString(Globals.net_from));
@@ -324,7 +338,7 @@ public class ServerMain {
                 }
                 Com.Printf(NET.AdrToString(adr) + ":reconnect\n");
 
-                gotnewcl(i, challenge, userinfo, adr, qport);
+                gotnewcl(i, challenge, userinfo, adr, qport, features);
                 return;
             }
         }
@@ -345,14 +359,15 @@ public class ServerMain {
             Com.DPrintf("Rejected a connection.\n");
             return;
         }
-        gotnewcl(index, challenge, userinfo, adr, qport);
+        gotnewcl(index, challenge, userinfo, adr, qport, features);
     }
 
     /**
-     * Initializes player structures after successfull connection.
+     * Initializes player structures after successfull connection. features
+     * are the NetworkChannel.FEATURE_* bits both sides support.
      */
     public static void gotnewcl(int i, int challenge, String userinfo,
-            NetworkAddress adr, int qport) {
+            NetworkAddress adr, int qport, int features) {
         // build a new connection
         // accept the new client
         // this is the only place a client_t is ever initialized
@@ -388,9 +403,12 @@ public class ServerMain {
         SV_UserinfoChanged(ServerInit.svs.clients[i]);
 
         // send the connect packet to the client
-        NetworkChannel.OutOfBandPrint(Constants.NS_SERVER, adr, "client_connect");
+        // older clients don't look at the arguments of client_connect,
+        // so they are only added for clients that asked for features
+        NetworkChannel.OutOfBandPrint(Constants.NS_SERVER, adr,
+                features != 0 ? "client_connect " + features : "client_connect");
 
-        NetworkChannel.Setup(ServerInit.svs.clients[i].netchan, Constants.NS_SERVER, adr, qport);
+        NetworkChannel.Setup(ServerInit.svs.clients[i].netchan, Constants.NS_SERVER, adr, qport, features);
 
         ServerInit.svs.clients[i].state = Constants.cs_connected;
 
@@ -671,6 +689,7 @@ public class ServerMain {
      * SV_RunGameFrame.
      */
     public static void SV_RunGameFrame() {
+        long start = FrameProfiler.start();
         if (Globals.host_speeds.value != 0)
             Globals.time_before_game = Timer.Milliseconds();
 
@@ -684,6 +703,8 @@ public class ServerMain {
         // don't run if paused
         if (0 == ServerMain.sv_paused.value || ServerMain.maxclients.value > 1) {
             GameBase.G_RunFrame();
+            if (DeterministicMode.IsActive())
+                DeterministicMode.Checksum();
 
             // never get more than one tic behind
             if (ServerInit.sv.time < ServerInit.svs.realtime) {
@@ -695,7 +716,7 @@ public class ServerMain {
 
         if (Globals.host_speeds.value != 0)
             Globals.time_after_game = Timer.Milliseconds();
-
+        FrameProfiler.phase(FrameProfiler.RUN_GAME_FRAME, start);
     }
 
     /**
@@ -708,16 +729,39 @@ public class ServerMain {
         if (!ServerInit.svs.initialized)
             return;
 
+        if (DeterministicMode.IsActive()) {
+            if (!DeterministicMode.Due(msec))
+                return;
+            // the frame is due exactly now
+            ServerInit.svs.realtime = ServerInit.sv.time;
+            DeterministicMode.Begin();
+            try {
+                SV_RunFrame();
+            } finally {
+                DeterministicMode.End();
+            }
+            return;
+        }
+
         ServerInit.svs.realtime += msec;
+        SV_RunFrame();
+    }
+
+    static void SV_RunFrame() {
+        long frame_start = FrameProfiler.start();
 
         // keep the random time dependent
         Lib.rand();
 
         // check timeouts
+        long start = FrameProfiler.start();
         SV_CheckTimeouts();
+        FrameProfiler.phase(FrameProfiler.CHECK_TIMEOUTS, start);
 
         // get packets from clients
+        start = FrameProfiler.start();
         SV_ReadPackets();
+        FrameProfiler.phase(FrameProfiler.READ_PACKETS, start);
 
         //if (Game.g_edicts[1] !=null)
         //	Com.p("player at:" + Lib.vtofsbeaty(Game.g_edicts[1].s.origin ));
@@ -745,7 +789,9 @@ public class ServerMain {
         SV_RunGameFrame();
 
         // send messages back to the clients that had packets read this frame
+        start = FrameProfiler.start();
         ServerSend.SV_SendClientMessages();
+        FrameProfiler.phase(FrameProfiler.SEND_CLIENT_MESSAGES, start);
 
         // save the entire world state if recording a serverdemo
         ServerEntities.SV_RecordDemoMessage();
@@ -756,6 +802,7 @@ public class ServerMain {
         // clear teleport flags, etc for next frame
         SV_PrepWorldFrame();
 
+        FrameProfiler.endFrame(frame_start);
     }
 
     public static void Master_Heartbeat() {
@@ -866,8 +913,8 @@ public class ServerMain {
 
         ServerMain.rcon_password = ConsoleVariables.Get("rcon_password", "", 0);
         ConsoleVariables.Get("skill", "1", 0);
-        ConsoleVariables.Get("deathmatch", "0", Constants.CVAR_LATCH);
-        ConsoleVariables.Get("coop", "0", Constants.CVAR_LATCH);
+        ServerMain.deathmatch = ConsoleVariables.Get("deathmatch", "0", Constants.CVAR_LATCH);
+        ServerMain.coop = ConsoleVariables.Get("coop", "0", Constants.CVAR_LATCH);
         ConsoleVariables.Get("dmflags", "" + Constants.DF_INSTANT_ITEMS,
                 Constants.CVAR_SERVERINFO);
         ConsoleVariables.Get("fraglimit", "0", Constants.CVAR_SERVERINFO);
@@ -886,6 +933,9 @@ public class ServerMain {
         ServerMain.sv_paused = ConsoleVariables.Get("paused", "0", 0);
         ServerMain.sv_timedemo = ConsoleVariables.Get("timedemo", "0", 0);
         ServerMain.sv_enforcetime = ConsoleVariables.Get("sv_enforcetime", "0", 0);
+        ServerMain.sv_profile_slow = ConsoleVariables.Get("sv_profile_slow", "0", 0);
+        ServerMain.sv_deterministic = ConsoleVariables.Get("sv_deterministic", "0", 0);
+        ServerMain.sv_checksum = ConsoleVariables.Get("sv_checksum", "1", 0);
 
         ServerMain.allow_download = ConsoleVariables.Get("allow_download", "1",
                 Constants.CVAR_ARCHIVE);
@@ -134,13 +134,17 @@ public class ServerSend {
 	MULTICAST_PHS	send to clients potentially hearable from org
 	=================
 	*/
+	static final int MASK_NONE = 0;
+	static final int MASK_PVS = 1;
+	static final int MASK_PHS = 2;
+
 	public static void SV_Multicast(float[] origin, int to) {
 		ClientData client;
-		byte mask[];
-		int leafnum, cluster;
+		int mask;
+		int leafnum, cluster1 = -1;
 		int j;
 		boolean reliable;
-		int area1, area2;
+		int area1;
 
 		reliable = false;
 
@@ -162,27 +166,25 @@ public class ServerSend {
 				reliable = true; // intentional fallthrough, no break here
 			case Constants.MULTICAST_ALL :
 				leafnum = 0;
-				mask = null;
+				mask = MASK_NONE;
 				break;
 
 			case Constants.MULTICAST_PHS_R :
 				reliable = true; // intentional fallthrough
 			case Constants.MULTICAST_PHS :
-				leafnum = CM.CM_PointLeafnum(origin);
-				cluster = CM.CM_LeafCluster(leafnum);
-				mask = CM.CM_ClusterPHS(cluster);
+				cluster1 = CM.CM_LeafCluster(leafnum);
+				mask = MASK_PHS;
 				break;
 
 			case Constants.MULTICAST_PVS_R :
 				reliable = true; // intentional fallthrough
 			case Constants.MULTICAST_PVS :
-				leafnum = CM.CM_PointLeafnum(origin);
-				cluster = CM.CM_LeafCluster(leafnum);
-				mask = CM.CM_ClusterPVS(cluster);
+				cluster1 = CM.CM_LeafCluster(leafnum);
+				mask = MASK_PVS;
 				break;
 
 			default :
-				mask = null;
+				mask = MASK_NONE;
 				Com.Error(Constants.ERR_FATAL, "SV_Multicast: bad to:" + to + "\n");
 		}
 
@@ -195,17 +197,14 @@ public class ServerSend {
 			if (client.state != Constants.cs_spawned && !reliable)
 				continue;
 
-			if (mask != null) {
-				leafnum = CM.CM_PointLeafnum(client.edict.s.origin);
-				cluster = CM.CM_LeafCluster(leafnum);
-				area2 = CM.CM_LeafArea(leafnum);
-				if (!CM.CM_AreasConnected(area1, area2))
+			if (mask != MASK_NONE) {
+				SV_ClientLeaf(client);
+				if (!CM.CM_AreasConnected(area1, client.areanum))
 					continue;
 
-				// quake2 bugfix
-				if (cluster == -1)
-					continue;
-				if (mask != null && (0 == (mask[cluster >> 3] & (1 << (cluster & 7)))))
+				// quake2 bugfix: CM_ClusterVisible/Audible reject cluster -1
+				if (mask == MASK_PVS ? !CM.CM_ClusterVisible(cluster1, client.cluster)
+						: !CM.CM_ClusterAudible(cluster1, client.cluster))
 					continue;
 			}
 
@@ -218,6 +217,26 @@ public class ServerSend {
 		ServerInit.sv.multicast.clear();
 	}
 
+	/**
+	 * Updates the leaf, cluster and area of the client's origin. They are
+	 * computed at most once per server frame, unless the client is moved
+	 * again after the first multicast of the frame.
+	 */
+	static void SV_ClientLeaf(ClientData client) {
+		float[] org = client.edict.s.origin;
+		if (client.leaf_sv == ServerInit.sv
+				&& org[0] == client.leaf_origin[0]
+				&& org[1] == client.leaf_origin[1]
+				&& org[2] == client.leaf_origin[2])
+			return;
+
+		client.leaf_sv = ServerInit.sv;
+		Math3D.VectorCopy(org, client.leaf_origin);
+		client.leafnum = CM.CM_PointLeafnum(org);
+		client.cluster = CM.CM_LeafCluster(client.leafnum);
+		client.areanum = CM.CM_LeafArea(client.leafnum);
+	}
+
 	private static final float[] origin_v = { 0, 0, 0 };
 	/*  
 	==================
@@ -355,41 +374,70 @@ public class ServerSend {
 	===============================================================================
 	*/
 
-	private static final Buffer msg = new Buffer();
+	/**
+	 * Sends the frame datagrams of the spawned clients, see
+	 * SV_SendClientMessages. Null handles them one after another
+	 * on the server thread.
+	 */
+	public static ClientFrameExecutor frame_executor;
+
+	/** Clients collected by SV_SendClientMessages for the frame executor. */
+	private static ClientData send_list[] = new ClientData[0];
+
+	/** Serializes NetworkChannel.Transmit, which uses a shared send buffer. */
+	private static final Object transmit_lock = new Object();
+
 	/*
 	=======================
 	SV_SendClientDatagram
 	=======================
 	*/
 	public static boolean SV_SendClientDatagram(ClientData client) {
-		//byte msg_buf[] = new byte[Defines.MAX_MSGLEN];
+		ServerEntities.SV_BuildSnapshot();
+		return SV_SendClientDatagram(client, ServerEntities.worker);
+	}
 
-		ServerEntities.SV_BuildClientFrame(client);
+	/**
+	 * Builds, encodes and sends the frame of the client using the message
+	 * buffer and scratch state of the given worker. Datagrams of different
+	 * clients can be sent at the same time as long as they use different
+	 * workers.
+	 */
+	public static boolean SV_SendClientDatagram(ClientData client, ClientFrameWorker worker) {
+		ServerEntities.SV_BuildClientFrame(client, worker);
 
-		Buffer msg = Buffer.wrap(msgbuf).order(ByteOrder.LITTLE_ENDIAN);
-		msg.allowoverflow = true;
+		Buffer msg = worker.msg;
+		msg.cursize = 0;
+		msg.overflowed = false;
 
 		// send over all the relevant entity_state_t
 		// and the player_state_t
-		ServerEntities.SV_WriteFrameToClient(client, msg);
+		ServerEntities.SV_WriteFrameToClient(client, worker, msg, SV_FrameBudget(client));
+
+		// the rate accounts for the compressed size, which leaves room for
+		// more entities in the next frames
+		if ((client.netchan.features & NetworkChannel.FEATURE_COMPRESSION) != 0 && !msg.overflowed)
+			worker.codec.CompressFrame(msg);
 
 		// copy the accumulated multicast datagram
 		// for this client out to the message
 		// it is necessary for this to be after the WriteEntities
 		// so that entity references will be current
-		if (client.datagram.overflowed)
-			Com.Printf("WARNING: datagram overflowed for " + client.name + "\n");
-		else
-			Buffers.Write(msg, client.datagram.data, client.datagram.cursize);
-		client.datagram.clear();
+		synchronized (transmit_lock) {
+			if (client.datagram.overflowed)
+				Com.Printf("WARNING: datagram overflowed for " + client.name + "\n");
+			else
+				Buffers.Write(msg, client.datagram.data, client.datagram.cursize);
+			client.datagram.clear();
 
-		if (msg.overflowed) { // must have room left for the packet header
-			Com.Printf("WARNING: msg overflowed for " + client.name + "\n");
-			msg.clear();
-		}
+			if (msg.overflowed) { // must have room left for the packet header
+				Com.Printf("WARNING: msg overflowed for " + client.name + "\n");
+				msg.clear();
+			}
 
-		// send the datagram
-		NetworkChannel.Transmit(client.netchan, msg.cursize, msg.data);
+			// send the datagram
+			NetworkChannel.Transmit(client.netchan, msg.cursize, msg.data);
+		}
 
 		// record the size for rate estimation
 		client.message_size[ServerInit.sv.framenum % Constants.RATE_MESSAGES] = msg.cursize;
@@ -405,35 +453,32 @@ public class ServerSend {
 		ServerInit.sv.demofile = null;
 		User.SV_Nextserver();
 	}
-	/*
-	=======================
-	SV_RateDrop
-	
-	Returns true if the client is over its current
-	bandwidth estimation and should not be sent another packet
-	=======================
-	*/
-	public static boolean SV_RateDrop(ClientData c) {
-		int total;
-		int i;
-
-		// never drop over the loopback
+	/**
+	 * Returns the number of bytes the next frame datagram of the client may
+	 * take: what is left of its rate over the last RATE_MESSAGES frames, at
+	 * most twice its share of a single frame, and never more than fits into
+	 * the packet next to the reliable message, nor less than 0. Replaces
+	 * SV_RateDrop, which skipped whole frames of clients over their rate;
+	 * frames over the budget defer entity updates instead, see
+	 * ServerEntities.SV_ChooseEntities.
+	 */
+	static int SV_FrameBudget(ClientData c) {
+		// packet header and the reliable message that may go with it
+		int budget = Constants.MAX_MSGLEN - 16
+				- c.netchan.Netchan_ReliableSize();
+
+		// never limit over the loopback
 		if (c.netchan.remote_address.type == Constants.NA_LOOPBACK)
-			return false;
-
-		total = 0;
-
-		for (i = 0; i < Constants.RATE_MESSAGES; i++) {
-			total += c.message_size[i];
-		}
+			return budget;
 
-		if (total > c.rate) {
-			c.surpressCount++;
-			c.message_size[ServerInit.sv.framenum % Constants.RATE_MESSAGES] = 0;
-			return true;
+		int total = 0;
+		int current = ServerInit.sv.framenum % Constants.RATE_MESSAGES;
+		for (int i = 0; i < Constants.RATE_MESSAGES; i++) {
+			if (i != current)
+				total += c.message_size[i];
 		}
-
-		return false;
+		budget = Math.min(budget, Math.min(c.rate - total, 2 * c.rate / Constants.RATE_MESSAGES));
+		return Math.max(budget, 0);
 	}
 
 	private static final byte msgbuf[] = new byte[Constants.MAX_MSGLEN];
@@ -488,6 +533,10 @@ public class ServerSend {
 			}
 		}
 
+		if (send_list.length != ServerInit.svs.clients.length)
+			send_list = new ClientData[ServerInit.svs.clients.length];
+		int send_count = 0;
+
 		// send a message to each connected client
 		for (i = 0; i < ServerMain.maxclients.value; i++) {
 			c = ServerInit.svs.clients[i];
@@ -508,18 +557,27 @@ public class ServerSend {
 				|| ServerInit.sv.state == Constants.ss_pic)
 				NetworkChannel.Transmit(c.netchan, msglen, msgbuf);
 			else if (c.state == Constants.cs_spawned) {
-				// don't overrun bandwidth
-				if (SV_RateDrop(c))
-					continue;
-
-				SV_SendClientDatagram(c);
+				// the frames are built once all clients have been checked
+				send_list[send_count++] = c;
 			}
 			else {
 				
 				// just update reliable	if needed
-				if (c.netchan.message.cursize != 0 || Globals.curtime - c.netchan.last_sent > 1000)
+				if (c.netchan.Netchan_Pending() || Globals.curtime - c.netchan.last_sent > 1000)
 					NetworkChannel.Transmit(c.netchan, 0, NULLBYTE);
 			}
 		}
+
+		EntitySnapshot snap = null;
+		if (send_count > 0)
+			snap = ServerEntities.SV_BuildSnapshot();
+		if (frame_executor != null && send_count > 1) {
+			ServerEntities.SV_EncodeSharedDeltas(snap);
+			frame_executor.execute(send_list, send_count);
+		}
+		else {
+			for (i = 0; i < send_count; i++)
+				SV_SendClientDatagram(send_list[i]);
+		}
 	}
 }
@@ -28,7 +28,6 @@ import java.io.RandomAccessFile;
 
 import com.googlecode.gdxquake2.game.common.Buffer;
 import com.googlecode.gdxquake2.game.common.Constants;
-import com.googlecode.gdxquake2.game.game.EntityState;
 
 public class ServerStatic {
     public ServerStatic() {
@@ -49,11 +48,9 @@ public class ServerStatic {
 
     ClientData clients[]; // [maxclients->value];
 
-    int num_client_entities; // maxclients->value*UPDATE_BACKUP*MAX_PACKET_ENTITIES
-
-    int next_client_entities; // next client_entity to use
-
-    EntityState client_entities[]; // [num_client_entities]
+    // entity states of the last UPDATE_BACKUP server frames, shared by
+    // all clients; replaces the per client circular client_entities array
+    EntitySnapshot snapshots[]; // [UPDATE_BACKUP]
 
     int last_heartbeat;
 
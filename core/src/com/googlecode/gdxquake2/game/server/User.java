@@ -234,7 +234,7 @@ public class User {
 
         // write a packet full of data
 
-        while (ServerMain.sv_client.netchan.message.cursize < Constants.MAX_MSGLEN / 2
+        while (ServerMain.sv_client.netchan.message.cursize < ServerMain.sv_client.netchan.Netchan_MaxReliable() / 2
                 && start < Constants.MAX_CONFIGSTRINGS) {
             if (ServerInit.sv.configstrings[start] != null
                     && ServerInit.sv.configstrings[start].length() != 0) {
@@ -292,7 +292,7 @@ public class User {
 
         // write a packet full of data
 
-        while (ServerMain.sv_client.netchan.message.cursize < Constants.MAX_MSGLEN / 2
+        while (ServerMain.sv_client.netchan.message.cursize < ServerMain.sv_client.netchan.Netchan_MaxReliable() / 2
                 && start < Constants.MAX_EDICTS) {
             base = ServerInit.sv.baselines[start];
             if (base.modelindex != 0 || base.sound != 0 || base.effects != 0) {
@@ -484,7 +484,7 @@ public class User {
         //ZOID, ss_pic can be nextserver'd in coop mode
         if (ServerInit.sv.state == Constants.ss_game
                 || (ServerInit.sv.state == Constants.ss_pic && 
-                        0 == ConsoleVariables.VariableValue("coop")))
+                        0 == ServerMain.coop.value))
             return; // can't nextserver while playing a normal game
 
         ServerInit.svs.spawncount++; // make sure another doesn't sneak in
@@ -561,7 +561,12 @@ public class User {
             return;
         }
 
-        PlayerClient.ClientThink(cl.edict, cmd);
+        DeterministicMode.Begin();
+        try {
+            PlayerClient.ClientThink(cl.edict, cmd);
+        } finally {
+            DeterministicMode.End();
+        }
     }
 
     /*
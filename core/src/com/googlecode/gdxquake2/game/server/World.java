@@ -23,6 +23,8 @@
 */
 package com.googlecode.gdxquake2.game.server;
 
+import java.io.IOException;
+
 import com.googlecode.gdxquake2.game.common.CM;
 import com.googlecode.gdxquake2.game.common.Com;
 import com.googlecode.gdxquake2.game.common.Constants;
@@ -33,6 +35,7 @@ import com.googlecode.gdxquake2.game.game.ListNode;
 import com.googlecode.gdxquake2.game.game.Model;
 import com.googlecode.gdxquake2.game.game.Trace;
 import com.googlecode.gdxquake2.game.util.Math3D;
+import com.googlecode.gdxquake2.game.util.QuakeFile;
 
 
 public class World {
@@ -52,13 +55,22 @@ public class World {
 
     public static int sv_numareanodes;
 
-    public static float area_mins[], area_maxs[];
+    /** Uniform grid over the same entities, for box and radius queries. */
+    public static EntityGrid sv_grid;
+
+    /*
+     * Entity.area_order holds the area node number, which SV_CreateAreaNode
+     * hands out depth first, above the list bit and the link sequence, so
+     * that sorting by it gives the order of a walk of the tree.
+     */
+    static final int AREA_NODE_SHIFT = 41;
 
-    public static Entity area_list[];
+    static final long AREA_TRIGGER = 1L << 40;
 
-    public static int area_count, area_maxcount;
+    static final long AREA_SEQUENCE = AREA_TRIGGER - 1;
 
-    public static int area_type;
+    /** Counts the area links, for the order of the entities in a list. */
+    static long area_sequence;
 
     public static final int MAX_TOTAL_ENT_LEAFS = 128;
 
@@ -72,6 +84,15 @@ public class World {
     //===========================================================================
     static Entity touchlist[] = new Entity[Constants.MAX_EDICTS];
 
+    static float radius_mins[] = { 0, 0, 0 }, radius_maxs[] = { 0, 0, 0 };
+
+    static Entity sort_tmp[] = new Entity[Constants.MAX_EDICTS];
+
+    // scratch state of SV_Trace, which does not call back into the game
+    static final MovieClip clip = new MovieClip();
+
+    static final Trace clip_trace = new Trace();
+
     public static void initNodes() {
         for (int n = 0; n < Constants.AREA_NODES; n++)
             World.sv_areanodes[n] = new AreaNode();
@@ -107,6 +128,7 @@ public class World {
         float[] mins1 = { 0, 0, 0 }, maxs1 = { 0, 0, 0 }, mins2 = { 0, 0, 0 }, maxs2 = {
                 0, 0, 0 };
         anode = World.sv_areanodes[World.sv_numareanodes];
+        anode.index = World.sv_numareanodes;
         // just for debugging (rst)
         Math3D.VectorCopy(mins, anode.mins_rst);
         Math3D.VectorCopy(maxs, anode.maxs_rst);
@@ -142,8 +164,11 @@ public class World {
     public static void SV_ClearWorld() {
         initNodes();
         World.sv_numareanodes = 0;
+        World.area_sequence = 0;
         SV_CreateAreaNode(0, ServerInit.sv.models[1].mins,
                 ServerInit.sv.models[1].maxs);
+        sv_grid = new EntityGrid(ServerInit.sv.models[1].mins,
+                ServerInit.sv.models[1].maxs);
         /*
          * Com.p("areanodes:" + sv_numareanodes + " (sollten 32 sein)."); for
          * (int n = 0; n < sv_numareanodes; n++) { Com.Printf( "|%3i|%2i|%8.2f
@@ -163,6 +188,72 @@ public class World {
             return; // not linked in anywhere
         RemoveLink(ent.area);
         ent.area.prev = ent.area.next = null;
+        sv_grid.unlink(ent);
+    }
+
+    /**
+     * Writes the entities linked into the area nodes and the grid, in list
+     * order, for GameSnapshot.
+     */
+    public static void SV_WriteLinks(QuakeFile f) throws IOException {
+        for (int n = 0; n < sv_numareanodes; n++) {
+            WriteList(f, sv_areanodes[n].solid_edicts);
+            WriteList(f, sv_areanodes[n].trigger_edicts);
+        }
+        sv_grid.write(f);
+    }
+
+    /**
+     * Links the entities of g_edicts as SV_WriteLinks found them, in the same
+     * order, and unlinks all others. Unlike SV_LinkEdict it does not touch
+     * the entities, whose bounds, clusters and linkcount must have been
+     * restored already.
+     */
+    public static void SV_ReadLinks(QuakeFile f) throws IOException {
+        for (int i = 0; i < GameBase.g_edicts.length; i++) {
+            Entity ent = GameBase.g_edicts[i];
+            ent.area.prev = ent.area.next = null;
+            ent.grid.prev = ent.grid.next = null;
+        }
+        for (int n = 0; n < sv_numareanodes; n++) {
+            ClearLink(sv_areanodes[n].solid_edicts);
+            ClearLink(sv_areanodes[n].trigger_edicts);
+            ReadList(f, sv_areanodes[n].solid_edicts, true);
+            ReadList(f, sv_areanodes[n].trigger_edicts, true);
+            SetAreaOrder(n, sv_areanodes[n].solid_edicts, 0);
+            SetAreaOrder(n, sv_areanodes[n].trigger_edicts, AREA_TRIGGER);
+        }
+        sv_grid.read(f);
+    }
+
+    /** Numbers the entities of an area list in list order. */
+    static void SetAreaOrder(int n, ListNode head, long list) {
+        for (ListNode l = head.next; l != head; l = l.next)
+            ((Entity) l.o).area_order = AreaOrder(n, list);
+    }
+
+    static long AreaOrder(int n, long list) {
+        return ((long) n << AREA_NODE_SHIFT) | list
+                | (++area_sequence & AREA_SEQUENCE);
+    }
+
+    /** Writes the numbers of the entities in a list, followed by -1. */
+    static void WriteList(QuakeFile f, ListNode head) throws IOException {
+        for (ListNode l = head.next; l != head; l = l.next)
+            f.writeInt(((Entity) l.o).index);
+        f.writeInt(-1);
+    }
+
+    /** Appends the area or grid links of the entities WriteList wrote. */
+    static void ReadList(QuakeFile f, ListNode head, boolean area)
+            throws IOException {
+        while (true) {
+            int i = f.readInt();
+            if (i == -1)
+                break;
+            Entity ent = GameBase.g_edicts[i];
+            InsertLinkBefore(area ? ent.area : ent.grid, head);
+        }
     }
 
     public static void SV_LinkEdict(Entity ent) {
@@ -306,25 +397,101 @@ public class World {
                 break; // crosses the node
         }
         // link it in
-        if (ent.solid == Constants.SOLID_TRIGGER)
+        if (ent.solid == Constants.SOLID_TRIGGER) {
             InsertLinkBefore(ent.area, node.trigger_edicts);
-        else
+            ent.area_order = AreaOrder(node.index, AREA_TRIGGER);
+        } else {
             InsertLinkBefore(ent.area, node.solid_edicts);
+            ent.area_order = AreaOrder(node.index, 0);
+        }
+        sv_grid.link(ent);
     }
 
-    /*
-     * ================ SV_AreaEdicts ================
+    /**
+     * SV_AreaEdicts. Takes the entities from the grid cells near the box and sorts them by
+     * area_order, so that the list comes out as a walk of the area node tree
+     * gives it, as traces and trigger touches are sensitive to the order.
      */
     public static int SV_AreaEdicts(float[] mins, float[] maxs, Entity list[],
             int maxcount, int areatype) {
-        World.area_mins = mins;
-        World.area_maxs = maxs;
-        World.area_list = list;
-        World.area_count = 0;
-        World.area_maxcount = maxcount;
-        World.area_type = areatype;
-        AreaNode.SV_AreaEdicts_r(World.sv_areanodes[0]);
-        return World.area_count;
+        int count = sv_grid.boxEdicts(mins, maxs, list, maxcount, areatype);
+        SortEdicts(list, count, true);
+        return count;
+    }
+
+    /**
+     * Returns the linked entities whose bounding box center is within rad of
+     * org, ordered by entity number.
+     */
+    public static int SV_RadiusEdicts(float[] org, float rad, Entity list[],
+            int maxcount) {
+        float[] mins = World.radius_mins, maxs = World.radius_maxs;
+        for (int i = 0; i < 3; i++) {
+            mins[i] = org[i] - rad;
+            maxs[i] = org[i] + rad;
+        }
+        int num = sv_grid.boxEdicts(mins, maxs, list, maxcount, 0);
+        int count = 0;
+        for (int i = 0; i < num; i++) {
+            Entity e = list[i];
+            float d = 0;
+            for (int j = 0; j < 3; j++) {
+                float v = org[j] - (e.s.origin[j] + (e.mins[j] + e.maxs[j]) * 0.5f);
+                d += v * v;
+            }
+            if (d <= rad * rad)
+                list[count++] = e;
+        }
+        // keep the g_edicts order of a linear scan
+        SortEdicts(list, count, false);
+        return count;
+    }
+
+    static long SortKey(Entity e, boolean area) {
+        return area ? e.area_order : e.index;
+    }
+
+    /**
+     * Sorts the first count entities of list by area_order or by number: runs
+     * of 8 sorted by insertion, merged bottom up through sort_tmp.
+     */
+    static void SortEdicts(Entity list[], int count, boolean area) {
+        for (int lo = 0; lo < count; lo += 8) {
+            int hi = Math.min(lo + 8, count);
+            for (int i = lo + 1; i < hi; i++) {
+                Entity e = list[i];
+                long key = SortKey(e, area);
+                int k = i;
+                while (k > lo && SortKey(list[k - 1], area) > key) {
+                    list[k] = list[k - 1];
+                    k--;
+                }
+                list[k] = e;
+            }
+        }
+        Entity src[] = list, dst[] = sort_tmp;
+        for (int width = 8; width < count; width *= 2) {
+            for (int lo = 0; lo < count; lo += 2 * width) {
+                int mid = Math.min(lo + width, count);
+                int hi = Math.min(lo + 2 * width, count);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    if (SortKey(src[j], area) < SortKey(src[i], area))
+                        dst[k++] = src[j++];
+                    else
+                        dst[k++] = src[i++];
+                }
+                while (i < mid)
+                    dst[k++] = src[i++];
+                while (j < hi)
+                    dst[k++] = src[j++];
+            }
+            Entity t[] = src;
+            src = dst;
+            dst = t;
+        }
+        if (src != list)
+            System.arraycopy(src, 0, list, 0, count);
     }
 
     /*
@@ -381,7 +548,7 @@ public class World {
     public static void SV_ClipMoveToEntities(MovieClip clip) {
         int i, num;
         Entity touch;
-        Trace trace;
+        Trace trace = clip_trace;
         int headnode;
         float angles[];
         num = SV_AreaEdicts(clip.boxmins, clip.boxmaxs, World.touchlist,
@@ -411,18 +578,19 @@ public class World {
             if (touch.solid != Constants.SOLID_BSP)
                 angles = Globals.vec3_origin; // boxes don't rotate
             if ((touch.svflags & Constants.SVF_MONSTER) != 0)
-                trace = CM.TransformedBoxTrace(clip.start, clip.end,
+                CM.TransformedBoxTrace(trace, clip.start, clip.end,
                         clip.mins2, clip.maxs2, headnode, clip.contentmask,
                         touch.s.origin, angles);
             else
-                trace = CM.TransformedBoxTrace(clip.start, clip.end, clip.mins,
+                CM.TransformedBoxTrace(trace, clip.start, clip.end, clip.mins,
                         clip.maxs, headnode, clip.contentmask, touch.s.origin,
                         angles);
             if (trace.allsolid || trace.startsolid
                     || trace.fraction < clip.trace.fraction) {
                 trace.ent = touch;
                 if (clip.trace.startsolid) {
-                    clip.trace = trace;
+                    // was: clip.trace = trace
+                    clip.trace.set(trace);
                     clip.trace.startsolid = true;
                 } else
                     clip.trace.set(trace);
@@ -459,7 +627,7 @@ public class World {
      */
     public static Trace SV_Trace(float[] start, float[] mins, float[] maxs,
             float[] end, Entity passedict, int contentmask) {
-        MovieClip clip = new MovieClip();
+        MovieClip clip = World.clip;
         if (mins == null)
             mins = Globals.vec3_origin;
         if (maxs == null)
@@ -250,7 +250,10 @@ public final class NET {
      * Sends a Packet.
      */
     public static void SendPacket(int sock, int length, byte[] data, NetworkAddress to) {
-    	    	
+
+        if (sock == Constants.NS_SERVER && PacketCapture.IsActive())
+            PacketCapture.Write(length, data, to);
+
         if (to.type == Constants.NA_LOOPBACK) {
             SendLoopPacket(sock, length, data, to);
             return;
@@ -0,0 +1,130 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.sys;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import com.googlecode.gdxquake2.game.common.Com;
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.Globals;
+import com.googlecode.gdxquake2.game.common.NetworkAddress;
+import com.googlecode.gdxquake2.game.common.QuakeFileSystem;
+import com.googlecode.gdxquake2.game.game.Commands;
+
+/**
+ * Writes the datagrams the server sends through NET.SendPacket to a file,
+ * out-of-band packets included, so that the traffic of a game can be
+ * replayed through the client offline (benchmarks/.../PacketReplay). The
+ * sv_capture command starts and stops it.
+ * <p>
+ * The file starts with MAGIC and VERSION, followed by the packets, each as
+ *
+ * <pre>
+ * int time (Globals.curtime), byte address type, 4 bytes ip, short port,
+ * short length, length bytes
+ * </pre>
+ *
+ * in network byte order, as RandomAccessFile writes them.
+ */
+public final class PacketCapture {
+
+    public static final int MAGIC = 0x51325043; // "Q2PC"
+
+    public static final int VERSION = 1;
+
+    /** Bytes before the data of a packet. */
+    public static final int PACKET_HEADER = 13;
+
+    static RandomAccessFile file;
+
+    static final byte header[] = new byte[PACKET_HEADER];
+
+    static int packets;
+
+    public static boolean IsActive() {
+        return file != null;
+    }
+
+    /** Called by NET.SendPacket for every packet of the server. */
+    static void Write(int length, byte data[], NetworkAddress to) {
+        int time = Globals.curtime;
+        header[0] = (byte) (time >> 24);
+        header[1] = (byte) (time >> 16);
+        header[2] = (byte) (time >> 8);
+        header[3] = (byte) time;
+        header[4] = (byte) to.type;
+        for (int i = 0; i < 4; i++)
+            header[5 + i] = to.ip[i];
+        header[9] = (byte) (to.port >> 8);
+        header[10] = (byte) to.port;
+        header[11] = (byte) (length >> 8);
+        header[12] = (byte) length;
+        try {
+            file.write(header);
+            file.write(data, 0, length);
+            packets++;
+        } catch (IOException e) {
+            Com.Printf("sv_capture: " + e + ", stopped\n");
+            Stop();
+        }
+    }
+
+    public static void Start(String name) {
+        Stop();
+        try {
+            QuakeFileSystem.CreatePath(name);
+            file = new RandomAccessFile(name, "rw");
+            file.setLength(0);
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            packets = 0;
+            Com.Printf("capturing packets to " + name + "\n");
+        } catch (IOException e) {
+            Com.Printf("couldn't write " + name + ": " + e + "\n");
+            file = null;
+        }
+    }
+
+    public static void Stop() {
+        if (file == null)
+            return;
+        try {
+            file.close();
+        } catch (IOException e) {
+        }
+        file = null;
+        Com.Printf(packets + " packets captured\n");
+    }
+
+    /**
+     * sv_capture [file | stop]
+     */
+    public static void SV_Capture_f() {
+        if (Commands.Argc() != 2) {
+            Com.Printf("usage: sv_capture [file | stop]\n");
+            if (file != null)
+                Com.Printf(packets + " packets captured so far\n");
+            return;
+        }
+        if (Commands.Argv(1).equals("stop"))
+            Stop();
+        else
+            Start(QuakeFileSystem.Gamedir() + "/" + Commands.Argv(1));
+    }
+}
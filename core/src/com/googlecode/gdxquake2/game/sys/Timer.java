@@ -29,7 +29,26 @@ public abstract class Timer {
 
   private static long base = System.currentTimeMillis();
 
+  private static boolean fixed;
+
+  /**
+   * Makes Milliseconds() return time until Release(), for the deterministic
+   * mode of the server.
+   */
+  public static void Fix(int time) {
+    fixed = true;
+    Globals.curtime = time;
+  }
+
+  public static void Release() {
+    fixed = false;
+    Milliseconds();
+  }
+
 	public static int Milliseconds() {
+    if (fixed) {
+      return Globals.curtime;
+    }
     long time = System.currentTimeMillis();
     long delta = time - base;
     if (delta < 0) {
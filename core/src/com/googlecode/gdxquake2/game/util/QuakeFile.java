@@ -25,20 +25,195 @@ package com.googlecode.gdxquake2.game.util;
 
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 import com.googlecode.gdxquake2.game.common.Com;
 import com.googlecode.gdxquake2.game.game.*;
 import com.googlecode.gdxquake2.game.game.adapters.SuperAdapter;
 
 /**
- * RandomAccessFile, but handles readString/WriteString specially and offers
- * other helper functions
+ * A savegame file, with the helper functions to write strings, vectors and
+ * references. The whole file is kept in a ByteBuffer: opened for reading, it
+ * is read at once; opened for writing, it is written at once by close(). The
+ * values are in network byte order, as RandomAccessFile writes them, after
+ * MAGIC and VERSION.
  */
-public class QuakeFile extends RandomAccessFile {
+public class QuakeFile {
 
-    /** Standard Constructor. */
-    public QuakeFile(String filename, String mode) throws FileNotFoundException {
-        super(filename, mode);
+    public static final int MAGIC = 0x51325356; // "Q2SV"
+
+    /**
+     * Changes whenever a write() or read() of the saved classes or the
+     * layout of a file changes.
+     */
+    public static final int VERSION = 2;
+
+    final String filename;
+
+    final boolean writing;
+
+    ByteBuffer buffer;
+
+    /**
+     * Opens filename for reading with mode "r", for writing otherwise.
+     */
+    public QuakeFile(String filename, String mode) throws IOException {
+        this.filename = filename;
+        writing = !mode.equals("r");
+        if (writing) {
+            buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            return;
+        }
+
+        Open(ReadFile(filename), filename);
+    }
+
+    /** Reads the file from data, which starts with MAGIC and VERSION. */
+    public QuakeFile(String filename, byte data[]) throws IOException {
+        this.filename = filename;
+        writing = false;
+        Open(data, filename);
+    }
+
+    /**
+     * An empty file in memory, without MAGIC and VERSION, which close() does
+     * not write anywhere. name only appears in errors.
+     */
+    public QuakeFile(String name, int capacity) {
+        this.filename = name;
+        writing = false;
+        buffer = ByteBuffer.allocate(capacity);
+    }
+
+    void Open(byte data[], String filename) throws IOException {
+        buffer = ByteBuffer.wrap(data);
+        if (data.length < 8 || buffer.getInt() != MAGIC)
+            throw new IOException(filename + " is not a savegame");
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IOException(filename + " has version " + version + ", not " + VERSION);
+    }
+
+    /** Reads a whole file at once. */
+    public static byte[] ReadFile(String filename) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(filename, "r");
+        try {
+            byte data[] = new byte[(int) f.length()];
+            f.readFully(data);
+            return data;
+        } finally {
+            f.close();
+        }
+    }
+
+    /** The number of bytes written or read so far, MAGIC and VERSION included. */
+    public int position() {
+        return buffer.position();
+    }
+
+    /** The bytes written so far, up to position(). */
+    public byte[] data() {
+        return buffer.array();
+    }
+
+    /**
+     * Moves to position, to read back what was written or to write again
+     * from there.
+     */
+    public void seek(int position) {
+        buffer.clear();
+        buffer.position(position);
+    }
+
+    /** Writes the file if it was opened for writing. */
+    public void close() throws IOException {
+        if (!writing || buffer == null)
+            return;
+        RandomAccessFile f = new RandomAccessFile(filename, "rw");
+        try {
+            f.write(buffer.array(), 0, buffer.position());
+            f.setLength(buffer.position());
+        } finally {
+            f.close();
+            buffer = null;
+        }
+    }
+
+    /** Makes room for count more bytes. */
+    void ensure(int count) {
+        if (buffer.remaining() >= count)
+            return;
+        ByteBuffer b = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + count));
+        b.put(buffer.array(), 0, buffer.position());
+        buffer = b;
+    }
+
+    public void writeInt(int v) throws IOException {
+        ensure(4);
+        buffer.putInt(v);
+    }
+
+    public int readInt() throws IOException {
+        try {
+            return buffer.getInt();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException(filename);
+        }
+    }
+
+    public void writeShort(int v) throws IOException {
+        ensure(2);
+        buffer.putShort((short) v);
+    }
+
+    public short readShort() throws IOException {
+        try {
+            return buffer.getShort();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException(filename);
+        }
+    }
+
+    public void writeByte(int v) throws IOException {
+        ensure(1);
+        buffer.put((byte) v);
+    }
+
+    public byte readByte() throws IOException {
+        try {
+            return buffer.get();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException(filename);
+        }
+    }
+
+    public void writeFloat(float v) throws IOException {
+        ensure(4);
+        buffer.putFloat(v);
+    }
+
+    public float readFloat() throws IOException {
+        try {
+            return buffer.getFloat();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException(filename);
+        }
+    }
+
+    public void writeBoolean(boolean v) throws IOException {
+        ensure(1);
+        buffer.put((byte) (v ? 1 : 0));
+    }
+
+    public boolean readBoolean() throws IOException {
+        try {
+            return buffer.get() != 0;
+        } catch (BufferUnderflowException e) {
+            throw new EOFException(filename);
+        }
     }
 
     /** Writes a Vector to a RandomAccessFile. */
@@ -66,12 +241,13 @@ public class QuakeFile extends RandomAccessFile {
         if (len == 0)
             return "";
 
-        StringBuilder sb = new StringBuilder(len);
+        if (len < 0 || len > buffer.remaining())
+            throw new EOFException(filename);
 
-        for (int i = 0; i < len; i++) {
-        	sb.append((char) read());
-        }
-        return sb.toString();
+        char chars[] = new char[len];
+        for (int i = 0; i < len; i++)
+            chars[i] = (char) (buffer.get() & 0xff);
+        return new String(chars);
     }
 
     /** Writes a length specified string to a file. */
@@ -81,9 +257,12 @@ public class QuakeFile extends RandomAccessFile {
             return;
         }
 
-        writeInt(s.length());
-        if (s.length() != 0)
-            writeBytes(s);
+        int len = s.length();
+        ensure(4 + len);
+        buffer.putInt(len);
+        // the low byte of each char, as RandomAccessFile.writeBytes does
+        for (int i = 0; i < len; i++)
+            buffer.put((byte) s.charAt(i));
     }
 
     /** Writes the edict reference. */
@@ -0,0 +1,68 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package com.googlecode.gdxquake2.game.util;
+
+import java.util.Random;
+
+/**
+ * java.util.Random with a state that can be read and set, for
+ * GameSnapshot. It runs the same linear congruential generator, so a seed
+ * gives the same numbers as with java.util.Random. nextGaussian(), which
+ * keeps a second value of its own, is not used by the game.
+ */
+public class QuakeRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    static final long MULTIPLIER = 0x5DEECE66DL;
+
+    static final long MASK = (1L << 48) - 1;
+
+    // set by the constructors of Random through setSeed
+    private long state;
+
+    public QuakeRandom() {
+        super();
+    }
+
+    public QuakeRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + 0xBL) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /** The state after the numbers drawn so far. */
+    public long getState() {
+        return state;
+    }
+
+    /** Continues with the numbers that followed getState(). */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
@@ -0,0 +1,54 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.googlecode.gdxquake2.game.common.ResourceLoader;
+
+/**
+ * Synchronous resource loader reading the converted game data straight from
+ * disk, so the dedicated server does not need the libGDX file backend.
+ * A hosted instance shares the files with the other instances in the JVM
+ * through SharedFileCache and must close() the loader when it stops.
+ */
+public class FileResourceLoader implements ResourceLoader.Impl {
+
+	private final File root;
+	private final boolean shared;
+
+	public FileResourceLoader(File root) {
+		this(root, false);
+	}
+
+	public FileResourceLoader(File root, boolean shared) {
+		this.root = root;
+		this.shared = shared;
+	}
+
+	/** Releases the files this loader holds in SharedFileCache. */
+	public void close() {
+		if (shared) {
+			SharedFileCache.release(this);
+		}
+	}
+
+	public boolean pump() {
+		return false;
+	}
+
+	public void reset() {
+	}
+
+	public void loadResourceAsync(String path, ResourceLoader.Callback callback) {
+		File file = new File(root, path.toLowerCase());
+		byte[] data;
+		try {
+			data = shared ? SharedFileCache.read(file, this) : SharedFileCache.readFile(file);
+		} catch (IOException e) {
+			System.err.println("ResourceLoader.onFailure: " + e);
+			return;
+		}
+		callback.onSuccess(ByteBuffer.wrap(data));
+	}
+}
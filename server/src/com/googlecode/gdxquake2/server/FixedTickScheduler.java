@@ -0,0 +1,69 @@
+package com.googlecode.gdxquake2.server;
+
+/**
+ * Runs a task at a fixed rate. Deadlines are derived from the start time
+ * rather than from the end of the previous tick, so the tick rate does not
+ * drift when individual ticks take longer or the thread oversleeps.
+ */
+public class FixedTickScheduler {
+
+	/** Number of late ticks that are run back to back before ticks are dropped. */
+	public static final int MAX_CATCH_UP = 5;
+
+	private final long periodNanos;
+	private final Runnable task;
+
+	private volatile boolean running;
+	private long ticks;
+	private long dropped;
+
+	public FixedTickScheduler(int periodMillis, Runnable task) {
+		this.periodNanos = periodMillis * 1000000L;
+		this.task = task;
+	}
+
+	/**
+	 * Runs the task on the calling thread until stop() is called.
+	 */
+	public void run() {
+		running = true;
+		long next = System.nanoTime();
+		while (running) {
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+				} catch (InterruptedException e) {
+					running = false;
+				}
+				continue;
+			}
+
+			task.run();
+			ticks++;
+			next += periodNanos;
+
+			// too far behind to catch up: skip whole ticks but keep the phase
+			long behind = System.nanoTime() - next;
+			if (behind > MAX_CATCH_UP * periodNanos) {
+				long skip = behind / periodNanos;
+				dropped += skip;
+				next += skip * periodNanos;
+			}
+		}
+	}
+
+	public void stop() {
+		running = false;
+	}
+
+	/** Returns the number of ticks run so far. */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/** Returns the number of ticks skipped because the server fell behind. */
+	public long getDropped() {
+		return dropped;
+	}
+}
@@ -0,0 +1,58 @@
+package com.googlecode.gdxquake2.server;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Child-first class loader giving each hosted server instance its own copy of
+ * the game classes, and with them its own copy of the server, game, collision
+ * and network state kept in static fields. JDK and libGDX classes as well as
+ * the classes listed in SHARED are loaded once by the parent and shared by all
+ * instances.
+ * <p>
+ * The game classes, their metadata and their compiled code are therefore
+ * duplicated per instance: about 2.4 MB of metaspace and 630 classes each,
+ * next to about 20 MB of heap that every match needs for its own world and
+ * entities (see benchmarks/results/multi-instance.txt).
+ */
+public class InstanceClassLoader extends URLClassLoader {
+
+	static final String GAME_PACKAGE = "com.googlecode.gdxquake2.";
+
+	/** Game-package classes that must be shared between instances. */
+	static final String[] SHARED = {
+		SharedFileCache.class.getName()
+	};
+
+	public InstanceClassLoader(URL[] urls, ClassLoader parent) {
+		super(urls, parent);
+	}
+
+	@Override
+	protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if (!name.startsWith(GAME_PACKAGE) || isShared(name)) {
+			return super.loadClass(name, resolve);
+		}
+		Class<?> c = findLoadedClass(name);
+		if (c == null) {
+			try {
+				c = findClass(name);
+			} catch (ClassNotFoundException e) {
+				c = super.loadClass(name, false);
+			}
+		}
+		if (resolve) {
+			resolveClass(c);
+		}
+		return c;
+	}
+
+	static boolean isShared(String name) {
+		for (int i = 0; i < SHARED.length; i++) {
+			if (name.equals(SHARED[i]) || name.startsWith(SHARED[i] + "$")) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,143 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A UDP relay on the loopback interface that delays packets in both
+ * directions and drops some of them, to measure the network code on a slow
+ * link without one. Each client gets its own socket towards the server, so
+ * the server sees one address per client as it would over the internet.
+ * <p>
+ * The delay is the same for all packets, so they stay in order.
+ */
+public class LatencyProxy implements Runnable {
+
+	static class Packet {
+		long due;
+		DatagramChannel via;
+		SocketAddress to;
+		byte[] data;
+	}
+
+	final InetSocketAddress server;
+	final long delayNanos;
+	final double loss;
+	final Random random = new Random(1);
+	final Selector selector;
+	final DatagramChannel listen;
+	final Map<SocketAddress, DatagramChannel> upstream = new HashMap<SocketAddress, DatagramChannel>();
+	final ArrayDeque<Packet> queue = new ArrayDeque<Packet>();
+	final ByteBuffer buffer = ByteBuffer.allocate(65536);
+	volatile boolean running = true;
+
+	/**
+	 * @param delayMsec one way delay, half of the round trip time
+	 * @param loss fraction of the packets dropped in each direction
+	 */
+	public LatencyProxy(InetSocketAddress server, int delayMsec, double loss) throws IOException {
+		this.server = server;
+		this.delayNanos = delayMsec * 1000000L;
+		this.loss = loss;
+		selector = Selector.open();
+		listen = DatagramChannel.open();
+		listen.configureBlocking(false);
+		listen.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+		listen.register(selector, SelectionKey.OP_READ, null);
+	}
+
+	/** The address the clients connect to instead of the server. */
+	public InetSocketAddress address() {
+		return (InetSocketAddress) listen.socket().getLocalSocketAddress();
+	}
+
+	public void run() {
+		try {
+			while (running) {
+				long wait = queue.isEmpty() ? 100 : (queue.peek().due - System.nanoTime()) / 1000000L;
+				if (wait > 0) {
+					selector.select(wait);
+				} else {
+					selector.selectNow();
+				}
+				receive();
+				long now = System.nanoTime();
+				while (!queue.isEmpty() && queue.peek().due <= now) {
+					Packet p = queue.poll();
+					p.via.send(ByteBuffer.wrap(p.data), p.to);
+				}
+			}
+			for (DatagramChannel channel : upstream.values()) {
+				channel.close();
+			}
+			listen.close();
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	void receive() throws IOException {
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			DatagramChannel channel = (DatagramChannel) key.channel();
+			SocketAddress client = (SocketAddress) key.attachment();
+			while (true) {
+				buffer.clear();
+				SocketAddress from = channel.receive(buffer);
+				if (from == null) {
+					break;
+				}
+				if (client == null) {
+					// from a client to the server
+					enqueue(upstream(from), server);
+				} else {
+					enqueue(listen, client);
+				}
+			}
+		}
+	}
+
+	DatagramChannel upstream(SocketAddress client) throws IOException {
+		DatagramChannel channel = upstream.get(client);
+		if (channel == null) {
+			channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+			channel.register(selector, SelectionKey.OP_READ, client);
+			upstream.put(client, channel);
+		}
+		return channel;
+	}
+
+	void enqueue(DatagramChannel via, SocketAddress to) {
+		if (loss > 0 && random.nextDouble() < loss) {
+			return;
+		}
+		Packet p = new Packet();
+		p.due = System.nanoTime() + delayNanos;
+		p.via = via;
+		p.to = to;
+		p.data = new byte[buffer.position()];
+		System.arraycopy(buffer.array(), 0, p.data, 0, p.data.length);
+		queue.add(p);
+	}
+
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+}
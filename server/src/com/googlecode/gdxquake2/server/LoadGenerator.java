@@ -0,0 +1,320 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.googlecode.gdxquake2.GdxQuake2;
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.NetworkChannel;
+import com.googlecode.gdxquake2.game.sys.Timer;
+
+/**
+ * Soak test for the dedicated server: connects a number of SyntheticClients
+ * over UDP and reports throughput and frame timing every 10 seconds, e.g.
+ * <pre>
+ * java LoadGenerator 64 600                  in-process server, 64 clients, 10 minutes
+ * java LoadGenerator 16 60 192.168.0.2:27910 remote server
+ * </pre>
+ * Without a server address, a server with maxclients set to the number of
+ * clients is started in the same JVM, in its own class loader as in
+ * ServerHost, on the map given by -Dq2.map (q2dm1 by default). The clients
+ * send -Dq2.botFps user commands per second (30 by default) and join at
+ * -Dq2.botJoinRate clients per second (4 by default). With -Dq2.latency
+ * (one way, in ms) or -Dq2.loss (a fraction), the clients connect through a
+ * LatencyProxy. -Dq2.capture=file captures the packets of the in-process
+ * server for PacketReplay, see the sv_capture command.
+ * <p>
+ * Frame jitter is measured on the client side: the time between the arrival
+ * of consecutive server frames at each client, which is 100 ms for a server
+ * keeping up. Frames skipped by the server (rate drops) or lost are counted
+ * as missed. The join time is the time from the first getchallenge of a
+ * client to the begin command, which is dominated by the round trips of
+ * the connection phase on a slow link.
+ */
+public class LoadGenerator {
+
+	public static final int REPORT_MSEC = 10000;
+
+	/** Reconnect clients that received nothing for this long. */
+	public static final int TIMEOUT_MSEC = 5000;
+
+	final SyntheticClient[] clients;
+	final Selector selector;
+	final int cmdMsec;
+	final int joinMsec;
+	int joined;
+	int lastJoin;
+
+	// statistics of the current report interval
+	long packetsIn, packetsOut, bytesIn, bytesOut;
+	long frames, missed;
+	int[] intervals = new int[1024];
+	int intervalCount;
+
+	// totals for the summary
+	long totalFrames, totalMissed;
+	int[] allIntervals = new int[1024];
+	int allIntervalCount;
+	int[] joinTimes = new int[64];
+	int joinCount;
+
+	public LoadGenerator(int count, InetSocketAddress server, int fps) throws IOException {
+		clients = new SyntheticClient[count];
+		selector = Selector.open();
+		cmdMsec = Math.max(1, 1000 / fps);
+		// the configstrings of players joining at once overflow the reliable
+		// messages of the others, as they would with real clients
+		joinMsec = 1000 / Math.max(1, Integer.getInteger("q2.botJoinRate", 4));
+		for (int i = 0; i < count; i++) {
+			clients[i] = new SyntheticClient(i, server);
+			clients[i].channel().register(selector, SelectionKey.OP_READ, clients[i]);
+		}
+	}
+
+	public static void main (String[] arg) throws Exception {
+		if (arg.length < 2) {
+			System.out.println("usage: LoadGenerator <clients> <seconds> [host:port]");
+			return;
+		}
+		int count = Integer.parseInt(arg[0]);
+		int seconds = Integer.parseInt(arg[1]);
+		int fps = Integer.getInteger("q2.botFps", 30);
+
+		// the clients use the network code of the game in this class loader
+		GdxQuake2.tools = new ServerTools(null);
+		NetworkChannel.Netchan_Init();
+
+		Runnable instance = null;
+		Thread serverThread = null;
+		LatencyProxy proxy = null;
+		InetSocketAddress server;
+		if (arg.length > 2) {
+			String[] parts = arg[2].split(":");
+			server = new InetSocketAddress(InetAddress.getByName(parts[0]),
+					parts.length > 1 ? Integer.parseInt(parts[1]) : ServerHost.BASE_PORT);
+		} else {
+			instance = createServer(count);
+			serverThread = new Thread(instance, "server");
+			serverThread.setContextClassLoader(instance.getClass().getClassLoader());
+			serverThread.start();
+			server = new InetSocketAddress(InetAddress.getByName("127.0.0.1"), ServerHost.BASE_PORT);
+			// give the server time to load the map
+			Thread.sleep(Integer.getInteger("q2.serverStartup", 2000));
+		}
+
+		int latency = Integer.getInteger("q2.latency", 0);
+		double loss = Double.parseDouble(System.getProperty("q2.loss", "0"));
+		if (latency > 0 || loss > 0) {
+			proxy = new LatencyProxy(server, latency, loss);
+			new Thread(proxy, "proxy").start();
+			server = proxy.address();
+			System.out.println("round trip " + 2 * latency + " ms, loss " + loss);
+		}
+
+		LoadGenerator generator = new LoadGenerator(count, server, fps);
+		generator.run(seconds * 1000L);
+
+		if (proxy != null) {
+			proxy.stop();
+		}
+		if (serverThread != null) {
+			// the dedicated server has no quit command
+			instance.getClass().getMethod("stop").invoke(instance);
+			serverThread.join();
+		}
+	}
+
+	/** Creates a dedicated server instance as ServerHost does. */
+	static Runnable createServer(int maxclients) throws Exception {
+		URL[] classPath = {
+			ServerInstance.class.getProtectionDomain().getCodeSource().getLocation(),
+			com.googlecode.gdxquake2.game.server.QuakeServer.class.getProtectionDomain().getCodeSource().getLocation()
+		};
+		String[] args = {
+			"+set", "port", String.valueOf(ServerHost.BASE_PORT),
+			"+set", "clientport", String.valueOf(Constants.PORT_ANY),
+			"+set", "maxclients", String.valueOf(maxclients),
+			"+set", "deathmatch", "1",
+			"+sv_capture", System.getProperty("q2.capture", "stop"),
+			"+map", System.getProperty("q2.map", "q2dm1")
+		};
+		ClassLoader loader = new InstanceClassLoader(classPath, LoadGenerator.class.getClassLoader());
+		Class<?> c = loader.loadClass(ServerInstance.class.getName());
+		return (Runnable) c.getConstructor(String[].class, Queue.class, boolean.class)
+				.newInstance(args, new ConcurrentLinkedQueue<String>(), true);
+	}
+
+	/**
+	 * Connects all clients and runs them for the given time. Waits for
+	 * packets until the next user command is due, so that arrival times are
+	 * taken as packets come in.
+	 */
+	public void run(long duration) throws IOException {
+		long start = System.nanoTime();
+		long end = start + duration * 1000000L;
+		long nextReport = start + REPORT_MSEC * 1000000L;
+		long nextCmd = start;
+
+		Timer.Milliseconds();
+		while (true) {
+			long now = System.nanoTime();
+			if (now >= end) {
+				break;
+			}
+			if (now >= nextCmd) {
+				Timer.Milliseconds();
+				think();
+				nextCmd += cmdMsec * 1000000L;
+				if (nextCmd < now) {
+					nextCmd = now;
+				}
+			}
+			if (now >= nextReport) {
+				report((now - nextReport) / 1000000L + REPORT_MSEC);
+				nextReport = now + REPORT_MSEC * 1000000L;
+			}
+			long wait = (Math.min(nextCmd, nextReport) - System.nanoTime()) / 1000000L;
+			if (wait > 0) {
+				selector.select(wait);
+			} else {
+				selector.selectNow();
+			}
+			receive();
+		}
+
+		report(REPORT_MSEC - (nextReport - end) / 1000000L);
+		for (int i = 0; i < clients.length; i++) {
+			clients[i].disconnect();
+		}
+		selector.close();
+		summary(duration);
+	}
+
+	void think() throws IOException {
+		int now = Timer.Milliseconds();
+		if (joined < clients.length && (joined == 0 || now - lastJoin >= joinMsec)) {
+			clients[joined++].connect();
+			lastJoin = now;
+		}
+		for (int i = 0; i < joined; i++) {
+			SyntheticClient client = clients[i];
+			// also reconnects clients dropped by the server
+			if (client.lastReceived != 0 && now - client.lastReceived > TIMEOUT_MSEC) {
+				System.out.println("bot" + i + ": no packets for " + TIMEOUT_MSEC + " ms, reconnecting");
+				client.lastReceived = 0;
+				client.connect();
+			}
+			if (client.joinMsec >= 0) {
+				if (joinCount == joinTimes.length) {
+					joinTimes = Arrays.copyOf(joinTimes, joinCount * 2);
+				}
+				joinTimes[joinCount++] = client.joinMsec * 10;
+				client.joinMsec = -1;
+			}
+			client.think(cmdMsec);
+			packetsOut += client.packetsSent;
+			bytesOut += client.bytesSent;
+			client.packetsSent = 0;
+			client.bytesSent = 0;
+		}
+	}
+
+	void receive() throws IOException {
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SyntheticClient client = (SyntheticClient) keys.next().attachment();
+			keys.remove();
+			Timer.Milliseconds();
+			long nanos = System.nanoTime();
+			int length;
+			while (true) {
+				int lastFrame = client.serverframe;
+				long lastNanos = client.frameNanos;
+				if ((length = client.receive(nanos)) < 0) {
+					break;
+				}
+				packetsIn++;
+				bytesIn += length;
+				if (client.serverframe != lastFrame && lastFrame != -1) {
+					frames++;
+					// server frames are numbered consecutively
+					missed += client.serverframe - lastFrame - 1;
+					addInterval((int) ((client.frameNanos - lastNanos) / 100000L));
+				}
+			}
+		}
+	}
+
+	/** Records a frame interval in tenths of a millisecond. */
+	void addInterval(int interval) {
+		if (intervalCount == intervals.length) {
+			intervals = Arrays.copyOf(intervals, intervalCount * 2);
+		}
+		intervals[intervalCount++] = interval;
+	}
+
+	void report(long msec) {
+		int connected = 0, spawned = 0;
+		for (int i = 0; i < clients.length; i++) {
+			if (clients[i].state() >= SyntheticClient.CONNECTED) {
+				connected++;
+			}
+			if (clients[i].state() == SyntheticClient.SPAWNED) {
+				spawned++;
+			}
+		}
+		Arrays.sort(intervals, 0, intervalCount);
+		float seconds = msec / 1000f;
+		System.out.println(String.format(
+				"clients %d/%d spawned %d | in %.0f pkt/s %.1f KB/s | out %.0f pkt/s %.1f KB/s"
+						+ " | frame interval p50 %s p99 %s max %s ms | frames %d missed %d",
+				connected, clients.length, spawned,
+				packetsIn / seconds, bytesIn / seconds / 1024, packetsOut / seconds, bytesOut / seconds / 1024,
+				percentile(intervals, intervalCount, 50), percentile(intervals, intervalCount, 99),
+				percentile(intervals, intervalCount, 100), frames, missed));
+
+		totalFrames += frames;
+		totalMissed += missed;
+		if (allIntervalCount + intervalCount > allIntervals.length) {
+			allIntervals = Arrays.copyOf(allIntervals, Math.max(allIntervals.length * 2, allIntervalCount + intervalCount));
+		}
+		System.arraycopy(intervals, 0, allIntervals, allIntervalCount, intervalCount);
+		allIntervalCount += intervalCount;
+
+		packetsIn = packetsOut = bytesIn = bytesOut = 0;
+		frames = missed = 0;
+		intervalCount = 0;
+	}
+
+	void summary(long duration) {
+		Arrays.sort(allIntervals, 0, allIntervalCount);
+		Arrays.sort(joinTimes, 0, joinCount);
+		System.out.println(String.format(
+				"%d clients, %d s: frames %d missed %d (%.2f%%) | frame interval p50 %s p99 %s p99.9 %s max %s ms",
+				clients.length, duration / 1000, totalFrames, totalMissed,
+				totalFrames == 0 ? 0f : 100f * totalMissed / (totalFrames + totalMissed),
+				percentile(allIntervals, allIntervalCount, 50), percentile(allIntervals, allIntervalCount, 99),
+				percentile(allIntervals, allIntervalCount, 99.9), percentile(allIntervals, allIntervalCount, 100)));
+		System.out.println(String.format("%d joins: join time p50 %s p90 %s max %s ms", joinCount,
+				percentile(joinTimes, joinCount, 50), percentile(joinTimes, joinCount, 90),
+				percentile(joinTimes, joinCount, 100)));
+	}
+
+	/** Percentile of sorted intervals in tenths of a millisecond, formatted in ms. */
+	static String percentile(int[] sorted, int count, double p) {
+		if (count == 0) {
+			return "-";
+		}
+		int i = (int) Math.ceil(p / 100 * count) - 1;
+		i = Math.max(0, Math.min(count - 1, i));
+		return String.format("%.1f", sorted[i] / 10f);
+	}
+}
@@ -0,0 +1,45 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import com.googlecode.gdxquake2.game.server.FrameProfiler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the FrameProfiler histograms as JSON lines over HTTP, at
+ * <code>http://host:port/profile</code>, for monitoring scripts. The
+ * histograms are read on the HTTP thread without stopping the server
+ * thread.
+ */
+public class MetricsEndpoint implements HttpHandler {
+
+	private final HttpServer http;
+
+	/** Starts serving on the given port and switches profiling on. */
+	public MetricsEndpoint(int port) throws IOException {
+		http = HttpServer.create(new InetSocketAddress(port), 0);
+		http.createContext("/profile", this);
+		http.start();
+		FrameProfiler.enabled = true;
+	}
+
+	public void handle(HttpExchange exchange) throws IOException {
+		byte[] body = FrameProfiler.json().getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+
+	public void stop() {
+		http.stop(0);
+	}
+}
@@ -0,0 +1,125 @@
+package com.googlecode.gdxquake2.server;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.googlecode.gdxquake2.game.server.ClientData;
+import com.googlecode.gdxquake2.game.server.ClientFrameExecutor;
+import com.googlecode.gdxquake2.game.server.ClientFrameWorker;
+import com.googlecode.gdxquake2.game.server.ServerSend;
+
+/**
+ * Builds, encodes and sends the client frames on a fixed set of threads, each
+ * with its own ClientFrameWorker. The server thread takes part as well, so n
+ * threads means n - 1 helpers. Clients are handed out one at a time from a
+ * shared index, so a client with many visible entities does not hold up the
+ * clients behind it.
+ */
+public class ParallelFrameExecutor implements ClientFrameExecutor {
+
+	private final ClientFrameWorker[] workers;
+	private final Thread[] helpers;
+	private final CyclicBarrier start;
+	private final CyclicBarrier done;
+	private final AtomicInteger next = new AtomicInteger();
+
+	// written before the start barrier, which publishes them to the helpers
+	private ClientData[] clients;
+	private int count;
+
+	private volatile Throwable failure;
+
+	/**
+	 * @param threads number of threads including the calling one, at least 1
+	 * @param name prefix for the helper thread names
+	 */
+	public ParallelFrameExecutor(int threads, String name) {
+		workers = new ClientFrameWorker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new ClientFrameWorker();
+		}
+		start = new CyclicBarrier(threads);
+		done = new CyclicBarrier(threads);
+		helpers = new Thread[threads - 1];
+		for (int i = 0; i < helpers.length; i++) {
+			final ClientFrameWorker worker = workers[i + 1];
+			helpers[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						while (true) {
+							start.await();
+							sendDatagrams(worker);
+							done.await();
+						}
+					} catch (InterruptedException e) {
+						// shutdown
+					} catch (BrokenBarrierException e) {
+						// shutdown
+					}
+				}
+			}, name + "-frames-" + (i + 1));
+			helpers[i].setDaemon(true);
+			helpers[i].start();
+		}
+	}
+
+	public int threads() {
+		return workers.length;
+	}
+
+	public void execute(ClientData[] clients, int count) {
+		this.clients = clients;
+		this.count = count;
+		next.set(0);
+		await(start);
+		sendDatagrams(workers[0]);
+		await(done);
+		this.clients = null;
+
+		Throwable t = failure;
+		if (t != null) {
+			failure = null;
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			if (t instanceof Error) {
+				throw (Error) t;
+			}
+			throw new RuntimeException(t);
+		}
+	}
+
+	/** Stops the helper threads. The executor cannot be used afterwards. */
+	public void shutdown() {
+		for (Thread helper : helpers) {
+			helper.interrupt();
+		}
+	}
+
+	private void sendDatagrams(ClientFrameWorker worker) {
+		int i;
+		while ((i = next.getAndIncrement()) < count) {
+			try {
+				ServerSend.SV_SendClientDatagram(clients[i], worker);
+			} catch (Throwable t) {
+				// keep the first failure and skip the remaining clients
+				if (failure == null) {
+					failure = t;
+				}
+				next.set(count);
+			}
+		}
+	}
+
+	private static void await(CyclicBarrier barrier) {
+		try {
+			barrier.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while sending frames", e);
+		} catch (BrokenBarrierException e) {
+			throw new IllegalStateException("frame executor shut down", e);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+
+/**
+ * Hosts several dedicated server instances in one JVM, each on its own thread
+ * and with its own copy of the game state (see InstanceClassLoader). Every
+ * argument is the command line of one instance, e.g.
+ * <code>"+map q2dm1" "+set maxclients 4 +map q2dm2"</code>. Instance n
+ * listens on port 27910 + n unless its command line sets the port.
+ * <p>
+ * Console lines of the form <code>n command</code> are sent to instance n,
+ * lines without an instance number to all instances; <code>instances</code>
+ * lists the running instances.
+ */
+public class ServerHost {
+
+	public static final int BASE_PORT = 27910;
+
+	static class Hosted {
+		final int index;
+		final Queue<String> console = new ConcurrentLinkedQueue<String>();
+		Runnable instance;
+		Thread thread;
+
+		Hosted(int index) {
+			this.index = index;
+		}
+	}
+
+	public static void main (String[] arg) throws Exception {
+		if (arg.length == 0) {
+			arg = new String[] {""};
+		}
+		URL[] classPath = {
+			ServerInstance.class.getProtectionDomain().getCodeSource().getLocation(),
+			com.googlecode.gdxquake2.game.server.QuakeServer.class.getProtectionDomain().getCodeSource().getLocation()
+		};
+
+		List<Hosted> hosted = new ArrayList<Hosted>();
+		for (int i = 0; i < arg.length; i++) {
+			Hosted h = new Hosted(i);
+			List<String> args = new ArrayList<String>();
+			if (arg[i].indexOf("+set port") == -1) {
+				args.addAll(Arrays.asList("+set", "port", String.valueOf(BASE_PORT + i)));
+			}
+			if (arg[i].indexOf("+set clientport") == -1) {
+				// the unused client sockets would otherwise compete for the same port
+				args.addAll(Arrays.asList("+set", "clientport", String.valueOf(Constants.PORT_ANY)));
+			}
+			for (String s : arg[i].trim().split("\\s+")) {
+				if (s.length() > 0) {
+					args.add(s);
+				}
+			}
+
+			ClassLoader loader = new InstanceClassLoader(classPath, ServerHost.class.getClassLoader());
+			Class<?> c = loader.loadClass(ServerInstance.class.getName());
+			h.instance = (Runnable) c.getConstructor(String[].class, Queue.class, boolean.class)
+					.newInstance(args.toArray(new String[args.size()]), h.console, true);
+			h.thread = new Thread(h.instance, "instance-" + i);
+			h.thread.setContextClassLoader(loader);
+			h.thread.start();
+			hosted.add(h);
+		}
+
+		readConsole(hosted);
+	}
+
+	static void readConsole(List<Hosted> hosted) throws IOException, InterruptedException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.equals("instances")) {
+				for (Hosted h : hosted) {
+					System.out.println(h.index + ": " + (h.thread.isAlive() ? "running" : "stopped"));
+				}
+				System.out.println(SharedFileCache.size() + " shared files, " + SharedFileCache.bytes() / 1024 + " KB");
+				continue;
+			}
+			int space = line.indexOf(' ');
+			int target = -1;
+			if (space > 0) {
+				try {
+					target = Integer.parseInt(line.substring(0, space));
+					line = line.substring(space + 1);
+				} catch (NumberFormatException e) {
+					// command for all instances
+				}
+			}
+			for (Hosted h : hosted) {
+				if (target == -1 || target == h.index) {
+					h.console.add(line);
+				}
+			}
+		}
+		for (Hosted h : hosted) {
+			h.thread.join();
+		}
+	}
+}
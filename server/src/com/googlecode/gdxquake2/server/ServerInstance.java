@@ -0,0 +1,104 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.File;
+import java.util.Queue;
+
+import com.googlecode.gdxquake2.GdxQuake2;
+import com.googlecode.gdxquake2.game.common.CommandBuffer;
+import com.googlecode.gdxquake2.game.common.ResourceLoader;
+import com.googlecode.gdxquake2.game.server.QuakeServer;
+import com.googlecode.gdxquake2.game.server.ServerSend;
+import com.googlecode.gdxquake2.game.sys.NET;
+
+/**
+ * A dedicated server running on the calling thread at the fixed 10 Hz frame
+ * rate. The game keeps its state in static fields, so ServerHost loads each
+ * instance through its own InstanceClassLoader; the constructor only takes
+ * JDK types so the host can create instances across class loaders.
+ */
+public class ServerInstance implements Runnable {
+
+	/** Length of a server frame; fixed by the game (sv.time = framenum * 100). */
+	public static final int FRAME_MSEC = 100;
+
+	private final String[] args;
+	private final Queue<String> console;
+	private final boolean hosted;
+	private volatile FixedTickScheduler scheduler;
+	private volatile boolean stopped;
+
+	/**
+	 * @param args command line as passed to QuakeServer.init()
+	 * @param console queue of console commands, executed at the start of a tick
+	 * @param hosted true if other instances share the JVM; quitting then only
+	 *        stops this instance instead of exiting the JVM
+	 */
+	public ServerInstance(String[] args, Queue<String> console, boolean hosted) {
+		this.args = args;
+		this.console = console;
+		this.hosted = hosted;
+	}
+
+	public void run() {
+		GdxQuake2.tools = new ServerTools(hosted ? this : null);
+		FileResourceLoader files = new FileResourceLoader(new File(System.getProperty("q2.data", ".asyncLocalStorage")), hosted);
+		ResourceLoader.impl = files;
+		NET.socketFactory = new UdpSocketFactory();
+
+		// client frames are built in parallel unless -Dq2.frameThreads=1
+		int frameThreads = Integer.getInteger("q2.frameThreads", Runtime.getRuntime().availableProcessors());
+		ParallelFrameExecutor frames = null;
+		if (frameThreads > 1) {
+			frames = new ParallelFrameExecutor(frameThreads, Thread.currentThread().getName());
+			ServerSend.frame_executor = frames;
+		}
+
+		scheduler = new FixedTickScheduler(FRAME_MSEC, new Runnable() {
+			public void run() {
+				String line;
+				while ((line = console.poll()) != null) {
+					CommandBuffer.AddText(line + "\n");
+				}
+				QuakeServer.frame(FRAME_MSEC);
+			}
+		});
+
+		try {
+			QuakeServer.init(args);
+			if (!stopped) {
+				scheduler.run();
+			}
+		} catch (Exit e) {
+			// quit during init
+		} finally {
+			ServerSend.frame_executor = null;
+			if (frames != null) {
+				frames.shutdown();
+			}
+			files.close();
+		}
+	}
+
+	/** Stops the instance after the current tick. Can be called from any thread. */
+	public void stop() {
+		stopped = true;
+		if (scheduler != null) {
+			scheduler.stop();
+		}
+	}
+
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Thrown by ServerTools.exit() to unwind a hosted instance.
+	 */
+	static class Exit extends Error {
+		private static final long serialVersionUID = 1L;
+
+		Exit(int status) {
+			super("exit " + status);
+		}
+	}
+}
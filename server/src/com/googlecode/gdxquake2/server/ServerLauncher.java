@@ -0,0 +1,49 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Headless dedicated server. Runs the server at the fixed 10 Hz rate of the
+ * game simulation without creating a libGDX application, renderer or sound
+ * device. Command line arguments are passed on as in the client, e.g.
+ * <code>+set maxclients 8 +map q2dm1</code>.
+ */
+public class ServerLauncher {
+
+	public static void main (String[] arg) throws IOException {
+		Queue<String> console = new ConcurrentLinkedQueue<String>();
+		startConsoleReader(console);
+		// profile histograms over HTTP with -Dq2.metricsPort=<port>
+		Integer metricsPort = Integer.getInteger("q2.metricsPort");
+		if (metricsPort != null) {
+			new MetricsEndpoint(metricsPort);
+		}
+		new ServerInstance(arg, console, false).run();
+	}
+
+	/**
+	 * Reads console commands from stdin on a daemon thread; they are handed
+	 * over to the server thread and executed at the start of the next tick.
+	 */
+	static void startConsoleReader(final Queue<String> console) {
+		Thread reader = new Thread("console") {
+			public void run() {
+				BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+				try {
+					String line;
+					while ((line = in.readLine()) != null) {
+						console.add(line);
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+}
@@ -0,0 +1,32 @@
+package com.googlecode.gdxquake2.server;
+
+import com.googlecode.gdxquake2.PlatformTools;
+
+
+public class ServerTools implements PlatformTools {
+
+	private final ServerInstance instance;
+
+	/**
+	 * @param instance the instance to stop on exit when it shares the JVM with
+	 *        other instances, or null to exit the JVM.
+	 */
+	public ServerTools(ServerInstance instance) {
+		this.instance = instance;
+	}
+
+	@Override
+	public void log(String s) {
+		System.out.println(s);
+	}
+
+	@Override
+	public void exit(int i) {
+		if (instance == null) {
+			System.exit(i);
+		}
+		// Sys.Quit() and Sys.Error() do not expect exit() to return
+		instance.stop();
+		throw new ServerInstance.Exit(i);
+	}
+}
@@ -0,0 +1,92 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Game data read from disk, shared by the server instances hosted in the JVM
+ * so maps and models that several instances load are read and held in memory
+ * once. Each file is kept as long as an instance that read it is running:
+ * the readers pass themselves as user and call release() when they stop, which
+ * evicts the files no other user holds. The cached arrays must be treated as
+ * read only.
+ */
+public class SharedFileCache {
+
+	static class Entry {
+		final byte[] data;
+		final Set<Object> users = new HashSet<Object>();
+
+		Entry(byte[] data) {
+			this.data = data;
+		}
+	}
+
+	private static final HashMap<String, Entry> files = new HashMap<String, Entry>();
+
+	private static long bytes;
+
+	public static byte[] read(File file, Object user) throws IOException {
+		String key = file.getCanonicalPath();
+		synchronized (files) {
+			Entry e = files.get(key);
+			if (e != null) {
+				e.users.add(user);
+				return e.data;
+			}
+		}
+		// read outside the lock; if another instance was faster, its copy wins
+		byte[] data = readFile(file);
+		synchronized (files) {
+			Entry e = files.get(key);
+			if (e == null) {
+				e = new Entry(data);
+				files.put(key, e);
+				bytes += data.length;
+			}
+			e.users.add(user);
+			return e.data;
+		}
+	}
+
+	/** Drops the files of user that no other user holds. */
+	public static void release(Object user) {
+		synchronized (files) {
+			for (Iterator<Entry> i = files.values().iterator(); i.hasNext();) {
+				Entry e = i.next();
+				if (e.users.remove(user) && e.users.isEmpty()) {
+					bytes -= e.data.length;
+					i.remove();
+				}
+			}
+		}
+	}
+
+	static byte[] readFile(File file) throws IOException {
+		RandomAccessFile f = new RandomAccessFile(file, "r");
+		try {
+			byte[] data = new byte[(int) f.length()];
+			f.readFully(data);
+			return data;
+		} finally {
+			f.close();
+		}
+	}
+
+	public static int size() {
+		synchronized (files) {
+			return files.size();
+		}
+	}
+
+	public static long bytes() {
+		synchronized (files) {
+			return bytes;
+		}
+	}
+}
@@ -0,0 +1,473 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+
+import com.googlecode.gdxquake2.game.common.Buffer;
+import com.googlecode.gdxquake2.game.common.Buffers;
+import com.googlecode.gdxquake2.game.common.Com;
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.Delta;
+import com.googlecode.gdxquake2.game.common.FrameCodec;
+import com.googlecode.gdxquake2.game.common.Globals;
+import com.googlecode.gdxquake2.game.common.NetworkAddress;
+import com.googlecode.gdxquake2.game.common.NetworkChannel;
+import com.googlecode.gdxquake2.game.game.UserCommand;
+import com.googlecode.gdxquake2.game.sys.QuakeSocket;
+import com.googlecode.gdxquake2.game.util.Math3D;
+
+/**
+ * A scripted client connected over UDP, for load tests. It goes through the
+ * handshake of a real client: getchallenge, connect (SVC_DirectConnect), then
+ * the new, configstrings, baselines and begin string commands. It then sends
+ * user commands from a simple script: run and strafe, turn, and press attack
+ * every other second, which also respawns it. The server messages are only
+ * parsed up to svc_frame, to acknowledge the frame for delta compression,
+ * which includes decompressing svc_compressed; the rest of the packet is
+ * skipped.
+ * <p>
+ * The clients ask for the NetworkChannel features given by -Dq2.netFeatures,
+ * all of them by default; 0 connects as an older client.
+ * <p>
+ * Not thread safe; LoadGenerator drives all clients from one thread.
+ */
+public class SyntheticClient implements QuakeSocket {
+
+	public static final int DISCONNECTED = 0, CHALLENGING = 1, CONNECTING = 2, CONNECTED = 3, SPAWNED = 4;
+
+	/** Resend the handshake packets after this many ms without an answer. */
+	static final int RESEND_MSEC = 3000;
+
+	static final int FEATURES = Integer.getInteger("q2.netFeatures", NetworkChannel.FEATURES);
+
+	final int index;
+	final InetSocketAddress server;
+	final DatagramChannel channel;
+	final NetworkChannel netchan = new NetworkChannel();
+	final NetworkAddress serverAddress = new NetworkAddress();
+	final Random random;
+	final int qport;
+
+	int state = DISCONNECTED;
+	int challenge;
+	int lastSent;
+	int lastReceived;
+	int joinStarted;
+
+	/** Time from connect() to entering the game, -1 until it is taken by the load generator. */
+	int joinMsec = -1;
+
+	// last frame received and when, for the statistics of the load generator
+	int serverframe = -1;
+	long frameNanos;
+	int packetsSent;
+	long bytesSent;
+
+	final ByteBuffer receiveBuffer = ByteBuffer.allocate(NetworkChannel.MAX_DELIVERY);
+	final byte[] receiveData = receiveBuffer.array();
+	final Buffer msg = Buffer.wrap(receiveData).order(ByteOrder.LITTLE_ENDIAN);
+	final FrameCodec codec = new FrameCodec();
+	final byte[] unpackedData = new byte[Constants.MAX_MSGLEN];
+	final Buffer unpacked = Buffer.wrap(unpackedData).order(ByteOrder.LITTLE_ENDIAN);
+	final byte[] moveData = new byte[128];
+	final Buffer move = Buffer.wrap(moveData).order(ByteOrder.LITTLE_ENDIAN);
+
+	// the last three commands are sent with every move
+	final UserCommand[] cmds = { new UserCommand(), new UserCommand(), new UserCommand() };
+	final UserCommand nullcmd = new UserCommand();
+	final float[] angles = { 0, 0, 0 };
+	int time;
+
+	public SyntheticClient(int index, InetSocketAddress server) throws IOException {
+		this.index = index;
+		this.server = server;
+		this.random = new Random(index);
+		this.qport = (index * 7919 + 1) & 0xffff;
+		channel = DatagramChannel.open();
+		channel.configureBlocking(false);
+		channel.socket().bind(new InetSocketAddress(server.getAddress().isLoopbackAddress() ? server.getAddress() : null, 0));
+		serverAddress.type = Constants.NA_IP;
+		serverAddress.ip = server.getAddress().getAddress();
+		serverAddress.port = server.getPort();
+	}
+
+	public DatagramChannel channel() {
+		return channel;
+	}
+
+	public int state() {
+		return state;
+	}
+
+	public String userinfo() {
+		return "\\name\\bot" + index + "\\skin\\male/grunt\\hand\\2\\gender\\male\\rate\\25000"
+				+ "\\msg\\1\\spectator\\0";
+	}
+
+	/** Starts or restarts the handshake. */
+	public void connect() throws IOException {
+		if (state != CHALLENGING && state != CONNECTING) {
+			joinStarted = Globals.curtime;
+		}
+		state = CHALLENGING;
+		serverframe = -1;
+		outOfBand("getchallenge\n");
+	}
+
+	/**
+	 * Sends whatever the current state needs: handshake retries, reliable
+	 * string commands, or the next user command of the script.
+	 */
+	public void think(int msec) throws IOException {
+		int now = Globals.curtime;
+		switch (state) {
+		case CHALLENGING:
+		case CONNECTING:
+			if (now - lastSent > RESEND_MSEC) {
+				connect();
+			}
+			break;
+		case CONNECTED:
+			if (netchan.Netchan_Pending() || now - netchan.last_sent > 1000) {
+				NetworkChannel.Transmit(netchan, 0, moveData);
+			}
+			break;
+		case SPAWNED:
+			sendMove(msec);
+			break;
+		}
+	}
+
+	/** Disconnects the way a real client does. */
+	public void disconnect() throws IOException {
+		if (state == CONNECTED || state == SPAWNED) {
+			move.cursize = 0;
+			Buffers.writeByte(move, Constants.clc_stringcmd);
+			Buffers.WriteString(move, "disconnect");
+			for (int i = 0; i < 3; i++) {
+				NetworkChannel.Transmit(netchan, move.cursize, moveData);
+			}
+		}
+		state = DISCONNECTED;
+		channel.close();
+	}
+
+	void sendMove(int msec) throws IOException {
+		time += msec;
+		UserCommand cmd = cmds[0];
+		cmds[0] = cmds[1];
+		cmds[1] = cmds[2];
+		cmds[2] = cmd;
+
+		cmd.clear();
+		cmd.msec = (byte) msec;
+		cmd.forwardmove = 300;
+		cmd.sidemove = (short) (((time / 1500 + index) & 1) == 0 ? 200 : -200);
+		if (((time / 1000) & 1) == 0) {
+			cmd.buttons = Constants.BUTTON_ATTACK;
+		}
+		if (random.nextInt(20) == 0) {
+			angles[Constants.YAW] += random.nextInt(180) - 90;
+		}
+		angles[Constants.YAW] += 0.1f * msec;
+		for (int i = 0; i < 3; i++) {
+			cmd.angles[i] = (short) Math3D.ANGLE2SHORT(angles[i]);
+		}
+
+		// as ClientInput.SendCmd does
+		move.cursize = 0;
+		Buffers.writeByte(move, Constants.clc_move);
+		int checksumIndex = move.cursize;
+		Buffers.writeByte(move, 0);
+		move.putInt(serverframe);
+		Delta.WriteDeltaUsercmd(move, nullcmd, cmds[0]);
+		Delta.WriteDeltaUsercmd(move, cmds[0], cmds[1]);
+		Delta.WriteDeltaUsercmd(move, cmds[1], cmds[2]);
+		moveData[checksumIndex] = Com.BlockSequenceCRCByte(moveData, checksumIndex + 1,
+				move.cursize - checksumIndex - 1, netchan.outgoing_sequence);
+		NetworkChannel.Transmit(netchan, move.cursize, moveData);
+	}
+
+	/**
+	 * Reads the next packet from the server, if any.
+	 *
+	 * @return the length of the packet, or -1 if there was none
+	 */
+	public int receive(long nanos) throws IOException {
+		if (read() == null) {
+			return -1;
+		}
+		int length = receiveBuffer.position();
+		msg.cursize = length;
+		msg.readcount = 0;
+
+		if (length >= 4 && msg.getInt() == -1) {
+			connectionless(Buffers.getLine(msg));
+		} else if (state >= CONNECTED) {
+			msg.readcount = 0;
+			if (NetworkChannel.Process(netchan, msg)) {
+				parse(nanos);
+			}
+		}
+		return length;
+	}
+
+	void connectionless(String s) throws IOException {
+		if (s.startsWith("challenge ") && state == CHALLENGING) {
+			challenge = Integer.parseInt(s.substring(10).trim());
+			state = CONNECTING;
+			outOfBand("connect " + Constants.PROTOCOL_VERSION + " " + qport + " " + challenge + " \""
+					+ userinfo() + "\" " + FEATURES + "\n");
+		} else if (s.startsWith("client_connect") && state == CONNECTING) {
+			String[] args = s.trim().split(" ");
+			int features = args.length > 1 ? Integer.parseInt(args[1]) & FEATURES : 0;
+			NetworkChannel.Setup(netchan, Constants.NS_CLIENT, serverAddress, qport, features);
+			netchan.socket = this;
+			stringCommand("new");
+			state = CONNECTED;
+		} else if (s.startsWith("print")) {
+			Com.Printf("bot" + index + ": " + Buffers.getString(msg));
+		}
+	}
+
+	/**
+	 * Parses the reliable part of a packet and the frame header after it, and
+	 * answers the string commands the server stuffs during the handshake.
+	 */
+	void parse(long nanos) throws IOException {
+		while (msg.readcount < msg.cursize) {
+			int cmd = Buffers.readUnsignedByte(msg);
+			switch (cmd) {
+			case Constants.svc_nop:
+				break;
+			case Constants.svc_disconnect:
+				Com.Printf("bot" + index + ": disconnected by server\n");
+				state = DISCONNECTED;
+				return;
+			case Constants.svc_reconnect:
+				connect();
+				return;
+			case Constants.svc_print:
+				Buffers.readUnsignedByte(msg);
+				Buffers.getString(msg);
+				break;
+			case Constants.svc_centerprint:
+			case Constants.svc_layout:
+				Buffers.getString(msg);
+				break;
+			case Constants.svc_stufftext:
+				stufftext(Buffers.getString(msg));
+				break;
+			case Constants.svc_serverdata:
+				msg.getInt(); // protocol
+				msg.getInt(); // spawncount
+				Buffers.readUnsignedByte(msg); // attractloop
+				Buffers.getString(msg); // gamedir
+				msg.getShort(); // playernum
+				Buffers.getString(msg); // levelname
+				state = CONNECTED;
+				serverframe = -1;
+				break;
+			case Constants.svc_configstring:
+				msg.getShort();
+				Buffers.getString(msg);
+				break;
+			case Constants.svc_spawnbaseline:
+				skipEntity();
+				break;
+			case Constants.svc_inventory:
+				msg.readcount += Constants.MAX_ITEMS * 2;
+				break;
+			case Constants.svc_muzzleflash:
+			case Constants.svc_muzzleflash2:
+				msg.readcount += 3;
+				break;
+			case Constants.svc_sound:
+				skipSound();
+				break;
+			case Constants.svc_frame:
+				frame(msg, nanos);
+				// the player state and entities follow; not needed
+				return;
+			case Constants.svc_compressed:
+				int length = msg.getShort() & 0xffff;
+				int size = msg.getShort() & 0xffff;
+				if (codec.Decompress(receiveData, msg.readcount, length, unpackedData, size)) {
+					unpacked.cursize = size;
+					unpacked.readcount = 0;
+					if (Buffers.readUnsignedByte(unpacked) == Constants.svc_frame) {
+						frame(unpacked, nanos);
+					}
+				} else {
+					Com.Printf("bot" + index + ": bad compressed frame\n");
+				}
+				return;
+			default:
+				// temp entities and others are not parsed, skip the rest
+				return;
+			}
+		}
+	}
+
+	void frame(Buffer msg, long nanos) {
+		if (state == SPAWNED) {
+			int frame = msg.getInt();
+			if (frame > serverframe) {
+				serverframe = frame;
+				frameNanos = nanos;
+			}
+		}
+	}
+
+	void stufftext(String text) throws IOException {
+		String[] lines = text.split("\n");
+		for (int i = 0; i < lines.length; i++) {
+			String line = lines[i].trim();
+			if (line.startsWith("cmd ")) {
+				stringCommand(line.substring(4));
+			} else if (line.startsWith("precache ")) {
+				// the client loads the level here and then enters the game
+				stringCommand("begin " + line.substring(9).trim());
+				state = SPAWNED;
+				joinMsec = Globals.curtime - joinStarted;
+			} else if (line.equals("reconnect")) {
+				state = CONNECTED;
+				stringCommand("new");
+			}
+		}
+	}
+
+	/** Skips an entity delta as written by Delta.WriteDeltaEntity. */
+	void skipEntity() {
+		int bits = Buffers.readUnsignedByte(msg);
+		if ((bits & Constants.U_MOREBITS1) != 0)
+			bits |= Buffers.readUnsignedByte(msg) << 8;
+		if ((bits & Constants.U_MOREBITS2) != 0)
+			bits |= Buffers.readUnsignedByte(msg) << 16;
+		if ((bits & Constants.U_MOREBITS3) != 0)
+			bits |= Buffers.readUnsignedByte(msg) << 24;
+		int n = (bits & Constants.U_NUMBER16) != 0 ? 2 : 1;
+
+		if ((bits & Constants.U_MODEL) != 0)
+			n++;
+		if ((bits & Constants.U_MODEL2) != 0)
+			n++;
+		if ((bits & Constants.U_MODEL3) != 0)
+			n++;
+		if ((bits & Constants.U_MODEL4) != 0)
+			n++;
+		if ((bits & Constants.U_FRAME8) != 0)
+			n++;
+		if ((bits & Constants.U_FRAME16) != 0)
+			n += 2;
+		n += pairSize(bits, Constants.U_SKIN8, Constants.U_SKIN16);
+		n += pairSize(bits, Constants.U_EFFECTS8, Constants.U_EFFECTS16);
+		n += pairSize(bits, Constants.U_RENDERFX8, Constants.U_RENDERFX16);
+		if ((bits & Constants.U_ORIGIN1) != 0)
+			n += 2;
+		if ((bits & Constants.U_ORIGIN2) != 0)
+			n += 2;
+		if ((bits & Constants.U_ORIGIN3) != 0)
+			n += 2;
+		if ((bits & Constants.U_ANGLE1) != 0)
+			n++;
+		if ((bits & Constants.U_ANGLE2) != 0)
+			n++;
+		if ((bits & Constants.U_ANGLE3) != 0)
+			n++;
+		if ((bits & Constants.U_OLDORIGIN) != 0)
+			n += 6;
+		if ((bits & Constants.U_SOUND) != 0)
+			n++;
+		if ((bits & Constants.U_EVENT) != 0)
+			n++;
+		if ((bits & Constants.U_SOLID) != 0)
+			n += 2;
+		msg.readcount += n;
+	}
+
+	/** Size of a field sent as a byte, a short or, with both bits, an int. */
+	static int pairSize(int bits, int bit8, int bit16) {
+		if ((bits & bit8) != 0 && (bits & bit16) != 0)
+			return 4;
+		if ((bits & bit8) != 0)
+			return 1;
+		if ((bits & bit16) != 0)
+			return 2;
+		return 0;
+	}
+
+	void skipSound() {
+		int flags = Buffers.readUnsignedByte(msg);
+		int n = 1;
+		if ((flags & Constants.SND_VOLUME) != 0)
+			n++;
+		if ((flags & Constants.SND_ATTENUATION) != 0)
+			n++;
+		if ((flags & Constants.SND_OFFSET) != 0)
+			n++;
+		if ((flags & Constants.SND_ENT) != 0)
+			n += 2;
+		if ((flags & Constants.SND_POS) != 0)
+			n += 6;
+		msg.readcount += n;
+	}
+
+	void stringCommand(String s) {
+		Buffers.writeByte(netchan.message, Constants.clc_stringcmd);
+		Buffers.WriteString(netchan.message, s);
+	}
+
+	void outOfBand(String s) throws IOException {
+		move.cursize = 0;
+		move.putInt(-1);
+		for (int i = 0; i < s.length(); i++) {
+			Buffers.writeByte(move, s.charAt(i));
+		}
+		send(serverAddress, moveData, move.cursize);
+	}
+
+	public void send(NetworkAddress to, byte[] data, int len) throws IOException {
+		lastSent = Globals.curtime;
+		packetsSent++;
+		bytesSent += len;
+		channel.send(ByteBuffer.wrap(data, 0, len), server);
+	}
+
+	/**
+	 * Reads the next packet into buf, without parsing it, as any QuakeSocket
+	 * does. The load generator uses receive(long) instead.
+	 *
+	 * @return the length of the packet, or -1 if there was none
+	 */
+	public int receive(NetworkAddress from, byte[] buf) throws IOException {
+		InetSocketAddress src = read();
+		if (src == null) {
+			return -1;
+		}
+		from.type = Constants.NA_IP;
+		from.ip = src.getAddress().getAddress();
+		from.port = src.getPort();
+		int length = Math.min(receiveBuffer.position(), buf.length);
+		System.arraycopy(receiveData, 0, buf, 0, length);
+		return length;
+	}
+
+	/** Reads the next packet into receiveBuffer; returns its source, or null if there was none. */
+	InetSocketAddress read() throws IOException {
+		receiveBuffer.clear();
+		InetSocketAddress src = (InetSocketAddress) channel.receive(receiveBuffer);
+		if (src != null) {
+			lastReceived = Globals.curtime;
+		}
+		return src;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,144 @@
+package com.googlecode.gdxquake2.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import com.googlecode.gdxquake2.game.common.Constants;
+import com.googlecode.gdxquake2.game.common.NetworkAddress;
+import com.googlecode.gdxquake2.game.sys.QuakeSocket;
+import com.googlecode.gdxquake2.game.sys.QuakeSocketFactory;
+
+/**
+ * Binds non-blocking UDP sockets for NET. Packets are received into a ring
+ * of direct buffers: when the ring is empty, receive() drains everything the
+ * channel has pending in one pass, and later calls hand out the buffered
+ * packets without touching the channel. Sends go through a direct buffer as
+ * well, so the JDK does not copy each packet into a temporary one, and the
+ * socket addresses of recent destinations are cached.
+ */
+public class UdpSocketFactory implements QuakeSocketFactory {
+
+	/** Number of packets buffered per socket. */
+	public static final int RING_SIZE = 64;
+
+	/** Number of cached destination addresses per socket. */
+	static final int DESTINATIONS = 256;
+
+	public QuakeSocket bind(String ip, int port) {
+		try {
+			DatagramChannel channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.socket().setBroadcast(true);
+			channel.socket().bind(ip == null ? new InetSocketAddress(port) : new InetSocketAddress(ip, port));
+			return new UdpSocket(channel);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static class UdpSocket implements QuakeSocket {
+		private final DatagramChannel channel;
+
+		// ring of received packets; slots are slices of one direct buffer
+		private final ByteBuffer[] ring = new ByteBuffer[RING_SIZE];
+		private final InetSocketAddress[] sources = new InetSocketAddress[RING_SIZE];
+		private int head;
+		private int count;
+
+		private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(Constants.MAX_MSGLEN);
+
+		// direct mapped cache of destination addresses
+		private final long[] destinationKeys = new long[DESTINATIONS];
+		private final InetSocketAddress[] destinations = new InetSocketAddress[DESTINATIONS];
+
+		UdpSocket(DatagramChannel channel) {
+			this.channel = channel;
+			ByteBuffer buffers = ByteBuffer.allocateDirect(RING_SIZE * Constants.MAX_MSGLEN);
+			for (int i = 0; i < RING_SIZE; i++) {
+				buffers.limit((i + 1) * Constants.MAX_MSGLEN);
+				buffers.position(i * Constants.MAX_MSGLEN);
+				ring[i] = buffers.slice();
+			}
+		}
+
+		public int receive(NetworkAddress from, byte[] buf) throws IOException {
+			if (count == 0) {
+				head = 0;
+				drain();
+				if (count == 0) {
+					return -1;
+				}
+			}
+
+			ByteBuffer packet = ring[head];
+			InetSocketAddress src = sources[head];
+			sources[head] = null;
+			head = (head + 1) % RING_SIZE;
+			count--;
+
+			byte[] ip = src.getAddress().getAddress();
+			if (from.ip != null && from.ip.length == ip.length) {
+				System.arraycopy(ip, 0, from.ip, 0, ip.length);
+			} else {
+				from.ip = ip;
+			}
+			from.port = src.getPort();
+
+			int len = Math.min(packet.limit(), buf.length);
+			packet.get(buf, 0, len);
+			return len;
+		}
+
+		/** Reads the pending packets into the free slots of the ring. */
+		private void drain() throws IOException {
+			while (count < RING_SIZE) {
+				int slot = (head + count) % RING_SIZE;
+				ByteBuffer packet = ring[slot];
+				packet.clear();
+				InetSocketAddress src = (InetSocketAddress) channel.receive(packet);
+				if (src == null) {
+					break;
+				}
+				packet.flip();
+				sources[slot] = src;
+				count++;
+			}
+		}
+
+		/** Synchronized since frames may be sent from several threads. */
+		public synchronized void send(NetworkAddress to, byte[] data, int len) throws IOException {
+			InetSocketAddress dst = destination(to);
+			if (len > sendBuffer.capacity()) {
+				channel.send(ByteBuffer.wrap(data, 0, len), dst);
+				return;
+			}
+			sendBuffer.clear();
+			sendBuffer.put(data, 0, len);
+			sendBuffer.flip();
+			channel.send(sendBuffer, dst);
+		}
+
+		private InetSocketAddress destination(NetworkAddress to) throws IOException {
+			long key = ((long) to.type << 48) | ((long) to.port << 32);
+			if (to.type == Constants.NA_IP) {
+				key |= ((to.ip[0] & 0xffL) << 24) | ((to.ip[1] & 0xffL) << 16)
+						| ((to.ip[2] & 0xffL) << 8) | (to.ip[3] & 0xffL);
+			}
+			int slot = (int) (key ^ (key >>> 29) ^ (key >>> 47)) & (DESTINATIONS - 1);
+			InetSocketAddress dst = destinations[slot];
+			if (dst == null || destinationKeys[slot] != key) {
+				dst = new InetSocketAddress(to.getInetAddress(), to.port);
+				destinations[slot] = dst;
+				destinationKeys[slot] = key;
+			}
+			return dst;
+		}
+
+		public void close() throws IOException {
+			count = 0;
+			channel.close();
+		}
+	}
+}